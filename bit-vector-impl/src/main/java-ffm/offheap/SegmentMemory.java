@@ -0,0 +1,79 @@
+package offheap;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link OffHeapMemory} in one {@link MemorySegment} of a shared {@link Arena},
+ * aligned to a cache line. Closing the arena frees the memory at once, and any
+ * later access throws an {@link IllegalStateException}.
+ * <p>
+ * Only compiled with the <code>ffm</code> Maven profile, on a JDK with the final
+ * Foreign Function and Memory API.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class SegmentMemory implements OffHeapMemory {
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SegmentMemory(long byteSize) {
+        arena = Arena.ofShared();
+        segment = arena.allocate(byteSize, CACHE_LINE_BYTES);
+    }
+
+    @Override
+    public long byteSize() {
+        return segment.byteSize();
+    }
+
+    @Override
+    public long getLong(long index) {
+        return segment.getAtIndex(ValueLayout.JAVA_LONG, index);
+    }
+
+    @Override
+    public void setLong(long index, long value) {
+        segment.setAtIndex(ValueLayout.JAVA_LONG, index, value);
+    }
+
+    @Override
+    public byte getByte(long offset) {
+        return segment.get(ValueLayout.JAVA_BYTE, offset);
+    }
+
+    @Override
+    public void setByte(long offset, byte value) {
+        segment.set(ValueLayout.JAVA_BYTE, offset, value);
+    }
+
+    @Override
+    public void getBytes(long offset, byte[] destination, int from, int length) {
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, destination, from, length);
+    }
+
+    @Override
+    public void setBytes(long offset, byte[] source, int from, int length) {
+        MemorySegment.copy(source, from, segment, ValueLayout.JAVA_BYTE, offset, length);
+    }
+
+    @Override
+    public void copyFrom(OffHeapMemory source, long bytes) {
+        if (source instanceof SegmentMemory sourceMemory) {
+            MemorySegment.copy(sourceMemory.segment, 0, segment, 0, bytes);
+        } else {
+            OffHeapMemory.super.copyFrom(source, bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            arena.close();
+        }
+    }
+}
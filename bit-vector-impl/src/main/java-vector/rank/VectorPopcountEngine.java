@@ -0,0 +1,126 @@
+package rank;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link PopcountEngine} built on the incubating Java Vector API. JDK 17 has
+ * no lanewise bit count, so each lane is counted with the usual SWAR reduction
+ * (pairs, nibbles, bytes, then a multiply to sum the bytes). Ranges shorter
+ * than a couple of vectors fall back to {@link Long#bitCount(long)}.
+ * <p>
+ * Only compiled with the <code>vector</code> Maven profile, and only used when
+ * the JVM is started with <code>--add-modules jdk.incubator.vector</code>.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class VectorPopcountEngine extends ScalarPopcountEngine {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public int countWords(long[] words, int fromWord, int toWord) {
+        if (toWord - fromWord < 2 * LANES) {
+            return super.countWords(words, fromWord, toWord);
+        }
+        int upperBound = fromWord + SPECIES.loopBound(toWord - fromWord);
+        LongVector counts = LongVector.zero(SPECIES);
+        int word = fromWord;
+        for (; word < upperBound; word += LANES) {
+            counts = counts.add(bitCount(LongVector.fromArray(SPECIES, words, word)));
+        }
+        long count = counts.reduceLanes(VectorOperators.ADD);
+        for (; word < toWord; word++) {
+            count += Long.bitCount(words[word]);
+        }
+        return (int) count;
+    }
+
+    @Override
+    public void blockCounts(long[] words, int fromWord, int wordsPerBlock, int[] counts, int numberOfBlocks) {
+        if (wordsPerBlock != 1) {
+            super.blockCounts(words, fromWord, wordsPerBlock, counts, numberOfBlocks);
+            return;
+        }
+        // one word per block, so each lane is a block
+        int upperBound = SPECIES.loopBound(Math.max(0, Math.min(numberOfBlocks, words.length - fromWord)));
+        long[] laneCounts = new long[LANES];
+        int block = 0;
+        for (; block < upperBound; block += LANES) {
+            bitCount(LongVector.fromArray(SPECIES, words, fromWord + block)).intoArray(laneCounts, 0);
+            for (int lane = 0; lane < LANES; lane++) {
+                counts[block + lane] = (int) laneCounts[lane];
+            }
+        }
+        for (; block < numberOfBlocks; block++) {
+            int word = fromWord + block;
+            counts[block] = word < words.length ? Long.bitCount(words[word]) : 0;
+        }
+    }
+
+    @Override
+    public void and(long[] a, long[] b, long[] result, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            LongVector.fromArray(SPECIES, a, i).and(LongVector.fromArray(SPECIES, b, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] & b[i];
+        }
+    }
+
+    @Override
+    public void or(long[] a, long[] b, long[] result, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            LongVector.fromArray(SPECIES, a, i).or(LongVector.fromArray(SPECIES, b, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] | b[i];
+        }
+    }
+
+    @Override
+    public void xor(long[] a, long[] b, long[] result, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            LongVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, b, i))
+                    .intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] ^ b[i];
+        }
+    }
+
+    @Override
+    public void andNot(long[] a, long[] b, long[] result, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            LongVector.fromArray(SPECIES, a, i)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, b, i)).intoArray(result, i);
+        }
+        for (; i < length; i++) {
+            result[i] = a[i] & ~b[i];
+        }
+    }
+
+    /**
+     * Counts the set bits of each lane.
+     * 
+     * @param vector the words
+     * @return the bit count of each lane
+     */
+    private static LongVector bitCount(LongVector vector) {
+        vector = vector.sub(vector.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+        vector = vector.and(0x3333333333333333L)
+                .add(vector.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+        vector = vector.add(vector.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+        return vector.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+    }
+}
@@ -0,0 +1,38 @@
+package codec;
+
+/**
+ * A {@link ValueCodec} storing byte arrays as they are.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class BytesCodec implements ValueCodec<byte[]> {
+    static final BytesCodec INSTANCE = new BytesCodec();
+
+    @Override
+    public String name() {
+        return "bytes";
+    }
+
+    @Override
+    public int fixedWidth() {
+        return -1;
+    }
+
+    @Override
+    public int encodedLength(byte[] value) {
+        return value.length;
+    }
+
+    @Override
+    public void encode(byte[] value, byte[] buffer, int offset) {
+        System.arraycopy(value, 0, buffer, offset, value.length);
+    }
+
+    @Override
+    public byte[] decode(byte[] buffer, int offset, int length) {
+        byte[] value = new byte[length];
+        System.arraycopy(buffer, offset, value, 0, length);
+        return value;
+    }
+}
@@ -0,0 +1,49 @@
+package codec;
+
+/**
+ * A {@link ValueCodec} storing byte array records of one fixed width, so the
+ * store needs no offsets.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class FixedWidthCodec implements ValueCodec<byte[]> {
+    private final int width;
+
+    FixedWidthCodec(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        this.width = width;
+    }
+
+    @Override
+    public String name() {
+        return "fixed" + width;
+    }
+
+    @Override
+    public int fixedWidth() {
+        return width;
+    }
+
+    @Override
+    public int encodedLength(byte[] value) {
+        if (value.length != width) {
+            throw new IllegalArgumentException("Record of " + value.length + " bytes is not " + width + " bytes wide");
+        }
+        return width;
+    }
+
+    @Override
+    public void encode(byte[] value, byte[] buffer, int offset) {
+        System.arraycopy(value, 0, buffer, offset, width);
+    }
+
+    @Override
+    public byte[] decode(byte[] buffer, int offset, int length) {
+        byte[] value = new byte[width];
+        System.arraycopy(buffer, offset, value, 0, width);
+        return value;
+    }
+}
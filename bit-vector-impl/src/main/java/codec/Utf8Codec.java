@@ -0,0 +1,47 @@
+package codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link ValueCodec} storing strings as UTF-8.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class Utf8Codec implements ValueCodec<String> {
+    static final Utf8Codec INSTANCE = new Utf8Codec();
+
+    @Override
+    public String name() {
+        return "utf8";
+    }
+
+    @Override
+    public int fixedWidth() {
+        return -1;
+    }
+
+    @Override
+    public int encodedLength(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // fall back to the encoder for anything beyond ASCII
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void encode(String value, byte[] buffer, int offset) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+    }
+
+    @Override
+    public String decode(byte[] buffer, int offset, int length) {
+        return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+}
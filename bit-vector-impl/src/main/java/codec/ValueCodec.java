@@ -0,0 +1,97 @@
+package codec;
+
+/**
+ * Encodes the values of a {@link sparsearray.TypedSparseArray} into a packed
+ * byte store. A codec either gives every value the same fixed width, so values
+ * are found by their rank alone, or reports the encoded length of each value,
+ * which the store then keeps an offset for. The codec's name is written into
+ * saved files and checked on load.
+ * 
+ * @param <V> the type of the values
+ * 
+ * @author Valerie Wray
+ *
+ */
+public interface ValueCodec<V> {
+
+    /**
+     * Gets the name identifying this codec and its parameters in saved files.
+     * 
+     * @return the name
+     */
+    String name();
+
+    /**
+     * Gets the width in bytes of every encoded value, if it is fixed.
+     * 
+     * @return the fixed width, or -1 if values have variable widths
+     */
+    int fixedWidth();
+
+    /**
+     * Gets the number of bytes a value encodes to.
+     * 
+     * @param value the value
+     * @return the encoded length in bytes
+     * @throws IllegalArgumentException if the value cannot be encoded
+     */
+    int encodedLength(V value);
+
+    /**
+     * Encodes a value into a buffer.
+     * 
+     * @param value  the value
+     * @param buffer the buffer, with at least {@link #encodedLength(Object)} bytes
+     *               after offset
+     * @param offset the offset to write at
+     */
+    void encode(V value, byte[] buffer, int offset);
+
+    /**
+     * Decodes a value from a buffer.
+     * 
+     * @param buffer the buffer
+     * @param offset the offset of the encoded value
+     * @param length the encoded length
+     * @return the value
+     */
+    V decode(byte[] buffer, int offset, int length);
+
+    /**
+     * Gets the codec storing byte arrays as they are.
+     * 
+     * @return the codec
+     */
+    static ValueCodec<byte[]> bytes() {
+        return BytesCodec.INSTANCE;
+    }
+
+    /**
+     * Gets the codec storing strings as UTF-8.
+     * 
+     * @return the codec
+     */
+    static ValueCodec<String> utf8() {
+        return Utf8Codec.INSTANCE;
+    }
+
+    /**
+     * Gets a codec storing byte array records that all have the same width.
+     * 
+     * @param width the width of every record in bytes
+     * @return the codec
+     */
+    static ValueCodec<byte[]> fixedWidth(int width) {
+        return new FixedWidthCodec(width);
+    }
+
+    /**
+     * Gets the codec storing non-negative longs as varints of 7 bits per byte, so
+     * small values take a single byte.
+     * 
+     * @return the codec
+     */
+    static ValueCodec<Long> varint() {
+        return VarintCodec.INSTANCE;
+    }
+}
@@ -0,0 +1,50 @@
+package codec;
+
+/**
+ * A {@link ValueCodec} storing non-negative longs as varints: 7 bits per byte,
+ * least significant first, with the high bit set on every byte but the last.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class VarintCodec implements ValueCodec<Long> {
+    static final VarintCodec INSTANCE = new VarintCodec();
+
+    @Override
+    public String name() {
+        return "varint";
+    }
+
+    @Override
+    public int fixedWidth() {
+        return -1;
+    }
+
+    @Override
+    public int encodedLength(Long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative varint: " + value);
+        }
+        // one byte per 7 significant bits, and at least one byte for 0
+        return Math.max(1, (70 - Long.numberOfLeadingZeros(value)) / 7);
+    }
+
+    @Override
+    public void encode(Long value, byte[] buffer, int offset) {
+        long remaining = value;
+        while (remaining >= 0x80) {
+            buffer[offset++] = (byte) (remaining | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[offset] = (byte) remaining;
+    }
+
+    @Override
+    public Long decode(byte[] buffer, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (long) (buffer[offset + i] & 0x7F) << (7 * i);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,295 @@
+package eliasfano;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.Popcount;
+import rank.RankSupportConfig;
+import segment.SegmentedFile;
+import select.SelectSupport;
+
+/**
+ * A succinct set of non-decreasing positions in [0, universe), stored with the
+ * Elias-Fano encoding in about 2 + log(universe / size) bits per position. Each
+ * position is split into its low bits, stored packed, and its high bits, stored
+ * in unary in a bit-vector with {@link SelectSupport}. The position in the
+ * upper bits of every {@link #SAMPLE_RATE}th position is sampled, so access
+ * scans at most a few words from a sample, and rank binary searches the samples
+ * and then one sample's positions.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class EliasFano implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    public static final int SAMPLE_RATE = 64;
+    /**
+     * The segment kinds used by {@link #addSegments(SegmentedFile.Writer)}, after
+     * those of a {@link rank.RankSupport} and a sparse array.
+     */
+    public static final int METADATA_SEGMENT = 7;
+    public static final int LOW_BITS_SEGMENT = 8;
+    public static final int UPPER_BITS_SEGMENT = 9;
+    private int size;
+    private int universe;
+    private int lowBitWidth;
+    private long[] lowBits;
+    private int upperBitsLength;
+    private transient SelectSupport upperBits;
+    /** The position in the upper bits of every {@link #SAMPLE_RATE}th position. */
+    private transient int[] upperSamples;
+
+    /**
+     * Creates a new EliasFano from the first <code>size</code> positions of the
+     * array, which must be non-decreasing and less than the universe.
+     * 
+     * @param positions the positions
+     * @param size      the number of positions
+     * @param universe  the upper bound of the positions, exclusive
+     */
+    public EliasFano(int[] positions, int size, int universe) {
+        this.size = size;
+        this.universe = universe;
+        lowBitWidth = size == 0 ? 0 : Math.max(0, 31 - Integer.numberOfLeadingZeros(Math.max(1, universe / size)));
+        lowBits = new long[(int) (((long) size * lowBitWidth + Long.SIZE - 1) / Long.SIZE)];
+        // an empty set has no high bits, so its upper bits need not span the universe
+        upperBitsLength = size == 0 ? 1 : size + (universe >>> lowBitWidth) + 1;
+        long[] upper = new long[(upperBitsLength + Long.SIZE - 1) / Long.SIZE];
+        upperSamples = new int[(size + SAMPLE_RATE - 1) / SAMPLE_RATE];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int position = positions[i];
+            if (position < previous || position >= universe) {
+                throw new IllegalArgumentException("Position " + position + " at " + i
+                        + " is out of order or outside the universe " + universe);
+            }
+            previous = position;
+            setLowBits(i, position);
+            int upperPosition = (position >>> lowBitWidth) + i;
+            upper[upperPosition >>> 6] |= 1L << upperPosition;
+            if (i % SAMPLE_RATE == 0) {
+                upperSamples[i / SAMPLE_RATE] = upperPosition;
+            }
+        }
+        upperBits = SelectSupport.fromWords(upper, upperBitsLength, RankSupportConfig.WORD_ALIGNED);
+    }
+
+    /**
+     * Creates an EliasFano from the segments of a {@link SegmentedFile} written by
+     * {@link #addSegments(SegmentedFile.Writer)}, rebuilding the select support of
+     * the upper bits.
+     * 
+     * @param file the SegmentedFile
+     * @throws IOException if the segments are not able to be read
+     */
+    private EliasFano(SegmentedFile file) throws IOException {
+        int[] metadata = file.readInts(METADATA_SEGMENT);
+        size = metadata[0];
+        universe = metadata[1];
+        lowBitWidth = metadata[2];
+        upperBitsLength = metadata[3];
+        lowBits = file.readLongs(LOW_BITS_SEGMENT);
+        upperBits = SelectSupport.fromWords(file.readLongs(UPPER_BITS_SEGMENT), upperBitsLength,
+                RankSupportConfig.WORD_ALIGNED);
+        initializeUpperSamples();
+    }
+
+    private void setLowBits(int i, int position) {
+        if (lowBitWidth == 0) {
+            return;
+        }
+        long value = position & ((1L << lowBitWidth) - 1);
+        long bit = (long) i * lowBitWidth;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        lowBits[word] |= value << offset;
+        if (offset + lowBitWidth > Long.SIZE) {
+            lowBits[word + 1] |= value >>> (Long.SIZE - offset);
+        }
+    }
+
+    private int getLowBits(int i) {
+        if (lowBitWidth == 0) {
+            return 0;
+        }
+        long bit = (long) i * lowBitWidth;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = lowBits[word] >>> offset;
+        if (offset + lowBitWidth > Long.SIZE) {
+            value |= lowBits[word + 1] << (Long.SIZE - offset);
+        }
+        return (int) (value & ((1L << lowBitWidth) - 1));
+    }
+
+    /**
+     * Gets the ith (starting from 0) position.
+     * 
+     * @param i the index of the position
+     * @return the position
+     */
+    public int get(int i) {
+        int high = upperPosition(i) - i;
+        return (high << lowBitWidth) | getLowBits(i);
+    }
+
+    /**
+     * Finds the (i + 1)th one in the upper bits by scanning from the sample
+     * before it.
+     */
+    private int upperPosition(int i) {
+        int sample = i / SAMPLE_RATE;
+        int position = upperSamples[sample];
+        int remaining = i - sample * SAMPLE_RATE;
+        if (remaining == 0) {
+            return position;
+        }
+        long[] words = upperBits.getWords();
+        int w = position >>> 6;
+        // the ones after the sampled one
+        long word = words[w] & ((-1L << position) << 1);
+        while (true) {
+            int count = Long.bitCount(word);
+            if (remaining <= count) {
+                return (w << 6) + Popcount.selectInWord(word, remaining - 1);
+            }
+            remaining -= count;
+            word = words[++w];
+        }
+    }
+
+    private void initializeUpperSamples() {
+        upperSamples = new int[(size + SAMPLE_RATE - 1) / SAMPLE_RATE];
+        long[] words = upperBits.getWords();
+        int ones = 0;
+        for (int w = 0; w < words.length && ones < size; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1, ones++) {
+                if (ones % SAMPLE_RATE == 0 && ones < size) {
+                    upperSamples[ones / SAMPLE_RATE] = (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the positions less than x.
+     * 
+     * @param x the position
+     * @return the number of positions less than x
+     */
+    public int rank(int x) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= universe) {
+            return size;
+        }
+        // the last sample less than x, then the first of its positions not less
+        int left = 0;
+        int right = upperSamples.length;
+        while (left < right) {
+            int center = (left + right) >>> 1;
+            if (get(center * SAMPLE_RATE) < x) {
+                left = center + 1;
+            } else {
+                right = center;
+            }
+        }
+        if (left == 0) {
+            return 0;
+        }
+        int from = (left - 1) * SAMPLE_RATE + 1;
+        int to = Math.min(size, left * SAMPLE_RATE);
+        while (from < to) {
+            int center = (from + to) >>> 1;
+            if (get(center) < x) {
+                from = center + 1;
+            } else {
+                to = center;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Gets the number of positions.
+     * 
+     * @return the number of positions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the upper bound of the positions, exclusive.
+     * 
+     * @return the universe
+     */
+    public int universe() {
+        return universe;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(4 * Integer.BYTES, 3))
+                .add("low bits", MemoryLayout.array(lowBits.length, Long.BYTES))
+                .add(MemoryFootprint.SELECT_SAMPLES, MemoryLayout.array(upperSamples.length, Integer.BYTES))
+                .addAll(upperBits.memoryFootprint());
+    }
+
+    /**
+     * Saves this EliasFano using the specified {@link ObjectOutputStream}.
+     * 
+     * @param objectOutputStream the output stream to write to
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.writeObject(this);
+        // Save SelectSupport separately because IntVector is not serializeable
+        upperBits.save(objectOutputStream);
+    }
+
+    /**
+     * Loads the EliasFano using the specified {@link ObjectInputStream}.
+     * 
+     * @param objectInputStream the input stream to read from
+     * @return the EliasFano
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static EliasFano load(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        EliasFano eliasFano = (EliasFano) objectInputStream.readObject();
+        eliasFano.upperBits = SelectSupport.load(objectInputStream);
+        eliasFano.initializeUpperSamples();
+        return eliasFano;
+    }
+
+    /**
+     * Adds the metadata, low bits and upper bits of this EliasFano to a
+     * {@link SegmentedFile} as separate segments.
+     * 
+     * @param writer the {@link SegmentedFile.Writer}
+     */
+    public void addSegments(SegmentedFile.Writer writer) {
+        writer.addInts(METADATA_SEGMENT, new int[] { size, universe, lowBitWidth, upperBitsLength })
+                .addLongs(LOW_BITS_SEGMENT, lowBits).addLongs(UPPER_BITS_SEGMENT, upperBits.getWords());
+    }
+
+    /**
+     * Reads an EliasFano from the segments of a {@link SegmentedFile} written by
+     * {@link #addSegments(SegmentedFile.Writer)}.
+     * 
+     * @param file the SegmentedFile
+     * @return the EliasFano
+     * @throws IOException if the segments are not able to be read
+     */
+    public static EliasFano readSegments(SegmentedFile file) throws IOException {
+        return new EliasFano(file);
+    }
+}
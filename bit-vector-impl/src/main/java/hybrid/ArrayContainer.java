@@ -0,0 +1,138 @@
+package hybrid;
+
+import java.util.Arrays;
+
+import memory.MemoryLayout;
+
+/**
+ * A {@link Container} storing the sorted offsets of the ones, two bytes each.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class ArrayContainer extends Container {
+    private static final long serialVersionUID = 1L;
+    // above this many ones a bitmap is smaller
+    static final int MAX_CARDINALITY = (int) (BitmapContainer.SIZE_IN_BYTES / Character.BYTES);
+    private final char[] offsets;
+
+    ArrayContainer(char[] offsets) {
+        this.offsets = offsets;
+    }
+
+    static long sizeInBytes(int cardinality) {
+        return (long) cardinality * Character.BYTES;
+    }
+
+    static ArrayContainer fromWords(long[] words, int cardinality) {
+        char[] offsets = new char[cardinality];
+        int i = 0;
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            long word = words[w];
+            while (word != 0) {
+                offsets[i++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(offsets);
+    }
+
+    @Override
+    int cardinality() {
+        return offsets.length;
+    }
+
+    @Override
+    int rank(int offset) {
+        // find the first offset not less than the given one
+        int left = 0;
+        int right = offsets.length;
+        while (left < right) {
+            int center = (left + right) >>> 1;
+            if (offsets[center] < offset) {
+                left = center + 1;
+            } else {
+                right = center;
+            }
+        }
+        return left;
+    }
+
+    @Override
+    int select(int k) {
+        return offsets[k];
+    }
+
+    @Override
+    boolean contains(int offset) {
+        return Arrays.binarySearch(offsets, (char) offset) >= 0;
+    }
+
+    @Override
+    void fill(long[] words) {
+        for (char offset : offsets) {
+            words[offset >>> 6] |= 1L << offset;
+        }
+    }
+
+    @Override
+    ContainerType type() {
+        return ContainerType.ARRAY;
+    }
+
+    @Override
+    long sizeInBytes() {
+        return sizeInBytes(offsets.length);
+    }
+
+    @Override
+    long memoryInBytes() {
+        return MemoryLayout.object(0, 1) + MemoryLayout.array(offsets.length, Character.BYTES);
+    }
+
+    /**
+     * Keeps the offsets which are set, or not set, in another container.
+     * 
+     * @param other the other container
+     * @param keep  whether to keep the offsets which are set in the other container
+     * @return the filtered container
+     */
+    ArrayContainer filter(Container other, boolean keep) {
+        char[] result = new char[offsets.length];
+        int size = 0;
+        for (char offset : offsets) {
+            if (other.contains(offset) == keep) {
+                result[size++] = offset;
+            }
+        }
+        return new ArrayContainer(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * Merges the offsets of this container and another one.
+     * 
+     * @param other     the other container
+     * @param exclusive whether to drop the offsets which are in both containers
+     * @return the merged container
+     */
+    ArrayContainer merge(ArrayContainer other, boolean exclusive) {
+        char[] result = new char[offsets.length + other.offsets.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < offsets.length || j < other.offsets.length) {
+            if (j == other.offsets.length || (i < offsets.length && offsets[i] < other.offsets[j])) {
+                result[size++] = offsets[i++];
+            } else if (i == offsets.length || other.offsets[j] < offsets[i]) {
+                result[size++] = other.offsets[j++];
+            } else {
+                if (!exclusive) {
+                    result[size++] = offsets[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        return new ArrayContainer(Arrays.copyOf(result, size));
+    }
+}
@@ -0,0 +1,81 @@
+package hybrid;
+
+import java.util.Arrays;
+
+import memory.MemoryLayout;
+import rank.GroupRanks;
+
+/**
+ * A {@link Container} storing one bit per position, with the number of ones
+ * before every group of eight words so rank and select only popcount within a
+ * group.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class BitmapContainer extends Container {
+    private static final long serialVersionUID = 1L;
+    private static final int NUMBER_OF_GROUPS = BLOCK_SIZE >>> GroupRanks.GROUP_SHIFT;
+    static final long SIZE_IN_BYTES = (long) WORDS_PER_BLOCK * Long.BYTES + NUMBER_OF_GROUPS * Character.BYTES;
+    private final long[] words;
+    /** The number of ones before each group of eight words. */
+    private final char[] groupRanks;
+    private final int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+        groupRanks = GroupRanks.build(words);
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    int rank(int offset) {
+        if (offset >= BLOCK_SIZE) {
+            return cardinality;
+        }
+        return GroupRanks.rank(words, groupRanks, offset);
+    }
+
+    @Override
+    int select(int k) {
+        return GroupRanks.select(words, groupRanks, k);
+    }
+
+    @Override
+    boolean contains(int offset) {
+        return (words[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    @Override
+    void fill(long[] blockWords) {
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            blockWords[w] |= words[w];
+        }
+    }
+
+    @Override
+    long[] toWords() {
+        return Arrays.copyOf(words, WORDS_PER_BLOCK);
+    }
+
+    @Override
+    ContainerType type() {
+        return ContainerType.BITMAP;
+    }
+
+    @Override
+    long sizeInBytes() {
+        return SIZE_IN_BYTES;
+    }
+
+    @Override
+    long memoryInBytes() {
+        return MemoryLayout.object(Integer.BYTES, 2) + MemoryLayout.array(WORDS_PER_BLOCK, Long.BYTES)
+                + MemoryLayout.array(NUMBER_OF_GROUPS, Character.BYTES);
+    }
+}
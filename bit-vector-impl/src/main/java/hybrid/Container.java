@@ -0,0 +1,229 @@
+package hybrid;
+
+import java.io.Serializable;
+
+import rank.Popcount;
+
+/**
+ * One block of {@link Container#BLOCK_SIZE} bits of a {@link HybridBitVector},
+ * stored in whichever of the {@link ContainerType} encodings is smallest.
+ * Offsets are relative to the start of the block.
+ * 
+ * @author Valerie Wray
+ *
+ */
+abstract class Container implements Serializable {
+    private static final long serialVersionUID = 1L;
+    static final int BLOCK_SHIFT = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int WORDS_PER_BLOCK = BLOCK_SIZE / Long.SIZE;
+
+    /**
+     * Gets the number of ones in the block.
+     * 
+     * @return the number of ones
+     */
+    abstract int cardinality();
+
+    /**
+     * Counts the ones before the offset.
+     * 
+     * @param offset the offset, which may be the block size
+     * @return the number of ones in [0, offset)
+     */
+    abstract int rank(int offset);
+
+    /**
+     * Finds the offset of the kth (starting from 0) one.
+     * 
+     * @param k the number of ones to skip, less than the cardinality
+     * @return the offset of the one
+     */
+    abstract int select(int k);
+
+    /**
+     * Checks whether the bit at the offset is set.
+     * 
+     * @param offset the offset
+     * @return true if the bit is set
+     */
+    abstract boolean contains(int offset);
+
+    /**
+     * Sets the bits of this container in the words of a block.
+     * 
+     * @param words the {@link Container#WORDS_PER_BLOCK} words of a block
+     */
+    abstract void fill(long[] words);
+
+    /**
+     * Gets the encoding of this container.
+     * 
+     * @return the {@link ContainerType}
+     */
+    abstract ContainerType type();
+
+    /**
+     * Gets the bytes used by the encoded data, not counting the object headers.
+     * 
+     * @return the number of bytes
+     */
+    abstract long sizeInBytes();
+
+    /**
+     * Gets the bytes used by this container on the heap, including the object
+     * headers.
+     * 
+     * @return the number of bytes
+     */
+    abstract long memoryInBytes();
+
+    /**
+     * Gets the words of this container as a bitmap.
+     * 
+     * @return the {@link Container#WORDS_PER_BLOCK} words of the block
+     */
+    long[] toWords() {
+        long[] words = new long[WORDS_PER_BLOCK];
+        fill(words);
+        return words;
+    }
+
+    /**
+     * Intersects this container with another one. A sorted array is filtered by
+     * probing the other container; otherwise the bitmaps are combined word by
+     * word.
+     * 
+     * @param other the other container
+     * @return the container of the intersection
+     */
+    Container and(Container other) {
+        if (this instanceof ArrayContainer) {
+            return ((ArrayContainer) this).filter(other, true);
+        }
+        if (other instanceof ArrayContainer) {
+            return ((ArrayContainer) other).filter(this, true);
+        }
+        long[] result = new long[WORDS_PER_BLOCK];
+        Popcount.engine().and(toWords(), other.toWords(), result, WORDS_PER_BLOCK);
+        return of(result);
+    }
+
+    /**
+     * Unites this container with another one. Two small sorted arrays are merged;
+     * otherwise the bitmaps are combined word by word.
+     * 
+     * @param other the other container
+     * @return the container of the union
+     */
+    Container or(Container other) {
+        if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                && cardinality() + other.cardinality() <= ArrayContainer.MAX_CARDINALITY) {
+            return ((ArrayContainer) this).merge((ArrayContainer) other, false);
+        }
+        long[] result = new long[WORDS_PER_BLOCK];
+        Popcount.engine().or(toWords(), other.toWords(), result, WORDS_PER_BLOCK);
+        return of(result);
+    }
+
+    /**
+     * Computes the symmetric difference of this container and another one. Two
+     * small sorted arrays are merged; otherwise the bitmaps are combined word by
+     * word.
+     * 
+     * @param other the other container
+     * @return the container of the symmetric difference
+     */
+    Container xor(Container other) {
+        if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                && cardinality() + other.cardinality() <= ArrayContainer.MAX_CARDINALITY) {
+            return ((ArrayContainer) this).merge((ArrayContainer) other, true);
+        }
+        long[] result = new long[WORDS_PER_BLOCK];
+        Popcount.engine().xor(toWords(), other.toWords(), result, WORDS_PER_BLOCK);
+        return of(result);
+    }
+
+    /**
+     * Clears the bits of this container which are set in another one. A sorted
+     * array is filtered by probing the other container; otherwise the bitmaps are
+     * combined word by word.
+     * 
+     * @param other the other container
+     * @return the container of the difference
+     */
+    Container andNot(Container other) {
+        if (this instanceof ArrayContainer) {
+            return ((ArrayContainer) this).filter(other, false);
+        }
+        long[] result = new long[WORDS_PER_BLOCK];
+        Popcount.engine().andNot(toWords(), other.toWords(), result, WORDS_PER_BLOCK);
+        return of(result);
+    }
+
+    /**
+     * Encodes the words of a block with whichever encoding is smallest.
+     * 
+     * @param words the {@link Container#WORDS_PER_BLOCK} words of a block
+     * @return the container
+     */
+    static Container of(long[] words) {
+        int cardinality = Popcount.engine().countWords(words, 0, WORDS_PER_BLOCK);
+        int numberOfRuns = 0;
+        long previousWord = 0;
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            // a run starts at each one whose lower neighbour is a zero
+            long starts = words[w] & ~((words[w] << 1) | (previousWord >>> 63));
+            numberOfRuns += Long.bitCount(starts);
+            previousWord = words[w];
+        }
+        long arrayBytes = ArrayContainer.sizeInBytes(cardinality);
+        long runBytes = RunContainer.sizeInBytes(numberOfRuns);
+        if (runBytes < arrayBytes && runBytes < BitmapContainer.SIZE_IN_BYTES) {
+            return RunContainer.fromWords(words, numberOfRuns);
+        }
+        if (arrayBytes < BitmapContainer.SIZE_IN_BYTES) {
+            return ArrayContainer.fromWords(words, cardinality);
+        }
+        return new BitmapContainer(words, cardinality);
+    }
+
+    /**
+     * Encodes the ones of a block, given as sorted positions, with whichever
+     * encoding is smallest. The cardinality and the number of runs are counted
+     * from the positions, so only a bitmap encoding sets the bits of the block.
+     * 
+     * @param positions  the sorted positions of the bit-vector
+     * @param from       the index of the first position in the block
+     * @param to         the index after the last position in the block
+     * @param blockStart the position of the start of the block
+     * @return the container
+     */
+    static Container of(int[] positions, int from, int to, int blockStart) {
+        int cardinality = to - from;
+        int numberOfRuns = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || positions[i] != positions[i - 1] + 1) {
+                numberOfRuns++;
+            }
+        }
+        long arrayBytes = ArrayContainer.sizeInBytes(cardinality);
+        long runBytes = RunContainer.sizeInBytes(numberOfRuns);
+        if (runBytes < arrayBytes && runBytes < BitmapContainer.SIZE_IN_BYTES) {
+            return RunContainer.fromPositions(positions, from, to, blockStart, numberOfRuns);
+        }
+        if (arrayBytes < BitmapContainer.SIZE_IN_BYTES) {
+            char[] offsets = new char[cardinality];
+            for (int i = from; i < to; i++) {
+                offsets[i - from] = (char) (positions[i] - blockStart);
+            }
+            return new ArrayContainer(offsets);
+        }
+        long[] words = new long[WORDS_PER_BLOCK];
+        for (int i = from; i < to; i++) {
+            int offset = positions[i] - blockStart;
+            words[offset >>> 6] |= 1L << offset;
+        }
+        return new BitmapContainer(words, cardinality);
+    }
+}
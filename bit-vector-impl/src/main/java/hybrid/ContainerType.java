@@ -0,0 +1,16 @@
+package hybrid;
+
+/**
+ * The encodings of a block of a {@link HybridBitVector}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public enum ContainerType {
+    /** One bit per position, for dense blocks. */
+    BITMAP,
+    /** A sorted array of the positions of the ones, for sparse blocks. */
+    ARRAY,
+    /** The start and length of each run of ones, for blocks with long runs. */
+    RUN
+}
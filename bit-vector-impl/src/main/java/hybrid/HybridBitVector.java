@@ -0,0 +1,328 @@
+package hybrid;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.RankSupport;
+
+/**
+ * A bit-vector split into blocks of 2^16 bits, each stored as a bitmap, a
+ * sorted array of positions or a list of runs, whichever is smallest, so that
+ * dense, sparse and run-heavy regions of the same bit-vector are each stored
+ * compactly. A rank directory over the block counts finds the block of a rank
+ * or select query in constant or logarithmic time, and the block's container
+ * answers the rest.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class HybridBitVector implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    private int bitVectorLength;
+    private Container[] containers;
+    // the number of ones before each block, with the total at the end
+    private int[] cumulativeCounts;
+
+    /**
+     * Creates a new HybridBitVector from the specified bit-vector.
+     * 
+     * @param bitVector       the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     */
+    public HybridBitVector(BitSet bitVector, int bitVectorLength) {
+        this.bitVectorLength = bitVectorLength;
+        long[] words = bitVector.toLongArray();
+        int lengthInWords = (bitVectorLength + Long.SIZE - 1) / Long.SIZE;
+        words = Arrays.copyOf(words, Math.max(words.length, lengthInWords));
+        if (bitVectorLength % Long.SIZE != 0) {
+            // ignore any bits past the length
+            words[lengthInWords - 1] &= -1L >>> -bitVectorLength;
+        }
+        Container[] blocks = new Container[numberOfBlocks(bitVectorLength)];
+        for (int b = 0; b < blocks.length; b++) {
+            long[] blockWords = new long[Container.WORDS_PER_BLOCK];
+            int from = b * Container.WORDS_PER_BLOCK;
+            System.arraycopy(words, from, blockWords, 0, Math.min(Container.WORDS_PER_BLOCK, lengthInWords - from));
+            blocks[b] = Container.of(blockWords);
+        }
+        initialize(blocks);
+    }
+
+    private HybridBitVector(Container[] containers, int bitVectorLength) {
+        this.bitVectorLength = bitVectorLength;
+        initialize(containers);
+    }
+
+    private static int numberOfBlocks(int bitVectorLength) {
+        return (bitVectorLength + Container.BLOCK_SIZE - 1) >>> Container.BLOCK_SHIFT;
+    }
+
+    private void initialize(Container[] blocks) {
+        containers = blocks;
+        cumulativeCounts = new int[blocks.length + 1];
+        for (int b = 0; b < blocks.length; b++) {
+            cumulativeCounts[b + 1] = cumulativeCounts[b] + blocks[b].cardinality();
+        }
+    }
+
+    /**
+     * Creates a new HybridBitVector from sorted positions of the ones. Each block
+     * is encoded from its positions with the encoding that is smallest for its
+     * density, so sparse blocks never set the bits of a bitmap.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the HybridBitVector
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static HybridBitVector fromSortedPositions(int[] sortedPositions, int bitVectorLength) {
+        Container[] blocks = new Container[numberOfBlocks(bitVectorLength)];
+        int from = 0;
+        int previous = -1;
+        for (int b = 0; b < blocks.length; b++) {
+            int blockStart = b << Container.BLOCK_SHIFT;
+            int blockEnd = (int) Math.min((long) blockStart + Container.BLOCK_SIZE, bitVectorLength);
+            int to = from;
+            while (to < sortedPositions.length && sortedPositions[to] < blockEnd) {
+                if (sortedPositions[to] <= previous) {
+                    break;
+                }
+                previous = sortedPositions[to++];
+            }
+            blocks[b] = Container.of(sortedPositions, from, to, blockStart);
+            from = to;
+        }
+        if (from < sortedPositions.length) {
+            throw new IllegalArgumentException("Position " + sortedPositions[from] + " is not in (" + previous + ", "
+                    + bitVectorLength + ")");
+        }
+        return new HybridBitVector(blocks, bitVectorLength);
+    }
+
+    /**
+     * Creates a new HybridBitVector with the same bits as the specified
+     * {@link RankSupport}.
+     * 
+     * @param rankSupport the RankSupport
+     * @return the HybridBitVector
+     */
+    public static HybridBitVector fromRankSupport(RankSupport rankSupport) {
+        return new HybridBitVector(rankSupport.getBitVector(), rankSupport.getBitVectorLength());
+    }
+
+    /**
+     * Decodes this bit-vector into a {@link BitSet}.
+     * 
+     * @return the BitSet
+     */
+    public BitSet toBitSet() {
+        long[] words = new long[containers.length * Container.WORDS_PER_BLOCK];
+        long[] blockWords = new long[Container.WORDS_PER_BLOCK];
+        for (int b = 0; b < containers.length; b++) {
+            Arrays.fill(blockWords, 0);
+            containers[b].fill(blockWords);
+            System.arraycopy(blockWords, 0, words, b * Container.WORDS_PER_BLOCK, Container.WORDS_PER_BLOCK);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Computes the rank 1 of this bit vector at position i, the number of ones
+     * before position i. The position may be the length of the bit vector, giving
+     * the total number of ones.
+     * 
+     * @param i the position of which to compute the rank
+     * @return the rank
+     */
+    public int rank1(int i) {
+        if (i >= bitVectorLength) {
+            return cumulativeCounts[containers.length];
+        }
+        int block = i >>> Container.BLOCK_SHIFT;
+        return cumulativeCounts[block] + containers[block].rank(i & (Container.BLOCK_SIZE - 1));
+    }
+
+    /**
+     * Gets the position, in the bit-vector, of the FIRST index, j for which
+     * rank1(j) = i, as {@link select.SelectSupport#select1(int)} does.
+     * 
+     * @param i the rank in the bit-vector of which to select the first index having
+     *          that rank
+     * @return the index in the bit-vector
+     * @throws IllegalArgumentException if the rank is negative or greater than the
+     *                                  number of ones
+     */
+    public int select1(int i) {
+        if (i < 0 || i > getNumberOfOnes()) {
+            throw new IllegalArgumentException("Rank " + i + " is outside [0, " + getNumberOfOnes() + "]");
+        }
+        if (i == 0) {
+            return 0;
+        }
+        // find the last block with fewer than i ones before it
+        int left = 0;
+        int right = containers.length - 1;
+        while (left < right) {
+            int center = (left + right + 1) >>> 1;
+            if (cumulativeCounts[center] < i) {
+                left = center;
+            } else {
+                right = center - 1;
+            }
+        }
+        return (left << Container.BLOCK_SHIFT) + containers[left].select(i - 1 - cumulativeCounts[left]) + 1;
+    }
+
+    /**
+     * Gets the bit at the specified index of the bit vector.
+     * 
+     * @param index the index in the bit vector
+     * @return true if the bit is set
+     */
+    public boolean access(int index) {
+        return containers[index >>> Container.BLOCK_SHIFT].contains(index & (Container.BLOCK_SIZE - 1));
+    }
+
+    /**
+     * Computes the intersection of this bit-vector and another one, block by
+     * block.
+     * 
+     * @param other the other HybridBitVector
+     * @return the HybridBitVector of the intersection
+     */
+    public HybridBitVector and(HybridBitVector other) {
+        return combine(other, Container::and);
+    }
+
+    /**
+     * Computes the union of this bit-vector and another one, block by block.
+     * 
+     * @param other the other HybridBitVector
+     * @return the HybridBitVector of the union
+     */
+    public HybridBitVector or(HybridBitVector other) {
+        return combine(other, Container::or);
+    }
+
+    /**
+     * Computes the symmetric difference of this bit-vector and another one, block
+     * by block.
+     * 
+     * @param other the other HybridBitVector
+     * @return the HybridBitVector of the symmetric difference
+     */
+    public HybridBitVector xor(HybridBitVector other) {
+        return combine(other, Container::xor);
+    }
+
+    /**
+     * Clears the bits of this bit-vector which are set in another one, block by
+     * block.
+     * 
+     * @param other the other HybridBitVector
+     * @return the HybridBitVector of the difference
+     */
+    public HybridBitVector andNot(HybridBitVector other) {
+        return combine(other, Container::andNot);
+    }
+
+    private HybridBitVector combine(HybridBitVector other, BinaryOperator<Container> operation) {
+        int resultLength = Math.max(bitVectorLength, other.bitVectorLength);
+        Container[] result = new Container[numberOfBlocks(resultLength)];
+        Container empty = new ArrayContainer(new char[0]);
+        for (int b = 0; b < result.length; b++) {
+            // a shorter bit-vector is padded with empty blocks
+            Container left = b < containers.length ? containers[b] : empty;
+            Container right = b < other.containers.length ? other.containers[b] : empty;
+            result[b] = operation.apply(left, right);
+        }
+        return new HybridBitVector(result, resultLength);
+    }
+
+    /**
+     * Counts the blocks stored with each encoding.
+     * 
+     * @return the number of blocks of each {@link ContainerType}
+     */
+    public Map<ContainerType, Integer> getContainerCounts() {
+        Map<ContainerType, Integer> counts = new EnumMap<>(ContainerType.class);
+        for (ContainerType type : ContainerType.values()) {
+            counts.put(type, 0);
+        }
+        for (Container container : containers) {
+            counts.merge(container.type(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the encoding of the block containing the specified index.
+     * 
+     * @param index the index in the bit vector
+     * @return the {@link ContainerType} of the block
+     */
+    public ContainerType getContainerType(int index) {
+        return containers[index >>> Container.BLOCK_SHIFT].type();
+    }
+
+    public int getNumberOfOnes() {
+        return cumulativeCounts[containers.length];
+    }
+
+    public int getBitVectorLength() {
+        return bitVectorLength;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        long containerBytes = 0;
+        for (Container container : containers) {
+            containerBytes += container.memoryInBytes();
+        }
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(Integer.BYTES, 2))
+                .add("containers", MemoryLayout.array(containers.length, MemoryLayout.REFERENCE) + containerBytes)
+                .add(MemoryFootprint.RANK_DIRECTORY, MemoryLayout.array(cumulativeCounts.length, Integer.BYTES));
+    }
+
+    /**
+     * Saves this HybridBitVector to a file with the specified file name.
+     * 
+     * @param filename the file name of the file to save
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(String filename) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
+        objectOutputStream.writeObject(this);
+        objectOutputStream.flush();
+        objectOutputStream.close();
+    }
+
+    /**
+     * Loads the HybridBitVector from a file with the specified file name.
+     * 
+     * @param filename the file name of the file to load
+     * @return the HybridBitVector
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static HybridBitVector load(String filename) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
+        HybridBitVector hybridBitVector = (HybridBitVector) objectInputStream.readObject();
+        objectInputStream.close();
+        return hybridBitVector;
+    }
+}
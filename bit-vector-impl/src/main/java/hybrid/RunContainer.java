@@ -0,0 +1,179 @@
+package hybrid;
+
+import memory.MemoryLayout;
+
+/**
+ * A {@link Container} storing the start of each run of ones and the number of
+ * ones up to the end of each run, two bytes each, as a
+ * {@link rle.RunLengthBitVector} does for a whole bit-vector.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class RunContainer extends Container {
+    private static final long serialVersionUID = 1L;
+    private final char[] starts;
+    // the ones up to the end of each run, minus one so that a full block fits
+    private final char[] cumulativeOnes;
+
+    RunContainer(char[] starts, char[] cumulativeOnes) {
+        this.starts = starts;
+        this.cumulativeOnes = cumulativeOnes;
+    }
+
+    static long sizeInBytes(int numberOfRuns) {
+        return 2L * numberOfRuns * Character.BYTES;
+    }
+
+    static RunContainer fromWords(long[] words, int numberOfRuns) {
+        char[] starts = new char[numberOfRuns];
+        char[] cumulativeOnes = new char[numberOfRuns];
+        int run = 0;
+        int ones = 0;
+        int offset = nextSetBit(words, 0);
+        while (offset >= 0) {
+            int end = nextClearBit(words, offset);
+            starts[run] = (char) offset;
+            ones += end - offset;
+            cumulativeOnes[run] = (char) (ones - 1);
+            run++;
+            offset = nextSetBit(words, end);
+        }
+        return new RunContainer(starts, cumulativeOnes);
+    }
+
+    static RunContainer fromPositions(int[] positions, int from, int to, int blockStart, int numberOfRuns) {
+        char[] starts = new char[numberOfRuns];
+        char[] cumulativeOnes = new char[numberOfRuns];
+        int run = -1;
+        for (int i = from; i < to; i++) {
+            if (i == from || positions[i] != positions[i - 1] + 1) {
+                starts[++run] = (char) (positions[i] - blockStart);
+            }
+            cumulativeOnes[run] = (char) (i - from);
+        }
+        return new RunContainer(starts, cumulativeOnes);
+    }
+
+    private static int nextSetBit(long[] words, int offset) {
+        if (offset >= BLOCK_SIZE) {
+            return -1;
+        }
+        int w = offset >>> 6;
+        long word = words[w] & (-1L << offset);
+        while (word == 0) {
+            if (++w == WORDS_PER_BLOCK) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private static int nextClearBit(long[] words, int offset) {
+        int w = offset >>> 6;
+        long word = ~words[w] & (-1L << offset);
+        while (word == 0) {
+            if (++w == WORDS_PER_BLOCK) {
+                return BLOCK_SIZE;
+            }
+            word = ~words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private int onesBefore(int run) {
+        return run == 0 ? 0 : cumulativeOnes[run - 1] + 1;
+    }
+
+    private int runLength(int run) {
+        return cumulativeOnes[run] + 1 - onesBefore(run);
+    }
+
+    /**
+     * Finds the last run starting at or before the offset.
+     */
+    private int runAtOrBefore(int offset) {
+        int left = 0;
+        int right = starts.length;
+        while (left < right) {
+            int center = (left + right) >>> 1;
+            if (starts[center] <= offset) {
+                left = center + 1;
+            } else {
+                right = center;
+            }
+        }
+        return left - 1;
+    }
+
+    @Override
+    int cardinality() {
+        return starts.length == 0 ? 0 : cumulativeOnes[starts.length - 1] + 1;
+    }
+
+    @Override
+    int rank(int offset) {
+        int run = runAtOrBefore(offset - 1);
+        if (run < 0) {
+            return 0;
+        }
+        return onesBefore(run) + Math.min(runLength(run), offset - starts[run]);
+    }
+
+    @Override
+    int select(int k) {
+        // find the first run with more than k ones up to its end
+        int left = 0;
+        int right = starts.length - 1;
+        while (left < right) {
+            int center = (left + right) >>> 1;
+            if (cumulativeOnes[center] < k) {
+                left = center + 1;
+            } else {
+                right = center;
+            }
+        }
+        return starts[left] + k - onesBefore(left);
+    }
+
+    @Override
+    boolean contains(int offset) {
+        int run = runAtOrBefore(offset);
+        return run >= 0 && offset - starts[run] < runLength(run);
+    }
+
+    @Override
+    void fill(long[] words) {
+        for (int run = 0; run < starts.length; run++) {
+            int from = starts[run];
+            int to = from + runLength(run);
+            int fromWord = from >>> 6;
+            int toWord = (to - 1) >>> 6;
+            if (fromWord == toWord) {
+                words[fromWord] |= (-1L << from) & (-1L >>> -to);
+            } else {
+                words[fromWord] |= -1L << from;
+                for (int w = fromWord + 1; w < toWord; w++) {
+                    words[w] = -1L;
+                }
+                words[toWord] |= -1L >>> -to;
+            }
+        }
+    }
+
+    @Override
+    ContainerType type() {
+        return ContainerType.RUN;
+    }
+
+    @Override
+    long sizeInBytes() {
+        return sizeInBytes(starts.length);
+    }
+
+    @Override
+    long memoryInBytes() {
+        return MemoryLayout.object(0, 2) + 2 * MemoryLayout.array(starts.length, Character.BYTES);
+    }
+}
@@ -0,0 +1,69 @@
+package memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A process-wide registry of {@link MemoryAccountable} structures, used to sum
+ * the memory footprint of all live indexes. Structures are held by weak
+ * references, so registering a structure does not keep it alive.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public final class FootprintRegistry {
+    private static final Map<MemoryAccountable, Boolean> REGISTERED = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    private FootprintRegistry() {
+    }
+
+    /**
+     * Registers a structure. Registering the same structure twice has no effect.
+     * 
+     * @param structure the structure to register
+     * @return the structure
+     */
+    public static <T extends MemoryAccountable> T register(T structure) {
+        REGISTERED.put(structure, Boolean.TRUE);
+        return structure;
+    }
+
+    /**
+     * Unregisters a structure.
+     * 
+     * @param structure the structure to unregister
+     */
+    public static void unregister(MemoryAccountable structure) {
+        REGISTERED.remove(structure);
+    }
+
+    /**
+     * Gets the number of registered structures which are still live.
+     * 
+     * @return the number of live structures
+     */
+    public static int liveCount() {
+        return REGISTERED.size();
+    }
+
+    /**
+     * Sums the footprints of all registered structures which are still live.
+     * 
+     * @return the total number of bytes
+     */
+    public static long totalBytes() {
+        List<MemoryAccountable> structures;
+        synchronized (REGISTERED) {
+            structures = new ArrayList<>(REGISTERED.keySet());
+        }
+        long totalBytes = 0;
+        for (MemoryAccountable structure : structures) {
+            totalBytes += structure.memoryFootprint().getTotalBytes();
+        }
+        return totalBytes;
+    }
+}
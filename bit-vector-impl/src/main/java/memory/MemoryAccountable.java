@@ -0,0 +1,17 @@
+package memory;
+
+/**
+ * A structure which can report its own heap memory usage.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public interface MemoryAccountable {
+
+    /**
+     * Computes the heap memory used by this structure, broken down by component.
+     * 
+     * @return the {@link MemoryFootprint}
+     */
+    MemoryFootprint memoryFootprint();
+}
@@ -0,0 +1,79 @@
+package memory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A breakdown of the heap memory used by a structure, in bytes, by component.
+ * Components are kept in the order they were added, and adding to an existing
+ * component accumulates.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class MemoryFootprint {
+    public static final String OBJECT = "object";
+    public static final String DATA_WORDS = "data words";
+    public static final String RANK_DIRECTORY = "rank directory";
+    public static final String SELECT_SAMPLES = "select samples";
+    public static final String VALUES = "values";
+    public static final String OFFSETS = "offsets";
+
+    private final Map<String, Long> components = new LinkedHashMap<>();
+
+    /**
+     * Adds the specified number of bytes to a component.
+     * 
+     * @param component the name of the component
+     * @param bytes     the number of bytes
+     * @return this MemoryFootprint
+     */
+    public MemoryFootprint add(String component, long bytes) {
+        components.merge(component, bytes, Long::sum);
+        return this;
+    }
+
+    /**
+     * Adds every component of another footprint to this one.
+     * 
+     * @param other the footprint to add
+     * @return this MemoryFootprint
+     */
+    public MemoryFootprint addAll(MemoryFootprint other) {
+        other.components.forEach(this::add);
+        return this;
+    }
+
+    /**
+     * Gets the number of bytes used by a component.
+     * 
+     * @param component the name of the component
+     * @return the number of bytes, or 0 if there is no such component
+     */
+    public long getBytes(String component) {
+        return components.getOrDefault(component, 0L);
+    }
+
+    /**
+     * Gets the total number of bytes over all components.
+     * 
+     * @return the total number of bytes
+     */
+    public long getTotalBytes() {
+        return components.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public Map<String, Long> getComponents() {
+        return Collections.unmodifiableMap(components);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        components.forEach((component, bytes) -> stringBuilder.append(component).append(": ").append(bytes)
+                .append(" bytes\n"));
+        stringBuilder.append("total: ").append(getTotalBytes()).append(" bytes");
+        return stringBuilder.toString();
+    }
+}
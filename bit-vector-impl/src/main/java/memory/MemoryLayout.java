@@ -0,0 +1,108 @@
+package memory;
+
+import java.util.BitSet;
+import java.util.List;
+
+import edu.berkeley.cs.succinct.util.vector.IntVector;
+
+/**
+ * Estimates the heap size of the objects used by the bit vector structures.
+ * Assumes the layout of a 64-bit HotSpot JVM with compressed class pointers and
+ * compressed oops (the default for heaps under 32 GB): 12-byte object headers,
+ * 16-byte array headers, 4-byte references and 8-byte alignment.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public final class MemoryLayout {
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+    public static final int ALIGNMENT = 8;
+
+    private MemoryLayout() {
+    }
+
+    /**
+     * Rounds a size up to the object alignment.
+     * 
+     * @param bytes the unaligned size
+     * @return the aligned size
+     */
+    public static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Gets the size of an object with the specified fields, not including the
+     * objects it references.
+     * 
+     * @param primitiveBytes the total size of the primitive fields
+     * @param references     the number of reference fields
+     * @return the size in bytes
+     */
+    public static long object(long primitiveBytes, int references) {
+        return align(OBJECT_HEADER + primitiveBytes + (long) references * REFERENCE);
+    }
+
+    /**
+     * Gets the size of an array of primitives or references.
+     * 
+     * @param length      the length of the array
+     * @param elementSize the size of each element in bytes
+     * @return the size in bytes
+     */
+    public static long array(long length, int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    /**
+     * Gets the size of a {@link BitSet}, including its word array.
+     * 
+     * @param bitSet the BitSet
+     * @return the size in bytes
+     */
+    public static long bitSet(BitSet bitSet) {
+        // long[] words; int wordsInUse; boolean sizeIsSticky
+        return object(Integer.BYTES + 1, 1) + array(bitSet.size() / Long.SIZE, Long.BYTES);
+    }
+
+    /**
+     * Gets the size of an {@link IntVector} holding the specified number of
+     * elements, including its word array.
+     * 
+     * @param intVector        the IntVector
+     * @param numberOfElements the number of elements the IntVector was created for
+     * @return the size in bytes
+     */
+    public static long intVector(IntVector intVector, long numberOfElements) {
+        long bits = numberOfElements * intVector.getBitWidth();
+        // long[] data; long size; int bitWidth
+        return object(Long.BYTES + Integer.BYTES, 1) + array((bits + Long.SIZE - 1) / Long.SIZE, Long.BYTES);
+    }
+
+    /**
+     * Gets the size of a {@link String}, including its character array. Assumes
+     * compact strings, so Latin-1 strings use one byte per character.
+     * 
+     * @param string the String
+     * @return the size in bytes
+     */
+    public static long string(String string) {
+        boolean latin1 = string.chars().allMatch(c -> c < 256);
+        // byte[] value; int hash; byte coder; boolean hashIsZero
+        return object(Integer.BYTES + 2, 1) + array((long) string.length() * (latin1 ? 1 : 2), 1);
+    }
+
+    /**
+     * Gets the size of an {@link java.util.ArrayList} whose capacity equals its
+     * size, not including its elements.
+     * 
+     * @param list the list
+     * @return the size in bytes
+     */
+    public static long arrayList(List<?> list) {
+        // int modCount; int size; Object[] elementData
+        return object(2 * Integer.BYTES, 1) + array(list.size(), REFERENCE);
+    }
+}
@@ -0,0 +1,135 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in, process-wide instrumentation for the rank, select and sparse array
+ * operations. Metrics are disabled by default; enable them with
+ * {@link #enable()} or by starting the JVM with
+ * <code>-Dbitvector.metrics=true</code>. While disabled, the instrumented
+ * operations only pay for a single read of a boolean field.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public final class Metrics {
+    private static final String OBJECT_NAME_PREFIX = "bitvector:type=Operation,name=";
+    private static final Map<Operation, OperationMetrics> OPERATION_METRICS = new EnumMap<>(Operation.class);
+    private static volatile boolean enabled = Boolean.getBoolean("bitvector.metrics");
+
+    static {
+        for (Operation operation : Operation.values()) {
+            OPERATION_METRICS.put(operation, new OperationMetrics(operation));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Checks whether metrics are currently being recorded.
+     * 
+     * @return true if metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts recording metrics.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops recording metrics. Values recorded so far are kept.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Records one call to the operation which started at the specified time.
+     * 
+     * @param operation  the operation
+     * @param startNanos the start time from {@link System#nanoTime()}
+     */
+    public static void record(Operation operation, long startNanos) {
+        OPERATION_METRICS.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the live metrics for the specified operation.
+     * 
+     * @param operation the operation
+     * @return the {@link OperationMetrics}
+     */
+    public static OperationMetrics get(Operation operation) {
+        return OPERATION_METRICS.get(operation);
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every operation.
+     * 
+     * @return an unmodifiable map from operation to {@link OperationStats}
+     */
+    public static Map<Operation, OperationStats> snapshot() {
+        Map<Operation, OperationStats> snapshot = new EnumMap<>(Operation.class);
+        for (OperationMetrics operationMetrics : OPERATION_METRICS.values()) {
+            snapshot.put(operationMetrics.getOperation(), operationMetrics.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Clears the metrics of every operation.
+     */
+    public static void reset() {
+        for (OperationMetrics operationMetrics : OPERATION_METRICS.values()) {
+            operationMetrics.reset();
+        }
+    }
+
+    /**
+     * Registers one MBean per operation with the platform MBean server, under the
+     * name <code>bitvector:type=Operation,name=&lt;OPERATION&gt;</code>.
+     * Registering more than once has no effect.
+     * 
+     * @throws JMException if an MBean is not able to be registered
+     */
+    public static void registerMBeans() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics operationMetrics : OPERATION_METRICS.values()) {
+            try {
+                mBeanServer.registerMBean(operationMetrics,
+                        new ObjectName(OBJECT_NAME_PREFIX + operationMetrics.getOperation().name()));
+            } catch (InstanceAlreadyExistsException e) {
+                // already registered
+            }
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by {@link #registerMBeans()}.
+     * 
+     * @throws JMException if an MBean is not able to be unregistered
+     */
+    public static void unregisterMBeans() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : OPERATION_METRICS.keySet()) {
+            ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + operation.name());
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        }
+    }
+}
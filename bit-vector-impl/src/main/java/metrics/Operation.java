@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * The operations that can be instrumented by {@link Metrics}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public enum Operation {
+    RANK1, SELECT1, ACCESS, GET_AT_RANK, GET_AT_INDEX, GET_INDEX_OF, NUMBER_OF_ELEMENTS_AT, SUCCESSOR, PREDECESSOR, BUILD, LOAD,
+    SAVE, COUNT_ONES
+}
@@ -0,0 +1,88 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The call counter and {@link LatencyHistogram} for a single {@link Operation}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private final Operation operation;
+    private final LongAdder calls = new LongAdder();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Creates new, empty metrics for the specified operation.
+     * 
+     * @param operation the operation
+     */
+    public OperationMetrics(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Records one call to the operation which took the specified time.
+     * 
+     * @param elapsedNanos the time the call took in nanoseconds
+     */
+    public void record(long elapsedNanos) {
+        calls.increment();
+        histogram.record(elapsedNanos);
+    }
+
+    /**
+     * Takes an immutable snapshot of these metrics.
+     * 
+     * @return the {@link OperationStats}
+     */
+    public OperationStats snapshot() {
+        return new OperationStats(operation, calls.sum(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99), histogram.getMax());
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getCount() {
+        return calls.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return histogram.getMean();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return histogram.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return histogram.getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return histogram.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return histogram.getMax();
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        histogram.reset();
+    }
+}
@@ -0,0 +1,25 @@
+package metrics;
+
+/**
+ * JMX management interface exposing the call count and latency distribution of
+ * a single {@link Operation}. All latencies are in nanoseconds.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public interface OperationMetricsMXBean {
+
+    long getCount();
+
+    double getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+
+    void reset();
+}
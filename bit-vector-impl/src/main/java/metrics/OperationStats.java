@@ -0,0 +1,63 @@
+package metrics;
+
+/**
+ * An immutable snapshot of the metrics recorded for one {@link Operation}. All
+ * latencies are in nanoseconds.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class OperationStats {
+    private final Operation operation;
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public OperationStats(Operation operation, long count, double meanNanos, long p50Nanos, long p90Nanos,
+            long p99Nanos, long maxNanos) {
+        this.operation = operation;
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return operation + ": count=" + count + ", mean=" + String.format("%.1f", meanNanos) + "ns, p50=" + p50Nanos
+                + "ns, p90=" + p90Nanos + "ns, p99=" + p99Nanos + "ns, max=" + maxNanos + "ns";
+    }
+}
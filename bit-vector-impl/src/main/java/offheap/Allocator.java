@@ -0,0 +1,61 @@
+package offheap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Chooses the {@link OffHeapMemory} implementation once, the same way
+ * {@link rank.Popcount} chooses its engine: the segment implementation if it
+ * was compiled in and runs on this JDK, otherwise direct buffers.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class Allocator {
+    private static final String SEGMENT_MEMORY_CLASS = "offheap.SegmentMemory";
+    private static final Constructor<? extends OffHeapMemory> SEGMENT_CONSTRUCTOR = loadSegmentConstructor();
+
+    private Allocator() {
+    }
+
+    static OffHeapMemory allocate(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Invalid size: " + bytes);
+        }
+        if (SEGMENT_CONSTRUCTOR == null) {
+            return new BufferMemory(bytes);
+        }
+        try {
+            return SEGMENT_CONSTRUCTOR.newInstance(bytes);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Unable to allocate " + bytes + " bytes", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to allocate " + bytes + " bytes", e);
+        }
+    }
+
+    static String implementation() {
+        return SEGMENT_CONSTRUCTOR == null ? "buffer" : "segment";
+    }
+
+    private static Constructor<? extends OffHeapMemory> loadSegmentConstructor() {
+        if ("buffer".equals(System.getProperty("bitvector.offheap"))) {
+            return null;
+        }
+        try {
+            Constructor<? extends OffHeapMemory> constructor = Class.forName(SEGMENT_MEMORY_CLASS)
+                    .asSubclass(OffHeapMemory.class).getDeclaredConstructor(long.class);
+            constructor.newInstance(0L).close();
+            return constructor;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not compiled in, or compiled for a newer JDK than this one
+            return null;
+        }
+    }
+}
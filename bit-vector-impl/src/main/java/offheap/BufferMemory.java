@@ -0,0 +1,119 @@
+package offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link OffHeapMemory} in direct {@link ByteBuffer}s of 2^30 bytes each, since
+ * one buffer holds fewer than 2^31 bytes. Each buffer is aligned to a cache
+ * line, and longs never straddle two buffers. The buffers are freed by the
+ * garbage collector once closed. The buffers can also be read-only mappings of
+ * a little-endian file section, which are unmapped the same way.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class BufferMemory implements OffHeapMemory {
+    private static final int CHUNK_SHIFT = 30;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final long byteSize;
+    private ByteBuffer[] chunks;
+
+    BufferMemory(long byteSize) {
+        this.byteSize = byteSize;
+        chunks = new ByteBuffer[(int) ((byteSize + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int c = 0; c < chunks.length; c++) {
+            int capacity = (int) Math.min(CHUNK_MASK + 1, byteSize - ((long) c << CHUNK_SHIFT));
+            // round up to whole cache lines so the aligned slice holds the capacity
+            int lines = (capacity + CACHE_LINE_BYTES - 1) / CACHE_LINE_BYTES;
+            chunks[c] = ByteBuffer.allocateDirect((lines + 1) * CACHE_LINE_BYTES - 1).alignedSlice(CACHE_LINE_BYTES)
+                    .limit(capacity).slice().order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private BufferMemory(long byteSize, ByteBuffer[] chunks) {
+        this.byteSize = byteSize;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Maps a section of a file read-only. The section should start on a cache
+     * line of the file, so its longs stay aligned.
+     */
+    static BufferMemory map(FileChannel channel, long position, long byteSize) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[(int) ((byteSize + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int c = 0; c < chunks.length; c++) {
+            long offset = (long) c << CHUNK_SHIFT;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                    Math.min(CHUNK_MASK + 1, byteSize - offset)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new BufferMemory(byteSize, chunks);
+    }
+
+    private ByteBuffer chunk(long offset) {
+        ByteBuffer[] current = chunks;
+        if (current == null) {
+            throw new IllegalStateException("Off-heap memory is closed");
+        }
+        return current[(int) (offset >>> CHUNK_SHIFT)];
+    }
+
+    @Override
+    public long byteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public long getLong(long index) {
+        long offset = index << 3;
+        return chunk(offset).getLong((int) offset & CHUNK_MASK);
+    }
+
+    @Override
+    public void setLong(long index, long value) {
+        long offset = index << 3;
+        chunk(offset).putLong((int) offset & CHUNK_MASK, value);
+    }
+
+    @Override
+    public byte getByte(long offset) {
+        return chunk(offset).get((int) offset & CHUNK_MASK);
+    }
+
+    @Override
+    public void setByte(long offset, byte value) {
+        chunk(offset).put((int) offset & CHUNK_MASK, value);
+    }
+
+    @Override
+    public void getBytes(long offset, byte[] destination, int from, int length) {
+        while (length > 0) {
+            int within = (int) offset & CHUNK_MASK;
+            int part = Math.min(length, CHUNK_MASK + 1 - within);
+            chunk(offset).get(within, destination, from, part);
+            offset += part;
+            from += part;
+            length -= part;
+        }
+    }
+
+    @Override
+    public void setBytes(long offset, byte[] source, int from, int length) {
+        while (length > 0) {
+            int within = (int) offset & CHUNK_MASK;
+            int part = Math.min(length, CHUNK_MASK + 1 - within);
+            chunk(offset).put(within, source, from, part);
+            offset += part;
+            from += part;
+            length -= part;
+        }
+    }
+
+    @Override
+    public void close() {
+        chunks = null;
+    }
+}
@@ -0,0 +1,89 @@
+package offheap;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Configures an external-memory build: how many bytes of buffers it may hold,
+ * which bounds the heap it uses whatever the size of the input, and where its
+ * temporary files go. Create options with {@link #builder()} or use
+ * {@link #DEFAULT}.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ExternalBuildOptions {
+    public static final ExternalBuildOptions DEFAULT = builder().build();
+
+    private final int bufferSize;
+    private final Path tempDirectory;
+
+    private ExternalBuildOptions(Builder builder) {
+        bufferSize = builder.bufferSize;
+        tempDirectory = builder.tempDirectory;
+    }
+
+    /**
+     * Creates a new {@link Builder}.
+     *
+     * @return the Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public Path getTempDirectory() {
+        return tempDirectory;
+    }
+
+    /**
+     * Builds {@link ExternalBuildOptions}.
+     */
+    public static class Builder {
+        private int bufferSize = 64 << 20;
+        private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of bytes of buffers a build may hold: the I/O buffers,
+         * and the records sorted in memory before each run is written.
+         *
+         * @param bufferSize the buffer size in bytes, at least 64 KiB
+         * @return this Builder
+         */
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize < 1 << 16) {
+                throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the directory for temporary files, which are deleted when the build
+         * ends.
+         *
+         * @param tempDirectory the directory
+         * @return this Builder
+         */
+        public Builder tempDirectory(Path tempDirectory) {
+            this.tempDirectory = tempDirectory;
+            return this;
+        }
+
+        /**
+         * Builds the options.
+         *
+         * @return the {@link ExternalBuildOptions}
+         */
+        public ExternalBuildOptions build() {
+            return new ExternalBuildOptions(this);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package offheap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a {@link PositionValueFile} by position with bounded memory. Records
+ * are read until they fill the buffer size, sorted and written as a run to a
+ * temporary file, and the runs are then merged, at most {@link #MAX_FAN_IN} at
+ * a time, until one remains. Records with equal positions keep their input
+ * order.
+ *
+ * @author Valerie Wray
+ *
+ */
+public final class ExternalSorter {
+    static final int MAX_FAN_IN = 64;
+    /** The estimated heap bytes of a record besides its value bytes. */
+    private static final int RECORD_OVERHEAD = 64;
+
+    private ExternalSorter() {
+    }
+
+    /**
+     * Sorts a position/value file into another.
+     *
+     * @param input   the file name of the unsorted file
+     * @param output  the file name of the sorted file to write
+     * @param options the {@link ExternalBuildOptions}
+     * @throws IOException if a file is not able to be read or written
+     */
+    public static void sort(String input, String output, ExternalBuildOptions options) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            writeRuns(input, options, runs);
+            while (runs.size() > 1) {
+                List<Path> merged = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                    List<Path> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+                    Path run = Files.createTempFile(options.getTempDirectory(), "merge", ".run");
+                    merged.add(run);
+                    merge(group, run, options);
+                    for (Path path : group) {
+                        Files.delete(path);
+                    }
+                }
+                runs = merged;
+            }
+            if (runs.isEmpty()) {
+                new PositionValueFile.Writer(output, 1024).close();
+            } else {
+                Files.move(runs.remove(0), Path.of(output), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private static void writeRuns(String input, ExternalBuildOptions options, List<Path> runs) throws IOException {
+        int ioBufferSize = options.getBufferSize() / 8;
+        long budget = options.getBufferSize() - 2L * ioBufferSize;
+        List<Record> records = new ArrayList<>();
+        long used = 0;
+        try (PositionValueFile.Reader reader = new PositionValueFile.Reader(input, ioBufferSize)) {
+            while (reader.next()) {
+                records.add(new Record(reader.position(), reader.valueBytes(), records.size()));
+                used += reader.valueBytes().length + RECORD_OVERHEAD;
+                if (used >= budget) {
+                    runs.add(writeRun(records, options, ioBufferSize));
+                    records.clear();
+                    used = 0;
+                }
+            }
+        }
+        if (!records.isEmpty()) {
+            runs.add(writeRun(records, options, ioBufferSize));
+        }
+    }
+
+    private static Path writeRun(List<Record> records, ExternalBuildOptions options, int ioBufferSize)
+            throws IOException {
+        Record[] sorted = records.toArray(new Record[0]);
+        Arrays.sort(sorted, Comparator.comparingLong((Record record) -> record.position)
+                .thenComparingInt(record -> record.order));
+        Path run = Files.createTempFile(options.getTempDirectory(), "sort", ".run");
+        try (PositionValueFile.Writer writer = new PositionValueFile.Writer(run.toString(), ioBufferSize)) {
+            for (Record record : sorted) {
+                writer.write(record.position, record.value);
+            }
+        }
+        return run;
+    }
+
+    private static void merge(List<Path> runs, Path output, ExternalBuildOptions options) throws IOException {
+        int ioBufferSize = Math.max(4096, options.getBufferSize() / (runs.size() + 1));
+        // ties go to the earlier run, which holds the earlier records
+        PriorityQueue<Run> queue = new PriorityQueue<>(
+                Comparator.comparingLong((Run run) -> run.reader.position()).thenComparingInt(run -> run.index));
+        try (PositionValueFile.Writer writer = new PositionValueFile.Writer(output.toString(), ioBufferSize)) {
+            for (int r = 0; r < runs.size(); r++) {
+                Run run = new Run(new PositionValueFile.Reader(runs.get(r).toString(), ioBufferSize), r);
+                if (run.reader.next()) {
+                    queue.add(run);
+                } else {
+                    run.reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                writer.write(run.reader.position(), run.reader.valueBytes());
+                if (run.reader.next()) {
+                    queue.add(run);
+                } else {
+                    run.reader.close();
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.reader.close();
+            }
+        }
+    }
+
+    private static final class Record {
+        final long position;
+        final byte[] value;
+        final int order;
+
+        Record(long position, byte[] value, int order) {
+            this.position = position;
+            this.value = value;
+            this.order = order;
+        }
+    }
+
+    private static final class Run {
+        final PositionValueFile.Reader reader;
+        final int index;
+
+        Run(PositionValueFile.Reader reader, int index) {
+            this.reader = reader;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package offheap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a sparse array file from elements appended in increasing index
+ * order, with bounded memory however many elements there are, for
+ * {@link OffHeapSparseArray#map(String)} to query as it is, with no
+ * {@link OffHeapSparseArray#build()} step. The positions are written straight
+ * to the file in the cache-line layout of {@link OffHeapSelectSupport}, line by
+ * line with the count of ones before each, while the values and their offsets
+ * are streamed to temporary files and appended when the writer finishes.
+ * <p>
+ * The file is a header, the position lines, the value offsets and the UTF-8
+ * values, each section starting on a cache line, in little-endian order.
+ * {@link #build(String, String, long, ExternalBuildOptions)} writes one from a
+ * sorted {@link PositionValueFile}, and
+ * {@link #buildUnsorted(String, String, long, ExternalBuildOptions)} sorts the
+ * input with an {@link ExternalSorter} first.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class ExternalSparseArrayWriter implements Closeable {
+    static final int MAGIC = 0x42564558;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = OffHeapMemory.CACHE_LINE_BYTES;
+
+    private final Path path;
+    private final long size;
+    private final long lines;
+    private final FileChannel channel;
+    private final ByteBuffer lineBuffer;
+    private final long[] lineWords = new long[OffHeapSelectSupport.DATA_WORDS];
+    private final Path valuesPath;
+    private final Path offsetsPath;
+    private final BufferedOutputStream values;
+    private final DataOutputStream offsets;
+    private long line;
+    private long onesBefore;
+    private long valuesLength;
+    private long numberOfElements;
+    private long lastPosition = -1;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Creates a writer of a new sparse array file.
+     *
+     * @param filename the file name of the file to write
+     * @param size     the size of the sparse array
+     * @param options  the {@link ExternalBuildOptions}
+     * @throws IOException if the file or the temporary files are not able to be
+     *                     created
+     */
+    public ExternalSparseArrayWriter(String filename, long size, ExternalBuildOptions options) throws IOException {
+        path = Paths.get(filename);
+        this.size = size;
+        lines = OffHeapSelectSupport.linesFor(size);
+        int ioBufferSize = options.getBufferSize() / 4;
+        lineBuffer = ByteBuffer.allocateDirect(ioBufferSize - ioBufferSize % OffHeapMemory.CACHE_LINE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        valuesPath = Files.createTempFile(options.getTempDirectory(), "values", ".tmp");
+        offsetsPath = Files.createTempFile(options.getTempDirectory(), "offsets", ".tmp");
+        values = new BufferedOutputStream(new FileOutputStream(valuesPath.toFile()), ioBufferSize);
+        offsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(offsetsPath.toFile()),
+                ioBufferSize));
+        offsets.writeLong(0);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        channel.position(HEADER_BYTES);
+    }
+
+    /**
+     * Writes a sparse array file from a position/value file sorted by position,
+     * and maps it.
+     *
+     * @param sortedInput the file name of the sorted {@link PositionValueFile}
+     * @param filename    the file name of the sparse array file to write
+     * @param size        the size of the sparse array
+     * @param options     the {@link ExternalBuildOptions}
+     * @return the mapped {@link OffHeapSparseArray}
+     * @throws IOException              if a file is not able to be read or written
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the sparse array
+     */
+    public static OffHeapSparseArray build(String sortedInput, String filename, long size,
+            ExternalBuildOptions options) throws IOException {
+        try (ExternalSparseArrayWriter writer = new ExternalSparseArrayWriter(filename, size, options);
+                PositionValueFile.Reader reader = new PositionValueFile.Reader(sortedInput,
+                        options.getBufferSize() / 4)) {
+            while (reader.next()) {
+                writer.append(reader.valueBytes(), reader.position());
+            }
+            writer.finish();
+        }
+        return OffHeapSparseArray.map(filename);
+    }
+
+    /**
+     * Sorts a position/value file by position with an {@link ExternalSorter},
+     * writes a sparse array file from it and maps it.
+     *
+     * @param input    the file name of the unsorted {@link PositionValueFile}
+     * @param filename the file name of the sparse array file to write
+     * @param size     the size of the sparse array
+     * @param options  the {@link ExternalBuildOptions}
+     * @return the mapped {@link OffHeapSparseArray}
+     * @throws IOException              if a file is not able to be read or written
+     * @throws IllegalArgumentException if a position repeats or is not in the
+     *                                  sparse array
+     */
+    public static OffHeapSparseArray buildUnsorted(String input, String filename, long size,
+            ExternalBuildOptions options) throws IOException {
+        Path sorted = Files.createTempFile(options.getTempDirectory(), "sorted", ".tmp");
+        try {
+            ExternalSorter.sort(input, sorted.toString(), options);
+            return build(sorted.toString(), filename, size, options);
+        } finally {
+            Files.deleteIfExists(sorted);
+        }
+    }
+
+    static long align(long offset) {
+        return (offset + OffHeapMemory.CACHE_LINE_BYTES - 1) & -OffHeapMemory.CACHE_LINE_BYTES;
+    }
+
+    /**
+     * Appends an element at an index. Indexes must be appended in increasing
+     * order.
+     *
+     * @param element  the element to append
+     * @param position the index in the sparse array
+     * @throws IOException              if the element is not able to be written
+     * @throws IllegalArgumentException if the index is outside the sparse array or
+     *                                  not after the last appended index
+     * @throws IllegalStateException    if the writer is finished
+     */
+    public void append(String element, long position) throws IOException {
+        append(element.getBytes(StandardCharsets.UTF_8), position);
+    }
+
+    void append(byte[] element, long position) throws IOException {
+        if (finished || closed) {
+            throw new IllegalStateException("Writer is finished");
+        }
+        if (position <= lastPosition || position >= size) {
+            throw new IllegalArgumentException("Position " + position + " is not in (" + lastPosition + ", " + size + ")");
+        }
+        long target = position / OffHeapSelectSupport.LINE_BITS;
+        while (line < target) {
+            writeLine();
+        }
+        int bit = (int) (position - target * OffHeapSelectSupport.LINE_BITS);
+        lineWords[bit >>> 6] |= 1L << bit;
+        values.write(element);
+        valuesLength += element.length;
+        offsets.writeLong(Long.reverseBytes(valuesLength));
+        numberOfElements++;
+        lastPosition = position;
+    }
+
+    private void writeLine() throws IOException {
+        if (lineBuffer.remaining() < OffHeapMemory.CACHE_LINE_BYTES) {
+            drainLines();
+        }
+        lineBuffer.putLong(onesBefore);
+        for (int w = 0; w < lineWords.length; w++) {
+            lineBuffer.putLong(lineWords[w]);
+            onesBefore += Long.bitCount(lineWords[w]);
+            lineWords[w] = 0;
+        }
+        line++;
+    }
+
+    private void drainLines() throws IOException {
+        lineBuffer.flip();
+        while (lineBuffer.hasRemaining()) {
+            channel.write(lineBuffer);
+        }
+        lineBuffer.clear();
+    }
+
+    public long numberOfElements() {
+        return numberOfElements;
+    }
+
+    /**
+     * Writes the remaining position lines, the offsets, the values and the
+     * header, which completes the file.
+     *
+     * @throws IOException if the file is not able to be written
+     */
+    public void finish() throws IOException {
+        if (finished || closed) {
+            throw new IllegalStateException("Writer is finished");
+        }
+        while (line < lines) {
+            writeLine();
+        }
+        drainLines();
+        values.close();
+        offsets.close();
+        long offsetsStart = HEADER_BYTES + lines * OffHeapMemory.CACHE_LINE_BYTES;
+        long offsetsEnd = transfer(offsetsPath, offsetsStart);
+        long valuesStart = align(offsetsEnd);
+        if (valuesStart > offsetsEnd) {
+            // transferFrom does not write past the end of the file
+            channel.write(ByteBuffer.allocate((int) (valuesStart - offsetsEnd)), offsetsEnd);
+        }
+        transfer(valuesPath, valuesStart);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(numberOfElements).putLong(valuesLength);
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        finished = true;
+        close();
+    }
+
+    private long transfer(Path source, long position) throws IOException {
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = sourceChannel.size();
+            for (long done = 0; done < length;) {
+                done += channel.transferFrom(sourceChannel.position(done), position + done, length - done);
+            }
+            return position + length;
+        }
+    }
+
+    /**
+     * Closes the file and deletes the temporary files. Closing an unfinished
+     * writer deletes the incomplete file too.
+     *
+     * @throws IOException if a file is not able to be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            values.close();
+            offsets.close();
+            channel.close();
+        } finally {
+            Files.deleteIfExists(valuesPath);
+            Files.deleteIfExists(offsetsPath);
+            if (!finished) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package offheap;
+
+/**
+ * A block of memory outside the Java heap, addressed by long offsets so it is
+ * not limited to 2^31 elements, and aligned to a cache line. Longs are
+ * addressed by their index in longs, and bytes by their offset.
+ * <p>
+ * The memory is a <code>MemorySegment</code> from a shared
+ * <code>Arena</code> when that implementation was compiled in (the
+ * <code>ffm</code> Maven profile, which needs a JDK with the final Foreign
+ * Function and Memory API); otherwise, or with
+ * <code>-Dbitvector.offheap=buffer</code>, it is a set of direct
+ * {@link java.nio.ByteBuffer}s. Memory must be closed when done: a segment is
+ * freed at once, while closed buffers are freed by the garbage collector.
+ * Access after closing throws an {@link IllegalStateException}.
+ *
+ * @author Valerie Wray
+ *
+ */
+public interface OffHeapMemory extends AutoCloseable {
+    int CACHE_LINE_BYTES = 64;
+
+    /**
+     * Allocates zeroed memory aligned to a cache line.
+     *
+     * @param bytes the number of bytes
+     * @return the OffHeapMemory
+     * @throws IllegalArgumentException if bytes is negative
+     */
+    static OffHeapMemory allocate(long bytes) {
+        return Allocator.allocate(bytes);
+    }
+
+    /**
+     * Gets the name of the implementation {@link #allocate(long)} uses.
+     *
+     * @return "segment" or "buffer"
+     */
+    static String implementation() {
+        return Allocator.implementation();
+    }
+
+    long byteSize();
+
+    long getLong(long index);
+
+    void setLong(long index, long value);
+
+    byte getByte(long offset);
+
+    void setByte(long offset, byte value);
+
+    /**
+     * Copies bytes from this memory into an array.
+     *
+     * @param offset      the offset in this memory
+     * @param destination the array
+     * @param from        the index in the array
+     * @param length      the number of bytes
+     */
+    void getBytes(long offset, byte[] destination, int from, int length);
+
+    /**
+     * Copies bytes from an array into this memory.
+     *
+     * @param offset the offset in this memory
+     * @param source the array
+     * @param from   the index in the array
+     * @param length the number of bytes
+     */
+    void setBytes(long offset, byte[] source, int from, int length);
+
+    /**
+     * Copies the first bytes of another memory to the start of this one.
+     *
+     * @param source the memory to copy from
+     * @param bytes  the number of bytes
+     */
+    default void copyFrom(OffHeapMemory source, long bytes) {
+        byte[] buffer = new byte[8192];
+        for (long offset = 0; offset < bytes; offset += buffer.length) {
+            int length = (int) Math.min(buffer.length, bytes - offset);
+            source.getBytes(offset, buffer, 0, length);
+            setBytes(offset, buffer, 0, length);
+        }
+    }
+
+    /**
+     * Releases this memory. Closing more than once has no further effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,263 @@
+package offheap;
+
+import java.util.BitSet;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import metrics.Metrics;
+import metrics.Operation;
+import rank.Popcount;
+
+/**
+ * A rank/select bit-vector stored in {@link OffHeapMemory}, with long positions
+ * so it is not limited to 2^31 bits. The memory is a sequence of cache lines,
+ * each holding the number of ones before it followed by 7 words, or 448 bits,
+ * of the bit-vector, so a rank touches a single cache line. Select does a
+ * binary search over the line counts and then scans one line. A final line
+ * holds the total number of ones.
+ * <p>
+ * Bits are set with {@link #set(long)} before {@link #build()}, or copied
+ * from a {@link BitSet}. Close it to release the memory.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class OffHeapSelectSupport implements MemoryAccountable, AutoCloseable {
+    static final int LINE_WORDS = OffHeapMemory.CACHE_LINE_BYTES / Long.BYTES;
+    static final int DATA_WORDS = LINE_WORDS - 1;
+    static final int LINE_BITS = DATA_WORDS * Long.SIZE;
+
+    private final long bitVectorLength;
+    private final long lines;
+    private final OffHeapMemory memory;
+    private long numberOfOnes;
+    private boolean built;
+
+    /**
+     * Creates an off-heap bit-vector of the specified length with no bits set.
+     *
+     * @param bitVectorLength the length of the bit-vector
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public OffHeapSelectSupport(long bitVectorLength) {
+        if (bitVectorLength < 0) {
+            throw new IllegalArgumentException("Invalid length: " + bitVectorLength);
+        }
+        this.bitVectorLength = bitVectorLength;
+        lines = linesFor(bitVectorLength);
+        memory = OffHeapMemory.allocate(lines * OffHeapMemory.CACHE_LINE_BYTES);
+    }
+
+    /**
+     * Creates a built off-heap copy of a bit-vector.
+     *
+     * @param bitVector       the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     */
+    public OffHeapSelectSupport(BitSet bitVector, int bitVectorLength) {
+        this(bitVectorLength);
+        long[] words = bitVector.toLongArray();
+        int usedWords = Math.min(words.length, (bitVectorLength + Long.SIZE - 1) / Long.SIZE);
+        for (int w = 0; w < usedWords; w++) {
+            long word = words[w];
+            if ((long) (w + 1) * Long.SIZE > bitVectorLength) {
+                word &= -1L >>> -bitVectorLength;
+            }
+            memory.setLong(wordIndex(w), word);
+        }
+        build();
+    }
+
+    /**
+     * Wraps memory already in the cache-line layout, with the counts written, as
+     * a built bit-vector.
+     */
+    OffHeapSelectSupport(OffHeapMemory memory, long bitVectorLength) {
+        this.bitVectorLength = bitVectorLength;
+        lines = linesFor(bitVectorLength);
+        if (memory.byteSize() < lines * OffHeapMemory.CACHE_LINE_BYTES) {
+            throw new IllegalArgumentException(memory.byteSize() + " bytes are too few for " + bitVectorLength + " bits");
+        }
+        this.memory = memory;
+        numberOfOnes = memory.getLong((lines - 1) * LINE_WORDS);
+        built = true;
+    }
+
+    /**
+     * Gets the number of cache lines of a bit-vector, including the final line
+     * holding the total number of ones.
+     */
+    static long linesFor(long bitVectorLength) {
+        return (bitVectorLength + LINE_BITS - 1) / LINE_BITS + 1;
+    }
+
+    private static long wordIndex(long word) {
+        return word / DATA_WORDS * LINE_WORDS + 1 + word % DATA_WORDS;
+    }
+
+    /**
+     * Sets the bit at a position, before {@link #build()}.
+     *
+     * @param position the position
+     * @throws IndexOutOfBoundsException if the position is outside the bit-vector
+     * @throws IllegalStateException     if the bit-vector is built
+     */
+    public void set(long position) {
+        if (built) {
+            throw new IllegalStateException("Bit-vector is built");
+        }
+        if (position < 0 || position >= bitVectorLength) {
+            throw new IndexOutOfBoundsException("Position " + position + " is outside length " + bitVectorLength);
+        }
+        long index = wordIndex(position >>> 6);
+        memory.setLong(index, memory.getLong(index) | 1L << position);
+    }
+
+    /**
+     * Writes the number of ones before each cache line, after which the
+     * bit-vector can be queried but no longer changed.
+     *
+     * @throws IllegalStateException if the bit-vector is already built
+     */
+    public void build() {
+        if (built) {
+            throw new IllegalStateException("Bit-vector is already built");
+        }
+        long count = 0;
+        for (long line = 0; line < lines; line++) {
+            long base = line * LINE_WORDS;
+            memory.setLong(base, count);
+            for (int w = 1; w < LINE_WORDS; w++) {
+                count += Long.bitCount(memory.getLong(base + w));
+            }
+        }
+        numberOfOnes = count;
+        built = true;
+    }
+
+    /**
+     * Computes the number of ones in positions [0, i).
+     *
+     * @param i the position
+     * @return the rank
+     * @throws IndexOutOfBoundsException if i is outside [0, length]
+     */
+    public long rank1(long i) {
+        if (!Metrics.isEnabled()) {
+            return computeRank1(i);
+        }
+        long start = System.nanoTime();
+        long rank = computeRank1(i);
+        Metrics.record(Operation.RANK1, start);
+        return rank;
+    }
+
+    long computeRank1(long i) {
+        if (i < 0 || i > bitVectorLength) {
+            throw new IndexOutOfBoundsException("Position " + i + " is outside length " + bitVectorLength);
+        }
+        long line = i / LINE_BITS;
+        int bit = (int) (i - line * LINE_BITS);
+        long base = line * LINE_WORDS;
+        long rank = memory.getLong(base);
+        int word = bit >>> 6;
+        for (int w = 1; w <= word; w++) {
+            rank += Long.bitCount(memory.getLong(base + w));
+        }
+        if ((bit & 63) != 0) {
+            rank += Long.bitCount(memory.getLong(base + 1 + word) & -1L >>> -bit);
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the position plus one of the ith one, or 0 if i is 0.
+     *
+     * @param i the rank, starting from 1
+     * @return the position plus one, or 0 if i is 0
+     * @throws IllegalArgumentException if there are fewer than i ones
+     */
+    public long select1(long i) {
+        if (!Metrics.isEnabled()) {
+            return computeSelect1(i);
+        }
+        long start = System.nanoTime();
+        long index = computeSelect1(i);
+        Metrics.record(Operation.SELECT1, start);
+        return index;
+    }
+
+    long computeSelect1(long i) {
+        if (i <= 0) {
+            return 0;
+        }
+        if (i > numberOfOnes) {
+            throw new IllegalArgumentException("Rank " + i + " exceeds the number of ones");
+        }
+        // find the last line with fewer than i ones before it
+        long left = 0;
+        long right = lines - 2;
+        while (left < right) {
+            long center = (left + right + 1) >>> 1;
+            if (memory.getLong(center * LINE_WORDS) < i) {
+                left = center;
+            } else {
+                right = center - 1;
+            }
+        }
+        long base = left * LINE_WORDS;
+        long remaining = i - memory.getLong(base);
+        for (int w = 1;; w++) {
+            long word = memory.getLong(base + w);
+            int ones = Long.bitCount(word);
+            if (remaining <= ones) {
+                return left * LINE_BITS + (w - 1) * Long.SIZE + Popcount.selectInWord(word, (int) remaining - 1) + 1;
+            }
+            remaining -= ones;
+        }
+    }
+
+    /**
+     * Checks whether the bit at a position is set.
+     *
+     * @param i the position
+     * @return true if the bit is set, false if it is clear or outside the
+     *         bit-vector
+     */
+    public boolean access(long i) {
+        return i >= 0 && i < bitVectorLength && (memory.getLong(wordIndex(i >>> 6)) & 1L << i) != 0;
+    }
+
+    public long getBitVectorLength() {
+        return bitVectorLength;
+    }
+
+    public long getNumberOfOnes() {
+        return numberOfOnes;
+    }
+
+    /**
+     * Gets the number of off-heap bytes used, which the heap
+     * {@link #memoryFootprint()} leaves out.
+     *
+     * @return the number of off-heap bytes
+     */
+    public long getOffHeapBytes() {
+        return memory.byteSize();
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(3 * Long.BYTES + 1, 1));
+    }
+
+    /**
+     * Releases the off-heap memory. Queries afterwards throw an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        memory.close();
+    }
+}
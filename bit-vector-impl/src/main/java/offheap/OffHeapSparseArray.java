@@ -0,0 +1,301 @@
+package offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import metrics.Metrics;
+import metrics.Operation;
+import sparsearray.SparseArray;
+import sparsearray.SparseArrayCursor;
+
+/**
+ * A sparse array of strings stored in {@link OffHeapMemory}, with long indexes
+ * so it is not limited to 2^31 elements. The positions are an
+ * {@link OffHeapSelectSupport}, and the values are UTF-8 bytes packed one after
+ * another with the offset of each value, so the heap holds no per-element
+ * objects. The lookups follow {@link SparseArray}.
+ * <p>
+ * Elements are appended in increasing index order before {@link #build()},
+ * copied from a {@link SparseArray}, or mapped from a file written by an
+ * {@link ExternalSparseArrayWriter}. Close it to release the memory.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class OffHeapSparseArray implements MemoryAccountable, AutoCloseable {
+    private final long size;
+    private final OffHeapSelectSupport selectSupport;
+    private OffHeapMemory values;
+    /** The offset of each value and the end of the last, as longs. */
+    private OffHeapMemory offsets;
+    private long valuesLength;
+    private long numberOfElements;
+    private long lastPosition = -1;
+
+    /**
+     * Creates an empty off-heap sparse array of the specified size.
+     *
+     * @param size the size of the sparse array to create
+     */
+    public OffHeapSparseArray(long size) {
+        this.size = size;
+        selectSupport = new OffHeapSelectSupport(size);
+        values = OffHeapMemory.allocate(1024);
+        offsets = OffHeapMemory.allocate(128 * Long.BYTES);
+    }
+
+    private OffHeapSparseArray(long size, OffHeapSelectSupport selectSupport, OffHeapMemory values,
+            OffHeapMemory offsets, long numberOfElements) {
+        this.size = size;
+        this.selectSupport = selectSupport;
+        this.values = values;
+        this.offsets = offsets;
+        this.numberOfElements = numberOfElements;
+        valuesLength = values.byteSize();
+    }
+
+    /**
+     * Maps a file written by an {@link ExternalSparseArrayWriter} read-only, so it
+     * can be queried without loading it onto the heap.
+     *
+     * @param filename the file name of the file to map
+     * @return the built OffHeapSparseArray
+     * @throws IOException if the file is not able to be mapped or is not a sparse
+     *                     array file
+     */
+    public static OffHeapSparseArray map(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ExternalSparseArrayWriter.HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() >= ExternalSparseArrayWriter.HEADER_BYTES) {
+                channel.read(header, 0);
+            }
+            header.flip();
+            if (header.remaining() < ExternalSparseArrayWriter.HEADER_BYTES
+                    || header.getInt() != ExternalSparseArrayWriter.MAGIC
+                    || header.getInt() != ExternalSparseArrayWriter.VERSION) {
+                throw new IOException(filename + " is not a sparse array file of version "
+                        + ExternalSparseArrayWriter.VERSION);
+            }
+            long size = header.getLong();
+            long numberOfElements = header.getLong();
+            long valuesLength = header.getLong();
+            long positionsBytes = OffHeapSelectSupport.linesFor(size) * OffHeapMemory.CACHE_LINE_BYTES;
+            long offsetsStart = ExternalSparseArrayWriter.HEADER_BYTES + positionsBytes;
+            long offsetsBytes = (numberOfElements + 1) * Long.BYTES;
+            long valuesStart = ExternalSparseArrayWriter.align(offsetsStart + offsetsBytes);
+            if (channel.size() < valuesStart + valuesLength) {
+                throw new IOException(filename + " is truncated");
+            }
+            OffHeapSelectSupport selectSupport = new OffHeapSelectSupport(
+                    BufferMemory.map(channel, ExternalSparseArrayWriter.HEADER_BYTES, positionsBytes), size);
+            return new OffHeapSparseArray(size, selectSupport, BufferMemory.map(channel, valuesStart, valuesLength),
+                    BufferMemory.map(channel, offsetsStart, offsetsBytes), numberOfElements);
+        }
+    }
+
+    /**
+     * Creates a built off-heap copy of a finalized sparse array.
+     *
+     * @param sparseArray the {@link SparseArray}
+     * @return the OffHeapSparseArray
+     */
+    public static OffHeapSparseArray of(SparseArray sparseArray) {
+        OffHeapSparseArray offHeapSparseArray = new OffHeapSparseArray(sparseArray.size());
+        SparseArrayCursor cursor = sparseArray.cursor();
+        while (cursor.next()) {
+            offHeapSparseArray.append(cursor.value(), cursor.index());
+        }
+        offHeapSparseArray.build();
+        return offHeapSparseArray;
+    }
+
+    /**
+     * Appends an element at an index. Indexes must be appended in increasing
+     * order, before {@link #build()}.
+     *
+     * @param element  the element to append
+     * @param position the index in the sparse array
+     * @throws IllegalArgumentException if the index is outside the sparse array or
+     *                                  not after the last appended index
+     * @throws IllegalStateException    if the sparse array is built
+     */
+    public void append(String element, long position) {
+        if (position <= lastPosition || position >= size) {
+            throw new IllegalArgumentException("Position " + position + " is not in (" + lastPosition + ", " + size + ")");
+        }
+        selectSupport.set(position);
+        byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+        values = ensureCapacity(values, valuesLength, valuesLength + bytes.length);
+        values.setBytes(valuesLength, bytes, 0, bytes.length);
+        valuesLength += bytes.length;
+        offsets = ensureCapacity(offsets, (numberOfElements + 1) * Long.BYTES, (numberOfElements + 2) * Long.BYTES);
+        offsets.setLong(++numberOfElements, valuesLength);
+        lastPosition = position;
+    }
+
+    private static OffHeapMemory ensureCapacity(OffHeapMemory memory, long used, long needed) {
+        if (needed <= memory.byteSize()) {
+            return memory;
+        }
+        OffHeapMemory grown = OffHeapMemory.allocate(Math.max(needed, 2 * memory.byteSize()));
+        grown.copyFrom(memory, used);
+        memory.close();
+        return grown;
+    }
+
+    /**
+     * Builds the sparse array once all elements are appended and trims the value
+     * store, after which it can be queried.
+     *
+     * @throws IllegalStateException if the sparse array is already built
+     */
+    public void build() {
+        selectSupport.build();
+        values = trim(values, valuesLength);
+        offsets = trim(offsets, (numberOfElements + 1) * Long.BYTES);
+    }
+
+    private static OffHeapMemory trim(OffHeapMemory memory, long used) {
+        if (used == memory.byteSize()) {
+            return memory;
+        }
+        OffHeapMemory trimmed = OffHeapMemory.allocate(used);
+        trimmed.copyFrom(memory, used);
+        memory.close();
+        return trimmed;
+    }
+
+    private void appendValue(long rank, StringBuilder element) {
+        long offset = offsets.getLong(rank);
+        byte[] bytes = new byte[(int) (offsets.getLong(rank + 1) - offset)];
+        values.getBytes(offset, bytes, 0, bytes.length);
+        element.append(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the rth element, if it exists, otherwise returns false.
+     *
+     * @param r       the index of the element to get
+     * @param element the element to append
+     * @return true if rth element exists, otherwise false
+     */
+    public boolean getAtIndex(long r, StringBuilder element) {
+        if (!Metrics.isEnabled()) {
+            return computeGetAtIndex(r, element);
+        }
+        long start = System.nanoTime();
+        boolean present = computeGetAtIndex(r, element);
+        Metrics.record(Operation.GET_AT_INDEX, start);
+        return present;
+    }
+
+    private boolean computeGetAtIndex(long r, StringBuilder element) {
+        if (!selectSupport.access(r)) {
+            return false;
+        }
+        appendValue(selectSupport.computeRank1(r), element);
+        return true;
+    }
+
+    /**
+     * Gets the rth present element, starting from 0.
+     *
+     * @param r       the rank of the present element to get
+     * @param element the element to append
+     * @return true if rth present element exists, false if there are no more
+     *         than r elements
+     */
+    public boolean getAtRank(long r, StringBuilder element) {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        boolean present = r >= 0 && r < numberOfElements;
+        if (present) {
+            appendValue(r, element);
+        }
+        if (recording) {
+            Metrics.record(Operation.GET_AT_RANK, start);
+        }
+        return present;
+    }
+
+    /**
+     * Gets the index in the sparse array where the rth present element appears.
+     *
+     * @param r the rank of the present element, starting from 1
+     * @return the index in the sparse array where the rth present element appears,
+     *         or -1 if there are less than r present elements
+     */
+    public long getIndexOf(long r) {
+        if (!Metrics.isEnabled()) {
+            return r > numberOfElements ? -1 : selectSupport.computeSelect1(r) - 1;
+        }
+        long start = System.nanoTime();
+        long index = r > numberOfElements ? -1 : selectSupport.computeSelect1(r) - 1;
+        Metrics.record(Operation.GET_INDEX_OF, start);
+        return index;
+    }
+
+    /**
+     * Gets the number of present elements up to and including index r.
+     *
+     * @param r the index in the sparse array
+     * @return the number of present elements up to and including index r
+     */
+    public long numberOfElementsAt(long r) {
+        if (!Metrics.isEnabled()) {
+            return selectSupport.computeRank1(Math.min(r + 1, size));
+        }
+        long start = System.nanoTime();
+        long numberOfElements = selectSupport.computeRank1(Math.min(r + 1, size));
+        Metrics.record(Operation.NUMBER_OF_ELEMENTS_AT, start);
+        return numberOfElements;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long numberOfElements() {
+        return numberOfElements;
+    }
+
+    public OffHeapSelectSupport getSelectSupport() {
+        return selectSupport;
+    }
+
+    /**
+     * Gets the number of off-heap bytes used by the positions, values and
+     * offsets, which the heap {@link #memoryFootprint()} leaves out.
+     *
+     * @return the number of off-heap bytes
+     */
+    public long getOffHeapBytes() {
+        return selectSupport.getOffHeapBytes() + values.byteSize() + offsets.byteSize();
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(5 * Long.BYTES, 3))
+                .addAll(selectSupport.memoryFootprint());
+    }
+
+    /**
+     * Releases the off-heap memory. Queries afterwards throw an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        selectSupport.close();
+        values.close();
+        offsets.close();
+    }
+}
@@ -0,0 +1,120 @@
+package offheap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The input format of an external build: a file of records, each a position
+ * (a big-endian long), the length of the value (an int) and the value's UTF-8
+ * bytes. {@link Writer} writes such a file and {@link Reader} streams it back.
+ *
+ * @author Valerie Wray
+ *
+ */
+public final class PositionValueFile {
+
+    private PositionValueFile() {
+    }
+
+    /**
+     * Writes records to a position/value file.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream output;
+
+        /**
+         * Creates a writer of a new position/value file.
+         *
+         * @param filename   the file name
+         * @param bufferSize the size of the output buffer in bytes
+         * @throws IOException if the file is not able to be created
+         */
+        public Writer(String filename, int bufferSize) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), bufferSize));
+        }
+
+        /**
+         * Writes a record.
+         *
+         * @param position the position
+         * @param value    the value
+         * @throws IOException if the record is not able to be written
+         */
+        public void write(long position, String value) throws IOException {
+            write(position, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void write(long position, byte[] value) throws IOException {
+            output.writeLong(position);
+            output.writeInt(value.length);
+            output.write(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+
+    /**
+     * Streams the records of a position/value file in file order.
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream input;
+        private long position;
+        private byte[] value;
+
+        /**
+         * Opens a position/value file.
+         *
+         * @param filename   the file name
+         * @param bufferSize the size of the input buffer in bytes
+         * @throws IOException if the file is not able to be opened
+         */
+        public Reader(String filename, int bufferSize) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), bufferSize));
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return true if there was another record, false at the end of the file
+         * @throws IOException if the file is truncated or unreadable
+         */
+        public boolean next() throws IOException {
+            try {
+                position = input.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            value = new byte[input.readInt()];
+            input.readFully(value);
+            return true;
+        }
+
+        public long position() {
+            return position;
+        }
+
+        public String value() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        byte[] valueBytes() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package rank;
+
+/**
+ * Rank and select over a bitmap block of at most 2^16 bits, with the number of
+ * ones before every group of eight words kept in a <code>char[]</code> so that
+ * rank and select only popcount within a group. Shared by the blocks of the
+ * hybrid and versioned bit-vectors, which keep the words and group ranks as
+ * their own fields.
+ *
+ * @author Valerie Wray
+ *
+ */
+public final class GroupRanks {
+    public static final int GROUP_SHIFT = 9;
+    private static final int WORDS_PER_GROUP = 1 << (GROUP_SHIFT - 6);
+
+    private GroupRanks() {
+    }
+
+    /**
+     * Counts the ones before each group of the words.
+     *
+     * @param words the words of the block, a multiple of eight and at most 1024
+     * @return the number of ones before each group
+     */
+    public static char[] build(long[] words) {
+        // the ones before each group fit in a char, since the last group starts
+        // before the last 512 positions
+        char[] groupRanks = new char[words.length / WORDS_PER_GROUP];
+        int count = 0;
+        for (int g = 0; g < groupRanks.length; g++) {
+            groupRanks[g] = (char) count;
+            count += Popcount.engine().countWords(words, g * WORDS_PER_GROUP, (g + 1) * WORDS_PER_GROUP);
+        }
+        return groupRanks;
+    }
+
+    /**
+     * Counts the ones of the block.
+     *
+     * @param words      the words of the block
+     * @param groupRanks the group ranks built from the words
+     * @return the number of ones
+     */
+    public static int cardinality(long[] words, char[] groupRanks) {
+        int last = groupRanks.length - 1;
+        return groupRanks[last] + Popcount.engine().countWords(words, last * WORDS_PER_GROUP, words.length);
+    }
+
+    /**
+     * Counts the ones before a position of the block.
+     *
+     * @param words      the words of the block
+     * @param groupRanks the group ranks built from the words
+     * @param position   the position, less than the length of the block
+     * @return the number of ones before the position
+     */
+    public static int rank(long[] words, char[] groupRanks, int position) {
+        int group = position >>> GROUP_SHIFT;
+        return groupRanks[group] + Popcount.countOnes(words, group << GROUP_SHIFT, position);
+    }
+
+    /**
+     * Finds the position of a one of the block.
+     *
+     * @param words      the words of the block
+     * @param groupRanks the group ranks built from the words
+     * @param k          the number of ones before it, less than the cardinality
+     * @return the position of the one
+     */
+    public static int select(long[] words, char[] groupRanks, int k) {
+        // find the last group with fewer than k + 1 ones before it
+        int left = 0;
+        int right = groupRanks.length - 1;
+        while (left < right) {
+            int center = (left + right + 1) >>> 1;
+            if (groupRanks[center] <= k) {
+                left = center;
+            } else {
+                right = center - 1;
+            }
+        }
+        int remaining = k - groupRanks[left];
+        for (int w = left * WORDS_PER_GROUP;; w++) {
+            int count = Long.bitCount(words[w]);
+            if (remaining < count) {
+                return (w << 6) + Popcount.selectInWord(words[w], remaining);
+            }
+            remaining -= count;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package rank;
+
+/**
+ * Population count helpers over a bit-vector stored as little-endian
+ * <code>long</code> words, the same layout as {@link java.util.BitSet#toLongArray()}.
+ * <p>
+ * The word loops are delegated to a {@link PopcountEngine}. The vectorized
+ * engine is used when it was compiled in (the <code>vector</code> Maven profile)
+ * and the JVM was started with <code>--add-modules jdk.incubator.vector</code>;
+ * otherwise, or with <code>-Dbitvector.popcount=scalar</code>, the scalar
+ * engine is used.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public final class Popcount {
+    public static final PopcountEngine SCALAR = new ScalarPopcountEngine();
+    private static final String VECTOR_ENGINE_CLASS = "rank.VectorPopcountEngine";
+    private static final PopcountEngine ENGINE = loadEngine();
+
+    private Popcount() {
+    }
+
+    /**
+     * Gets the active engine.
+     * 
+     * @return the {@link PopcountEngine}
+     */
+    public static PopcountEngine engine() {
+        return ENGINE;
+    }
+
+    /**
+     * Gets the vectorized engine, if it is available in this JVM.
+     * 
+     * @return the vectorized {@link PopcountEngine}, or null if it is not available
+     */
+    public static PopcountEngine vectorEngine() {
+        try {
+            return (PopcountEngine) Class.forName(VECTOR_ENGINE_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not compiled in, or the incubator module is not resolved
+            return null;
+        }
+    }
+
+    private static PopcountEngine loadEngine() {
+        if ("scalar".equals(System.getProperty("bitvector.popcount"))) {
+            return SCALAR;
+        }
+        PopcountEngine vectorEngine = vectorEngine();
+        return vectorEngine == null ? SCALAR : vectorEngine;
+    }
+
+    /**
+     * Counts the set bits in positions [from, to) of the words.
+     * 
+     * @param words the words of the bit-vector
+     * @param from  the first position, inclusive
+     * @param to    the last position, exclusive
+     * @return the number of set bits
+     */
+    public static int countOnes(long[] words, int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int fromWord = from >>> 6;
+        int toWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (fromWord == toWord) {
+            return Long.bitCount(words[fromWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[fromWord] & firstMask);
+        if (toWord - fromWord > 1) {
+            count += ENGINE.countWords(words, fromWord + 1, toWord);
+        }
+        return count + Long.bitCount(words[toWord] & lastMask);
+    }
+
+    /**
+     * Finds the position of the kth (starting from 0) set bit of a word.
+     * 
+     * @param word the word
+     * @param k    the number of set bits to skip, less than the bit count of the
+     *             word
+     * @return the position of the set bit within the word
+     */
+    public static int selectInWord(long word, int k) {
+        for (int j = 0; j < k; j++) {
+            // clear the lowest set bit
+            word &= word - 1;
+        }
+        return Long.numberOfTrailingZeros(word);
+    }
+}
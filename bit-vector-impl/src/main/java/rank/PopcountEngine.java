@@ -0,0 +1,78 @@
+package rank;
+
+/**
+ * The word-level kernels behind rank construction, range cardinality and bulk
+ * set operations. The active engine is chosen by {@link Popcount#engine()}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public interface PopcountEngine {
+
+    /**
+     * Counts the set bits in words [fromWord, toWord).
+     * 
+     * @param words    the words
+     * @param fromWord the first word, inclusive
+     * @param toWord   the last word, exclusive
+     * @return the number of set bits
+     */
+    int countWords(long[] words, int fromWord, int toWord);
+
+    /**
+     * Counts the set bits in each of <code>numberOfBlocks</code> consecutive
+     * blocks of <code>wordsPerBlock</code> words, starting at
+     * <code>fromWord</code>. Blocks are cut off at the end of the words.
+     * 
+     * @param words          the words
+     * @param fromWord       the first word of the first block
+     * @param wordsPerBlock  the number of words in each block
+     * @param counts         receives the count of each block
+     * @param numberOfBlocks the number of blocks
+     */
+    void blockCounts(long[] words, int fromWord, int wordsPerBlock, int[] counts, int numberOfBlocks);
+
+    /**
+     * Computes <code>result[i] = a[i] &amp; b[i]</code> for the first
+     * <code>length</code> words.
+     * 
+     * @param a      the first operand
+     * @param b      the second operand
+     * @param result receives the result
+     * @param length the number of words
+     */
+    void and(long[] a, long[] b, long[] result, int length);
+
+    /**
+     * Computes <code>result[i] = a[i] | b[i]</code> for the first
+     * <code>length</code> words.
+     * 
+     * @param a      the first operand
+     * @param b      the second operand
+     * @param result receives the result
+     * @param length the number of words
+     */
+    void or(long[] a, long[] b, long[] result, int length);
+
+    /**
+     * Computes <code>result[i] = a[i] ^ b[i]</code> for the first
+     * <code>length</code> words.
+     * 
+     * @param a      the first operand
+     * @param b      the second operand
+     * @param result receives the result
+     * @param length the number of words
+     */
+    void xor(long[] a, long[] b, long[] result, int length);
+
+    /**
+     * Computes <code>result[i] = a[i] &amp; ~b[i]</code> for the first
+     * <code>length</code> words.
+     * 
+     * @param a      the first operand
+     * @param b      the second operand
+     * @param result receives the result
+     * @param length the number of words
+     */
+    void andNot(long[] a, long[] b, long[] result, int length);
+}
@@ -3,6 +3,8 @@
  */
 package rank;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileInputStream;
@@ -10,12 +12,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.BitSet;
-
-import org.slf4j.profiler.Profiler;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
 
 import edu.berkeley.cs.succinct.util.vector.IntVector;
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import metrics.Metrics;
+import metrics.Operation;
+import segment.SegmentOptions;
+import segment.SegmentedFile;
 import sparsearray.SparseArray;
 
 /**
@@ -25,9 +36,26 @@ import sparsearray.SparseArray;
  * @author Valerie Wray
  *
  */
-public class RankSupport implements Serializable {
+public class RankSupport implements Serializable, MemoryAccountable {
     private static final long serialVersionUID = 1L;
-    private BitSet bitVector;
+    private static final int PRECOMPUTE_BATCH_SIZE = 4096;
+    /**
+     * Ranges up to this many bits are popcounted directly by countOnes and the
+     * batch rank1.
+     */
+    private static final int DIRECT_COUNT_BITS = 256;
+    /** The segment kinds used by {@link #saveSegmented(String, SegmentOptions)}. */
+    public static final int METADATA_SEGMENT = 1;
+    public static final int WORDS_SEGMENT = 2;
+    public static final int DIRECTORY_SEGMENT = 3;
+    /**
+     * The fields in the serialized form, which holds the bit-vector as a
+     * {@link BitSet} so that files saved before the words were kept still load.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("bitVector", BitSet.class), new ObjectStreamField("bitVectorLength", int.class),
+            new ObjectStreamField("chunkSize", int.class), new ObjectStreamField("numberOfChunks", int.class),
+            new ObjectStreamField("subchunkSize", int.class), new ObjectStreamField("numberOfSubchunks", int.class) };
     private int bitVectorLength;
     private int chunkSize;
     private int numberOfChunks;
@@ -35,146 +63,719 @@ public class RankSupport implements Serializable {
     private int subchunkSize;
     private int numberOfSubchunks;
     private transient IntVector subchunkCumulativeRanks;
+    /** The words of the bit-vector, padded to its length, which are its only copy. */
+    private transient long[] words;
+    private transient int totalOnes;
+    private transient int chunkShift;
+    private transient int subchunkShift;
+    // lazy directory state: whether every chunk is built, and which chunks are
+    private transient volatile boolean directoryComplete;
+    private transient AtomicLongArray builtChunks;
+    private transient boolean chunkRanksBuilt;
+    private transient int unbuiltChunks;
 
     /**
-     * Creates a new RankSupport from the bit vector and the length.
+     * Creates a new RankSupport from the bit vector and the length, with the
+     * {@link RankSupportConfig#DEFAULT default} chunk and subchunk sizes.
      * 
      * @param bitVector       the {@link BitSet}
      * @param bitVectorLength the length of the {@link BitSet}
      */
     public RankSupport(BitSet bitVector, int bitVectorLength) {
-        this.bitVector = bitVector;
+        this(bitVector, bitVectorLength, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new RankSupport from the bit vector and the length, with the chunk
+     * and subchunk sizes chosen by the specified configuration.
+     * 
+     * @param bitVector       the {@link BitSet}
+     * @param bitVectorLength the length of the {@link BitSet}
+     * @param config          the {@link RankSupportConfig}
+     */
+    public RankSupport(BitSet bitVector, int bitVectorLength, RankSupportConfig config) {
+        this(bitVector.toLongArray(), bitVectorLength, config);
+    }
+
+    /**
+     * Creates a new RankSupport over the words of a bit-vector, with the chunk and
+     * subchunk sizes chosen by the specified configuration. The words are kept
+     * without a copy if they match the length of the bit-vector, and any bits set
+     * past its end are cleared.
+     * 
+     * @param words           the words of the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     */
+    protected RankSupport(long[] words, int bitVectorLength, RankSupportConfig config) {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
         this.bitVectorLength = bitVectorLength;
-        int logValue = (int) (Math.log(bitVectorLength) / Math.log(2));
-        chunkSize = (int) Math.ceil(Math.pow(logValue, 2));
+        initializeWords(words);
+
+        RankSupportConfig blockSizes = config.resolve(this.words, bitVectorLength);
+        chunkSize = blockSizes.getChunkSize();
         numberOfChunks = (int) Math.ceil((double) bitVectorLength / (double) chunkSize);
 
-        subchunkSize = logValue / 2;
+        subchunkSize = blockSizes.getSubchunkSize();
+        numberOfSubchunks = (int) Math.ceil((double) chunkSize / (double) subchunkSize);
+        initializeShifts();
+
+        if (config.isLazy()) {
+            initializeLazyCumulativeRanks();
+        } else {
+            initializeCumulativeRanks();
+            precomputeCumulativeRanks();
+            directoryComplete = true;
+        }
+        if (recording) {
+            Metrics.record(Operation.BUILD, start);
+        }
+    }
+
+    /**
+     * Creates a RankSupport from the segments of a {@link SegmentedFile} written
+     * by {@link #addSegments(SegmentedFile.Writer)}, reading the words and the
+     * rank directory instead of recomputing the directory.
+     * 
+     * @param file the SegmentedFile
+     * @throws IOException if the segments are not able to be read
+     */
+    protected RankSupport(SegmentedFile file) throws IOException {
+        int[] metadata = file.readInts(METADATA_SEGMENT);
+        bitVectorLength = metadata[0];
+        chunkSize = metadata[1];
+        subchunkSize = metadata[2];
+        numberOfChunks = (int) Math.ceil((double) bitVectorLength / (double) chunkSize);
+        numberOfSubchunks = (int) Math.ceil((double) chunkSize / (double) subchunkSize);
+        initializeWords(file.readLongs(WORDS_SEGMENT));
+        initializeShifts();
+        DataInputStream directory = new DataInputStream(
+                new ByteArrayInputStream(file.readBytes(DIRECTORY_SEGMENT)));
+        cumulativeRanks = IntVector.readFromStream(directory);
+        subchunkCumulativeRanks = IntVector.readFromStream(directory);
+        directoryComplete = true;
+    }
+
+    /**
+     * Creates a RankSupport from sorted positions of the ones. The words are
+     * written from the positions and the rank directory is filled by counting the
+     * positions in each chunk and subchunk, without a pass over the bits. The
+     * directory is cheap to fill this way, so it is built eagerly even for a lazy
+     * configuration.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    protected RankSupport(int[] sortedPositions, int bitVectorLength, RankSupportConfig config) {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        this.bitVectorLength = bitVectorLength;
+        words = wordsOf(sortedPositions, bitVectorLength);
+        totalOnes = sortedPositions.length;
+
+        RankSupportConfig blockSizes = config.resolve(words, bitVectorLength);
+        chunkSize = blockSizes.getChunkSize();
+        numberOfChunks = (int) Math.ceil((double) bitVectorLength / (double) chunkSize);
+        subchunkSize = blockSizes.getSubchunkSize();
         numberOfSubchunks = (int) Math.ceil((double) chunkSize / (double) subchunkSize);
+        initializeShifts();
 
-        initializeCumulativeRanks();
-        precomputeCumulativeRanks();
+        precomputeCumulativeRanks(sortedPositions);
+        directoryComplete = true;
+        if (recording) {
+            Metrics.record(Operation.BUILD, start);
+        }
+    }
+
+    /**
+     * Creates a new RankSupport from sorted positions of the ones, with the
+     * {@link RankSupportConfig#DEFAULT default} chunk and subchunk sizes. This
+     * avoids setting the bits of a {@link BitSet} one by one and counting them
+     * again to build the rank directory. For a bit-vector whose density varies,
+     * {@code HybridBitVector.fromSortedPositions} chooses an encoding per block
+     * instead.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the RankSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static RankSupport fromSortedPositions(int[] sortedPositions, int bitVectorLength) {
+        return new RankSupport(sortedPositions, bitVectorLength, RankSupportConfig.DEFAULT);
     }
 
     /**
-     * Takes a first pass through the bit-vector to determine the minimum bit
-     * lengths needed for the rank supporting data structures to store the
-     * precomputed ranks.
+     * Creates a new RankSupport from sorted positions of the ones, with the chunk
+     * and subchunk sizes chosen by the specified configuration.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @return the RankSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static RankSupport fromSortedPositions(int[] sortedPositions, int bitVectorLength,
+            RankSupportConfig config) {
+        return new RankSupport(sortedPositions, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a new RankSupport from sorted long positions of the ones.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the RankSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static RankSupport fromSortedPositions(long[] sortedPositions, int bitVectorLength) {
+        return new RankSupport(toIntPositions(sortedPositions, bitVectorLength), bitVectorLength,
+                RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new RankSupport from a stream of the positions of the ones in
+     * increasing order.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the RankSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static RankSupport fromSortedPositions(IntStream sortedPositions, int bitVectorLength) {
+        return new RankSupport(sortedPositions.toArray(), bitVectorLength, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new RankSupport over the words of a bit-vector, which are kept
+     * without a copy if they match its length, instead of copying them out of a
+     * {@link BitSet}.
+     * 
+     * @param words           the words of the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @return the RankSupport
+     */
+    public static RankSupport fromWords(long[] words, int bitVectorLength, RankSupportConfig config) {
+        return new RankSupport(words, bitVectorLength, config);
+    }
+
+    /**
+     * Narrows long positions to ints, checking that they fit in the bit-vector.
+     * 
+     * @param sortedPositions the positions
+     * @param bitVectorLength the length of the bit-vector
+     * @return the positions as ints
+     * @throws IllegalArgumentException if a position is not in the bit-vector
+     */
+    public static int[] toIntPositions(long[] sortedPositions, int bitVectorLength) {
+        int[] positions = new int[sortedPositions.length];
+        for (int i = 0; i < positions.length; i++) {
+            if (sortedPositions[i] < 0 || sortedPositions[i] >= bitVectorLength) {
+                throw new IllegalArgumentException(
+                        "Position " + sortedPositions[i] + " is not in [0, " + bitVectorLength + ")");
+            }
+            positions[i] = (int) sortedPositions[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Sets the bits of sorted positions in words of the length of the bit-vector.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the words
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    private static long[] wordsOf(int[] sortedPositions, int bitVectorLength) {
+        long[] words = new long[(bitVectorLength + Long.SIZE - 1) / Long.SIZE];
+        int previous = -1;
+        for (int position : sortedPositions) {
+            if (position <= previous || position >= bitVectorLength) {
+                throw new IllegalArgumentException(
+                        "Position " + position + " is not in (" + previous + ", " + bitVectorLength + ")");
+            }
+            words[position >>> 6] |= 1L << position;
+            previous = position;
+        }
+        return words;
+    }
+
+    /**
+     * Keeps the words of the bit-vector, padded to its length, and counts its
+     * ones.
+     */
+    private void initializeWords(long[] bits) {
+        int length = (bitVectorLength + Long.SIZE - 1) / Long.SIZE;
+        words = bits.length == length ? bits : Arrays.copyOf(bits, length);
+        if (bitVectorLength % Long.SIZE != 0) {
+            // ignore any bits set past the end of the bit-vector
+            words[words.length - 1] &= -1L >>> -bitVectorLength;
+        }
+        totalOnes = Popcount.engine().countWords(words, 0, words.length);
+    }
+
+    /**
+     * Sets the shifts which replace division when both block sizes are powers of
+     * two.
+     */
+    private void initializeShifts() {
+        boolean powersOfTwo = Integer.bitCount(chunkSize) == 1 && Integer.bitCount(subchunkSize) == 1;
+        chunkShift = powersOfTwo ? Integer.numberOfTrailingZeros(chunkSize) : -1;
+        subchunkShift = powersOfTwo ? Integer.numberOfTrailingZeros(subchunkSize) : -1;
+    }
+
+    /**
+     * Writes the serialized form, with the words as a {@link BitSet}.
+     * 
+     * @param objectOutputStream the output stream to write to
+     * @throws IOException if the stream is not able to be written
+     */
+    private void writeObject(ObjectOutputStream objectOutputStream) throws IOException {
+        ObjectOutputStream.PutField fields = objectOutputStream.putFields();
+        fields.put("bitVector", BitSet.valueOf(words));
+        fields.put("bitVectorLength", bitVectorLength);
+        fields.put("chunkSize", chunkSize);
+        fields.put("numberOfChunks", numberOfChunks);
+        fields.put("subchunkSize", subchunkSize);
+        fields.put("numberOfSubchunks", numberOfSubchunks);
+        objectOutputStream.writeFields();
+    }
+
+    /**
+     * Restores the words and shifts after deserialization.
+     * 
+     * @param objectInputStream the input stream to read from
+     * @throws IOException            if the stream is not able to be read
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = objectInputStream.readFields();
+        bitVectorLength = fields.get("bitVectorLength", 0);
+        chunkSize = fields.get("chunkSize", 0);
+        numberOfChunks = fields.get("numberOfChunks", 0);
+        subchunkSize = fields.get("subchunkSize", 0);
+        numberOfSubchunks = fields.get("numberOfSubchunks", 0);
+        initializeWords(((BitSet) fields.get("bitVector", null)).toLongArray());
+        initializeShifts();
+        // the directory is saved complete and read back separately
+        directoryComplete = true;
+    }
+
+    /**
+     * Takes a first pass through the bit-vector, one popcount per chunk, to
+     * determine the minimum bit lengths needed for the rank supporting data
+     * structures to store the precomputed ranks.
      */
     private void initializeCumulativeRanks() {
         int maxCumulativeRank = 0;
         int maxSubchunkCumulativeRank = 0;
         int cumulativeRank = 0;
-        int subchunkCumulativeRank = 0;
-        int modChunkSize = 0;
-        for (int i = 0; i < bitVectorLength; i++) {
-            modChunkSize = i % chunkSize;
-            if (modChunkSize % subchunkSize == 0) {
-                if (modChunkSize == 0) {
-                    if (subchunkCumulativeRank > maxSubchunkCumulativeRank) {
-                        maxSubchunkCumulativeRank = subchunkCumulativeRank;
-                    }
-                    // reset subchunk cumulative rank
-                    subchunkCumulativeRank = 0;
+        for (int chunkStart = 0; chunkStart < bitVectorLength; chunkStart += chunkSize) {
+            maxCumulativeRank = cumulativeRank;
+            int chunkRank = Popcount.countOnes(words, chunkStart, Math.min(chunkStart + chunkSize, bitVectorLength));
+            maxSubchunkCumulativeRank = Math.max(maxSubchunkCumulativeRank, chunkRank);
+            cumulativeRank += chunkRank;
+        }
 
-                    if (cumulativeRank > maxCumulativeRank) {
-                        maxCumulativeRank = cumulativeRank;
-                    }
-                }
+        cumulativeRanks = new IntVector(numberOfChunks, bitLength(maxCumulativeRank));
+
+        subchunkCumulativeRanks = new IntVector(numberOfSubchunkEntries(),
+                // numberOfChunks * numberOfSubchunks,
+                bitLength(maxSubchunkCumulativeRank));
+
+    }
+
+    /**
+     * Allocates the rank directory without filling it in. The widths are bounded
+     * by the total number of ones and the chunk size, which avoids a pass over
+     * the bit-vector before the first query.
+     */
+    private void initializeLazyCumulativeRanks() {
+        cumulativeRanks = new IntVector(numberOfChunks, bitLength(totalOnes));
+        subchunkCumulativeRanks = new IntVector(numberOfSubchunkEntries(),
+                bitLength(Math.min(chunkSize, bitVectorLength)));
+        builtChunks = new AtomicLongArray((numberOfChunks + Long.SIZE - 1) / Long.SIZE);
+        unbuiltChunks = numberOfChunks;
+        directoryComplete = numberOfChunks == 0;
+    }
+
+    /**
+     * Builds the directory entries of a chunk, if they are not built yet. The
+     * entries are written under a lock, since neighbouring entries share words
+     * of the {@link IntVector}, and the chunk is then marked built with a volatile
+     * write, which publishes the entries to readers that see the mark.
+     * 
+     * @param chunk the chunk number
+     */
+    private void ensureChunkBuilt(int chunk) {
+        long mask = 1L << chunk;
+        if ((builtChunks.get(chunk >>> 6) & mask) != 0) {
+            return;
+        }
+        synchronized (builtChunks) {
+            if ((builtChunks.get(chunk >>> 6) & mask) != 0) {
+                return;
+            }
+            if (!chunkRanksBuilt) {
+                buildChunkRanks();
             }
-            if (bitVector.get(i)) {
-                // increment cumulative ranks if bit vector entry is set
-                subchunkCumulativeRank++;
-                cumulativeRank++;
+            buildSubchunkRanks(chunk);
+            builtChunks.set(chunk >>> 6, builtChunks.get(chunk >>> 6) | mask);
+            if (--unbuiltChunks == 0) {
+                // from now on queries skip the check, as with an eager directory
+                directoryComplete = true;
             }
         }
+    }
+
+    /**
+     * Computes the cumulative rank of every chunk, with one popcount per chunk.
+     */
+    private void buildChunkRanks() {
+        int cumulativeRank = 0;
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            cumulativeRanks.add(chunk, cumulativeRank);
+            int chunkStart = chunk * chunkSize;
+            cumulativeRank += Popcount.countOnes(words, chunkStart, Math.min(chunkStart + chunkSize, bitVectorLength));
+        }
+        chunkRanksBuilt = true;
+    }
 
-        if (maxCumulativeRank == 0) {
-            maxCumulativeRank++;
+    /**
+     * Computes the subchunk cumulative ranks of one chunk, with one popcount per
+     * subchunk.
+     */
+    private void buildSubchunkRanks(int chunk) {
+        int chunkStart = chunk * chunkSize;
+        int chunkEnd = Math.min(chunkStart + chunkSize, bitVectorLength);
+        int subchunkIndex = chunk * numberOfSubchunks;
+        int subchunkCumulativeRank = 0;
+        for (int subchunkStart = chunkStart; subchunkStart < chunkEnd; subchunkStart += subchunkSize) {
+            subchunkCumulativeRanks.add(subchunkIndex++, subchunkCumulativeRank);
+            subchunkCumulativeRank += Popcount.countOnes(words, subchunkStart,
+                    Math.min(subchunkStart + subchunkSize, chunkEnd));
         }
+    }
 
-        if (maxSubchunkCumulativeRank == 0) {
-            maxSubchunkCumulativeRank++;
+    /**
+     * Builds the directory entries of every chunk not built yet. Does nothing for
+     * an eagerly built directory.
+     */
+    public void completeDirectory() {
+        for (int chunk = 0; !directoryComplete && chunk < numberOfChunks; chunk++) {
+            ensureChunkBuilt(chunk);
         }
+    }
 
-        cumulativeRanks = new IntVector(numberOfChunks, (int) Math.ceil(Math.log(maxCumulativeRank) / Math.log(2)));
+    /**
+     * Checks whether every entry of the rank directory has been built.
+     * 
+     * @return true if the rank directory is complete
+     */
+    public boolean isDirectoryComplete() {
+        return directoryComplete;
+    }
 
-        subchunkCumulativeRanks = new IntVector(
-                (numberOfChunks - 1) * numberOfSubchunks
-                        + (bitVectorLength % chunkSize == 0 ? numberOfSubchunks : bitVectorLength % chunkSize),
-                // numberOfChunks * numberOfSubchunks,
-                (int) Math.ceil(Math.log(maxSubchunkCumulativeRank) / Math.log(2)));
+    /**
+     * Gets the number of bits needed to store values up to the specified maximum,
+     * and at least one.
+     * 
+     * @param maxValue the maximum value
+     * @return the number of bits
+     */
+    private static int bitLength(int maxValue) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxValue));
+    }
 
+    /**
+     * Gets the number of entries allocated in the subchunk cumulative ranks.
+     * 
+     * @return the number of subchunk entries
+     */
+    private int numberOfSubchunkEntries() {
+        if (numberOfChunks == 0) {
+            return 0;
+        }
+        return (numberOfChunks - 1) * numberOfSubchunks
+                + (bitVectorLength % chunkSize == 0 ? numberOfSubchunks : bitVectorLength % chunkSize);
     }
 
     /**
-     * Precomputes the cumulative ranks of each chunk and subchunk.
+     * Precomputes the cumulative ranks of each chunk and subchunk, with one
+     * popcount per subchunk.
      */
     protected void precomputeCumulativeRanks() {
+        if (subchunkSize % Long.SIZE == 0 && chunkSize % subchunkSize == 0) {
+            precomputeWordAlignedCumulativeRanks();
+            return;
+        }
         int cumulativeRank = 0;
-        int subchunkCumulativeRank = 0;
-        int modChunkSize = 0;
         int subchunkIndex = 0;
-        for (int i = 0; i < bitVectorLength; i++) {
-            modChunkSize = i % chunkSize;
-            if (modChunkSize % subchunkSize == 0) {
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            int chunkStart = chunk * chunkSize;
+            int chunkEnd = Math.min(chunkStart + chunkSize, bitVectorLength);
+            // compute cumulative rank
+            cumulativeRanks.add(chunk, cumulativeRank);
+            int subchunkCumulativeRank = 0;
+            for (int subchunkStart = chunkStart; subchunkStart < chunkEnd; subchunkStart += subchunkSize) {
                 // compute subchunk cumulative rank
-                subchunkCumulativeRanks.add(subchunkIndex, modChunkSize == 0 ? 0 : subchunkCumulativeRank);
+                subchunkCumulativeRanks.add(subchunkIndex, subchunkCumulativeRank);
                 subchunkIndex++;
-                if (modChunkSize == 0) {
-                    // reset subchunk cumulative rank
-                    subchunkCumulativeRank = 0;
+                subchunkCumulativeRank += Popcount.countOnes(words, subchunkStart,
+                        Math.min(subchunkStart + subchunkSize, chunkEnd));
+            }
+            cumulativeRank += subchunkCumulativeRank;
+        }
+    }
 
-                    // compute cumulative rank
-                    cumulativeRanks.add(i / chunkSize, cumulativeRank);
+    /**
+     * Allocates and fills the rank directory from sorted positions of the ones,
+     * by walking the positions once to size the entries and once more to fill
+     * them.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     */
+    private void precomputeCumulativeRanks(int[] sortedPositions) {
+        int maxCumulativeRank = 0;
+        int maxChunkRank = 0;
+        int i = 0;
+        for (int chunkStart = 0; chunkStart < bitVectorLength; chunkStart += chunkSize) {
+            maxCumulativeRank = i;
+            int chunkEnd = Math.min(chunkStart + chunkSize, bitVectorLength);
+            int first = i;
+            while (i < sortedPositions.length && sortedPositions[i] < chunkEnd) {
+                i++;
+            }
+            maxChunkRank = Math.max(maxChunkRank, i - first);
+        }
+        cumulativeRanks = new IntVector(numberOfChunks, bitLength(maxCumulativeRank));
+        subchunkCumulativeRanks = new IntVector(numberOfSubchunkEntries(), bitLength(maxChunkRank));
+
+        i = 0;
+        int subchunkIndex = 0;
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            int chunkStart = chunk * chunkSize;
+            int chunkEnd = Math.min(chunkStart + chunkSize, bitVectorLength);
+            int cumulativeRank = i;
+            cumulativeRanks.add(chunk, cumulativeRank);
+            for (int subchunkStart = chunkStart; subchunkStart < chunkEnd; subchunkStart += subchunkSize) {
+                while (i < sortedPositions.length && sortedPositions[i] < subchunkStart) {
+                    i++;
                 }
+                subchunkCumulativeRanks.add(subchunkIndex++, i - cumulativeRank);
             }
-            if (bitVector.get(i)) {
-                // increment cumulative ranks if bit vector entry is set
-                subchunkCumulativeRank++;
-                cumulativeRank++;
+            while (i < sortedPositions.length && sortedPositions[i] < chunkEnd) {
+                i++;
             }
         }
     }
 
     /**
-     * Computes the rank 1 of this bit vector at position i in constant time.
+     * Precomputes the cumulative ranks when subchunks are whole words and chunks
+     * are whole subchunks. The subchunk popcounts are then computed in batches by
+     * the {@link PopcountEngine} and prefix-summed into the directory.
+     */
+    private void precomputeWordAlignedCumulativeRanks() {
+        PopcountEngine engine = Popcount.engine();
+        int wordsPerSubchunk = subchunkSize / Long.SIZE;
+        int totalSubchunks = (bitVectorLength + subchunkSize - 1) / subchunkSize;
+        int[] subchunkRanks = new int[Math.min(totalSubchunks, PRECOMPUTE_BATCH_SIZE)];
+        int cumulativeRank = 0;
+        int subchunkCumulativeRank = 0;
+        for (int batchStart = 0; batchStart < totalSubchunks; batchStart += subchunkRanks.length) {
+            int batchSize = Math.min(subchunkRanks.length, totalSubchunks - batchStart);
+            engine.blockCounts(words, batchStart * wordsPerSubchunk, wordsPerSubchunk, subchunkRanks, batchSize);
+            for (int j = 0; j < batchSize; j++) {
+                int subchunk = batchStart + j;
+                if (subchunk % numberOfSubchunks == 0) {
+                    // compute cumulative rank and reset subchunk cumulative rank
+                    cumulativeRanks.add(subchunk / numberOfSubchunks, cumulativeRank);
+                    subchunkCumulativeRank = 0;
+                }
+                subchunkCumulativeRanks.add(subchunk, subchunkCumulativeRank);
+                subchunkCumulativeRank += subchunkRanks[j];
+                cumulativeRank += subchunkRanks[j];
+            }
+        }
+    }
+
+    /**
+     * Computes the rank 1 of this bit vector at position i in constant time. The
+     * position may be the length of the bit vector, giving the total number of
+     * ones.
      * 
      * @param i the position of which to compute the rank
      * @return the rank
      */
     public int rank1(int i) {
-        // find what chunk it is in
-        int chunkNumber = i / chunkSize;
+        if (!Metrics.isEnabled()) {
+            return computeRank1(i);
+        }
+        long start = System.nanoTime();
+        int rank = computeRank1(i);
+        Metrics.record(Operation.RANK1, start);
+        return rank;
+    }
+
+    /**
+     * Computes the rank 1 of this bit vector at position i without recording
+     * metrics. Used by operations built on top of rank, such as select or a
+     * sparse array lookup, so that only the outer operation is recorded.
+     * 
+     * @param i the position of which to compute the rank
+     * @return the rank
+     */
+    public int computeRank1(int i) {
+        if (i >= bitVectorLength) {
+            // past the last chunk, which has no directory entry
+            return totalOnes;
+        }
+        int chunkNumber;
+        int subchunkNumber;
+        int subchunkStart;
+        if (chunkShift >= 0) {
+            // power of two block sizes, so shift and mask instead of dividing
+            chunkNumber = i >>> chunkShift;
+            subchunkNumber = (i & (chunkSize - 1)) >>> subchunkShift;
+            subchunkStart = i & -subchunkSize;
+        } else {
+            // find what chunk it is in
+            chunkNumber = i / chunkSize;
+            int offsetInChunk = i - chunkNumber * chunkSize;
+            subchunkNumber = offsetInChunk / subchunkSize;
+            subchunkStart = i - offsetInChunk % subchunkSize;
+        }
+        if (!directoryComplete) {
+            ensureChunkBuilt(chunkNumber);
+        }
         // look up cumulative rank
         int cumulativeRank = cumulativeRanks.get(chunkNumber);
         // find cumulative rank in subchunk
-        int subchunkNumber = (i % chunkSize) / subchunkSize;
         int subchunkCumulativeRank = subchunkCumulativeRanks.get(chunkNumber * numberOfSubchunks + subchunkNumber);
 
-        // slice and then call cardinality which uses popcount to find relative rank
-        // within subchunk
-        int relativeSubchunkRank = bitVector.get(i - ((i % chunkSize) % subchunkSize), i).cardinality();
+        // popcount the words of the subchunk up to i to find relative rank within
+        // subchunk
+        int relativeSubchunkRank = Popcount.countOnes(words, subchunkStart, i);
         // add results
         return cumulativeRank + subchunkCumulativeRank + relativeSubchunkRank;
     }
 
+    /**
+     * Computes the rank 1 of many sorted positions at once, writing
+     * rank1(sortedPositions[q]) to out[q]. A position at most
+     * {@link #DIRECT_COUNT_BITS} after the one before it adds the ones between
+     * them to that rank instead of probing the directory again, so nearby
+     * positions cost a few popcounts each.
+     * 
+     * @param sortedPositions the positions, in non-decreasing order
+     * @param out             the array to write the ranks to, at least as long as
+     *                        sortedPositions
+     * @throws IllegalArgumentException if the positions are not sorted or out is
+     *                                  too short
+     */
+    public void rank1(int[] sortedPositions, int[] out) {
+        if (!Metrics.isEnabled()) {
+            computeRank1(sortedPositions, out);
+            return;
+        }
+        long start = System.nanoTime();
+        computeRank1(sortedPositions, out);
+        Metrics.record(Operation.RANK1, start);
+    }
+
+    /**
+     * Computes the rank 1 of each of the sorted positions without recording
+     * metrics.
+     * 
+     * @param sortedPositions the positions, in non-decreasing order
+     * @param out             the array to write the ranks to
+     * @throws IllegalArgumentException if the positions are not sorted or out is
+     *                                  too short
+     */
+    public void computeRank1(int[] sortedPositions, int[] out) {
+        if (out.length < sortedPositions.length) {
+            throw new IllegalArgumentException("Output array of length " + out.length + " is shorter than "
+                    + sortedPositions.length + " positions");
+        }
+        int previous = Integer.MIN_VALUE;
+        int previousRank = 0;
+        for (int q = 0; q < sortedPositions.length; q++) {
+            int i = sortedPositions[q];
+            if (i < previous) {
+                throw new IllegalArgumentException("Positions are not sorted: " + previous + " before " + i);
+            }
+            out[q] = previous >= 0 && i - previous <= DIRECT_COUNT_BITS && i <= bitVectorLength
+                    ? previousRank + Popcount.countOnes(words, previous, i)
+                    : computeRank1(i);
+            previous = i;
+            previousRank = out[q];
+        }
+    }
+
+    /**
+     * Counts the ones in positions [from, to). When both ends fall in the same
+     * subchunk, or the range spans only a few words, the words between them are
+     * popcounted directly; otherwise the count is the difference of two ranks.
+     * 
+     * @param from the first position, inclusive
+     * @param to   the last position, exclusive
+     * @return the number of ones in [from, to)
+     * @throws IndexOutOfBoundsException if from is negative, to is past the
+     *                                   length, or from is after to
+     */
+    public int countOnes(int from, int to) {
+        if (!Metrics.isEnabled()) {
+            return computeCountOnes(from, to);
+        }
+        long start = System.nanoTime();
+        int count = computeCountOnes(from, to);
+        Metrics.record(Operation.COUNT_ONES, start);
+        return count;
+    }
+
+    private int computeCountOnes(int from, int to) {
+        if (from < 0 || to > bitVectorLength || from > to) {
+            throw new IndexOutOfBoundsException(
+                    "Range [" + from + ", " + to + ") is outside length " + bitVectorLength);
+        }
+        int subchunkStart = chunkShift >= 0 ? from & -subchunkSize : from - from % chunkSize % subchunkSize;
+        if (to - subchunkStart <= subchunkSize || to - from <= DIRECT_COUNT_BITS) {
+            return Popcount.countOnes(words, from, to);
+        }
+        return computeRank1(to) - computeRank1(from);
+    }
+
+    /**
+     * Gets the total number of ones, counted when the RankSupport was built.
+     * 
+     * @return the number of ones
+     */
+    public int totalOnes() {
+        return totalOnes;
+    }
+
     /**
      * Computes the rank 1 of this bit vector at position i in constant time and
      * returns the time elapsed.
      * 
      * @param i the position of which to compute the rank
-     * @return the rank
+     * @return the time elapsed in nanoseconds
      */
     public long rank1GetTime(int i) {
-        Profiler myProfiler = new Profiler("RankSupportProfiler");
-        myProfiler.start("Timing rank1 of " + i);
-
-        rank1(i);
-
-        myProfiler.stop();
-        return myProfiler.elapsedTime();
-
+        long start = System.nanoTime();
+        computeRank1(i);
+        return System.nanoTime() - start;
     }
 
     /**
@@ -192,11 +793,32 @@ public class RankSupport implements Serializable {
      * </ul>
      * 
      * @return the number of bits as a long
+     * @see #memoryFootprint()
      */
     public long overhead() {
+        completeDirectory();
         return cumulativeRanks.serializedSize() * 8 + subchunkCumulativeRanks.serializedSize() * 8 + 32 * 5;
     }
 
+    /**
+     * Computes the heap memory used by this RankSupport, including the object
+     * headers and alignment of the bit-vector and the rank directory.
+     * 
+     * @return the {@link MemoryFootprint}
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        // a lazy directory also keeps a bitmap of the chunks built so far
+        long builtChunksBytes = builtChunks == null ? 0
+                : MemoryLayout.object(0, 1) + MemoryLayout.array(builtChunks.length(), Long.BYTES);
+        return new MemoryFootprint()
+                .add(MemoryFootprint.OBJECT, MemoryLayout.object(9 * Integer.BYTES + 2, 5))
+                .add(MemoryFootprint.DATA_WORDS, MemoryLayout.array(words.length, Long.BYTES))
+                .add(MemoryFootprint.RANK_DIRECTORY, MemoryLayout.intVector(cumulativeRanks, numberOfChunks)
+                        + MemoryLayout.intVector(subchunkCumulativeRanks, numberOfSubchunkEntries())
+                        + builtChunksBytes);
+    }
+
     /**
      * Saves this RankSupport to a file with the specified file name.
      * 
@@ -204,13 +826,19 @@ public class RankSupport implements Serializable {
      * @throws IOException if the file is not able to be saved
      */
     public void save(String filename) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
         DataOutputStream dataOutputStream = new DataOutputStream(objectOutputStream);
+        completeDirectory();
         objectOutputStream.writeObject(this);
         // IntVector is not serializeable, so we serialize separately
         cumulativeRanks.writeToStream(dataOutputStream);
         subchunkCumulativeRanks.writeToStream(dataOutputStream);
         objectOutputStream.close();
+        if (recording) {
+            Metrics.record(Operation.SAVE, start);
+        }
     }
 
     /**
@@ -221,6 +849,7 @@ public class RankSupport implements Serializable {
      * @throws IOException if the file is not able to be saved
      */
     public void save(ObjectOutputStream objectOutputStream) throws IOException {
+        completeDirectory();
         DataOutputStream dataOutputStream = new DataOutputStream(objectOutputStream);
         objectOutputStream.writeObject(this);
         cumulativeRanks.writeToStream(dataOutputStream);
@@ -237,6 +866,8 @@ public class RankSupport implements Serializable {
      *                                deserialization
      */
     public static RankSupport load(String filename) throws IOException, ClassNotFoundException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
         ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
         DataInputStream dataInputStream = new DataInputStream(objectInputStream);
         RankSupport rankSupport = (RankSupport) objectInputStream.readObject();
@@ -244,6 +875,9 @@ public class RankSupport implements Serializable {
         rankSupport.setCumulativeRanks(IntVector.readFromStream(dataInputStream));
         rankSupport.setSubchunkCumulativeRanks(IntVector.readFromStream(dataInputStream));
         objectInputStream.close();
+        if (recording) {
+            Metrics.record(Operation.LOAD, start);
+        }
         return rankSupport;
     }
 
@@ -265,6 +899,66 @@ public class RankSupport implements Serializable {
         return rankSupport;
     }
 
+    /**
+     * Adds the metadata, words and rank directory of this RankSupport to a
+     * {@link SegmentedFile} as separate segments.
+     * 
+     * @param writer the {@link SegmentedFile.Writer}
+     * @throws IOException if the rank directory is not able to be encoded
+     */
+    public void addSegments(SegmentedFile.Writer writer) throws IOException {
+        completeDirectory();
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        DataOutputStream dataOutputStream = new DataOutputStream(directory);
+        cumulativeRanks.writeToStream(dataOutputStream);
+        subchunkCumulativeRanks.writeToStream(dataOutputStream);
+        dataOutputStream.flush();
+        writer.addInts(METADATA_SEGMENT, new int[] { bitVectorLength, chunkSize, subchunkSize })
+                .addLongs(WORDS_SEGMENT, words).addBytes(DIRECTORY_SEGMENT, directory.toByteArray());
+    }
+
+    /**
+     * Saves this RankSupport to a {@link SegmentedFile}, writing the words and the
+     * rank directory as checksummed segments in parallel.
+     * 
+     * @param filename the file name of the file to save
+     * @param options  the {@link SegmentOptions}
+     * @throws IOException if the file is not able to be saved
+     */
+    public void saveSegmented(String filename, SegmentOptions options) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        SegmentedFile.Writer writer = SegmentedFile.writer(options);
+        addSegments(writer);
+        writer.write(filename);
+        if (recording) {
+            Metrics.record(Operation.SAVE, start);
+        }
+    }
+
+    /**
+     * Loads a RankSupport saved by {@link #saveSegmented(String, SegmentOptions)},
+     * reading the segments in parallel.
+     * 
+     * @param filename the file name of the file to load
+     * @param options  the {@link SegmentOptions}
+     * @return the RankSupport
+     * @throws IOException if the file is not able to be loaded, or a checksum does
+     *                     not match
+     */
+    public static RankSupport loadSegmented(String filename, SegmentOptions options) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        RankSupport rankSupport;
+        try (SegmentedFile file = SegmentedFile.open(filename, options)) {
+            rankSupport = new RankSupport(file);
+        }
+        if (recording) {
+            Metrics.record(Operation.LOAD, start);
+        }
+        return rankSupport;
+    }
+
     /**
      * Saves this bit vector to a file with the specified file name.
      * 
@@ -273,7 +967,7 @@ public class RankSupport implements Serializable {
      */
     public void saveBitVector(String filename) throws IOException {
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
-        objectOutputStream.writeObject(bitVector);
+        objectOutputStream.writeObject(BitSet.valueOf(words));
         objectOutputStream.close();
     }
 
@@ -293,20 +987,138 @@ public class RankSupport implements Serializable {
         return bitSet;
     }
 
+    /**
+     * Gets the bit at the specified index of the bit vector.
+     * 
+     * @param index the index in the bit vector
+     * @return true if the bit is set
+     */
     public boolean access(int index) {
-        return bitVector.get(index);
+        if (!Metrics.isEnabled()) {
+            return computeAccess(index);
+        }
+        long start = System.nanoTime();
+        boolean bit = computeAccess(index);
+        Metrics.record(Operation.ACCESS, start);
+        return bit;
+    }
+
+    /**
+     * Gets the bit at the specified index of the bit vector, without recording
+     * {@link Metrics}.
+     * 
+     * @param index the index in the bit vector
+     * @return true if the bit is set, and false past the end of the bit vector
+     * @throws IndexOutOfBoundsException if the index is negative
+     */
+    public boolean computeAccess(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index < 0: " + index);
+        }
+        return index < bitVectorLength && (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Computes the bitwise AND of this bit-vector and another one, word by word,
+     * and builds a RankSupport over the result with this RankSupport's block
+     * sizes.
+     * 
+     * @param other the other RankSupport
+     * @return the RankSupport of the intersection
+     */
+    public RankSupport and(RankSupport other) {
+        long[][] operands = operands(other);
+        Popcount.engine().and(operands[0], operands[1], operands[2], operands[2].length);
+        return withBlockSizes(operands[2], Math.max(bitVectorLength, other.bitVectorLength));
+    }
+
+    /**
+     * Computes the bitwise OR of this bit-vector and another one, word by word,
+     * and builds a RankSupport over the result with this RankSupport's block
+     * sizes.
+     * 
+     * @param other the other RankSupport
+     * @return the RankSupport of the union
+     */
+    public RankSupport or(RankSupport other) {
+        long[][] operands = operands(other);
+        Popcount.engine().or(operands[0], operands[1], operands[2], operands[2].length);
+        return withBlockSizes(operands[2], Math.max(bitVectorLength, other.bitVectorLength));
+    }
+
+    /**
+     * Computes the bitwise XOR of this bit-vector and another one, word by word,
+     * and builds a RankSupport over the result with this RankSupport's block
+     * sizes.
+     * 
+     * @param other the other RankSupport
+     * @return the RankSupport of the symmetric difference
+     */
+    public RankSupport xor(RankSupport other) {
+        long[][] operands = operands(other);
+        Popcount.engine().xor(operands[0], operands[1], operands[2], operands[2].length);
+        return withBlockSizes(operands[2], Math.max(bitVectorLength, other.bitVectorLength));
+    }
+
+    /**
+     * Clears the bits of this bit-vector which are set in another one, word by
+     * word, and builds a RankSupport over the result with this RankSupport's block
+     * sizes.
+     * 
+     * @param other the other RankSupport
+     * @return the RankSupport of the difference
+     */
+    public RankSupport andNot(RankSupport other) {
+        long[][] operands = operands(other);
+        Popcount.engine().andNot(operands[0], operands[1], operands[2], operands[2].length);
+        return withBlockSizes(operands[2], Math.max(bitVectorLength, other.bitVectorLength));
+    }
+
+    /**
+     * Pads the words of this and another RankSupport to the same length.
+     * 
+     * @param other the other RankSupport
+     * @return this RankSupport's words, the other's words and an empty result
+     */
+    private long[][] operands(RankSupport other) {
+        int length = Math.max(words.length, other.words.length);
+        return new long[][] { Arrays.copyOf(words, length), Arrays.copyOf(other.words, length), new long[length] };
+    }
+
+    private RankSupport withBlockSizes(long[] resultWords, int resultLength) {
+        return new RankSupport(resultWords, resultLength,
+                RankSupportConfig.builder().blockSizes(chunkSize, subchunkSize).build());
     }
 
     public IntVector getCumulativeRanks() {
+        completeDirectory();
         return cumulativeRanks;
     }
 
     public IntVector getSubchunkCumulativeRanks() {
+        completeDirectory();
         return subchunkCumulativeRanks;
     }
 
+    /**
+     * Gets a copy of the bit-vector as a {@link BitSet}, built from the words on
+     * each call. {@link #access(int)} and {@link #getWords()} read the bits
+     * without a copy.
+     * 
+     * @return the bit-vector
+     */
     public BitSet getBitVector() {
-        return bitVector;
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Gets the words of the bit-vector used for popcounts. The array is not
+     * copied, so it must not be modified.
+     * 
+     * @return the words of the bit-vector
+     */
+    public long[] getWords() {
+        return words;
     }
 
     public int getBitVectorLength() {
@@ -0,0 +1,303 @@
+package rank;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Configures the chunk and subchunk sizes used by {@link RankSupport}, which
+ * trade the space of the rank directory against the time of
+ * {@link RankSupport#rank1(int)}. Create a configuration with {@link #builder()}
+ * or use one of the presets:
+ * <ul>
+ * <li>{@link #DEFAULT}: chunks of log<sup>2</sup>(n) bits and subchunks of
+ * log(n)/2 bits</li>
+ * <li>{@link #WORD_ALIGNED}: chunks of 512 bits and subchunks of 64 bits, so
+ * rank only needs a single word popcount</li>
+ * </ul>
+ * A space budget picks the fastest word-aligned layout whose rank directory
+ * fits in the given percentage of the bit-vector length, and auto-tuning times
+ * {@link RankSupport#rank1(int)} on each candidate layout at build time and
+ * keeps the fastest. Any of these can be built lazily, as {@link #LAZY} does
+ * for the default sizes: the directory entries of a chunk are then computed
+ * the first time a query lands in it.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class RankSupportConfig {
+    public static final RankSupportConfig DEFAULT = new RankSupportConfig(Mode.LOG_SQUARED, 0, 0, 0, false);
+    public static final RankSupportConfig WORD_ALIGNED = new RankSupportConfig(Mode.FIXED, 512, 64, 0, false);
+    public static final RankSupportConfig LAZY = new RankSupportConfig(Mode.LOG_SQUARED, 0, 0, 0, true);
+
+    /**
+     * The word-aligned candidate layouts, as {chunkSize, subchunkSize}, in order
+     * of increasing rank1 cost.
+     */
+    private static final int[][] CANDIDATE_LAYOUTS = { { 256, 64 }, { 512, 64 }, { 1024, 64 }, { 2048, 128 },
+            { 4096, 256 }, { 8192, 512 }, { 16384, 1024 }, { 65536, 4096 } };
+    private static final int AUTO_TUNE_QUERIES = 20000;
+
+    private enum Mode {
+        LOG_SQUARED, FIXED, SPACE_BUDGET, AUTO_TUNE
+    }
+
+    private final Mode mode;
+    private final int chunkSize;
+    private final int subchunkSize;
+    private final double maxOverheadPercent;
+    private final boolean lazy;
+
+    private RankSupportConfig(Mode mode, int chunkSize, int subchunkSize, double maxOverheadPercent,
+            boolean lazy) {
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.subchunkSize = subchunkSize;
+        this.maxOverheadPercent = maxOverheadPercent;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Creates a new {@link Builder}.
+     * 
+     * @return the Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Resolves this configuration to explicit block sizes for the specified
+     * bit-vector.
+     * 
+     * @param bitVector       the {@link BitSet}
+     * @param bitVectorLength the length of the {@link BitSet}
+     * @return a configuration with explicit chunk and subchunk sizes
+     */
+    public RankSupportConfig resolve(BitSet bitVector, int bitVectorLength) {
+        return resolve(bitVector.toLongArray(), bitVectorLength);
+    }
+
+    /**
+     * Resolves this configuration to explicit block sizes for the bit-vector of
+     * the specified words.
+     */
+    RankSupportConfig resolve(long[] words, int bitVectorLength) {
+        switch (mode) {
+        case FIXED:
+            return this;
+        case LOG_SQUARED:
+            int logValue = (int) (Math.log(bitVectorLength) / Math.log(2));
+            return fixed(Math.max(1, (int) Math.ceil(Math.pow(logValue, 2))), Math.max(1, logValue / 2));
+        case SPACE_BUDGET:
+            return fixed(fastestWithinBudget(bitVectorLength));
+        default:
+            return autoTune(words, bitVectorLength);
+        }
+    }
+
+    /**
+     * Estimates the overhead of the rank directory for a layout as a percentage
+     * of the bit-vector length.
+     * 
+     * @param chunkSize       the chunk size in bits
+     * @param subchunkSize    the subchunk size in bits
+     * @param bitVectorLength the length of the bit-vector
+     * @return the estimated overhead percentage
+     */
+    public static double estimateOverheadPercent(int chunkSize, int subchunkSize, int bitVectorLength) {
+        long numberOfChunks = (bitVectorLength + (long) chunkSize - 1) / chunkSize;
+        long subchunksPerChunk = (chunkSize + (long) subchunkSize - 1) / subchunkSize;
+        long chunkBits = numberOfChunks * bitLength(bitVectorLength);
+        long subchunkBits = numberOfChunks * subchunksPerChunk * bitLength(chunkSize);
+        return 100.0 * (chunkBits + subchunkBits) / Math.max(1, bitVectorLength);
+    }
+
+    private static int bitLength(long value) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(1, value));
+    }
+
+    private static RankSupportConfig fixed(int chunkSize, int subchunkSize) {
+        return new RankSupportConfig(Mode.FIXED, chunkSize, subchunkSize, 0, false);
+    }
+
+    private static RankSupportConfig fixed(int[] layout) {
+        return fixed(layout[0], layout[1]);
+    }
+
+    private List<int[]> candidatesWithinBudget(int bitVectorLength) {
+        List<int[]> candidates = new ArrayList<>();
+        for (int[] layout : CANDIDATE_LAYOUTS) {
+            if (estimateOverheadPercent(layout[0], layout[1], bitVectorLength) <= maxOverheadPercent) {
+                candidates.add(layout);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // nothing fits, so settle for the smallest directory
+            candidates.add(CANDIDATE_LAYOUTS[CANDIDATE_LAYOUTS.length - 1]);
+        }
+        return candidates;
+    }
+
+    private int[] fastestWithinBudget(int bitVectorLength) {
+        return candidatesWithinBudget(bitVectorLength).get(0);
+    }
+
+    private RankSupportConfig autoTune(long[] words, int bitVectorLength) {
+        List<int[]> candidates = candidatesWithinBudget(bitVectorLength);
+        if (candidates.size() == 1 || bitVectorLength == 0) {
+            return fixed(candidates.get(0));
+        }
+        int[] queries = new int[AUTO_TUNE_QUERIES];
+        Random random = new Random(bitVectorLength);
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(bitVectorLength);
+        }
+        int[] bestLayout = candidates.get(0);
+        long bestTime = Long.MAX_VALUE;
+        for (int[] layout : candidates) {
+            RankSupport candidate = new RankSupport(words, bitVectorLength, fixed(layout));
+            long time = Long.MAX_VALUE;
+            // take the best of a few rounds so the first round warms up the candidate
+            for (int round = 0; round < 3; round++) {
+                time = Math.min(time, timeQueries(candidate, queries));
+            }
+            if (time < bestTime) {
+                bestTime = time;
+                bestLayout = layout;
+            }
+        }
+        return fixed(bestLayout);
+    }
+
+    private static long timeQueries(RankSupport rankSupport, int[] queries) {
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int query : queries) {
+            checksum += rankSupport.computeRank1(query);
+        }
+        long elapsed = System.nanoTime() - start;
+        // keep the JIT from discarding the loop
+        return checksum == Integer.MIN_VALUE ? elapsed + 1 : elapsed;
+    }
+
+    /**
+     * Gets the chunk size of a resolved configuration.
+     * 
+     * @return the chunk size in bits, or 0 if this configuration is not resolved
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Checks whether the rank directory is built lazily, one chunk at a time.
+     * 
+     * @return true if the rank directory is built lazily
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Gets the subchunk size of a resolved configuration.
+     * 
+     * @return the subchunk size in bits, or 0 if this configuration is not
+     *         resolved
+     */
+    public int getSubchunkSize() {
+        return subchunkSize;
+    }
+
+    /**
+     * Builds a {@link RankSupportConfig}. Explicit block sizes take precedence over
+     * auto-tuning, which takes precedence over a space budget.
+     */
+    public static class Builder {
+        private int chunkSize;
+        private int subchunkSize;
+        private double maxOverheadPercent = Double.POSITIVE_INFINITY;
+        private boolean autoTune;
+        private boolean lazy;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets explicit block sizes.
+         * 
+         * @param chunkSize    the chunk size in bits
+         * @param subchunkSize the subchunk size in bits, at most the chunk size
+         * @return this Builder
+         */
+        public Builder blockSizes(int chunkSize, int subchunkSize) {
+            if (subchunkSize < 1 || chunkSize < subchunkSize) {
+                throw new IllegalArgumentException(
+                        "Invalid block sizes: chunk " + chunkSize + ", subchunk " + subchunkSize);
+            }
+            this.chunkSize = chunkSize;
+            this.subchunkSize = subchunkSize;
+            return this;
+        }
+
+        /**
+         * Limits the rank directory to a percentage of the bit-vector length and
+         * picks the fastest word-aligned layout within that limit.
+         * 
+         * @param maxOverheadPercent the maximum overhead percentage
+         * @return this Builder
+         */
+        public Builder maxOverheadPercent(double maxOverheadPercent) {
+            if (maxOverheadPercent <= 0) {
+                throw new IllegalArgumentException("Invalid overhead percentage: " + maxOverheadPercent);
+            }
+            this.maxOverheadPercent = maxOverheadPercent;
+            return this;
+        }
+
+        /**
+         * Times each candidate layout (within the space budget, if set) at build
+         * time and picks the fastest.
+         * 
+         * @param autoTune whether to auto-tune
+         * @return this Builder
+         */
+        public Builder autoTune(boolean autoTune) {
+            this.autoTune = autoTune;
+            return this;
+        }
+
+        /**
+         * Defers the rank directory until queries need it. The chunk prefix sums
+         * are computed on the first query, and the subchunk entries of each chunk
+         * on the first query landing in that chunk, which keeps the time to the
+         * first query low for short-lived indexes.
+         * 
+         * @param lazy whether to build the rank directory lazily
+         * @return this Builder
+         */
+        public Builder lazy(boolean lazy) {
+            this.lazy = lazy;
+            return this;
+        }
+
+        /**
+         * Builds the configuration.
+         * 
+         * @return the {@link RankSupportConfig}
+         */
+        public RankSupportConfig build() {
+            if (chunkSize > 0) {
+                return new RankSupportConfig(Mode.FIXED, chunkSize, subchunkSize, 0, lazy);
+            }
+            if (autoTune) {
+                return new RankSupportConfig(Mode.AUTO_TUNE, 0, 0, maxOverheadPercent, lazy);
+            }
+            if (maxOverheadPercent != Double.POSITIVE_INFINITY) {
+                return new RankSupportConfig(Mode.SPACE_BUDGET, 0, 0, maxOverheadPercent, lazy);
+            }
+            return lazy ? LAZY : DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package rank;
+
+/**
+ * The portable {@link PopcountEngine}, one word at a time with
+ * {@link Long#bitCount(long)}, which the JIT compiles to the hardware popcount
+ * instruction where there is one.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class ScalarPopcountEngine implements PopcountEngine {
+
+    @Override
+    public int countWords(long[] words, int fromWord, int toWord) {
+        int count = 0;
+        for (int word = fromWord; word < toWord; word++) {
+            count += Long.bitCount(words[word]);
+        }
+        return count;
+    }
+
+    @Override
+    public void blockCounts(long[] words, int fromWord, int wordsPerBlock, int[] counts, int numberOfBlocks) {
+        for (int block = 0; block < numberOfBlocks; block++) {
+            int blockStart = Math.min(fromWord + block * wordsPerBlock, words.length);
+            counts[block] = countWords(words, blockStart, Math.min(blockStart + wordsPerBlock, words.length));
+        }
+    }
+
+    @Override
+    public void and(long[] a, long[] b, long[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] & b[i];
+        }
+    }
+
+    @Override
+    public void or(long[] a, long[] b, long[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] | b[i];
+        }
+    }
+
+    @Override
+    public void xor(long[] a, long[] b, long[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] ^ b[i];
+        }
+    }
+
+    @Override
+    public void andNot(long[] a, long[] b, long[] result, int length) {
+        for (int i = 0; i < length; i++) {
+            result[i] = a[i] & ~b[i];
+        }
+    }
+}
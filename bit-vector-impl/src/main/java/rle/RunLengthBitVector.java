@@ -0,0 +1,271 @@
+package rle;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import eliasfano.EliasFano;
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.RankSupport;
+
+/**
+ * A run-length encoded bit-vector supporting rank, select and access in time
+ * logarithmic in the number of runs of ones. The start of each run and the
+ * number of ones up to the end of each run are stored as two {@link EliasFano}
+ * position sets, so the memory and build time depend on the number of runs
+ * rather than on the length of the bit-vector. Suited to bit-vectors with long
+ * runs, such as the level bit-vectors of repetitive texts.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class RunLengthBitVector implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    private int bitVectorLength;
+    private int numberOfOnes;
+    private transient EliasFano runStarts;
+    private transient EliasFano runEnds;
+
+    /**
+     * Creates a new RunLengthBitVector from the runs of ones, given by their
+     * starting positions, which must be increasing, and their lengths, which must
+     * be positive. Runs must not overlap or touch.
+     * 
+     * @param runStarts       the starting position of each run
+     * @param runLengths      the length of each run
+     * @param numberOfRuns    the number of runs
+     * @param bitVectorLength the length of the bit-vector
+     */
+    public RunLengthBitVector(int[] runStarts, int[] runLengths, int numberOfRuns, int bitVectorLength) {
+        this.bitVectorLength = bitVectorLength;
+        int[] cumulativeOnes = new int[numberOfRuns];
+        int previousEnd = -1;
+        for (int j = 0; j < numberOfRuns; j++) {
+            if (runLengths[j] <= 0 || runStarts[j] <= previousEnd
+                    || (long) runStarts[j] + runLengths[j] > bitVectorLength) {
+                throw new IllegalArgumentException("Run " + j + " starting at " + runStarts[j] + " with length "
+                        + runLengths[j] + " is empty, out of order or outside the bit-vector");
+            }
+            previousEnd = runStarts[j] + runLengths[j];
+            numberOfOnes += runLengths[j];
+            cumulativeOnes[j] = numberOfOnes;
+        }
+        this.runStarts = new EliasFano(runStarts, numberOfRuns, Math.max(1, bitVectorLength));
+        // the run ends are stored as the number of ones before the end of each run,
+        // so that select can find the run containing the kth one
+        this.runEnds = new EliasFano(cumulativeOnes, numberOfRuns, numberOfOnes + 1);
+    }
+
+    /**
+     * Creates a new RunLengthBitVector from the specified bit-vector.
+     * 
+     * @param bitVector       the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @return the RunLengthBitVector
+     */
+    public static RunLengthBitVector fromBitSet(BitSet bitVector, int bitVectorLength) {
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        int numberOfRuns = 0;
+        int start = bitVector.nextSetBit(0);
+        while (start >= 0 && start < bitVectorLength) {
+            int end = Math.min(bitVector.nextClearBit(start), bitVectorLength);
+            if (numberOfRuns == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * numberOfRuns);
+                lengths = Arrays.copyOf(lengths, 2 * numberOfRuns);
+            }
+            starts[numberOfRuns] = start;
+            lengths[numberOfRuns] = end - start;
+            numberOfRuns++;
+            start = end < bitVectorLength ? bitVector.nextSetBit(end) : -1;
+        }
+        return new RunLengthBitVector(starts, lengths, numberOfRuns, bitVectorLength);
+    }
+
+    /**
+     * Creates a new RunLengthBitVector with the same bits as the specified
+     * {@link RankSupport}.
+     * 
+     * @param rankSupport the RankSupport
+     * @return the RunLengthBitVector
+     */
+    public static RunLengthBitVector fromRankSupport(RankSupport rankSupport) {
+        return fromBitSet(rankSupport.getBitVector(), rankSupport.getBitVectorLength());
+    }
+
+    /**
+     * Decodes this bit-vector into a {@link RankSupport} with constant time rank.
+     * 
+     * @return the RankSupport
+     */
+    public RankSupport toRankSupport() {
+        return new RankSupport(toBitSet(), bitVectorLength);
+    }
+
+    /**
+     * Decodes this bit-vector into a {@link BitSet}.
+     * 
+     * @return the BitSet
+     */
+    public BitSet toBitSet() {
+        BitSet bitVector = new BitSet(bitVectorLength);
+        for (int j = 0; j < runStarts.size(); j++) {
+            bitVector.set(runStarts.get(j), runStarts.get(j) + runLength(j));
+        }
+        return bitVector;
+    }
+
+    /**
+     * Computes the rank 1 of this bit vector at position i, the number of ones
+     * before position i, in time logarithmic in the number of runs. The position
+     * may be the length of the bit vector, giving the total number of ones.
+     * 
+     * @param i the position of which to compute the rank
+     * @return the rank
+     */
+    public int rank1(int i) {
+        int run = runStarts.rank(i) - 1;
+        if (run < 0) {
+            return 0;
+        }
+        int onesBefore = onesBefore(run);
+        return onesBefore + Math.min(runEnds.get(run) - onesBefore, i - runStarts.get(run));
+    }
+
+    /**
+     * Gets the position, in the bit-vector, of the FIRST index, j for which
+     * rank1(j) = i, as {@link select.SelectSupport#select1(int)} does.
+     * 
+     * @param i the rank in the bit-vector of which to select the first index having
+     *          that rank
+     * @return the index in the bit-vector
+     * @throws IllegalArgumentException if the rank is negative or greater than the
+     *                                  number of ones
+     */
+    public int select1(int i) {
+        if (i < 0 || i > numberOfOnes) {
+            throw new IllegalArgumentException("Rank " + i + " is outside [0, " + numberOfOnes + "]");
+        }
+        if (i == 0) {
+            return 0;
+        }
+        // the run containing the ith one is the first whose end has at least i ones
+        int run = runEnds.rank(i);
+        return runStarts.get(run) + (i - onesBefore(run));
+    }
+
+    /**
+     * Returns the value of the bit at the specified index, in time logarithmic in
+     * the number of runs.
+     * 
+     * @param index the index of the bit
+     * @return the value of the bit
+     */
+    public boolean access(int index) {
+        int run = runStarts.rank(index + 1) - 1;
+        return run >= 0 && index - runStarts.get(run) < runLength(run);
+    }
+
+    private int onesBefore(int run) {
+        return run == 0 ? 0 : runEnds.get(run - 1);
+    }
+
+    private int runLength(int run) {
+        return runEnds.get(run) - onesBefore(run);
+    }
+
+    /**
+     * Gets the number of runs of ones.
+     * 
+     * @return the number of runs
+     */
+    public int getNumberOfRuns() {
+        return runStarts.size();
+    }
+
+    /**
+     * Gets the number of ones.
+     * 
+     * @return the number of ones
+     */
+    public int getNumberOfOnes() {
+        return numberOfOnes;
+    }
+
+    public int getBitVectorLength() {
+        return bitVectorLength;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(2 * Integer.BYTES, 2))
+                .addAll(runStarts.memoryFootprint()).addAll(runEnds.memoryFootprint());
+    }
+
+    /**
+     * Saves this RunLengthBitVector to a file with the specified file name.
+     * 
+     * @param filename the file name of the file to save
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(String filename) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
+        save(objectOutputStream);
+        objectOutputStream.flush();
+        objectOutputStream.close();
+    }
+
+    /**
+     * Saves this RunLengthBitVector using the specified
+     * {@link ObjectOutputStream}.
+     * 
+     * @param objectOutputStream the output stream to write to
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.writeObject(this);
+        // Save EliasFano separately because IntVector is not serializeable
+        runStarts.save(objectOutputStream);
+        runEnds.save(objectOutputStream);
+    }
+
+    /**
+     * Loads the RunLengthBitVector from a file with the specified file name.
+     * 
+     * @param filename the file name of the file to load
+     * @return the RunLengthBitVector
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static RunLengthBitVector load(String filename) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
+        RunLengthBitVector runLengthBitVector = load(objectInputStream);
+        objectInputStream.close();
+        return runLengthBitVector;
+    }
+
+    /**
+     * Loads the RunLengthBitVector using the specified {@link ObjectInputStream}.
+     * 
+     * @param objectInputStream the input stream to read from
+     * @return the RunLengthBitVector
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static RunLengthBitVector load(ObjectInputStream objectInputStream)
+            throws IOException, ClassNotFoundException {
+        RunLengthBitVector runLengthBitVector = (RunLengthBitVector) objectInputStream.readObject();
+        runLengthBitVector.runStarts = EliasFano.load(objectInputStream);
+        runLengthBitVector.runEnds = EliasFano.load(objectInputStream);
+        return runLengthBitVector;
+    }
+}
@@ -0,0 +1,20 @@
+package segment;
+
+/**
+ * Receives progress updates while a {@link SegmentedFile} is written or read.
+ * Updates may come from several threads at once, one after each segment.
+ * 
+ * @author Valerie Wray
+ *
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called after a segment has been written or read.
+     * 
+     * @param bytesDone  the number of segment bytes written or read so far
+     * @param totalBytes the total number of segment bytes
+     */
+    void onProgress(long bytesDone, long totalBytes);
+}
@@ -0,0 +1,125 @@
+package segment;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Configures how a {@link SegmentedFile} is written and read: the largest
+ * segment an array is split into, the executor the segments are transferred
+ * on, whether checksums are verified on load, and who is told about progress.
+ * Create options with {@link #builder()} or use {@link #DEFAULT}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class SegmentOptions {
+    public static final SegmentOptions DEFAULT = builder().build();
+
+    private final int segmentSize;
+    private final Executor executor;
+    private final boolean verifyChecksums;
+    private final ProgressListener progressListener;
+
+    private SegmentOptions(Builder builder) {
+        segmentSize = builder.segmentSize;
+        executor = builder.executor;
+        verifyChecksums = builder.verifyChecksums;
+        progressListener = builder.progressListener;
+    }
+
+    /**
+     * Creates a new {@link Builder}.
+     * 
+     * @return the Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Builds {@link SegmentOptions}.
+     */
+    public static class Builder {
+        private int segmentSize = 16 << 20;
+        private Executor executor = ForkJoinPool.commonPool();
+        private boolean verifyChecksums = true;
+        private ProgressListener progressListener = (bytesDone, totalBytes) -> {
+        };
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the largest segment, in bytes, that an array is split into. Each
+         * segment in flight needs a direct buffer of this size.
+         * 
+         * @param segmentSize the segment size in bytes, a positive multiple of 8
+         * @return this Builder
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize <= 0 || segmentSize % Long.BYTES != 0) {
+                throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the executor the segments are written and read on.
+         * 
+         * @param executor the executor
+         * @return this Builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets whether to verify the checksum of each segment on load.
+         * 
+         * @param verifyChecksums whether to verify checksums
+         * @return this Builder
+         */
+        public Builder verifyChecksums(boolean verifyChecksums) {
+            this.verifyChecksums = verifyChecksums;
+            return this;
+        }
+
+        /**
+         * Sets the listener told about progress after each segment.
+         * 
+         * @param progressListener the {@link ProgressListener}
+         * @return this Builder
+         */
+        public Builder progressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * Builds the options.
+         * 
+         * @return the {@link SegmentOptions}
+         */
+        public SegmentOptions build() {
+            return new SegmentOptions(this);
+        }
+    }
+}
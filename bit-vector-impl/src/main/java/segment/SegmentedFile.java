@@ -0,0 +1,369 @@
+package segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * A file of independently checksummed segments, each holding a slice of a
+ * <code>long</code>, <code>int</code> or <code>byte</code> array tagged with a
+ * kind. Segments are written and read concurrently on an executor, through
+ * {@link FileChannel} positional I/O with direct {@link ByteBuffer}s, so large
+ * structures can be saved and loaded at disk bandwidth rather than through a
+ * single object stream.
+ * <p>
+ * The file starts with a header and a table giving the kind, offset, length
+ * and CRC-32C checksum of every segment, followed by the segments. Arrays are
+ * written little-endian.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class SegmentedFile implements Closeable {
+    private static final int MAGIC = 0x42565346;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int TABLE_ENTRY_BYTES = 32;
+
+    private final FileChannel channel;
+    private final SegmentOptions options;
+    private final int[] kinds;
+    private final long[] offsets;
+    private final long[] lengths;
+    private final long[] checksums;
+
+    private SegmentedFile(FileChannel channel, SegmentOptions options, int numberOfSegments) {
+        this.channel = channel;
+        this.options = options;
+        kinds = new int[numberOfSegments];
+        offsets = new long[numberOfSegments];
+        lengths = new long[numberOfSegments];
+        checksums = new long[numberOfSegments];
+    }
+
+    /**
+     * Creates a {@link Writer} for a new segmented file.
+     * 
+     * @param options the {@link SegmentOptions}
+     * @return the Writer
+     */
+    public static Writer writer(SegmentOptions options) {
+        return new Writer(options);
+    }
+
+    /**
+     * Opens a segmented file and reads its segment table.
+     * 
+     * @param filename the file name of the file to open
+     * @param options  the {@link SegmentOptions}
+     * @return the SegmentedFile
+     * @throws IOException if the file is not able to be read or is not a
+     *                     segmented file
+     */
+    public static SegmentedFile open(String filename, SegmentOptions options) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(filename + " is not a segmented file of version " + VERSION);
+            }
+            int numberOfSegments = header.getInt();
+            SegmentedFile file = new SegmentedFile(channel, options, numberOfSegments);
+            ByteBuffer table = readFully(channel, HEADER_BYTES, numberOfSegments * TABLE_ENTRY_BYTES);
+            for (int s = 0; s < numberOfSegments; s++) {
+                file.kinds[s] = table.getInt();
+                table.getInt();
+                file.offsets[s] = table.getLong();
+                file.lengths[s] = table.getLong();
+                file.checksums[s] = table.getLong();
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * Reads all the segments of a kind, in order, into one <code>long</code>
+     * array.
+     * 
+     * @param kind the kind of the segments
+     * @return the array
+     * @throws IOException if a segment is not able to be read or its checksum
+     *                     does not match
+     */
+    public long[] readLongs(int kind) throws IOException {
+        long[] array = new long[(int) (totalLength(kind) / Long.BYTES)];
+        readSegments(kind, Long.BYTES, (buffer, from) -> buffer.asLongBuffer().get(array, from,
+                buffer.remaining() / Long.BYTES));
+        return array;
+    }
+
+    /**
+     * Reads all the segments of a kind, in order, into one <code>int</code> array.
+     * 
+     * @param kind the kind of the segments
+     * @return the array
+     * @throws IOException if a segment is not able to be read or its checksum
+     *                     does not match
+     */
+    public int[] readInts(int kind) throws IOException {
+        int[] array = new int[(int) (totalLength(kind) / Integer.BYTES)];
+        readSegments(kind, Integer.BYTES, (buffer, from) -> buffer.asIntBuffer().get(array, from,
+                buffer.remaining() / Integer.BYTES));
+        return array;
+    }
+
+    /**
+     * Reads all the segments of a kind, in order, into one <code>byte</code>
+     * array.
+     * 
+     * @param kind the kind of the segments
+     * @return the array
+     * @throws IOException if a segment is not able to be read or its checksum
+     *                     does not match
+     */
+    public byte[] readBytes(int kind) throws IOException {
+        byte[] array = new byte[(int) totalLength(kind)];
+        readSegments(kind, 1, (buffer, from) -> buffer.get(array, from, buffer.remaining()));
+        return array;
+    }
+
+    private long totalLength(int kind) {
+        long total = 0;
+        for (int s = 0; s < kinds.length; s++) {
+            if (kinds[s] == kind) {
+                total += lengths[s];
+            }
+        }
+        return total;
+    }
+
+    private interface SegmentReader {
+        void accept(ByteBuffer buffer, int from);
+    }
+
+    private void readSegments(int kind, int elementSize, SegmentReader reader) throws IOException {
+        long totalBytes = totalLength(kind);
+        AtomicLong bytesDone = new AtomicLong();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long from = 0;
+        for (int s = 0; s < kinds.length; s++) {
+            if (kinds[s] != kind) {
+                continue;
+            }
+            int segment = s;
+            int elementFrom = (int) (from / elementSize);
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    ByteBuffer buffer = readFully(channel, offsets[segment], (int) lengths[segment]);
+                    if (options.isVerifyChecksums() && checksum(buffer) != checksums[segment]) {
+                        throw new IOException("Checksum mismatch in segment " + segment + " of kind " + kind);
+                    }
+                    reader.accept(buffer, elementFrom);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                options.getProgressListener().onProgress(bytesDone.addAndGet(lengths[segment]), totalBytes);
+            }, options.getExecutor()));
+            from += lengths[s];
+        }
+        join(futures);
+    }
+
+    private static void join(List<CompletableFuture<Void>> futures) throws IOException {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of segments in the file.
+     * 
+     * @return the number of segments
+     */
+    public int getNumberOfSegments() {
+        return kinds.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Collects arrays to write as segments, splitting each into segments of at
+     * most the configured segment size, and writes them.
+     */
+    public static class Writer {
+        private final SegmentOptions options;
+        private final List<Segment> segments = new ArrayList<>();
+
+        /**
+         * A slice of an array, copied into a buffer when it is written.
+         */
+        private static final class Segment {
+            private final int kind;
+            private final int length;
+            private final Consumer<ByteBuffer> filler;
+
+            private Segment(int kind, int length, Consumer<ByteBuffer> filler) {
+                this.kind = kind;
+                this.length = length;
+                this.filler = filler;
+            }
+        }
+
+        /**
+         * Copies <code>count</code> elements of an array, starting at
+         * <code>from</code>, into a buffer.
+         */
+        private interface SliceWriter {
+            void write(ByteBuffer buffer, int from, int count);
+        }
+
+        private Writer(SegmentOptions options) {
+            this.options = options;
+        }
+
+        /**
+         * Adds a <code>long</code> array, split into segments of a kind.
+         * 
+         * @param kind  the kind of the segments
+         * @param array the array
+         * @return this Writer
+         */
+        public Writer addLongs(int kind, long[] array) {
+            return add(kind, array.length, Long.BYTES,
+                    (buffer, from, count) -> buffer.asLongBuffer().put(array, from, count));
+        }
+
+        /**
+         * Adds an <code>int</code> array, split into segments of a kind.
+         * 
+         * @param kind  the kind of the segments
+         * @param array the array
+         * @return this Writer
+         */
+        public Writer addInts(int kind, int[] array) {
+            return add(kind, array.length, Integer.BYTES,
+                    (buffer, from, count) -> buffer.asIntBuffer().put(array, from, count));
+        }
+
+        /**
+         * Adds a <code>byte</code> array, split into segments of a kind.
+         * 
+         * @param kind  the kind of the segments
+         * @param array the array
+         * @return this Writer
+         */
+        public Writer addBytes(int kind, byte[] array) {
+            return add(kind, array.length, 1, (buffer, from, count) -> buffer.put(array, from, count));
+        }
+
+        private Writer add(int kind, int arrayLength, int elementSize, SliceWriter sliceWriter) {
+            int perSegment = options.getSegmentSize() / elementSize;
+            for (int from = 0; from < arrayLength; from += perSegment) {
+                int start = from;
+                int count = Math.min(perSegment, arrayLength - from);
+                segments.add(new Segment(kind, count * elementSize,
+                        buffer -> sliceWriter.write(buffer, start, count)));
+            }
+            return this;
+        }
+
+        /**
+         * Writes the segments concurrently, then the segment table with their
+         * checksums.
+         * 
+         * @param filename the file name of the file to write
+         * @throws IOException if the file is not able to be written
+         */
+        public void write(String filename) throws IOException {
+            int numberOfSegments = segments.size();
+            long[] offsets = new long[numberOfSegments];
+            long[] checksums = new long[numberOfSegments];
+            long position = HEADER_BYTES + (long) numberOfSegments * TABLE_ENTRY_BYTES;
+            long totalBytes = 0;
+            for (int s = 0; s < numberOfSegments; s++) {
+                // keep every segment 8-byte aligned
+                position = (position + Long.BYTES - 1) & -Long.BYTES;
+                offsets[s] = position;
+                position += segments.get(s).length;
+                totalBytes += segments.get(s).length;
+            }
+            long fileBytes = totalBytes;
+            try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                AtomicLong bytesDone = new AtomicLong();
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int s = 0; s < numberOfSegments; s++) {
+                    int index = s;
+                    Segment segment = segments.get(s);
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(segment.length).order(ByteOrder.LITTLE_ENDIAN);
+                        segment.filler.accept(buffer);
+                        buffer.clear();
+                        checksums[index] = checksum(buffer);
+                        try {
+                            writeFully(channel, offsets[index], buffer);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        options.getProgressListener().onProgress(bytesDone.addAndGet(segment.length), fileBytes);
+                    }, options.getExecutor()));
+                }
+                join(futures);
+
+                ByteBuffer table = ByteBuffer.allocateDirect(HEADER_BYTES + numberOfSegments * TABLE_ENTRY_BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                table.putInt(MAGIC).putInt(VERSION).putInt(numberOfSegments).putInt(0);
+                for (int s = 0; s < numberOfSegments; s++) {
+                    table.putInt(segments.get(s).kind).putInt(0).putLong(offsets[s])
+                            .putLong(segments.get(s).length).putLong(checksums[s]);
+                }
+                writeFully(channel, 0, table.flip());
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package select;
+
+import rank.Popcount;
+
+/**
+ * A cursor over the ones of a {@link SelectSupport} in order of rank. The
+ * cursor remembers the word it is in, so stepping to the next or previous one
+ * scans forward or back from there instead of searching again, and costs
+ * amortized constant time. Longer jumps, and gaps of more than a few words
+ * without a one, fall back to a select or rank query.
+ * <p>
+ * Ranks start from 1, as in {@link SelectSupport#select1(int)}. A new cursor is
+ * before the first one, at rank 0. A cursor is not thread-safe.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class SelectCursor {
+    // jumps of more than this many words use select or rank instead of a scan
+    private static final int MAX_SCAN_WORDS = 8;
+    private final SelectSupport selectSupport;
+    private final long[] words;
+    private final int ones;
+    private int rank;
+    private int position = -1;
+
+    /**
+     * Creates a new cursor before the first one of the specified
+     * {@link SelectSupport}.
+     * 
+     * @param selectSupport the SelectSupport
+     */
+    public SelectCursor(SelectSupport selectSupport) {
+        this.selectSupport = selectSupport;
+        this.words = selectSupport.getWords();
+        this.ones = selectSupport.rank1(selectSupport.getBitVectorLength());
+    }
+
+    /**
+     * Moves to the next one.
+     * 
+     * @return true if there is a next one, false if the cursor was at the last one,
+     *         in which case it does not move
+     */
+    public boolean next() {
+        int next = nextSetBit(position + 1);
+        if (next >= 0) {
+            position = next;
+            rank++;
+            return true;
+        }
+        if (rank == ones) {
+            return false;
+        }
+        jumpTo(rank + 1);
+        return true;
+    }
+
+    /**
+     * Moves to the previous one.
+     * 
+     * @return true if there is a previous one, false if the cursor was at the first
+     *         one or before it, in which case it does not move
+     */
+    public boolean previous() {
+        if (rank <= 1) {
+            return false;
+        }
+        int w = (position - 1) >>> 6;
+        // keep the bits up to and including the one before the current position
+        long word = words[w] & (-1L >>> (63 - ((position - 1) & 63)));
+        for (int scanned = 0; word == 0; scanned++) {
+            if (scanned == MAX_SCAN_WORDS) {
+                jumpTo(rank - 1);
+                return true;
+            }
+            word = words[--w];
+        }
+        position = (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+        rank--;
+        return true;
+    }
+
+    /**
+     * Moves to the one of the specified rank, forward or back, scanning from the
+     * current word when it is near and selecting otherwise.
+     * 
+     * @param targetRank the rank, starting from 1, of the one to move to
+     * @return true if there is a one of that rank, false otherwise, in which case
+     *         the cursor does not move
+     */
+    public boolean advanceTo(int targetRank) {
+        if (targetRank < 1 || targetRank > ones) {
+            return false;
+        }
+        if (targetRank <= rank) {
+            if (targetRank < rank) {
+                jumpTo(targetRank);
+            }
+            return true;
+        }
+        // scan whole words while the target is within a few words
+        int remaining = targetRank - rank;
+        int w = (position + 1) >>> 6;
+        long word = words[w] & (-1L << (position + 1));
+        for (int scanned = 0; scanned <= MAX_SCAN_WORDS; scanned++) {
+            int count = Long.bitCount(word);
+            if (remaining <= count) {
+                position = (w << 6) + Popcount.selectInWord(word, remaining - 1);
+                rank = targetRank;
+                return true;
+            }
+            remaining -= count;
+            word = words[++w];
+        }
+        jumpTo(targetRank);
+        return true;
+    }
+
+    private void jumpTo(int targetRank) {
+        position = selectSupport.select1(targetRank) - 1;
+        rank = targetRank;
+    }
+
+    /**
+     * Moves to the first one at or after the specified position, scanning from
+     * the current word when it is near and computing the rank otherwise.
+     * 
+     * @param targetPosition the position in the bit-vector
+     * @return true if there is a one at or after the position, false otherwise, in
+     *         which case the cursor does not move
+     */
+    public boolean skipToPosition(int targetPosition) {
+        int from = Math.max(0, targetPosition);
+        int next = nextSetBit(from);
+        if (next < 0) {
+            // the gap is wider than a scan, so rank the target and select the one after it
+            int onesBefore = selectSupport.rank1(from);
+            if (onesBefore == ones) {
+                return false;
+            }
+            jumpTo(onesBefore + 1);
+            return true;
+        }
+        if (rank > 0 && next >= position && (next >>> 6) - (position >>> 6) <= MAX_SCAN_WORDS) {
+            // count the ones between the current position and the new one
+            rank += Popcount.countOnes(words, position, next);
+        } else {
+            rank = selectSupport.rank1(next) + 1;
+        }
+        position = next;
+        return true;
+    }
+
+    /**
+     * Scans for the first one at or after a position in its word and at most
+     * MAX_SCAN_WORDS words after it, returning -1 if there is none there.
+     */
+    private int nextSetBit(int from) {
+        int w = from >>> 6;
+        int end = Math.min(words.length, w + MAX_SCAN_WORDS + 1);
+        if (w >= end) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == end) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Gets the rank of the one at the cursor, starting from 1, or 0 if the cursor
+     * is before the first one.
+     * 
+     * @return the rank
+     */
+    public int rank() {
+        return rank;
+    }
+
+    /**
+     * Gets the position in the bit-vector of the one at the cursor, the same as
+     * <code>select1(rank()) - 1</code>, or -1 if the cursor is before the first
+     * one.
+     * 
+     * @return the position
+     */
+    public int position() {
+        return position;
+    }
+}
@@ -4,10 +4,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.BitSet;
+import java.util.stream.IntStream;
 
-import org.slf4j.profiler.Profiler;
-
+import memory.MemoryFootprint;
+import metrics.Metrics;
+import metrics.Operation;
+import rank.Popcount;
 import rank.RankSupport;
+import rank.RankSupportConfig;
+import segment.SegmentOptions;
+import segment.SegmentedFile;
 
 /**
  * A class to provide select support as an extension to {@link RankSupport}.
@@ -17,6 +23,11 @@ import rank.RankSupport;
  */
 public class SelectSupport extends RankSupport {
     private static final long serialVersionUID = 1L;
+    /**
+     * The most words a batched select walks to reach the next rank before
+     * selecting it on its own.
+     */
+    static final int MAX_SCAN_WORDS = 256;
 
     /**
      * Creates a new SelectSupport from the bit-vector and the length.
@@ -28,6 +39,154 @@ public class SelectSupport extends RankSupport {
         super(bitVector, bitVectorLength);
     }
 
+    /**
+     * Creates a new SelectSupport from the bit-vector and the length, with the
+     * chunk and subchunk sizes chosen by the specified configuration.
+     * 
+     * @param bitVector       the {@link BitSet}
+     * @param bitVectorLength the length of the {@link BitSet}
+     * @param config          the {@link RankSupportConfig}
+     */
+    public SelectSupport(BitSet bitVector, int bitVectorLength, RankSupportConfig config) {
+        super(bitVector, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a SelectSupport from sorted positions of the ones.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    protected SelectSupport(int[] sortedPositions, int bitVectorLength, RankSupportConfig config) {
+        super(sortedPositions, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a SelectSupport over the words of a bit-vector, which are kept
+     * without a copy if they match its length.
+     * 
+     * @param words           the words of the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     */
+    protected SelectSupport(long[] words, int bitVectorLength, RankSupportConfig config) {
+        super(words, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a new SelectSupport from sorted positions of the ones, writing the
+     * words and the rank directory from the positions.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the SelectSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static SelectSupport fromSortedPositions(int[] sortedPositions, int bitVectorLength) {
+        return new SelectSupport(sortedPositions, bitVectorLength, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new SelectSupport from sorted positions of the ones, with the
+     * chunk and subchunk sizes chosen by the specified configuration.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @return the SelectSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static SelectSupport fromSortedPositions(int[] sortedPositions, int bitVectorLength,
+            RankSupportConfig config) {
+        return new SelectSupport(sortedPositions, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a new SelectSupport from sorted long positions of the ones.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the SelectSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static SelectSupport fromSortedPositions(long[] sortedPositions, int bitVectorLength) {
+        return new SelectSupport(toIntPositions(sortedPositions, bitVectorLength), bitVectorLength,
+                RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new SelectSupport from a stream of the positions of the ones in
+     * increasing order.
+     * 
+     * @param sortedPositions the positions of the ones, in increasing order
+     * @param bitVectorLength the length of the bit-vector
+     * @return the SelectSupport
+     * @throws IllegalArgumentException if the positions are not increasing or not
+     *                                  in the bit-vector
+     */
+    public static SelectSupport fromSortedPositions(IntStream sortedPositions, int bitVectorLength) {
+        return new SelectSupport(sortedPositions.toArray(), bitVectorLength, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new SelectSupport over the words of a bit-vector, which are kept
+     * without a copy if they match its length, instead of copying them out of a
+     * {@link BitSet}.
+     * 
+     * @param words           the words of the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param config          the {@link RankSupportConfig}
+     * @return the SelectSupport
+     */
+    public static SelectSupport fromWords(long[] words, int bitVectorLength, RankSupportConfig config) {
+        return new SelectSupport(words, bitVectorLength, config);
+    }
+
+    /**
+     * Creates a SelectSupport from the segments of a {@link SegmentedFile}.
+     * 
+     * @param file the SegmentedFile
+     * @throws IOException if the segments are not able to be read
+     */
+    protected SelectSupport(SegmentedFile file) throws IOException {
+        super(file);
+    }
+
+    /**
+     * Reads a SelectSupport from the segments of a {@link SegmentedFile} written
+     * by {@link #addSegments(SegmentedFile.Writer)}.
+     * 
+     * @param file the SegmentedFile
+     * @return the SelectSupport
+     * @throws IOException if the segments are not able to be read
+     */
+    public static SelectSupport readSegments(SegmentedFile file) throws IOException {
+        return new SelectSupport(file);
+    }
+
+    /**
+     * Loads a SelectSupport saved by
+     * {@link #saveSegmented(String, SegmentOptions)}, reading the segments in
+     * parallel.
+     * 
+     * @param filename the file name of the file to load
+     * @param options  the {@link SegmentOptions}
+     * @return the SelectSupport
+     * @throws IOException if the file is not able to be loaded, or a checksum does
+     *                     not match
+     */
+    public static SelectSupport loadSegmented(String filename, SegmentOptions options) throws IOException {
+        try (SegmentedFile file = SegmentedFile.open(filename, options)) {
+            return new SelectSupport(file);
+        }
+    }
+
     /**
      * Gets the position, in the underlying bit-vector, of the FIRST index, j for
      * which rank1(j) = i.
@@ -37,6 +196,23 @@ public class SelectSupport extends RankSupport {
      * @return the index in the bit-vector
      */
     public int select1(int i) {
+        if (!Metrics.isEnabled()) {
+            return computeSelect1(i);
+        }
+        long start = System.nanoTime();
+        int index = computeSelect1(i);
+        Metrics.record(Operation.SELECT1, start);
+        return index;
+    }
+
+    /**
+     * Computes select 1 without recording metrics.
+     * 
+     * @param i the rank in the bit-vector of which to select the first index having
+     *          that rank
+     * @return the index in the bit-vector
+     */
+    public int computeSelect1(int i) {
         // binary search calling rank1
         int left = 0;
         int leftRank = 0;
@@ -45,7 +221,7 @@ public class SelectSupport extends RankSupport {
         int centerRank;
         while (true) {
             center = (left + right) / 2;
-            centerRank = rank1(center);
+            centerRank = computeRank1(center);
             if (i <= centerRank) {
                 if (left == center - 1) {
                     return (leftRank == i ? left : center);
@@ -63,24 +239,203 @@ public class SelectSupport extends RankSupport {
         }
     }
 
+    /**
+     * Selects many sorted ranks at once, writing select1(sortedRanks[q]) to
+     * out[q]. The words are walked once from left to right, counting ones until
+     * each rank is reached, so k nearby ranks cost one pass over the words they
+     * span rather than k binary searches. When the next rank is expected more
+     * than {@link #MAX_SCAN_WORDS} words ahead, it is selected on its own and the
+     * walk resumes from there, so very sparse ranks cost no more than per-query
+     * select.
+     * 
+     * @param sortedRanks the ranks, in non-decreasing order
+     * @param out         the array to write the positions plus one to, at least as
+     *                    long as sortedRanks
+     * @throws IllegalArgumentException if the ranks are not sorted or out is too
+     *                                  short
+     */
+    public void select1(int[] sortedRanks, int[] out) {
+        if (!Metrics.isEnabled()) {
+            computeSelect1(sortedRanks, out);
+            return;
+        }
+        long start = System.nanoTime();
+        computeSelect1(sortedRanks, out);
+        Metrics.record(Operation.SELECT1, start);
+    }
+
+    /**
+     * Computes select 1 of each of the sorted ranks without recording metrics.
+     * 
+     * @param sortedRanks the ranks, in non-decreasing order
+     * @param out         the array to write the positions plus one to
+     * @throws IllegalArgumentException if the ranks are not sorted or out is too
+     *                                  short
+     */
+    public void computeSelect1(int[] sortedRanks, int[] out) {
+        if (out.length < sortedRanks.length) {
+            throw new IllegalArgumentException(
+                    "Output array of length " + out.length + " is shorter than " + sortedRanks.length + " ranks");
+        }
+        long[] words = getWords();
+        int totalOnes = totalOnes();
+        double maxScanOnes = words.length == 0 ? 0 : MAX_SCAN_WORDS * ((double) totalOnes / words.length);
+        // the walk is at this word, with this many ones before it
+        int word = 0;
+        int before = 0;
+        int previous = Integer.MIN_VALUE;
+        for (int q = 0; q < sortedRanks.length; q++) {
+            int r = sortedRanks[q];
+            if (r < previous) {
+                throw new IllegalArgumentException("Ranks are not sorted: " + previous + " before " + r);
+            }
+            previous = r;
+            if (r <= 0 || r > totalOnes) {
+                // as the binary search answers
+                out[q] = r <= 0 ? 0 : getBitVectorLength();
+                continue;
+            }
+            if (r - before > maxScanOnes) {
+                // too far to walk, so select it directly and walk on from its word
+                int position = computeSelect1(r);
+                out[q] = position;
+                word = (position - 1) >>> 6;
+                before = computeRank1(word << 6);
+                continue;
+            }
+            int ones;
+            while (before + (ones = Long.bitCount(words[word])) < r) {
+                before += ones;
+                word++;
+            }
+            out[q] = (word << 6) + Popcount.selectInWord(words[word], r - before - 1) + 1;
+        }
+    }
+
+    /**
+     * Gets the smallest position greater than or equal to x whose bit is set, like
+     * {@link BitSet#nextSetBit(int)} but without scanning the gap: the word of x
+     * is checked first, and otherwise the answer is select1(rank1(x) + 1), so the
+     * cost does not depend on the distance to the next one.
+     * 
+     * @param x the position to start from
+     * @return the position of the next one, or -1 if there is none at or after x
+     * @throws IndexOutOfBoundsException if x is negative
+     */
+    public int successor(int x) {
+        if (!Metrics.isEnabled()) {
+            return computeSuccessor(x);
+        }
+        long start = System.nanoTime();
+        int position = computeSuccessor(x);
+        Metrics.record(Operation.SUCCESSOR, start);
+        return position;
+    }
+
+    /**
+     * Computes the successor without recording metrics.
+     * 
+     * @param x the position to start from
+     * @return the position of the next one, or -1 if there is none at or after x
+     */
+    public int computeSuccessor(int x) {
+        if (x < 0) {
+            throw new IndexOutOfBoundsException("x < 0: " + x);
+        }
+        if (x >= getBitVectorLength()) {
+            return -1;
+        }
+        long[] words = getWords();
+        int wordIndex = x >>> 6;
+        // the bits of the word at or after x
+        long word = words[wordIndex] & (-1L << x);
+        if (word != 0) {
+            return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (wordIndex + 1 < words.length && words[wordIndex + 1] != 0) {
+            return ((wordIndex + 1) << 6) + Long.numberOfTrailingZeros(words[wordIndex + 1]);
+        }
+        int rank = computeRank1(x);
+        if (rank == computeRank1(getBitVectorLength())) {
+            return -1;
+        }
+        return computeSelect1(rank + 1) - 1;
+    }
+
+    /**
+     * Gets the largest position less than or equal to x whose bit is set, like
+     * {@link BitSet#previousSetBit(int)} but without scanning the gap: the word of
+     * x is checked first, and otherwise the answer is select1(rank1(x + 1)).
+     * 
+     * @param x the position to start from, or -1
+     * @return the position of the previous one, or -1 if there is none at or
+     *         before x
+     * @throws IndexOutOfBoundsException if x is less than -1
+     */
+    public int predecessor(int x) {
+        if (!Metrics.isEnabled()) {
+            return computePredecessor(x);
+        }
+        long start = System.nanoTime();
+        int position = computePredecessor(x);
+        Metrics.record(Operation.PREDECESSOR, start);
+        return position;
+    }
+
+    /**
+     * Computes the predecessor without recording metrics.
+     * 
+     * @param x the position to start from, or -1
+     * @return the position of the previous one, or -1 if there is none at or
+     *         before x
+     */
+    public int computePredecessor(int x) {
+        if (x < -1) {
+            throw new IndexOutOfBoundsException("x < -1: " + x);
+        }
+        x = Math.min(x, getBitVectorLength() - 1);
+        if (x < 0) {
+            return -1;
+        }
+        long[] words = getWords();
+        int wordIndex = x >>> 6;
+        // the bits of the word at or before x
+        long word = words[wordIndex] & (-1L >>> ~x);
+        if (word != 0) {
+            return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+        if (wordIndex > 0 && words[wordIndex - 1] != 0) {
+            return ((wordIndex - 1) << 6) + 63 - Long.numberOfLeadingZeros(words[wordIndex - 1]);
+        }
+        int rank = computeRank1(x + 1);
+        if (rank == 0) {
+            return -1;
+        }
+        return computeSelect1(rank) - 1;
+    }
+
+    /**
+     * Creates a cursor for iterating over the ones of this bit-vector in order of
+     * rank, starting before the first one.
+     * 
+     * @return the {@link SelectCursor}
+     */
+    public SelectCursor cursor() {
+        return new SelectCursor(this);
+    }
+
     /**
      * Computes the select 1 of this bit vector at position i in log time and
      * returns the time elapsed.
      * 
      * @param i the rank in the bit-vector of which to select the first index having
      *          that rank
-     * @return the time
+     * @return the time elapsed in nanoseconds
      */
     public long select1GetTime(int i) {
-        Profiler myProfiler = new Profiler("MYPROFILER");
-        myProfiler.start("Computing select1 of " + i);
-
-        int selectIndex = select1(i);
-
-        myProfiler.stop();
-        System.out.println("Select returned index " + selectIndex + " for rank " + i);
-        System.out.println("Profiler time elapsed from inside select1GetTime: " + myProfiler.elapsedTime());
-        return myProfiler.elapsedTime();
+        long start = System.nanoTime();
+        computeSelect1(i);
+        return System.nanoTime() - start;
     }
 
     @Override
@@ -88,6 +443,17 @@ public class SelectSupport extends RankSupport {
         return super.overhead();
     }
 
+    /**
+     * Computes the heap memory used by this SelectSupport. Select is answered by
+     * binary search over the rank directory, so no select samples are stored.
+     * 
+     * @return the {@link MemoryFootprint}
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return super.memoryFootprint();
+    }
+
     @Override
     public void save(String filename) throws IOException {
         super.save(filename);
@@ -0,0 +1,414 @@
+package shard;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.RankSupportConfig;
+import select.SelectSupport;
+
+/**
+ * A bit-vector split into shards of equal length, each indexed by its own
+ * {@link SelectSupport} which is built, rebuilt and saved independently. A
+ * global table of the ones before each shard routes <code>rank1</code> and
+ * <code>select1</code> to a single shard, and batch and range queries fan out
+ * over the shards on a configurable {@link Executor}.
+ * <p>
+ * The shards and the prefix table are published together as one immutable
+ * snapshot, so a query always sees a consistent view, and rebuilding a shard
+ * only swaps in a new snapshot once the new shard is built, without blocking
+ * queries on any shard.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class ShardedRankSupport implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    private static final String MANIFEST = "shards.bin";
+
+    private int bitVectorLength;
+    private int shardSize;
+    private int numberOfShards;
+    private transient Executor executor;
+    private transient volatile Snapshot snapshot;
+
+    /**
+     * The shards and the number of ones before each shard, with the total at the
+     * end.
+     */
+    private static final class Snapshot {
+        private final SelectSupport[] shards;
+        private final int[] prefixCounts;
+
+        private Snapshot(SelectSupport[] shards) {
+            this.shards = shards;
+            prefixCounts = new int[shards.length + 1];
+            for (int s = 0; s < shards.length; s++) {
+                prefixCounts[s + 1] = prefixCounts[s] + shards[s].rank1(shards[s].getBitVectorLength());
+            }
+        }
+    }
+
+    /**
+     * Creates a new ShardedRankSupport, building the shards in parallel on the
+     * common fork-join pool.
+     * 
+     * @param bitVector       the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param shardSize       the number of bits in each shard, a positive multiple
+     *                        of 64
+     */
+    public ShardedRankSupport(BitSet bitVector, int bitVectorLength, int shardSize) {
+        this(bitVector, bitVectorLength, shardSize, RankSupportConfig.DEFAULT, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new ShardedRankSupport, building the shards in parallel on the
+     * specified executor, which is also used for batch and range queries.
+     * 
+     * @param bitVector       the bit-vector
+     * @param bitVectorLength the length of the bit-vector
+     * @param shardSize       the number of bits in each shard, a positive multiple
+     *                        of 64
+     * @param config          the block sizes of each shard's rank directory
+     * @param executor        the executor to build and query shards on
+     */
+    public ShardedRankSupport(BitSet bitVector, int bitVectorLength, int shardSize, RankSupportConfig config,
+            Executor executor) {
+        if (shardSize <= 0 || shardSize % Long.SIZE != 0) {
+            throw new IllegalArgumentException("Shard size " + shardSize + " is not a positive multiple of 64");
+        }
+        this.bitVectorLength = bitVectorLength;
+        this.shardSize = shardSize;
+        this.executor = executor;
+        numberOfShards = Math.max(1, (bitVectorLength + shardSize - 1) / shardSize);
+        SelectSupport[] shards = new SelectSupport[numberOfShards];
+        fanOut(numberOfShards, s -> shards[s] = buildShard(
+                bitVector.get(s * shardSize, Math.min(bitVectorLength, (s + 1) * shardSize)), s, config));
+        snapshot = new Snapshot(shards);
+    }
+
+    private SelectSupport buildShard(BitSet shardBits, int shard, RankSupportConfig config) {
+        return new SelectSupport(shardBits, shardLength(shard), config);
+    }
+
+    private int shardLength(int shard) {
+        return Math.max(0, Math.min(shardSize, bitVectorLength - shard * shardSize));
+    }
+
+    /**
+     * Runs a task for each shard on the executor and waits for them all.
+     */
+    private void fanOut(int count, IntConsumer task) {
+        if (count == 1) {
+            task.accept(0);
+            return;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        for (int s = 0; s < count; s++) {
+            int shard = s;
+            futures[s] = CompletableFuture.runAsync(() -> task.accept(shard), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * Computes the rank 1 of this bit vector at position i by routing it to the
+     * shard containing i. The position may be the length of the bit vector, giving
+     * the total number of ones.
+     * 
+     * @param i the position of which to compute the rank
+     * @return the rank
+     */
+    public int rank1(int i) {
+        Snapshot current = snapshot;
+        if (i >= bitVectorLength) {
+            return current.prefixCounts[numberOfShards];
+        }
+        int shard = i / shardSize;
+        return current.prefixCounts[shard] + current.shards[shard].rank1(i - shard * shardSize);
+    }
+
+    /**
+     * Gets the position, in the bit-vector, of the FIRST index, j for which
+     * rank1(j) = i, as {@link SelectSupport#select1(int)} does, by routing it to
+     * the shard containing the ith one.
+     * 
+     * @param i the rank in the bit-vector of which to select the first index having
+     *          that rank
+     * @return the index in the bit-vector
+     */
+    public int select1(int i) {
+        return select1(snapshot, i);
+    }
+
+    private int select1(Snapshot current, int i) {
+        if (i <= 0) {
+            return 0;
+        }
+        int shard = shardOfRank(current, i);
+        return shard * shardSize + current.shards[shard].select1(i - current.prefixCounts[shard]);
+    }
+
+    /**
+     * Finds the last shard with fewer than i ones before it.
+     */
+    private int shardOfRank(Snapshot current, int i) {
+        int left = 0;
+        int right = numberOfShards - 1;
+        while (left < right) {
+            int center = (left + right + 1) >>> 1;
+            if (current.prefixCounts[center] < i) {
+                left = center;
+            } else {
+                right = center - 1;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Gets the bit at the specified index of the bit vector.
+     * 
+     * @param index the index in the bit vector
+     * @return true if the bit is set
+     */
+    public boolean access(int index) {
+        int shard = index / shardSize;
+        return snapshot.shards[shard].access(index - shard * shardSize);
+    }
+
+    /**
+     * Computes the rank 1 at each of the positions, grouping the positions by
+     * shard and answering each group on the executor.
+     * 
+     * @param positions the positions of which to compute the rank
+     * @return the ranks, in the order of the positions
+     */
+    public int[] rank1(int[] positions) {
+        Snapshot current = snapshot;
+        int[] ranks = new int[positions.length];
+        int[][] groups = groupByShard(positions, i -> Math.min(i, bitVectorLength - 1) / shardSize);
+        fanOut(groups, (shard, index) -> {
+            int i = positions[index];
+            ranks[index] = i >= bitVectorLength ? current.prefixCounts[numberOfShards]
+                    : current.prefixCounts[shard] + current.shards[shard].rank1(i - shard * shardSize);
+        });
+        return ranks;
+    }
+
+    /**
+     * Computes the select 1 of each of the ranks, grouping the ranks by shard and
+     * answering each group on the executor.
+     * 
+     * @param ranks the ranks of which to compute the select
+     * @return the indexes in the bit-vector, in the order of the ranks
+     */
+    public int[] select1(int[] ranks) {
+        Snapshot current = snapshot;
+        int[] indexes = new int[ranks.length];
+        int[][] groups = groupByShard(ranks, i -> i <= 0 ? 0 : shardOfRank(current, i));
+        fanOut(groups, (shard, index) -> indexes[index] = select1(current, ranks[index]));
+        return indexes;
+    }
+
+    /**
+     * Counts the ones in positions [from, to), clamped to the bit-vector. Shards
+     * entirely inside the range are answered from the prefix table, so only the
+     * partial shards at either end need a rank query.
+     * 
+     * @param from the first position, inclusive
+     * @param to   the last position, exclusive
+     * @return the number of ones
+     */
+    public int countOnes(int from, int to) {
+        Snapshot current = snapshot;
+        from = Math.max(0, from);
+        to = Math.min(to, bitVectorLength);
+        if (from >= to) {
+            return 0;
+        }
+        int firstShard = from / shardSize;
+        int lastShard = (to - 1) / shardSize;
+        int firstStart = firstShard * shardSize;
+        int lastStart = lastShard * shardSize;
+        if (firstShard == lastShard) {
+            SelectSupport shard = current.shards[firstShard];
+            return shard.rank1(to - firstStart) - shard.rank1(from - firstStart);
+        }
+        return current.prefixCounts[lastShard] - current.prefixCounts[firstShard]
+                - current.shards[firstShard].rank1(from - firstStart) + current.shards[lastShard].rank1(to - lastStart);
+    }
+
+    private interface ShardTask {
+        void accept(int shard, int index);
+    }
+
+    private int[][] groupByShard(int[] queries, IntUnaryOperator shardOf) {
+        int[] counts = new int[numberOfShards];
+        int[] shards = new int[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            shards[q] = shardOf.applyAsInt(queries[q]);
+            counts[shards[q]]++;
+        }
+        int[][] groups = new int[numberOfShards][];
+        for (int s = 0; s < numberOfShards; s++) {
+            groups[s] = new int[counts[s]];
+        }
+        Arrays.fill(counts, 0);
+        for (int q = 0; q < queries.length; q++) {
+            groups[shards[q]][counts[shards[q]]++] = q;
+        }
+        return groups;
+    }
+
+    private void fanOut(int[][] groups, ShardTask task) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int s = 0; s < groups.length; s++) {
+            int shard = s;
+            int[] group = groups[s];
+            if (group.length > 0) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int index : group) {
+                        task.accept(shard, index);
+                    }
+                }, executor));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * Rebuilds one shard from new bits. The new shard is built on the calling
+     * thread while queries keep using the old one, then the shard and the prefix
+     * table are swapped in together. The new shard keeps the block sizes of the
+     * old one.
+     * 
+     * @param shard     the shard number
+     * @param shardBits the bits of the shard, relative to the start of the shard
+     */
+    public void rebuildShard(int shard, BitSet shardBits) {
+        SelectSupport old = snapshot.shards[shard];
+        SelectSupport rebuilt = buildShard(shardBits.get(0, shardLength(shard)), shard,
+                RankSupportConfig.builder().blockSizes(old.getChunkSize(), old.getSubchunkSize()).build());
+        synchronized (this) {
+            SelectSupport[] shards = snapshot.shards.clone();
+            shards[shard] = rebuilt;
+            snapshot = new Snapshot(shards);
+        }
+    }
+
+    /**
+     * Gets one shard.
+     * 
+     * @param shard the shard number
+     * @return the {@link SelectSupport} of the shard
+     */
+    public SelectSupport getShard(int shard) {
+        return snapshot.shards[shard];
+    }
+
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    public int getBitVectorLength() {
+        return bitVectorLength;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        Snapshot current = snapshot;
+        MemoryFootprint footprint = new MemoryFootprint()
+                .add(MemoryFootprint.OBJECT, MemoryLayout.object(3 * Integer.BYTES, 2)
+                        + MemoryLayout.object(0, 2) + MemoryLayout.array(numberOfShards, MemoryLayout.REFERENCE))
+                .add("prefix counts", MemoryLayout.array(current.prefixCounts.length, Integer.BYTES));
+        for (SelectSupport shard : current.shards) {
+            footprint.addAll(shard.memoryFootprint());
+        }
+        return footprint;
+    }
+
+    /**
+     * Saves this ShardedRankSupport to a directory, as a manifest and one file per
+     * shard.
+     * 
+     * @param directory the directory to save to, which is created if needed
+     * @throws IOException if the files are not able to be saved
+     */
+    public void save(String directory) throws IOException {
+        new File(directory).mkdirs();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(
+                new FileOutputStream(new File(directory, MANIFEST)));
+        objectOutputStream.writeObject(this);
+        objectOutputStream.flush();
+        objectOutputStream.close();
+        for (int s = 0; s < numberOfShards; s++) {
+            saveShard(directory, s);
+        }
+    }
+
+    /**
+     * Saves one shard to its file in a directory, leaving the other shards' files
+     * as they are.
+     * 
+     * @param directory the directory to save to
+     * @param shard     the shard number
+     * @throws IOException if the file is not able to be saved
+     */
+    public void saveShard(String directory, int shard) throws IOException {
+        snapshot.shards[shard].save(shardFile(directory, shard));
+    }
+
+    private static String shardFile(String directory, int shard) {
+        return new File(directory, "shard-" + shard + ".bin").getPath();
+    }
+
+    /**
+     * Loads the ShardedRankSupport from a directory, using the common fork-join
+     * pool for queries.
+     * 
+     * @param directory the directory to load from
+     * @return the ShardedRankSupport
+     * @throws IOException            if the files are not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static ShardedRankSupport load(String directory) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(
+                new FileInputStream(new File(directory, MANIFEST)));
+        ShardedRankSupport shardedRankSupport = (ShardedRankSupport) objectInputStream.readObject();
+        objectInputStream.close();
+        shardedRankSupport.executor = ForkJoinPool.commonPool();
+        SelectSupport[] shards = new SelectSupport[shardedRankSupport.numberOfShards];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = SelectSupport.load(shardFile(directory, s));
+        }
+        shardedRankSupport.snapshot = new Snapshot(shards);
+        return shardedRankSupport;
+    }
+}
@@ -0,0 +1,105 @@
+package snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import rank.GroupRanks;
+
+/**
+ * An immutable block of 2^16 positions of a {@link VersionedSparseArray}: the
+ * words, the number of ones before every group of eight words, and the values
+ * of the ones in order. Versions share the blocks they did not change.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class Block {
+    static final int BLOCK_SHIFT = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int WORDS_PER_BLOCK = BLOCK_SIZE >>> 6;
+
+    private final long[] words;
+    /** The number of ones before each group of eight words. */
+    private final char[] groupRanks;
+    private final int cardinality;
+    /** The value of each one in order, or null if the block has no values. */
+    private final String[] values;
+
+    Block(long[] words, String[] values) {
+        this.words = words;
+        this.values = values;
+        groupRanks = GroupRanks.build(words);
+        cardinality = GroupRanks.cardinality(words, groupRanks);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    int rank(int offset) {
+        if (offset >= BLOCK_SIZE) {
+            return cardinality;
+        }
+        return GroupRanks.rank(words, groupRanks, offset);
+    }
+
+    int select(int k) {
+        return GroupRanks.select(words, groupRanks, k);
+    }
+
+    boolean contains(int offset) {
+        return (words[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    String value(int k) {
+        return values == null ? null : values[k];
+    }
+
+    /**
+     * Returns a copy of this block with changes applied, leaving this block as it
+     * is.
+     *
+     * @param changes the new value of each changed offset, or
+     *                {@link VersionedSparseArray#REMOVED} to clear it
+     * @return the new block
+     */
+    Block with(SortedMap<Integer, String> changes) {
+        long[] newWords = words.clone();
+        boolean hasValues = values != null;
+        for (Map.Entry<Integer, String> change : changes.entrySet()) {
+            int offset = change.getKey();
+            if (change.getValue() == VersionedSparseArray.REMOVED) {
+                newWords[offset >>> 6] &= ~(1L << offset);
+            } else {
+                newWords[offset >>> 6] |= 1L << offset;
+                hasValues |= change.getValue() != null;
+            }
+        }
+        if (!hasValues) {
+            return new Block(newWords, null);
+        }
+        // merge the kept values with the changed ones in order of offset
+        List<String> newValues = new ArrayList<>(cardinality + changes.size());
+        int k = 0;
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            long union = words[w] | newWords[w];
+            while (union != 0) {
+                int offset = (w << 6) + Long.numberOfTrailingZeros(union);
+                union &= union - 1;
+                String change = changes.get(offset);
+                boolean wasSet = contains(offset);
+                if (change == null && !changes.containsKey(offset)) {
+                    newValues.add(value(k));
+                } else if (change != VersionedSparseArray.REMOVED) {
+                    newValues.add(change);
+                }
+                if (wasSet) {
+                    k++;
+                }
+            }
+        }
+        return new Block(newWords, newValues.toArray(new String[0]));
+    }
+}
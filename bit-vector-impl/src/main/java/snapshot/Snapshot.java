@@ -0,0 +1,186 @@
+package snapshot;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A consistent read-only view of one version of a {@link VersionedSparseArray}.
+ * A snapshot keeps its version alive until it is closed, however many versions
+ * are published in the meantime. Queries on a closed snapshot throw an
+ * {@link IllegalStateException}.
+ * <p>
+ * The queries follow {@link sparsearray.SparseArray} and
+ * {@link select.SelectSupport}: ranks of present elements start from 0 in
+ * {@link #getAtRank(int, StringBuilder)} and from 1 in {@link #getIndexOf(int)}
+ * and {@link #select1(int)}.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class Snapshot implements AutoCloseable {
+    private final Version version;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    Snapshot(Version version) {
+        this.version = version;
+    }
+
+    /**
+     * Computes the number of ones in positions [0, i).
+     *
+     * @param i the position
+     * @return the rank
+     */
+    public int rank1(int i) {
+        Version current = open();
+        if (i >= current.size) {
+            return current.prefixCounts[current.blocks.length];
+        }
+        int block = i >>> Block.BLOCK_SHIFT;
+        return current.prefixCounts[block] + current.blocks[block].rank(i & (Block.BLOCK_SIZE - 1));
+    }
+
+    /**
+     * Gets the position plus one of the ith one, or 0 if i is 0.
+     *
+     * @param i the rank, starting from 1
+     * @return the position plus one, or 0 if i is 0
+     * @throws IllegalArgumentException if there are fewer than i ones
+     */
+    public int select1(int i) {
+        Version current = open();
+        if (i <= 0) {
+            return 0;
+        }
+        int[] prefixCounts = current.prefixCounts;
+        if (i > prefixCounts[current.blocks.length]) {
+            throw new IllegalArgumentException("Rank " + i + " exceeds the number of ones");
+        }
+        // find the last block with fewer than i ones before it
+        int left = 0;
+        int right = current.blocks.length - 1;
+        while (left < right) {
+            int center = (left + right + 1) >>> 1;
+            if (prefixCounts[center] < i) {
+                left = center;
+            } else {
+                right = center - 1;
+            }
+        }
+        return (left << Block.BLOCK_SHIFT) + current.blocks[left].select(i - 1 - prefixCounts[left]) + 1;
+    }
+
+    /**
+     * Checks whether the bit at a position is set.
+     *
+     * @param i the position
+     * @return true if the bit is set
+     */
+    public boolean access(int i) {
+        Version current = open();
+        return i >= 0 && i < current.size
+                && current.blocks[i >>> Block.BLOCK_SHIFT].contains(i & (Block.BLOCK_SIZE - 1));
+    }
+
+    /**
+     * Gets the rth element, if it exists, otherwise returns false.
+     *
+     * @param r       the index of the element to get
+     * @param element the element to append
+     * @return true if rth element exists, otherwise false
+     */
+    public boolean getAtIndex(int r, StringBuilder element) {
+        Version current = open();
+        if (!access(r)) {
+            return false;
+        }
+        Block block = current.blocks[r >>> Block.BLOCK_SHIFT];
+        element.append(block.value(block.rank(r & (Block.BLOCK_SIZE - 1))));
+        return true;
+    }
+
+    /**
+     * Gets the rth present element, starting from 0.
+     *
+     * @param r       the rank of the present element to get
+     * @param element the element to append
+     * @return true if rth present element exists, false if there are no more
+     *         than r elements
+     */
+    public boolean getAtRank(int r, StringBuilder element) {
+        int index = getIndexOf(r + 1);
+        return index >= 0 && getAtIndex(index, element);
+    }
+
+    /**
+     * Gets the index where the rth present element appears.
+     *
+     * @param r the rank of the present element, starting from 1
+     * @return the index, or -1 if there are less than r present elements
+     */
+    public int getIndexOf(int r) {
+        return r > numberOfElements() ? -1 : select1(r) - 1;
+    }
+
+    /**
+     * Gets the number of present elements up to and including index r.
+     *
+     * @param r the index
+     * @return the inclusive rank
+     */
+    public int numberOfElementsAt(int r) {
+        return rank1(r + 1);
+    }
+
+    public int numberOfElements() {
+        Version current = open();
+        return current.prefixCounts[current.blocks.length];
+    }
+
+    public int size() {
+        return version.size;
+    }
+
+    /**
+     * Gets the number of the version this snapshot sees, which increases with
+     * each publish.
+     *
+     * @return the version number
+     */
+    public long getVersion() {
+        return version.number;
+    }
+
+    /**
+     * Counts the blocks this snapshot shares with another, for checking how much
+     * memory two versions have in common.
+     */
+    int sharedBlocks(Snapshot other) {
+        Block[] blocks = open().blocks;
+        Block[] otherBlocks = other.open().blocks;
+        int shared = 0;
+        for (int b = 0; b < Math.min(blocks.length, otherBlocks.length); b++) {
+            if (blocks[b] == otherBlocks[b]) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    private Version open() {
+        if (closed.get()) {
+            throw new IllegalStateException("Snapshot of version " + version.number + " is closed");
+        }
+        return version;
+    }
+
+    /**
+     * Releases this snapshot's reference to its version. Closing a snapshot more
+     * than once has no further effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            version.release();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package snapshot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One published version of a {@link VersionedSparseArray}: its blocks and the
+ * number of ones before each block. The version holds one reference for as
+ * long as it is the current version and one for each open {@link Snapshot},
+ * and drops its blocks when the last reference is released, so the blocks only
+ * it used can be reclaimed.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class Version {
+    final long number;
+    final int size;
+    /** The blocks, dropped when the last reference is released. */
+    Block[] blocks;
+    final int[] prefixCounts;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final Runnable onRelease;
+
+    Version(long number, int size, Block[] blocks, Runnable onRelease) {
+        this.number = number;
+        this.size = size;
+        this.blocks = blocks;
+        this.onRelease = onRelease;
+        prefixCounts = new int[blocks.length + 1];
+        for (int b = 0; b < blocks.length; b++) {
+            prefixCounts[b + 1] = prefixCounts[b] + blocks[b].cardinality();
+        }
+    }
+
+    /**
+     * Takes a reference unless the version has already been released.
+     *
+     * @return true if a reference was taken
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            blocks = null;
+            onRelease.run();
+        } else if (count < 0) {
+            throw new IllegalStateException("Version " + number + " released too many times");
+        }
+    }
+
+    int references() {
+        return references.get();
+    }
+}
@@ -0,0 +1,243 @@
+package snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rank.RankSupport;
+import sparsearray.SparseArray;
+import sparsearray.SparseArrayCursor;
+
+/**
+ * A sparse array, or a plain rank/select bit-vector, with copy-on-write
+ * versions. The positions are split into immutable blocks of 2^16 bits with
+ * their own rank directory and values, and publishing a change copies only the
+ * blocks it touches, so consecutive versions share every other block and a new
+ * version costs memory proportional to what changed.
+ * <p>
+ * Readers call {@link #snapshot()} for a {@link Snapshot} of the current
+ * version, which stays consistent while newer versions are published, and close
+ * it when done. A version is released once it is no longer current and its
+ * last snapshot is closed.
+ *
+ * <pre>
+ * try (Snapshot snapshot = versioned.snapshot()) {
+ *     int rank = snapshot.rank1(1000);
+ * }
+ * versioned.edit().set("foo", 12).remove(40).publish();
+ * </pre>
+ *
+ * @author Valerie Wray
+ *
+ */
+public class VersionedSparseArray {
+    /** Marks a removed position in the changes of a block. */
+    static final String REMOVED = new String("removed");
+
+    private final int size;
+    private final Object lock = new Object();
+    private final AtomicInteger liveVersions = new AtomicInteger();
+    private volatile Version current;
+
+    private VersionedSparseArray(int size, Block[] blocks) {
+        this.size = size;
+        current = newVersion(0, blocks);
+    }
+
+    /**
+     * Creates a versioned copy of a finalized sparse array, leaving out any
+     * elements removed from it.
+     *
+     * @param sparseArray the {@link SparseArray}
+     * @return the VersionedSparseArray
+     */
+    public static VersionedSparseArray of(SparseArray sparseArray) {
+        // the cursor walks the indexes in whichever encoding they are stored
+        SparseArrayCursor cursor = sparseArray.cursor();
+        Block[] blocks = new Block[numberOfBlocks(sparseArray.size())];
+        boolean hasNext = cursor.next();
+        for (int b = 0; b < blocks.length; b++) {
+            long[] blockWords = new long[Block.WORDS_PER_BLOCK];
+            List<String> values = new ArrayList<>();
+            while (hasNext && cursor.index() >>> Block.BLOCK_SHIFT == b) {
+                int offset = cursor.index() & (Block.BLOCK_SIZE - 1);
+                blockWords[offset >>> 6] |= 1L << offset;
+                values.add(cursor.value());
+                hasNext = cursor.next();
+            }
+            blocks[b] = new Block(blockWords, values.toArray(new String[0]));
+        }
+        return new VersionedSparseArray(sparseArray.size(), blocks);
+    }
+
+    /**
+     * Creates a versioned copy of the bit-vector of a {@link RankSupport}, with no
+     * values.
+     *
+     * @param rankSupport the RankSupport
+     * @return the VersionedSparseArray
+     */
+    public static VersionedSparseArray of(RankSupport rankSupport) {
+        long[] words = rankSupport.getWords();
+        Block[] blocks = new Block[numberOfBlocks(rankSupport.getBitVectorLength())];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = new Block(blockWords(words, b), null);
+        }
+        return new VersionedSparseArray(rankSupport.getBitVectorLength(), blocks);
+    }
+
+    private static int numberOfBlocks(int size) {
+        return (int) (((long) size + Block.BLOCK_SIZE - 1) >>> Block.BLOCK_SHIFT);
+    }
+
+    private static long[] blockWords(long[] words, int block) {
+        int from = Math.min(words.length, block * Block.WORDS_PER_BLOCK);
+        int to = Math.min(words.length, from + Block.WORDS_PER_BLOCK);
+        return Arrays.copyOf(Arrays.copyOfRange(words, from, to), Block.WORDS_PER_BLOCK);
+    }
+
+    private Version newVersion(long number, Block[] blocks) {
+        liveVersions.incrementAndGet();
+        return new Version(number, size, blocks, liveVersions::decrementAndGet);
+    }
+
+    /**
+     * Opens a snapshot of the current version.
+     *
+     * @return the {@link Snapshot}, to be closed when done
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            Version version = current;
+            // the version may be released between reading it and acquiring it,
+            // in which case a newer one is current
+            if (version.tryAcquire()) {
+                return new Snapshot(version);
+            }
+        }
+    }
+
+    /**
+     * Starts a set of changes to publish as a new version.
+     *
+     * @return the {@link Editor}
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Gets the number of the current version.
+     *
+     * @return the version number
+     */
+    public long getVersion() {
+        return current.number;
+    }
+
+    /**
+     * Gets the number of versions not yet released: the current version and the
+     * older versions with open snapshots.
+     *
+     * @return the number of live versions
+     */
+    public int getLiveVersions() {
+        return liveVersions.get();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private long publish(NavigableMap<Integer, String> changes) {
+        synchronized (lock) {
+            Version previous = current;
+            Block[] blocks = previous.blocks.clone();
+            // copy only the blocks with changes
+            Integer position = changes.isEmpty() ? null : changes.firstKey();
+            while (position != null) {
+                int block = position >>> Block.BLOCK_SHIFT;
+                long blockEnd = (long) (block + 1) << Block.BLOCK_SHIFT;
+                SortedMap<Integer, String> offsets = new TreeMap<>();
+                for (; position != null && position < blockEnd; position = changes.higherKey(position)) {
+                    offsets.put(position & (Block.BLOCK_SIZE - 1), changes.get(position));
+                }
+                blocks[block] = blocks[block].with(offsets);
+            }
+            current = newVersion(previous.number + 1, blocks);
+            previous.release();
+            return current.number;
+        }
+    }
+
+    /**
+     * Collects changes and publishes them as one new version. Changes to the same
+     * position overwrite each other, and an editor can be published once.
+     */
+    public class Editor {
+        private final TreeMap<Integer, String> changes = new TreeMap<>();
+        private boolean published;
+
+        private Editor() {
+        }
+
+        /**
+         * Sets the element at a position.
+         *
+         * @param element  the element
+         * @param position the position
+         * @return this Editor
+         */
+        public Editor set(String element, int position) {
+            checkPosition(position);
+            changes.put(position, element);
+            return this;
+        }
+
+        /**
+         * Sets the bit at a position, without an element.
+         *
+         * @param position the position
+         * @return this Editor
+         */
+        public Editor set(int position) {
+            return set(null, position);
+        }
+
+        /**
+         * Removes the element, or clears the bit, at a position.
+         *
+         * @param position the position
+         * @return this Editor
+         */
+        public Editor remove(int position) {
+            checkPosition(position);
+            changes.put(position, REMOVED);
+            return this;
+        }
+
+        private void checkPosition(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("Position " + position + " is outside size " + size);
+            }
+        }
+
+        /**
+         * Publishes the changes as a new version on top of the current one. Open
+         * snapshots keep seeing the version they were opened on.
+         *
+         * @return the new version number
+         */
+        public long publish() {
+            if (published) {
+                throw new IllegalStateException("Editor already published");
+            }
+            published = true;
+            return VersionedSparseArray.this.publish(changes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package sparsearray;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import segment.SegmentedFile;
+
+/**
+ * {@link Positions} stored as a sorted array, four bytes each, and searched by
+ * binary search.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class ArrayPositions extends Positions {
+    private final int[] positions;
+
+    ArrayPositions(int[] positions) {
+        this.positions = positions;
+    }
+
+    @Override
+    PositionEncoding encoding() {
+        return PositionEncoding.SORTED_ARRAY;
+    }
+
+    @Override
+    int count() {
+        return positions.length;
+    }
+
+    @Override
+    int rank1(int i) {
+        int index = Arrays.binarySearch(positions, i);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    int select1(int k) {
+        return k <= 0 ? 0 : positions[k - 1] + 1;
+    }
+
+    @Override
+    int indexOf(int i) {
+        return Math.max(-1, Arrays.binarySearch(positions, i));
+    }
+
+    @Override
+    int[] toArray() {
+        return positions;
+    }
+
+    @Override
+    MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.DATA_WORDS,
+                MemoryLayout.array(positions.length, Integer.BYTES));
+    }
+
+    @Override
+    void save(ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.writeObject(positions);
+    }
+
+    @Override
+    void addSegments(SegmentedFile.Writer writer) {
+        writer.addInts(SparseArray.POSITIONS_SEGMENT, positions);
+    }
+}
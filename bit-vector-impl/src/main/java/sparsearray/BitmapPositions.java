@@ -0,0 +1,89 @@
+package sparsearray;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import memory.MemoryFootprint;
+import segment.SegmentedFile;
+import select.SelectSupport;
+
+/**
+ * {@link Positions} stored as a bit per index with {@link SelectSupport}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class BitmapPositions extends Positions {
+    private final SelectSupport selectSupport;
+
+    BitmapPositions(SelectSupport selectSupport) {
+        this.selectSupport = selectSupport;
+    }
+
+    SelectSupport getSelectSupport() {
+        return selectSupport;
+    }
+
+    @Override
+    PositionEncoding encoding() {
+        return PositionEncoding.BITMAP;
+    }
+
+    @Override
+    int count() {
+        return selectSupport.totalOnes();
+    }
+
+    @Override
+    int rank1(int i) {
+        return selectSupport.computeRank1(i);
+    }
+
+    @Override
+    int select1(int k) {
+        return selectSupport.computeSelect1(k);
+    }
+
+    @Override
+    int indexOf(int i) {
+        return selectSupport.computeAccess(i) ? selectSupport.computeRank1(i) : -1;
+    }
+
+    @Override
+    int successor(int x) {
+        return selectSupport.computeSuccessor(x);
+    }
+
+    @Override
+    int predecessor(int x) {
+        return selectSupport.computePredecessor(x);
+    }
+
+    @Override
+    int[] toArray() {
+        int[] positions = new int[selectSupport.totalOnes()];
+        long[] words = selectSupport.getWords();
+        int k = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                positions[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return positions;
+    }
+
+    @Override
+    MemoryFootprint memoryFootprint() {
+        return selectSupport.memoryFootprint();
+    }
+
+    @Override
+    void save(ObjectOutputStream objectOutputStream) throws IOException {
+        selectSupport.save(objectOutputStream);
+    }
+
+    @Override
+    void addSegments(SegmentedFile.Writer writer) throws IOException {
+        selectSupport.addSegments(writer);
+    }
+}
@@ -0,0 +1,109 @@
+package sparsearray;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sorted run of updates layered over a {@link SparseArray}, used
+ * by {@link UpdatableSparseArray}. Each entry sets the element at a position,
+ * or deletes it if the element is null, and remembers how it changes the number
+ * of present elements of the layer below, so ranks through the delta are the
+ * ranks below plus a prefix sum of those changes.
+ *
+ * @author Valerie Wray
+ *
+ */
+final class Delta {
+    static final Delta EMPTY = new Delta(new int[0], new String[0], new byte[0]);
+
+    private final int[] positions;
+    private final String[] elements;
+    private final byte[] changes;
+    /** cumulativeChanges[k] is the sum of the changes of the first k entries. */
+    private final int[] cumulativeChanges;
+
+    private Delta(int[] positions, String[] elements, byte[] changes) {
+        this.positions = positions;
+        this.elements = elements;
+        this.changes = changes;
+        cumulativeChanges = new int[changes.length + 1];
+        for (int k = 0; k < changes.length; k++) {
+            cumulativeChanges[k + 1] = cumulativeChanges[k] + changes[k];
+        }
+    }
+
+    /**
+     * Finds the entry at a position.
+     *
+     * @param position the position
+     * @return the index of the entry, or (-(insertion point) - 1) if there is no
+     *         entry at the position
+     */
+    int find(int position) {
+        return Arrays.binarySearch(positions, position);
+    }
+
+    int position(int k) {
+        return positions[k];
+    }
+
+    /**
+     * Gets the element of an entry.
+     *
+     * @param k the index of the entry
+     * @return the element, or null if the entry deletes its position
+     */
+    String element(int k) {
+        return elements[k];
+    }
+
+    /**
+     * Gets the change in the number of present elements made by the entries
+     * before a position.
+     *
+     * @param position the position, exclusive
+     * @return the change in the number of present elements
+     */
+    int changeBefore(int position) {
+        int k = find(position);
+        return cumulativeChanges[k >= 0 ? k : -k - 1];
+    }
+
+    int size() {
+        return positions.length;
+    }
+
+    /**
+     * Returns a copy of this delta with an entry set or replaced.
+     *
+     * @param position     the position
+     * @param element      the element, or null to delete the position
+     * @param presentBelow whether the position is present in the layer below
+     * @return the new delta
+     */
+    Delta with(int position, String element, boolean presentBelow) {
+        byte change = (byte) ((element != null ? 1 : 0) - (presentBelow ? 1 : 0));
+        int k = find(position);
+        if (k >= 0) {
+            String[] newElements = elements.clone();
+            byte[] newChanges = changes.clone();
+            newElements[k] = element;
+            newChanges[k] = change;
+            return new Delta(positions, newElements, newChanges);
+        }
+        k = -k - 1;
+        int n = positions.length;
+        int[] newPositions = new int[n + 1];
+        String[] newElements = new String[n + 1];
+        byte[] newChanges = new byte[n + 1];
+        System.arraycopy(positions, 0, newPositions, 0, k);
+        System.arraycopy(elements, 0, newElements, 0, k);
+        System.arraycopy(changes, 0, newChanges, 0, k);
+        newPositions[k] = position;
+        newElements[k] = element;
+        newChanges[k] = change;
+        System.arraycopy(positions, k, newPositions, k + 1, n - k);
+        System.arraycopy(elements, k, newElements, k + 1, n - k);
+        System.arraycopy(changes, k, newChanges, k + 1, n - k);
+        return new Delta(newPositions, newElements, newChanges);
+    }
+}
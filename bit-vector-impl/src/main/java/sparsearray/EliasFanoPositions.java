@@ -0,0 +1,70 @@
+package sparsearray;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import eliasfano.EliasFano;
+import memory.MemoryFootprint;
+import segment.SegmentedFile;
+
+/**
+ * {@link Positions} stored in the {@link EliasFano} encoding.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class EliasFanoPositions extends Positions {
+    private final EliasFano eliasFano;
+
+    EliasFanoPositions(int[] positions, int size) {
+        eliasFano = new EliasFano(positions, positions.length, Math.max(1, size));
+    }
+
+    EliasFanoPositions(EliasFano eliasFano) {
+        this.eliasFano = eliasFano;
+    }
+
+    @Override
+    PositionEncoding encoding() {
+        return PositionEncoding.ELIAS_FANO;
+    }
+
+    @Override
+    int count() {
+        return eliasFano.size();
+    }
+
+    @Override
+    int rank1(int i) {
+        return eliasFano.rank(i);
+    }
+
+    @Override
+    int select1(int k) {
+        return k <= 0 ? 0 : eliasFano.get(k - 1) + 1;
+    }
+
+    @Override
+    int[] toArray() {
+        int[] positions = new int[eliasFano.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = eliasFano.get(i);
+        }
+        return positions;
+    }
+
+    @Override
+    MemoryFootprint memoryFootprint() {
+        return eliasFano.memoryFootprint();
+    }
+
+    @Override
+    void save(ObjectOutputStream objectOutputStream) throws IOException {
+        eliasFano.save(objectOutputStream);
+    }
+
+    @Override
+    void addSegments(SegmentedFile.Writer writer) {
+        eliasFano.addSegments(writer);
+    }
+}
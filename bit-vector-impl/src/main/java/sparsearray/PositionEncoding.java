@@ -0,0 +1,82 @@
+package sparsearray;
+
+import eliasfano.EliasFano;
+import rank.RankSupportConfig;
+
+/**
+ * The encodings of the indexes of the elements of a finalized
+ * {@link SparseArray}, chosen by {@link #choose(int, int)} from the density
+ * unless one is requested.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public enum PositionEncoding {
+    /** The sorted indexes, searched by binary search, for very sparse arrays. */
+    SORTED_ARRAY,
+    /**
+     * The indexes in the {@link EliasFano} encoding, about 2 +
+     * log(size / elements) bits each, for sparse arrays.
+     */
+    ELIAS_FANO,
+    /** A bit per index with {@link select.SelectSupport}, for dense arrays. */
+    BITMAP;
+
+    /** Below this many bytes a sorted array is chosen whatever the density. */
+    static final int SMALL_ARRAY_BYTES = 4096;
+
+    /**
+     * Estimates the heap bytes of the positions in this encoding.
+     * 
+     * @param numberOfPositions the number of elements
+     * @param size              the size of the sparse array
+     * @return the estimated number of bytes
+     */
+    public long estimateBytes(int numberOfPositions, int size) {
+        switch (this) {
+        case SORTED_ARRAY:
+            return (long) numberOfPositions * Integer.BYTES;
+        case ELIAS_FANO:
+            int lowBitWidth = numberOfPositions == 0 ? 0
+                    : 31 - Integer.numberOfLeadingZeros(Math.max(1, size / numberOfPositions));
+            long upperBitsLength = numberOfPositions + (size >>> lowBitWidth) + 1L;
+            long samplesBytes = (long) numberOfPositions / EliasFano.SAMPLE_RATE * Integer.BYTES;
+            return (long) numberOfPositions * lowBitWidth / Byte.SIZE + bitmapBytes(upperBitsLength) + samplesBytes;
+        default:
+            return bitmapBytes(size);
+        }
+    }
+
+    /**
+     * Estimates the bytes of a bit-vector with select support: its words and a
+     * word-aligned rank directory.
+     */
+    private static long bitmapBytes(long length) {
+        double overheadPercent = RankSupportConfig.estimateOverheadPercent(512, 64, (int) Math.min(length,
+                Integer.MAX_VALUE));
+        return (long) (length / Byte.SIZE * (1 + overheadPercent / 100));
+    }
+
+    /**
+     * Chooses the smallest encoding that keeps lookups fast. A sorted array or a
+     * bitmap, whichever is smaller, is chosen unless Elias-Fano takes at most half
+     * as many bytes, since its lookups select in the upper bits and are slower.
+     * Small arrays are always kept sorted.
+     * 
+     * @param numberOfPositions the number of elements
+     * @param size              the size of the sparse array
+     * @return the encoding
+     */
+    public static PositionEncoding choose(int numberOfPositions, int size) {
+        long arrayBytes = SORTED_ARRAY.estimateBytes(numberOfPositions, size);
+        if (arrayBytes <= SMALL_ARRAY_BYTES) {
+            return SORTED_ARRAY;
+        }
+        long bitmapBytes = BITMAP.estimateBytes(numberOfPositions, size);
+        PositionEncoding fastest = bitmapBytes < arrayBytes ? BITMAP : SORTED_ARRAY;
+        if (2 * ELIAS_FANO.estimateBytes(numberOfPositions, size) <= Math.min(arrayBytes, bitmapBytes)) {
+            return ELIAS_FANO;
+        }
+        return fastest;
+    }
+}
@@ -0,0 +1,145 @@
+package sparsearray;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import eliasfano.EliasFano;
+import memory.MemoryFootprint;
+import rank.RankSupportConfig;
+import segment.SegmentedFile;
+import select.SelectSupport;
+
+/**
+ * The indexes of the elements of a finalized {@link SparseArray} in one of the
+ * {@link PositionEncoding encodings}. As in {@link SelectSupport}, ranks count
+ * the indexes before a position and selects start from 1.
+ * 
+ * @author Valerie Wray
+ *
+ */
+abstract class Positions {
+
+    abstract PositionEncoding encoding();
+
+    /**
+     * Gets the number of indexes.
+     */
+    abstract int count();
+
+    /**
+     * Counts the indexes less than i.
+     */
+    abstract int rank1(int i);
+
+    /**
+     * Gets the kth index, starting from 1, plus one, or 0 if k is 0.
+     */
+    abstract int select1(int k);
+
+    abstract int[] toArray();
+
+    abstract MemoryFootprint memoryFootprint();
+
+    /**
+     * Saves the indexes in their encoding using the specified
+     * {@link ObjectOutputStream}.
+     */
+    abstract void save(ObjectOutputStream objectOutputStream) throws IOException;
+
+    /**
+     * Adds the indexes in their encoding to a {@link SegmentedFile}.
+     */
+    abstract void addSegments(SegmentedFile.Writer writer) throws IOException;
+
+    /**
+     * Gets the rank of index i, starting from 0, or -1 if it is not an index.
+     */
+    int indexOf(int i) {
+        int rank = rank1(i);
+        return rank < count() && select1(rank + 1) - 1 == i ? rank : -1;
+    }
+
+    /**
+     * Gets the smallest index at or after x, or -1 if there is none.
+     */
+    int successor(int x) {
+        if (x < 0) {
+            throw new IndexOutOfBoundsException("x < 0: " + x);
+        }
+        int rank = rank1(x);
+        return rank < count() ? select1(rank + 1) - 1 : -1;
+    }
+
+    /**
+     * Gets the largest index at or before x, or -1 if there is none.
+     */
+    int predecessor(int x) {
+        if (x < -1) {
+            throw new IndexOutOfBoundsException("x < -1: " + x);
+        }
+        int rank = x < 0 ? 0 : rank1(x == Integer.MAX_VALUE ? x : x + 1);
+        return rank > 0 ? select1(rank) - 1 : -1;
+    }
+
+    /**
+     * Encodes sorted indexes.
+     * 
+     * @param encoding        the {@link PositionEncoding}
+     * @param sortedPositions the indexes, in increasing order
+     * @param size            the size of the sparse array
+     * @param config          the {@link RankSupportConfig} of a bitmap
+     * @return the Positions
+     */
+    static Positions encode(PositionEncoding encoding, int[] sortedPositions, int size, RankSupportConfig config) {
+        switch (encoding) {
+        case SORTED_ARRAY:
+            return new ArrayPositions(sortedPositions);
+        case ELIAS_FANO:
+            return new EliasFanoPositions(sortedPositions, size);
+        default:
+            return new BitmapPositions(SelectSupport.fromSortedPositions(sortedPositions, size, config));
+        }
+    }
+
+    /**
+     * Loads indexes saved by {@link #save(ObjectOutputStream)}.
+     * 
+     * @param encoding          the {@link PositionEncoding} they were saved in
+     * @param objectInputStream the input stream to read from
+     * @return the Positions
+     * @throws IOException            if the indexes are not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    static Positions load(PositionEncoding encoding, ObjectInputStream objectInputStream)
+            throws IOException, ClassNotFoundException {
+        switch (encoding) {
+        case SORTED_ARRAY:
+            return new ArrayPositions((int[]) objectInputStream.readObject());
+        case ELIAS_FANO:
+            return new EliasFanoPositions(EliasFano.load(objectInputStream));
+        default:
+            return new BitmapPositions(SelectSupport.load(objectInputStream));
+        }
+    }
+
+    /**
+     * Reads indexes added by {@link #addSegments(SegmentedFile.Writer)}.
+     * 
+     * @param encoding the {@link PositionEncoding} they were added in
+     * @param file     the {@link SegmentedFile}
+     * @return the Positions
+     * @throws IOException if the segments are not able to be read
+     */
+    static Positions readSegments(PositionEncoding encoding, SegmentedFile file) throws IOException {
+        switch (encoding) {
+        case SORTED_ARRAY:
+            return new ArrayPositions(file.readInts(SparseArray.POSITIONS_SEGMENT));
+        case ELIAS_FANO:
+            return new EliasFanoPositions(EliasFano.readSegments(file));
+        default:
+            return new BitmapPositions(SelectSupport.readSegments(file));
+        }
+    }
+}
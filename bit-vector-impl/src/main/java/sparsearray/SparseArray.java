@@ -6,10 +6,22 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import metrics.Metrics;
+import metrics.Operation;
+import rank.Popcount;
+import rank.RankSupport;
+import rank.RankSupportConfig;
+import segment.SegmentOptions;
+import segment.SegmentedFile;
 import select.SelectSupport;
 
 /**
@@ -19,12 +31,58 @@ import select.SelectSupport;
  * @author Valerie Wray
  *
  */
-public class SparseArray implements Serializable {
+public class SparseArray implements Serializable, MemoryAccountable {
     private static final long serialVersionUID = 1L;
+    /**
+     * The segment kinds used by {@link #saveSegmented(String, SegmentOptions)}.
+     * The tombstones segment is only written if there are removed elements. The
+     * encoding segment holds the size, the encoding of the indexes and the
+     * requested encoding, or -1, and the indexes follow in their encoding: as the
+     * segments of a {@link RankSupport} for a bitmap, the positions segment for a
+     * sorted array, or the segments of an {@link eliasfano.EliasFano}.
+     */
+    public static final int VALUES_SEGMENT = 4;
+    public static final int VALUE_OFFSETS_SEGMENT = 5;
+    public static final int TOMBSTONES_SEGMENT = 6;
+    public static final int ENCODING_SEGMENT = 10;
+    public static final int POSITIONS_SEGMENT = 11;
+    /**
+     * The default fraction of removed elements at which {@link #remove(int)}
+     * compacts the sparse array.
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
+    /**
+     * The largest gap, in bits, between two sorted batch positions across which
+     * the rank is carried by a popcount instead of a new directory probe.
+     */
+    private static final int MAX_SCAN_BITS = 8 * Long.SIZE;
     private int size;
+    /** The indexes of the elements until finalized. */
     private BitSet bitVector;
     private List<String> denseValues;
+    /**
+     * The dense ranks of the removed elements, or null if nothing has been
+     * removed since the last compaction.
+     */
+    private Tombstones tombstones;
+    /** The bitmap select support, if the indexes are encoded as a bitmap. */
     private transient SelectSupport selectSupport;
+    /**
+     * The select support over the indexes of the present elements built by
+     * {@link #getSelectSupport()}, kept until the next removal or build.
+     */
+    private transient SelectSupport presentSelectSupport;
+    /** The indexes once finalized, in the encoding chosen by density. */
+    private transient Positions positions;
+    /**
+     * The encoding of the indexes once finalized, which are saved after the
+     * sparse array in it, or null in files which always held a bitmap.
+     */
+    private PositionEncoding positionEncoding;
+    /** The encoding requested when finalizing, or null to choose by density. */
+    private PositionEncoding requestedEncoding;
+    private transient RankSupportConfig rankSupportConfig;
+    private transient double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
 
     /**
      * Creates an empty sparse array of the specified size.
@@ -32,9 +90,82 @@ public class SparseArray implements Serializable {
      * @param size the size of the sparse array to create
      */
     public SparseArray(int size) {
+        this(size, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates an empty sparse array of the specified size, whose
+     * {@link SelectSupport} will use the chunk and subchunk sizes chosen by the
+     * specified configuration.
+     * 
+     * @param size              the size of the sparse array to create
+     * @param rankSupportConfig the {@link RankSupportConfig}
+     */
+    public SparseArray(int size, RankSupportConfig rankSupportConfig) {
+        this.rankSupportConfig = rankSupportConfig;
         create(size);
     }
 
+    private SparseArray(int size, int[] sortedPositions, List<String> denseValues) {
+        this.size = size;
+        this.denseValues = denseValues;
+        rankSupportConfig = RankSupportConfig.DEFAULT;
+        encode(PositionEncoding.choose(sortedPositions.length, size), sortedPositions);
+    }
+
+    private SparseArray(int size, List<String> denseValues, Positions positions) {
+        this.size = size;
+        this.denseValues = denseValues;
+        setPositions(positions);
+    }
+
+    /**
+     * Creates a finalized sparse array from the sorted indexes of its elements
+     * and the elements in the same order. The indexes are encoded directly, for
+     * a bitmap with {@link SelectSupport#fromSortedPositions(int[], int)},
+     * instead of appending the elements one by one and counting the bits again
+     * when finalizing.
+     * 
+     * @param sortedPositions the indexes of the elements, in increasing order
+     * @param elements        the elements, in the order of their indexes
+     * @param size            the size of the sparse array
+     * @return the finalized SparseArray
+     * @throws IllegalArgumentException if the indexes are not increasing or not in
+     *                                  the sparse array, or there are not as many
+     *                                  elements as indexes
+     */
+    public static SparseArray fromSortedPositions(int[] sortedPositions, List<String> elements, int size) {
+        if (elements.size() != sortedPositions.length) {
+            throw new IllegalArgumentException(
+                    elements.size() + " elements do not match " + sortedPositions.length + " positions");
+        }
+        int previous = -1;
+        for (int position : sortedPositions) {
+            if (position <= previous || position >= size) {
+                throw new IllegalArgumentException(
+                        "Position " + position + " is not in (" + previous + ", " + size + ")");
+            }
+            previous = position;
+        }
+        return new SparseArray(size, sortedPositions.clone(), new ArrayList<>(elements));
+    }
+
+    /**
+     * Creates a finalized sparse array from the sorted long indexes of its
+     * elements and the elements in the same order.
+     * 
+     * @param sortedPositions the indexes of the elements, in increasing order
+     * @param elements        the elements, in the order of their indexes
+     * @param size            the size of the sparse array
+     * @return the finalized SparseArray
+     * @throws IllegalArgumentException if the indexes are not increasing or not in
+     *                                  the sparse array, or there are not as many
+     *                                  elements as indexes
+     */
+    public static SparseArray fromSortedPositions(long[] sortedPositions, List<String> elements, int size) {
+        return fromSortedPositions(RankSupport.toIntPositions(sortedPositions, size), elements, size);
+    }
+
     /**
      * Creates an empty sparse array of the specified size. (Use SparseArray
      * constructor instead of calling this directly.)
@@ -59,16 +190,85 @@ public class SparseArray implements Serializable {
             System.out.println("Error: position is greater than size. Cannot append element " + element);
             return;
         }
+        if (positions != null) {
+            System.out.println("Error: sparse array is finalized. Use UpdatableSparseArray to add element " + element);
+            return;
+        }
         bitVector.set(position);
         denseValues.add(element);
     }
 
     /**
-     * Finalizes the elements in the sparse array and creates the
-     * {@link SelectSupport} with built-in rank and select support.
+     * Finalizes the elements in the sparse array.
+     * 
+     * @deprecated this overrides {@link Object#finalize()}, so every sparse array
+     *             is finalizable; use {@link #build()} instead
      */
+    @Deprecated
     public void finalize() {
-        selectSupport = new SelectSupport(bitVector, size);
+        build();
+    }
+
+    /**
+     * Builds the sparse array once all elements are appended and encodes their
+     * indexes in the {@link PositionEncoding} chosen by
+     * {@link PositionEncoding#choose(int, int)} for the density: a sorted array,
+     * Elias-Fano, or a bitmap with {@link SelectSupport}. {@link #stats()} reports
+     * the encoding chosen.
+     */
+    public void build() {
+        build(null);
+    }
+
+    /**
+     * Builds the sparse array once all elements are appended and encodes their
+     * indexes in the specified encoding, which compaction keeps too. Building a
+     * built sparse array encodes its indexes again.
+     * 
+     * @param encoding the {@link PositionEncoding}, or null to choose by density
+     */
+    public void build(PositionEncoding encoding) {
+        if (denseValues instanceof ArrayList) {
+            // no more elements will be appended, so release the spare capacity
+            ((ArrayList<String>) denseValues).trimToSize();
+        }
+        requestedEncoding = encoding;
+        // building again encodes the built indexes, which may have no bitmap
+        int[] sortedPositions = positions == null ? null : positions.toArray();
+        int numberOfPositions = sortedPositions == null ? bitVector.cardinality() : sortedPositions.length;
+        encode(encoding != null ? encoding : PositionEncoding.choose(numberOfPositions, size), sortedPositions);
+    }
+
+    /**
+     * Encodes the indexes, from the sorted indexes if given and otherwise from the
+     * bit-vector.
+     */
+    private void encode(PositionEncoding encoding, int[] sortedPositions) {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        RankSupportConfig config = rankSupportConfig == null ? RankSupportConfig.DEFAULT : rankSupportConfig;
+        if (encoding == PositionEncoding.BITMAP && sortedPositions == null) {
+            setPositions(new BitmapPositions(new SelectSupport(bitVector, size, config)));
+        } else {
+            setPositions(Positions.encode(encoding,
+                    sortedPositions != null ? sortedPositions : bitVector.stream().toArray(), size, config));
+        }
+        // a bitmap records its own build
+        if (recording && selectSupport == null) {
+            Metrics.record(Operation.BUILD, start);
+        }
+    }
+
+    /**
+     * Sets the encoded indexes, which replace the bit-vector.
+     */
+    private void setPositions(Positions positions) {
+        this.positions = positions;
+        positionEncoding = positions.encoding();
+        selectSupport = positions instanceof BitmapPositions ? ((BitmapPositions) positions).getSelectSupport()
+                : null;
+        presentSelectSupport = null;
+        bitVector = null;
     }
 
     /**
@@ -81,10 +281,20 @@ public class SparseArray implements Serializable {
      *         contains less than r items
      */
     public boolean getAtRank(int r, StringBuilder element) {
-        if (r >= denseValues.size()) {
+        if (!Metrics.isEnabled()) {
+            return computeGetAtRank(r, element);
+        }
+        long start = System.nanoTime();
+        boolean present = computeGetAtRank(r, element);
+        Metrics.record(Operation.GET_AT_RANK, start);
+        return present;
+    }
+
+    private boolean computeGetAtRank(int r, StringBuilder element) {
+        if (r >= numberOfElements()) {
             return false;
         }
-        element.append(denseValues.get(r));
+        element.append(denseValues.get(denseRank(r)));
         return true;
     }
 
@@ -97,13 +307,167 @@ public class SparseArray implements Serializable {
      * @return true if rth element exists, otherwise false
      */
     public boolean getAtIndex(int r, StringBuilder element) {
-        if (!selectSupport.access(r)) {
+        if (!Metrics.isEnabled()) {
+            return computeGetAtIndex(r, element);
+        }
+        long start = System.nanoTime();
+        boolean present = computeGetAtIndex(r, element);
+        Metrics.record(Operation.GET_AT_INDEX, start);
+        return present;
+    }
+
+    private boolean computeGetAtIndex(int r, StringBuilder element) {
+        int denseRank = positions.indexOf(r);
+        if (denseRank < 0 || isRemoved(denseRank)) {
             return false;
         }
-        element.append(denseValues.get(selectSupport.rank1(r)));
+        element.append(denseValues.get(denseRank));
         return true;
     }
 
+    /**
+     * Gets the rth element, if it exists.
+     * 
+     * @param r the index of the element to get
+     * @return the element, or null if it is not present
+     */
+    String elementAt(int r) {
+        int denseRank = positions.indexOf(r);
+        return denseRank < 0 || isRemoved(denseRank) ? null : denseValues.get(denseRank);
+    }
+
+    /**
+     * Counts the stored elements, including the removed ones, before index i.
+     */
+    int rank1(int i) {
+        return positions.rank1(i);
+    }
+
+    RankSupportConfig getRankSupportConfig() {
+        return rankSupportConfig;
+    }
+
+    /**
+     * Gets the elements at many indexes at once. The indexes are visited in sorted
+     * order, so the rank of an index close to the previous one is carried forward
+     * by a popcount of the words between them instead of probing the rank
+     * directory again. Element i is written to elements[i], or null if absent,
+     * and bit i of present is set if it is present.
+     * 
+     * @param positions the indexes of the elements to get, in any order
+     * @param elements  the array to write the elements to, at least as long as
+     *                  positions
+     * @param present   the bitmap to mark the present elements in
+     * @return the number of present elements found
+     * @throws IllegalArgumentException  if elements is shorter than positions
+     * @throws IndexOutOfBoundsException if an index is negative
+     */
+    public int getAtIndex(int[] positions, String[] elements, BitSet present) {
+        checkBatch(positions, elements);
+        // without a bitmap each index is searched in the encoded indexes
+        long[] words = selectSupport == null ? null : selectSupport.getWords();
+        int found = 0;
+        int previous = -1;
+        int previousRank = 0;
+        long[] sorted = sortedQueries(positions);
+        for (int k = 0; k < positions.length; k++) {
+            int q = sorted == null ? k : (int) sorted[k];
+            int r = positions[q];
+            if (r < 0) {
+                throw new IndexOutOfBoundsException("r < 0: " + r);
+            }
+            if (r >= size) {
+                elements[q] = null;
+                present.clear(q);
+                continue;
+            }
+            boolean isStored;
+            if (words == null) {
+                previousRank = this.positions.indexOf(r);
+                isStored = previousRank >= 0;
+            } else {
+                if (r != previous) {
+                    previousRank = previous >= 0 && r - previous <= MAX_SCAN_BITS
+                            ? previousRank + Popcount.countOnes(words, previous, r)
+                            : selectSupport.computeRank1(r);
+                    previous = r;
+                }
+                isStored = (words[r >>> 6] & (1L << r)) != 0;
+            }
+            if (isStored && !isRemoved(previousRank)) {
+                elements[q] = denseValues.get(previousRank);
+                present.set(q);
+                found++;
+            } else {
+                elements[q] = null;
+                present.clear(q);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the present elements at many ranks at once. Element i is written to
+     * elements[i], or null if there are not more than ranks[i] present elements,
+     * and bit i of present is set if it exists.
+     * 
+     * @param ranks    the ranks of the present elements to get, in any order
+     * @param elements the array to write the elements to, at least as long as
+     *                 ranks
+     * @param present  the bitmap to mark the existing elements in
+     * @return the number of elements found
+     * @throws IllegalArgumentException  if elements is shorter than ranks
+     * @throws IndexOutOfBoundsException if a rank is negative
+     */
+    public int getAtRank(int[] ranks, String[] elements, BitSet present) {
+        checkBatch(ranks, elements);
+        int found = 0;
+        for (int q = 0; q < ranks.length; q++) {
+            if (ranks[q] < 0) {
+                throw new IndexOutOfBoundsException("r < 0: " + ranks[q]);
+            }
+            if (ranks[q] < numberOfElements()) {
+                elements[q] = denseValues.get(denseRank(ranks[q]));
+                present.set(q);
+                found++;
+            } else {
+                elements[q] = null;
+                present.clear(q);
+            }
+        }
+        return found;
+    }
+
+    private static void checkBatch(int[] queries, String[] elements) {
+        if (elements.length < queries.length) {
+            throw new IllegalArgumentException(
+                    "Elements array of length " + elements.length + " is shorter than " + queries.length + " queries");
+        }
+    }
+
+    /**
+     * Sorts the queries by argument, packing each argument with its index.
+     * 
+     * @param queries the queries
+     * @return the packed queries in sorted order, or null if the queries are
+     *         already sorted
+     */
+    private static long[] sortedQueries(int[] queries) {
+        boolean isSorted = true;
+        for (int q = 1; q < queries.length && isSorted; q++) {
+            isSorted = queries[q - 1] <= queries[q];
+        }
+        if (isSorted) {
+            return null;
+        }
+        long[] sorted = new long[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            sorted[q] = (long) queries[q] << 32 | q;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
     /**
      * Gets the index in the sparse array where the rth present element appears.
      * 
@@ -112,10 +476,78 @@ public class SparseArray implements Serializable {
      *         or -1 if there are less than r present elements
      */
     public int getIndexOf(int r) {
-        if (r > denseValues.size()) {
+        if (!Metrics.isEnabled()) {
+            return computeGetIndexOf(r);
+        }
+        long start = System.nanoTime();
+        int index = computeGetIndexOf(r);
+        Metrics.record(Operation.GET_INDEX_OF, start);
+        return index;
+    }
+
+    private int computeGetIndexOf(int r) {
+        if (r > numberOfElements()) {
             return -1;
         }
-        return selectSupport.select1(r) - 1;
+        return positions.select1(tombstones == null || r <= 0 ? r : tombstones.liveSelect(r)) - 1;
+    }
+
+    /**
+     * Gets the indexes where many present elements appear at once. The ranks are
+     * selected in sorted order with {@link SelectSupport#select1(int[], int[])},
+     * which walks the words once instead of searching for each rank. Index i is
+     * written to indexes[i], or -1 if there are less than ranks[i] present
+     * elements.
+     * 
+     * @param ranks   the ranks of the present elements, starting from 1, in any
+     *                order
+     * @param indexes the array to write the indexes to, at least as long as ranks
+     * @return the number of present elements found
+     * @throws IllegalArgumentException if indexes is shorter than ranks
+     */
+    public int getIndexOf(int[] ranks, int[] indexes) {
+        if (indexes.length < ranks.length) {
+            throw new IllegalArgumentException(
+                    "Indexes array of length " + indexes.length + " is shorter than " + ranks.length + " queries");
+        }
+        if (!Metrics.isEnabled()) {
+            return computeGetIndexOf(ranks, indexes);
+        }
+        long start = System.nanoTime();
+        int found = computeGetIndexOf(ranks, indexes);
+        Metrics.record(Operation.GET_INDEX_OF, start);
+        return found;
+    }
+
+    private int computeGetIndexOf(int[] ranks, int[] indexes) {
+        int numberOfElements = numberOfElements();
+        long[] sorted = sortedQueries(ranks);
+        // ranks past the end are clamped so the ranks stay sorted
+        int[] selected = new int[ranks.length];
+        for (int k = 0; k < ranks.length; k++) {
+            selected[k] = Math.min(ranks[sorted == null ? k : (int) sorted[k]], numberOfElements);
+        }
+        if (tombstones != null) {
+            for (int k = 0; k < selected.length; k++) {
+                selected[k] = tombstones.liveSelect(selected[k]);
+            }
+        }
+        if (selectSupport != null) {
+            selectSupport.computeSelect1(selected, selected);
+        } else {
+            for (int k = 0; k < selected.length; k++) {
+                selected[k] = positions.select1(selected[k]);
+            }
+        }
+        int found = 0;
+        for (int k = 0; k < ranks.length; k++) {
+            int q = sorted == null ? k : (int) sorted[k];
+            indexes[q] = ranks[q] > numberOfElements ? -1 : selected[k] - 1;
+            if (indexes[q] >= 0) {
+                found++;
+            }
+        }
+        return found;
     }
 
     /**
@@ -126,8 +558,209 @@ public class SparseArray implements Serializable {
      * @return the number of present elements up to and including index r
      */
     public int numberOfElementsAt(int r) {
-        // return selectSupport.rank1(r) + (selectSupport.access(r) ? 1 : 0);
-        return selectSupport.access(r) ? selectSupport.rank1(r) + 1 : selectSupport.rank1(r);
+        if (!Metrics.isEnabled()) {
+            return computeNumberOfElementsAt(r);
+        }
+        long start = System.nanoTime();
+        int numberOfElements = computeNumberOfElementsAt(r);
+        Metrics.record(Operation.NUMBER_OF_ELEMENTS_AT, start);
+        return numberOfElements;
+    }
+
+    private int computeNumberOfElementsAt(int r) {
+        int storedElements = positions.rank1(r < size ? r + 1 : size);
+        return tombstones == null ? storedElements : tombstones.liveRank(storedElements);
+    }
+
+    /**
+     * Removes the element at index r. Before {@link #build()} the element is
+     * removed right away. Afterwards it is only marked with a tombstone, so
+     * lookups skip it at the cost of one more rank or select over the tombstones,
+     * until the removed elements reach the compaction threshold and
+     * {@link #compact()} rewrites the sparse array without them. Marking an
+     * element takes time logarithmic in the number of stored elements, and
+     * nothing is rebuilt between removals.
+     * 
+     * @param r the index in the sparse array
+     * @return true if an element was removed, false if there was no element at
+     *         index r
+     */
+    public boolean remove(int r) {
+        if (r < 0 || r >= size) {
+            return false;
+        }
+        if (positions == null) {
+            if (!bitVector.get(r)) {
+                return false;
+            }
+            denseValues.remove(bitVector.get(0, r).cardinality());
+            bitVector.clear(r);
+            return true;
+        }
+        int denseRank = positions.indexOf(r);
+        if (denseRank < 0 || isRemoved(denseRank)) {
+            return false;
+        }
+        if (tombstones == null) {
+            tombstones = new Tombstones(denseValues.size());
+        }
+        tombstones.set(denseRank);
+        presentSelectSupport = null;
+        // the threshold is zero after deserialization, which means the default
+        double threshold = compactionThreshold > 0 ? compactionThreshold : DEFAULT_COMPACTION_THRESHOLD;
+        if (tombstones.count() >= threshold * denseValues.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the positions and values without the removed elements in one pass
+     * and encodes the positions again, choosing the encoding for the new density
+     * unless one was requested.
+     */
+    public void compact() {
+        if (tombstones == null) {
+            return;
+        }
+        int[] storedPositions = positions.toArray();
+        int[] compactedPositions = new int[denseValues.size() - tombstones.count()];
+        List<String> compactedValues = new ArrayList<>(compactedPositions.length);
+        for (int denseRank = 0; denseRank < storedPositions.length; denseRank++) {
+            if (!tombstones.get(denseRank)) {
+                compactedPositions[compactedValues.size()] = storedPositions[denseRank];
+                compactedValues.add(denseValues.get(denseRank));
+            }
+        }
+        denseValues = compactedValues;
+        tombstones = null;
+        encode(requestedEncoding != null ? requestedEncoding
+                : PositionEncoding.choose(compactedPositions.length, size), compactedPositions);
+    }
+
+    /**
+     * Sets the fraction of removed elements at which {@link #remove(int)}
+     * compacts the sparse array. A threshold above 1 disables automatic
+     * compaction.
+     * 
+     * @param compactionThreshold the fraction of removed elements
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (!(compactionThreshold > 0)) {
+            throw new IllegalArgumentException("Invalid compaction threshold: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Gets the number of removed elements not yet compacted.
+     * 
+     * @return the number of tombstones
+     */
+    public int getNumberOfTombstones() {
+        return tombstones == null ? 0 : tombstones.count();
+    }
+
+    private boolean isRemoved(int denseRank) {
+        return tombstones != null && tombstones.get(denseRank);
+    }
+
+    /**
+     * Converts the rank of a present element, starting from 0, to its rank among
+     * the stored elements including the removed ones.
+     */
+    private int denseRank(int r) {
+        return tombstones == null ? r : tombstones.liveSelect(r + 1) - 1;
+    }
+
+    /**
+     * Gets the smallest index greater than or equal to r at which an element is
+     * present, in time independent of the gap to it.
+     * 
+     * @param r the index in the sparse array to start from
+     * @return the index of the next present element, or -1 if there is none at or
+     *         after r
+     */
+    public int nextPresentIndex(int r) {
+        int index = positions.successor(r);
+        if (index < 0 || tombstones == null) {
+            return index;
+        }
+        int denseRank = positions.rank1(index);
+        if (!tombstones.get(denseRank)) {
+            return index;
+        }
+        // the next dense rank still present, found without walking the tombstones
+        int liveRank = tombstones.nextLive(denseRank);
+        return liveRank < 0 ? -1 : positions.select1(liveRank + 1) - 1;
+    }
+
+    /**
+     * Gets the next present element at or after index r, appending it to element.
+     * 
+     * @param r       the index in the sparse array to start from
+     * @param element the element to append
+     * @return the index of the next present element, or -1 if there is none at or
+     *         after r
+     */
+    public int nextPresentIndex(int r, StringBuilder element) {
+        int index = nextPresentIndex(r);
+        if (index >= 0) {
+            element.append(elementAt(index));
+        }
+        return index;
+    }
+
+    /**
+     * Gets the largest index less than or equal to r at which an element is
+     * present, in time independent of the gap to it.
+     * 
+     * @param r the index in the sparse array to start from, or -1
+     * @return the index of the previous present element, or -1 if there is none
+     *         at or before r
+     */
+    public int previousPresentIndex(int r) {
+        int index = positions.predecessor(r);
+        if (index < 0 || tombstones == null) {
+            return index;
+        }
+        int denseRank = positions.rank1(index);
+        if (!tombstones.get(denseRank)) {
+            return index;
+        }
+        int liveRank = tombstones.previousLive(denseRank);
+        return liveRank < 0 ? -1 : positions.select1(liveRank + 1) - 1;
+    }
+
+    /**
+     * Gets the previous present element at or before index r, appending it to
+     * element.
+     * 
+     * @param r       the index in the sparse array to start from, or -1
+     * @param element the element to append
+     * @return the index of the previous present element, or -1 if there is none
+     *         at or before r
+     */
+    public int previousPresentIndex(int r, StringBuilder element) {
+        int index = previousPresentIndex(r);
+        if (index >= 0) {
+            element.append(elementAt(index));
+        }
+        return index;
+    }
+
+    /**
+     * Creates a cursor for iterating over the present elements in order, starting
+     * before the first one. Removed elements are skipped, not compacted.
+     * 
+     * @return the {@link SparseArrayCursor}
+     */
+    public SparseArrayCursor cursor() {
+        int lastIndex = previousPresentIndex(size - 1);
+        if (selectSupport == null) {
+            return new SparseArrayCursor(positions.toArray(), denseValues, tombstones, lastIndex);
+        }
+        return new SparseArrayCursor(selectSupport.cursor(), denseValues, tombstones, lastIndex);
     }
 
     /**
@@ -145,7 +778,36 @@ public class SparseArray implements Serializable {
      * @return the number of present elements in the sparse array
      */
     public int numberOfElements() {
-        return denseValues.size();
+        return denseValues.size() - getNumberOfTombstones();
+    }
+
+    /**
+     * Computes the heap memory used by this SparseArray. The values are the
+     * strings themselves, and the offsets are the list holding a reference to
+     * each of them. A bitmap of the indexes is shared with the
+     * {@link SelectSupport} and is only counted once.
+     * 
+     * @return the {@link MemoryFootprint}
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        MemoryFootprint memoryFootprint = new MemoryFootprint().add(MemoryFootprint.OBJECT,
+                MemoryLayout.object(2 * Integer.BYTES + Double.BYTES, 9));
+        if (positions != null) {
+            memoryFootprint.addAll(positions.memoryFootprint());
+        } else {
+            memoryFootprint.add(MemoryFootprint.DATA_WORDS, MemoryLayout.bitSet(bitVector));
+        }
+        if (tombstones != null) {
+            memoryFootprint.addAll(tombstones.memoryFootprint());
+        }
+        if (presentSelectSupport != null) {
+            memoryFootprint.addAll(presentSelectSupport.memoryFootprint());
+        }
+        for (String value : denseValues) {
+            memoryFootprint.add(MemoryFootprint.VALUES, MemoryLayout.string(value));
+        }
+        return memoryFootprint.add(MemoryFootprint.OFFSETS, MemoryLayout.arrayList(denseValues));
     }
 
     /**
@@ -155,11 +817,17 @@ public class SparseArray implements Serializable {
      * @throws IOException if the file is not able to be saved
      */
     public void save(String filename) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
         objectOutputStream.writeObject(this);
-        // Save SelectSupport separately because IntVector is not serializeable
-        selectSupport.save(objectOutputStream);
+        // Save the indexes separately in their encoding because IntVector is not
+        // serializeable
+        positions.save(objectOutputStream);
         objectOutputStream.close();
+        if (recording) {
+            Metrics.record(Operation.SAVE, start);
+        }
     }
 
     /**
@@ -172,19 +840,168 @@ public class SparseArray implements Serializable {
      *                                deserialization
      */
     public static SparseArray load(String filename) throws IOException, ClassNotFoundException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
         ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
         SparseArray sparseArray = (SparseArray) objectInputStream.readObject();
-        // Load SelectSupport separately because IntVector is not serializeable
-        sparseArray.setSelectSupport(SelectSupport.load(objectInputStream));
+        // Load the indexes separately because IntVector is not serializeable
+        if (sparseArray.positionEncoding == null) {
+            sparseArray.setPositions(Positions.load(PositionEncoding.BITMAP, objectInputStream));
+            sparseArray.encodeLoaded();
+        } else {
+            sparseArray.setPositions(Positions.load(sparseArray.positionEncoding, objectInputStream));
+        }
         objectInputStream.close();
+        if (recording) {
+            Metrics.record(Operation.LOAD, start);
+        }
+        return sparseArray;
+    }
+
+    /**
+     * Saves this SparseArray to a {@link SegmentedFile}, writing the words, the
+     * rank directory and the values as checksummed segments in parallel. The
+     * values are stored as UTF-8 bytes with the offset of each value.
+     * 
+     * @param filename the file name of the file to save
+     * @param options  the {@link SegmentOptions}
+     * @throws IOException if the file is not able to be saved
+     */
+    public void saveSegmented(String filename, SegmentOptions options) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        byte[][] encodedValues = new byte[denseValues.size()][];
+        int[] valueOffsets = new int[denseValues.size() + 1];
+        for (int i = 0; i < encodedValues.length; i++) {
+            encodedValues[i] = denseValues.get(i).getBytes(StandardCharsets.UTF_8);
+            valueOffsets[i + 1] = valueOffsets[i] + encodedValues[i].length;
+        }
+        byte[] values = new byte[valueOffsets[encodedValues.length]];
+        for (int i = 0; i < encodedValues.length; i++) {
+            System.arraycopy(encodedValues[i], 0, values, valueOffsets[i], encodedValues[i].length);
+        }
+        SegmentedFile.Writer writer = SegmentedFile.writer(options);
+        writer.addInts(ENCODING_SEGMENT, new int[] { size, positionEncoding.ordinal(),
+                requestedEncoding == null ? -1 : requestedEncoding.ordinal() });
+        positions.addSegments(writer);
+        writer.addBytes(VALUES_SEGMENT, values).addInts(VALUE_OFFSETS_SEGMENT, valueOffsets);
+        if (tombstones != null) {
+            writer.addLongs(TOMBSTONES_SEGMENT, tombstones.toLongArray());
+        }
+        writer.write(filename);
+        if (recording) {
+            Metrics.record(Operation.SAVE, start);
+        }
+    }
+
+    /**
+     * Loads a SparseArray saved by {@link #saveSegmented(String, SegmentOptions)},
+     * reading the segments in parallel.
+     * 
+     * @param filename the file name of the file to load
+     * @param options  the {@link SegmentOptions}
+     * @return the SparseArray
+     * @throws IOException if the file is not able to be loaded, or a checksum does
+     *                     not match
+     */
+    public static SparseArray loadSegmented(String filename, SegmentOptions options) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        SparseArray sparseArray;
+        try (SegmentedFile file = SegmentedFile.open(filename, options)) {
+            // files without an encoding segment always held a bitmap
+            int[] encoding = file.readInts(ENCODING_SEGMENT);
+            Positions positions = Positions.readSegments(
+                    encoding.length == 0 ? PositionEncoding.BITMAP : PositionEncoding.values()[encoding[1]], file);
+            byte[] values = file.readBytes(VALUES_SEGMENT);
+            int[] valueOffsets = file.readInts(VALUE_OFFSETS_SEGMENT);
+            List<String> denseValues = new ArrayList<>(valueOffsets.length - 1);
+            for (int i = 0; i + 1 < valueOffsets.length; i++) {
+                denseValues.add(new String(values, valueOffsets[i], valueOffsets[i + 1] - valueOffsets[i],
+                        StandardCharsets.UTF_8));
+            }
+            int size = encoding.length == 0 ? ((BitmapPositions) positions).getSelectSupport().getBitVectorLength()
+                    : encoding[0];
+            sparseArray = new SparseArray(size, denseValues, positions);
+            Tombstones tombstones = new Tombstones(file.readLongs(TOMBSTONES_SEGMENT), denseValues.size());
+            if (tombstones.count() > 0) {
+                sparseArray.tombstones = tombstones;
+            }
+            if (encoding.length == 0) {
+                sparseArray.encodeLoaded();
+            } else if (encoding[2] >= 0) {
+                sparseArray.requestedEncoding = PositionEncoding.values()[encoding[2]];
+            }
+        }
+        if (recording) {
+            Metrics.record(Operation.LOAD, start);
+        }
         return sparseArray;
     }
 
+    /**
+     * Encodes the indexes of a sparse array loaded from a file which always held
+     * a bitmap in the encoding chosen for their density.
+     */
+    private void encodeLoaded() {
+        PositionEncoding encoding = PositionEncoding.choose(selectSupport.totalOnes(), size);
+        if (encoding != PositionEncoding.BITMAP) {
+            encode(encoding, positions.toArray());
+        }
+    }
+
+    /**
+     * Gets the {@link SelectSupport} over the indexes of the present elements.
+     * If the indexes are encoded as a bitmap and nothing is removed, it is the
+     * bitmap itself. Otherwise the first call builds one from the indexes without
+     * the removed elements, in time and memory linear in the size of the sparse
+     * array, and it is kept until the next removal or build.
+     * 
+     * @return the SelectSupport, or null if the sparse array is not finalized
+     */
     public SelectSupport getSelectSupport() {
-        return selectSupport;
+        if (positions == null || (selectSupport != null && tombstones == null)) {
+            return selectSupport;
+        }
+        SelectSupport present = presentSelectSupport;
+        if (present == null) {
+            int[] storedPositions = positions.toArray();
+            int[] presentPositions = storedPositions;
+            if (tombstones != null) {
+                presentPositions = new int[storedPositions.length - tombstones.count()];
+                for (int denseRank = 0, k = 0; denseRank < storedPositions.length; denseRank++) {
+                    if (!tombstones.get(denseRank)) {
+                        presentPositions[k++] = storedPositions[denseRank];
+                    }
+                }
+            }
+            present = SelectSupport.fromSortedPositions(presentPositions, size);
+            presentSelectSupport = present;
+        }
+        return present;
     }
 
+    /**
+     * Sets the {@link SelectSupport} over the indexes, which encodes them as a
+     * bitmap.
+     * 
+     * @param selectSupport the SelectSupport
+     */
     public void setSelectSupport(SelectSupport selectSupport) {
-        this.selectSupport = selectSupport;
+        setPositions(new BitmapPositions(selectSupport));
+    }
+
+    /**
+     * Gets the encoding of the indexes and the bytes they take.
+     * 
+     * @return the {@link SparseArrayStats}, or null if the sparse array is not
+     *         finalized
+     */
+    public SparseArrayStats stats() {
+        if (positions == null) {
+            return null;
+        }
+        return new SparseArrayStats(positions.encoding(), size, numberOfElements(),
+                positions.memoryFootprint().getTotalBytes());
     }
 }
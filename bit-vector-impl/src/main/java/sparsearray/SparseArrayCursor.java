@@ -0,0 +1,231 @@
+package sparsearray;
+
+import java.util.Arrays;
+import java.util.List;
+
+import select.SelectCursor;
+
+/**
+ * A cursor over the present elements of a {@link SparseArray} in order, backed
+ * by a {@link SelectCursor} when the indexes are a bitmap and by the sorted
+ * indexes otherwise, either of which gives the index of the element at the
+ * cursor and the element itself without another rank or select query.
+ * <p>
+ * Ranks start from 1, as in {@link SparseArray#getIndexOf(int)}. Removed
+ * elements are skipped with rank and select over the tombstones, so the cursor
+ * never compacts the sparse array. A new cursor is before the first element. A
+ * cursor is not thread-safe, and elements removed while it is open may or may
+ * not be skipped.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class SparseArrayCursor {
+    private final SelectCursor selectCursor;
+    /** The sorted indexes, if there is no select cursor. */
+    private final int[] positions;
+    private final List<String> denseValues;
+    /** The removed elements to skip, or null if there are none. */
+    private final Tombstones tombstones;
+    /** The index of the last present element, or -1 if there is none. */
+    private final int lastIndex;
+    /** The rank among the stored elements, if there is no select cursor. */
+    private int denseRank;
+    /** The rank among the present elements, if there are tombstones. */
+    private int rank;
+
+    SparseArrayCursor(SelectCursor selectCursor, List<String> denseValues, Tombstones tombstones, int lastIndex) {
+        this.selectCursor = selectCursor;
+        this.denseValues = denseValues;
+        this.tombstones = tombstones;
+        this.lastIndex = lastIndex;
+        positions = null;
+    }
+
+    SparseArrayCursor(int[] positions, List<String> denseValues, Tombstones tombstones, int lastIndex) {
+        this.positions = positions;
+        this.denseValues = denseValues;
+        this.tombstones = tombstones;
+        this.lastIndex = lastIndex;
+        selectCursor = null;
+    }
+
+    /**
+     * Moves to the next present element.
+     * 
+     * @return true if there is a next element, false otherwise
+     */
+    public boolean next() {
+        if (tombstones == null) {
+            return nextStored();
+        }
+        int current = denseRank();
+        // the dense rank of the next present element, found without walking the tombstones
+        int live = tombstones.nextLive(current);
+        if (live < 0) {
+            return false;
+        }
+        if (live == current) {
+            nextStored();
+        } else {
+            advanceToStored(live + 1);
+        }
+        rank++;
+        return true;
+    }
+
+    /**
+     * Moves to the previous present element.
+     * 
+     * @return true if there is a previous element, false otherwise
+     */
+    public boolean previous() {
+        if (tombstones == null) {
+            return previousStored();
+        }
+        if (rank <= 1) {
+            return false;
+        }
+        int current = denseRank();
+        int live = tombstones.previousLive(current - 2);
+        if (live == current - 2) {
+            previousStored();
+        } else {
+            advanceToStored(live + 1);
+        }
+        rank--;
+        return true;
+    }
+
+    /**
+     * Moves to the present element of the specified rank.
+     * 
+     * @param rank the rank, starting from 1, of the element to move to
+     * @return true if there is an element of that rank, false otherwise
+     */
+    public boolean advanceTo(int rank) {
+        if (tombstones == null) {
+            return advanceToStored(rank);
+        }
+        if (rank < 1 || rank > denseValues.size() - tombstones.count()) {
+            return false;
+        }
+        advanceToStored(tombstones.liveSelect(rank));
+        this.rank = rank;
+        return true;
+    }
+
+    /**
+     * Moves to the first present element at or after the specified index.
+     * 
+     * @param index the index in the sparse array
+     * @return true if there is an element at or after the index, false otherwise
+     */
+    public boolean skipToPosition(int index) {
+        if (tombstones == null) {
+            return skipToStored(index);
+        }
+        if (index > lastIndex || !skipToStored(index)) {
+            return false;
+        }
+        int current = denseRank();
+        if (tombstones.get(current - 1)) {
+            int live = tombstones.nextLive(current - 1);
+            if (live < 0) {
+                return false;
+            }
+            current = live + 1;
+            advanceToStored(current);
+        }
+        rank = tombstones.liveRank(current);
+        return true;
+    }
+
+    private boolean nextStored() {
+        if (selectCursor != null) {
+            return selectCursor.next();
+        }
+        if (denseRank >= positions.length) {
+            return false;
+        }
+        denseRank++;
+        return true;
+    }
+
+    private boolean previousStored() {
+        if (selectCursor != null) {
+            return selectCursor.previous();
+        }
+        if (denseRank <= 1) {
+            return false;
+        }
+        denseRank--;
+        return true;
+    }
+
+    private boolean advanceToStored(int denseRank) {
+        if (selectCursor != null) {
+            return selectCursor.advanceTo(denseRank);
+        }
+        if (denseRank < 1 || denseRank > positions.length) {
+            return false;
+        }
+        this.denseRank = denseRank;
+        return true;
+    }
+
+    private boolean skipToStored(int index) {
+        if (selectCursor != null) {
+            return selectCursor.skipToPosition(index);
+        }
+        int next = Arrays.binarySearch(positions, Math.max(0, index));
+        next = next >= 0 ? next : -next - 1;
+        if (next == positions.length) {
+            return false;
+        }
+        denseRank = next + 1;
+        return true;
+    }
+
+    /**
+     * Gets the rank, starting from 1, of the element at the cursor among the
+     * stored elements including the removed ones.
+     */
+    private int denseRank() {
+        return selectCursor != null ? selectCursor.rank() : denseRank;
+    }
+
+    /**
+     * Gets the rank of the element at the cursor, starting from 1, or 0 if the
+     * cursor is before the first element.
+     * 
+     * @return the rank
+     */
+    public int rank() {
+        return tombstones != null ? rank : denseRank();
+    }
+
+    /**
+     * Gets the index in the sparse array of the element at the cursor, the same
+     * as <code>getIndexOf(rank())</code>, or -1 if the cursor is before the first
+     * element.
+     * 
+     * @return the index
+     */
+    public int index() {
+        if (selectCursor != null) {
+            return selectCursor.position();
+        }
+        return denseRank == 0 ? -1 : positions[denseRank - 1];
+    }
+
+    /**
+     * Gets the element at the cursor.
+     * 
+     * @return the element, or null if the cursor is before the first element
+     */
+    public String value() {
+        int current = denseRank();
+        return current == 0 ? null : denseValues.get(current - 1);
+    }
+}
@@ -0,0 +1,64 @@
+package sparsearray;
+
+/**
+ * An immutable snapshot of how a finalized {@link SparseArray} stores its
+ * indexes: the {@link PositionEncoding} chosen, the density it was chosen for
+ * and the heap bytes the indexes take.
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class SparseArrayStats {
+    private final PositionEncoding positionEncoding;
+    private final int size;
+    private final int numberOfElements;
+    private final long positionBytes;
+
+    public SparseArrayStats(PositionEncoding positionEncoding, int size, int numberOfElements, long positionBytes) {
+        this.positionEncoding = positionEncoding;
+        this.size = size;
+        this.numberOfElements = numberOfElements;
+        this.positionBytes = positionBytes;
+    }
+
+    public PositionEncoding getPositionEncoding() {
+        return positionEncoding;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNumberOfElements() {
+        return numberOfElements;
+    }
+
+    /**
+     * Gets the fraction of the indexes at which an element is stored.
+     * 
+     * @return the density, between 0 and 1
+     */
+    public double getDensity() {
+        return size == 0 ? 0 : (double) numberOfElements / size;
+    }
+
+    public long getPositionBytes() {
+        return positionBytes;
+    }
+
+    /**
+     * Gets the heap bits the indexes take per element.
+     * 
+     * @return the bits per element, or 0 if there are no elements
+     */
+    public double getBitsPerElement() {
+        return numberOfElements == 0 ? 0 : (double) positionBytes * Byte.SIZE / numberOfElements;
+    }
+
+    @Override
+    public String toString() {
+        return positionEncoding + ": size=" + size + ", elements=" + numberOfElements + ", density="
+                + String.format("%.6f", getDensity()) + ", positionBytes=" + positionBytes + ", bitsPerElement="
+                + String.format("%.1f", getBitsPerElement());
+    }
+}
@@ -0,0 +1,179 @@
+package sparsearray;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.Popcount;
+
+/**
+ * The removed elements of a finalized {@link SparseArray}, as a bitmap over the
+ * dense ranks of its stored elements, with rank and select over the elements
+ * still present. A Fenwick tree holds the number of removed elements in each
+ * word of the bitmap, so marking an element removed, ranking and selecting all
+ * take time logarithmic in the number of words, and nothing is rebuilt between
+ * removals.
+ *
+ * @author Valerie Wray
+ *
+ */
+class Tombstones implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long[] words;
+    private final int length;
+    private int count;
+    /**
+     * The Fenwick tree of the removed counts of the words, from 1, counting the
+     * bits past the length as removed so that every word holds 64 bits.
+     */
+    private transient int[] tree;
+
+    /**
+     * Creates tombstones for the specified number of stored elements, none of
+     * them removed.
+     *
+     * @param length the number of stored elements
+     */
+    Tombstones(int length) {
+        this(new long[(length + 63) >>> 6], length);
+    }
+
+    /**
+     * Creates tombstones from a bitmap of the removed dense ranks.
+     *
+     * @param words  the words of the bitmap, which are not copied
+     * @param length the number of stored elements
+     */
+    Tombstones(long[] words, int length) {
+        this.words = words.length == (length + 63) >>> 6 ? words : Arrays.copyOf(words, (length + 63) >>> 6);
+        this.length = length;
+        for (long word : this.words) {
+            count += Long.bitCount(word);
+        }
+    }
+
+    private int[] tree() {
+        int[] fenwick = tree;
+        if (fenwick == null) {
+            fenwick = new int[words.length + 1];
+            for (int w = 0; w < words.length; w++) {
+                fenwick[w + 1] += Long.bitCount(words[w]);
+            }
+            if ((length & 63) != 0) {
+                fenwick[words.length] += 64 - (length & 63);
+            }
+            for (int node = 1; node <= words.length; node++) {
+                int parent = node + (node & -node);
+                if (parent <= words.length) {
+                    fenwick[parent] += fenwick[node];
+                }
+            }
+            tree = fenwick;
+        }
+        return fenwick;
+    }
+
+    /**
+     * Gets whether the element of a dense rank is removed.
+     */
+    boolean get(int denseRank) {
+        return (words[denseRank >>> 6] & (1L << denseRank)) != 0;
+    }
+
+    /**
+     * Marks the element of a dense rank removed, if it is not already.
+     */
+    void set(int denseRank) {
+        int w = denseRank >>> 6;
+        long bit = 1L << denseRank;
+        if ((words[w] & bit) != 0) {
+            return;
+        }
+        words[w] |= bit;
+        count++;
+        int[] fenwick = tree;
+        if (fenwick != null) {
+            for (int node = w + 1; node < fenwick.length; node += node & -node) {
+                fenwick[node]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of removed elements.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Counts the elements present among the dense ranks less than i.
+     */
+    int liveRank(int i) {
+        int end = Math.min(i, length);
+        int w = end >>> 6;
+        int removed = 0;
+        int[] fenwick = tree();
+        for (int node = w; node > 0; node -= node & -node) {
+            removed += fenwick[node];
+        }
+        if ((end & 63) != 0) {
+            removed += Long.bitCount(words[w] & -1L >>> -end);
+        }
+        return end - removed;
+    }
+
+    /**
+     * Gets the dense rank of the kth present element, starting from 1, plus one,
+     * or 0 if k is 0 or less.
+     */
+    int liveSelect(int k) {
+        if (k <= 0) {
+            return 0;
+        }
+        // descend the tree for the word holding the kth present element
+        int[] fenwick = tree();
+        int w = 0;
+        for (int step = Integer.highestOneBit(words.length); step > 0; step >>>= 1) {
+            int node = w + step;
+            if (node <= words.length && (step << 6) - fenwick[node] < k) {
+                w = node;
+                k -= (step << 6) - fenwick[node];
+            }
+        }
+        return (w << 6) + Popcount.selectInWord(~words[w], k - 1) + 1;
+    }
+
+    /**
+     * Gets the smallest dense rank greater than or equal to i of a present
+     * element, or -1 if there is none.
+     */
+    int nextLive(int i) {
+        int rank = liveRank(i);
+        return rank == length - count ? -1 : liveSelect(rank + 1) - 1;
+    }
+
+    /**
+     * Gets the largest dense rank less than or equal to i of a present element,
+     * or -1 if there is none.
+     */
+    int previousLive(int i) {
+        int rank = liveRank(i + 1);
+        return rank == 0 ? -1 : liveSelect(rank) - 1;
+    }
+
+    long[] toLongArray() {
+        return words.clone();
+    }
+
+    MemoryFootprint memoryFootprint() {
+        MemoryFootprint memoryFootprint = new MemoryFootprint().add(MemoryFootprint.OBJECT,
+                MemoryLayout.object(2 * Integer.BYTES, 2))
+                .add(MemoryFootprint.DATA_WORDS, MemoryLayout.array(words.length, Long.BYTES));
+        if (tree != null) {
+            memoryFootprint.add(MemoryFootprint.RANK_DIRECTORY, MemoryLayout.array(tree.length, Integer.BYTES));
+        }
+        return memoryFootprint;
+    }
+}
@@ -0,0 +1,330 @@
+package sparsearray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import codec.ValueCodec;
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import metrics.Metrics;
+import metrics.Operation;
+import rank.RankSupportConfig;
+import select.SelectSupport;
+
+/**
+ * A sparse array of any value type, with the same rank and select position
+ * index as {@link SparseArray}. The values are encoded by a {@link ValueCodec}
+ * into one packed byte array, with the offset of each value when the codec's
+ * widths vary. The codec also drives the binary file format, so saving and
+ * loading need no Java serialization.
+ *
+ * @param <V> the type of the values
+ *
+ * @author Valerie Wray
+ *
+ */
+public class TypedSparseArray<V> implements MemoryAccountable {
+    private static final int MAGIC = 0x54535041;
+    private static final int VERSION = 1;
+
+    private final int size;
+    private final ValueCodec<V> codec;
+    private final RankSupportConfig rankSupportConfig;
+    private BitSet bitVector;
+    private byte[] data;
+    private int dataLength;
+    /** The offset of each value and the end of the last, or null for fixed widths. */
+    private int[] offsets;
+    private int numberOfElements;
+    private int lastPosition = -1;
+    private SelectSupport selectSupport;
+
+    /**
+     * Creates an empty sparse array of the specified size.
+     *
+     * @param size  the size of the sparse array to create
+     * @param codec the {@link ValueCodec} of the values
+     */
+    public TypedSparseArray(int size, ValueCodec<V> codec) {
+        this(size, codec, RankSupportConfig.DEFAULT);
+    }
+
+    /**
+     * Creates an empty sparse array of the specified size, whose
+     * {@link SelectSupport} will use the chunk and subchunk sizes chosen by the
+     * specified configuration.
+     *
+     * @param size              the size of the sparse array to create
+     * @param codec             the {@link ValueCodec} of the values
+     * @param rankSupportConfig the {@link RankSupportConfig}
+     */
+    public TypedSparseArray(int size, ValueCodec<V> codec, RankSupportConfig rankSupportConfig) {
+        this.size = size;
+        this.codec = codec;
+        this.rankSupportConfig = rankSupportConfig;
+        bitVector = new BitSet(size);
+        data = new byte[64];
+        offsets = codec.fixedWidth() < 0 ? new int[16] : null;
+    }
+
+    /**
+     * Appends a value at an index. Indexes must be appended in increasing order,
+     * before {@link #build()}.
+     *
+     * @param value    the value to append
+     * @param position the index in the sparse array
+     * @throws IllegalArgumentException if the index is outside the sparse array or
+     *                                  not after the last appended index
+     * @throws IllegalStateException    if the sparse array is built
+     */
+    public void append(V value, int position) {
+        if (selectSupport != null) {
+            throw new IllegalStateException("Sparse array is built");
+        }
+        if (position <= lastPosition || position >= size) {
+            throw new IllegalArgumentException("Position " + position + " is not in (" + lastPosition + ", " + size + ")");
+        }
+        int length = codec.encodedLength(value);
+        if (dataLength + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(dataLength + length, 2 * data.length));
+        }
+        codec.encode(value, data, dataLength);
+        if (offsets != null) {
+            if (numberOfElements + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            }
+            offsets[numberOfElements + 1] = dataLength + length;
+        }
+        dataLength += length;
+        numberOfElements++;
+        bitVector.set(position);
+        lastPosition = position;
+    }
+
+    /**
+     * Builds the sparse array once all elements are appended: trims the value
+     * store and creates the {@link SelectSupport} with built-in rank and select
+     * support, after which it can be queried.
+     *
+     * @throws IllegalStateException if the sparse array is already built
+     */
+    public void build() {
+        if (selectSupport != null) {
+            throw new IllegalStateException("Sparse array is already built");
+        }
+        data = Arrays.copyOf(data, dataLength);
+        if (offsets != null) {
+            offsets = Arrays.copyOf(offsets, numberOfElements + 1);
+        }
+        selectSupport = new SelectSupport(bitVector, size, rankSupportConfig);
+        // the select support keeps the only copy of the bits
+        bitVector = null;
+    }
+
+    private V decode(int rank) {
+        if (offsets == null) {
+            int width = codec.fixedWidth();
+            return codec.decode(data, rank * width, width);
+        }
+        return codec.decode(data, offsets[rank], offsets[rank + 1] - offsets[rank]);
+    }
+
+    /**
+     * Gets the element at index r.
+     *
+     * @param r the index in the sparse array
+     * @return the element, or null if there is no element at index r
+     */
+    public V getAtIndex(int r) {
+        if (!Metrics.isEnabled()) {
+            return computeGetAtIndex(r);
+        }
+        long start = System.nanoTime();
+        V element = computeGetAtIndex(r);
+        Metrics.record(Operation.GET_AT_INDEX, start);
+        return element;
+    }
+
+    private V computeGetAtIndex(int r) {
+        return selectSupport.computeAccess(r) ? decode(selectSupport.computeRank1(r)) : null;
+    }
+
+    /**
+     * Gets the rth present element, starting from 0.
+     *
+     * @param r the rank of the present element
+     * @return the element, or null if there are no more than r elements
+     */
+    public V getAtRank(int r) {
+        if (!Metrics.isEnabled()) {
+            return r < numberOfElements ? decode(r) : null;
+        }
+        long start = System.nanoTime();
+        V element = r < numberOfElements ? decode(r) : null;
+        Metrics.record(Operation.GET_AT_RANK, start);
+        return element;
+    }
+
+    /**
+     * Gets the index in the sparse array where the rth present element appears.
+     *
+     * @param r the rank of the present element, starting from 1
+     * @return the index in the sparse array where the rth present element appears,
+     *         or -1 if there are less than r present elements
+     */
+    public int getIndexOf(int r) {
+        if (!Metrics.isEnabled()) {
+            return r > numberOfElements ? -1 : selectSupport.computeSelect1(r) - 1;
+        }
+        long start = System.nanoTime();
+        int index = r > numberOfElements ? -1 : selectSupport.computeSelect1(r) - 1;
+        Metrics.record(Operation.GET_INDEX_OF, start);
+        return index;
+    }
+
+    /**
+     * Gets the number of present elements up to and including index r.
+     *
+     * @param r the index in the sparse array
+     * @return the number of present elements up to and including index r
+     */
+    public int numberOfElementsAt(int r) {
+        if (!Metrics.isEnabled()) {
+            return selectSupport.computeRank1(Math.min(r + 1, size));
+        }
+        long start = System.nanoTime();
+        int numberOfElements = selectSupport.computeRank1(Math.min(r + 1, size));
+        Metrics.record(Operation.NUMBER_OF_ELEMENTS_AT, start);
+        return numberOfElements;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numberOfElements() {
+        return numberOfElements;
+    }
+
+    public ValueCodec<V> getCodec() {
+        return codec;
+    }
+
+    public SelectSupport getSelectSupport() {
+        return selectSupport;
+    }
+
+    /**
+     * Computes the heap memory used by this TypedSparseArray. The values are the
+     * packed value store, and the offsets are the offset of each value, if the
+     * codec's widths vary.
+     *
+     * @return the {@link MemoryFootprint}
+     */
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        MemoryFootprint memoryFootprint = new MemoryFootprint().add(MemoryFootprint.OBJECT,
+                MemoryLayout.object(4 * Integer.BYTES, 6));
+        if (selectSupport != null) {
+            memoryFootprint.addAll(selectSupport.memoryFootprint());
+        } else {
+            memoryFootprint.add(MemoryFootprint.DATA_WORDS, MemoryLayout.bitSet(bitVector));
+        }
+        memoryFootprint.add(MemoryFootprint.VALUES, MemoryLayout.array(data.length, Byte.BYTES));
+        if (offsets != null) {
+            memoryFootprint.add(MemoryFootprint.OFFSETS, MemoryLayout.array(offsets.length, Integer.BYTES));
+        }
+        return memoryFootprint;
+    }
+
+    /**
+     * Saves this TypedSparseArray to a file in a binary format: the codec name,
+     * the words of the positions, the value offsets if the widths vary and the
+     * packed values.
+     *
+     * @param filename the file name of the file to save
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(String filename) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(codec.name());
+            output.writeInt(size);
+            output.writeInt(numberOfElements);
+            long[] words = selectSupport.getWords();
+            output.writeInt(words.length);
+            for (long word : words) {
+                output.writeLong(word);
+            }
+            if (offsets != null) {
+                for (int offset : offsets) {
+                    output.writeInt(offset);
+                }
+            }
+            output.writeInt(data.length);
+            output.write(data);
+        }
+        if (recording) {
+            Metrics.record(Operation.SAVE, start);
+        }
+    }
+
+    /**
+     * Loads a TypedSparseArray saved by {@link #save(String)}.
+     *
+     * @param <V>      the type of the values
+     * @param filename the file name of the file to load
+     * @param codec    the {@link ValueCodec} the file was saved with
+     * @return the TypedSparseArray
+     * @throws IOException if the file is not able to be loaded, or was saved with
+     *                     a different codec
+     */
+    public static <V> TypedSparseArray<V> load(String filename, ValueCodec<V> codec) throws IOException {
+        boolean recording = Metrics.isEnabled();
+        long start = recording ? System.nanoTime() : 0L;
+        TypedSparseArray<V> sparseArray;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(filename + " is not a typed sparse array of version " + VERSION);
+            }
+            String codecName = input.readUTF();
+            if (!codecName.equals(codec.name())) {
+                throw new IOException(filename + " was saved with codec " + codecName + ", not " + codec.name());
+            }
+            sparseArray = new TypedSparseArray<>(input.readInt(), codec);
+            sparseArray.numberOfElements = input.readInt();
+            long[] words = new long[input.readInt()];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = input.readLong();
+            }
+            if (sparseArray.offsets != null) {
+                sparseArray.offsets = new int[sparseArray.numberOfElements + 1];
+                for (int k = 0; k < sparseArray.offsets.length; k++) {
+                    sparseArray.offsets[k] = input.readInt();
+                }
+            }
+            sparseArray.data = new byte[input.readInt()];
+            input.readFully(sparseArray.data);
+            sparseArray.dataLength = sparseArray.data.length;
+            sparseArray.selectSupport = SelectSupport.fromWords(words, sparseArray.size,
+                    sparseArray.rankSupportConfig);
+            sparseArray.bitVector = null;
+        }
+        if (recording) {
+            Metrics.record(Operation.LOAD, start);
+        }
+        return sparseArray;
+    }
+}
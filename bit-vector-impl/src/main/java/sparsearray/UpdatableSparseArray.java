@@ -0,0 +1,320 @@
+package sparsearray;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A sparse array that can be updated after it is built. Updates go into a small
+ * sorted {@link Delta} that is consulted before the immutable {@link SparseArray}
+ * base, in the manner of a log-structured merge tree. When the delta reaches the
+ * merge threshold it is frozen and merged with the base into a new base on an
+ * executor, while new updates go into a fresh delta.
+ * <p>
+ * The base and the deltas are published together as one immutable state, so
+ * readers never block and every read sees a single consistent version. Updates
+ * are serialized by a lock and copy the active delta, which the merge
+ * threshold keeps small.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class UpdatableSparseArray {
+    public static final int DEFAULT_MERGE_THRESHOLD = 4096;
+
+    private final int size;
+    private final int mergeThreshold;
+    private final Executor executor;
+    private final Object lock = new Object();
+    private volatile State state;
+    /** The running or last merge, guarded by lock. */
+    private CompletableFuture<Void> merge = CompletableFuture.completedFuture(null);
+
+    /**
+     * The base, the delta being merged into it (or null), and the delta taking
+     * new updates, which is layered over both.
+     */
+    private static final class State {
+        private final SparseArray base;
+        private final Delta frozen;
+        private final Delta active;
+
+        private State(SparseArray base, Delta frozen, Delta active) {
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+        }
+    }
+
+    /**
+     * Creates an updatable sparse array over a finalized sparse array, merging on
+     * the common pool with the default merge threshold.
+     *
+     * @param base the finalized {@link SparseArray}
+     */
+    public UpdatableSparseArray(SparseArray base) {
+        this(base, DEFAULT_MERGE_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an updatable sparse array over a finalized sparse array, compacting
+     * any elements removed from it first. The base must not be modified
+     * afterwards.
+     *
+     * @param base           the finalized {@link SparseArray}
+     * @param mergeThreshold the number of updates in the delta that starts a
+     *                       merge
+     * @param executor       the executor the merges run on
+     */
+    public UpdatableSparseArray(SparseArray base, int mergeThreshold, Executor executor) {
+        if (mergeThreshold < 1) {
+            throw new IllegalArgumentException("Invalid merge threshold: " + mergeThreshold);
+        }
+        // the base is read concurrently from here on, so it must not compact later
+        base.compact();
+        this.size = base.size();
+        this.mergeThreshold = mergeThreshold;
+        this.executor = executor;
+        this.state = new State(base, null, Delta.EMPTY);
+    }
+
+    /**
+     * Sets the element at an index, inserting it or overwriting the element
+     * already there.
+     *
+     * @param element  the element
+     * @param position the index in the sparse array
+     * @throws IndexOutOfBoundsException if the index is outside the sparse array
+     */
+    public void set(String element, int position) {
+        Objects.requireNonNull(element, "element");
+        update(element, position);
+    }
+
+    /**
+     * Removes the element at an index.
+     *
+     * @param position the index in the sparse array
+     * @return true if there was an element at the index, otherwise false
+     * @throws IndexOutOfBoundsException if the index is outside the sparse array
+     */
+    public boolean remove(int position) {
+        return update(null, position) != null;
+    }
+
+    private String update(String element, int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is outside size " + size);
+        }
+        String previous;
+        synchronized (lock) {
+            State current = state;
+            previous = elementAt(current, position);
+            if (element == null && previous == null && current.active.find(position) < 0) {
+                // nothing to delete
+                return null;
+            }
+            Delta active = current.active.with(position, element, elementBelow(current, position) != null);
+            state = new State(current.base, current.frozen, active);
+            if (active.size() >= mergeThreshold) {
+                merge();
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Starts merging the updates into a new base on the executor, unless a merge
+     * is already running. Readers keep using the old base until the new one is
+     * published.
+     *
+     * @return a future completed when the merge is published
+     */
+    public CompletableFuture<Void> merge() {
+        synchronized (lock) {
+            if (!merge.isDone()) {
+                return merge;
+            }
+            State current = state;
+            // a frozen delta left by a failed merge is retried before freezing more
+            Delta toMerge = current.frozen != null ? current.frozen : current.active;
+            if (toMerge.size() == 0) {
+                return merge;
+            }
+            if (current.frozen == null) {
+                state = new State(current.base, toMerge, Delta.EMPTY);
+            }
+            merge = CompletableFuture.runAsync(() -> publish(mergeBase(current.base, toMerge)), executor);
+            return merge;
+        }
+    }
+
+    private SparseArray mergeBase(SparseArray base, Delta delta) {
+        SparseArray merged = new SparseArray(size, base.getRankSupportConfig());
+        SparseArrayCursor cursor = base.cursor();
+        boolean hasBase = cursor.next();
+        int k = 0;
+        while (hasBase || k < delta.size()) {
+            if (k < delta.size() && (!hasBase || delta.position(k) <= cursor.index())) {
+                if (delta.element(k) != null) {
+                    merged.append(delta.element(k), delta.position(k));
+                }
+                if (hasBase && delta.position(k) == cursor.index()) {
+                    hasBase = cursor.next();
+                }
+                k++;
+            } else {
+                merged.append(cursor.value(), cursor.index());
+                hasBase = cursor.next();
+            }
+        }
+        merged.build();
+        return merged;
+    }
+
+    private void publish(SparseArray merged) {
+        synchronized (lock) {
+            state = new State(merged, null, state.active);
+        }
+    }
+
+    /**
+     * Gets the rth element from the sparse array, if it exists, otherwise returns
+     * false.
+     *
+     * @param r       the index of the element to get
+     * @param element the element to append
+     * @return true if rth element exists, otherwise false
+     */
+    public boolean getAtIndex(int r, StringBuilder element) {
+        String value = elementAt(state, r);
+        if (value == null) {
+            return false;
+        }
+        element.append(value);
+        return true;
+    }
+
+    /**
+     * Gets the rth present element from the sparse array. Returns false if the
+     * sparse array contains less than r items.
+     *
+     * @param r       the index of the present element to get
+     * @param element the element to append
+     * @return true if rth present element exists, false if the sparse array
+     *         contains less than r items
+     */
+    public boolean getAtRank(int r, StringBuilder element) {
+        State current = state;
+        int index = indexOf(current, r + 1);
+        if (index < 0) {
+            return false;
+        }
+        element.append(elementAt(current, index));
+        return true;
+    }
+
+    /**
+     * Gets the index in the sparse array where the rth present element appears,
+     * by a binary search over the combined ranks of the base and the deltas.
+     *
+     * @param r the index of present elements
+     * @return the index in the sparse array where the rth present element appears,
+     *         or -1 if there are less than r present elements
+     */
+    public int getIndexOf(int r) {
+        return indexOf(state, r);
+    }
+
+    /**
+     * Gets the number of present elements up to and including index r, i.e. the
+     * inclusive rank.
+     *
+     * @param r the index in the sparse array
+     * @return the number of present elements up to and including index r
+     */
+    public int numberOfElementsAt(int r) {
+        return rank(state, r + 1);
+    }
+
+    /**
+     * Gets the size of the sparse array.
+     *
+     * @return the size of the sparse array
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of present elements in the sparse array.
+     *
+     * @return the number of present elements in the sparse array
+     */
+    public int numberOfElements() {
+        return rank(state, size);
+    }
+
+    /**
+     * Gets the number of updates not yet merged into the base.
+     *
+     * @return the number of updates in the deltas
+     */
+    public int getDeltaSize() {
+        State current = state;
+        return current.active.size() + (current.frozen == null ? 0 : current.frozen.size());
+    }
+
+    /**
+     * Gets the current immutable base, which does not include the updates still
+     * in the deltas.
+     *
+     * @return the base {@link SparseArray}
+     */
+    public SparseArray getBase() {
+        return state.base;
+    }
+
+    private static String elementAt(State state, int position) {
+        int k = state.active.find(position);
+        return k >= 0 ? state.active.element(k) : elementBelow(state, position);
+    }
+
+    private static String elementBelow(State state, int position) {
+        if (state.frozen != null) {
+            int k = state.frozen.find(position);
+            if (k >= 0) {
+                return state.frozen.element(k);
+            }
+        }
+        return position < state.base.size() ? state.base.elementAt(position) : null;
+    }
+
+    /**
+     * Counts the present elements in [0, i).
+     */
+    private int rank(State state, int i) {
+        i = Math.min(i, size);
+        int rank = state.base.rank1(i) + state.active.changeBefore(i);
+        return state.frozen == null ? rank : rank + state.frozen.changeBefore(i);
+    }
+
+    private int indexOf(State state, int r) {
+        if (r <= 0 || r > rank(state, size)) {
+            return -1;
+        }
+        // the smallest index whose inclusive rank is r
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rank(state, middle + 1) >= r) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,490 @@
+package tree;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.RankSupportConfig;
+import select.SelectSupport;
+
+/**
+ * A succinct ordinal tree stored as balanced parentheses in 2n bits: a
+ * depth-first traversal writes an open parenthesis (a set bit) when it enters a
+ * node and a close parenthesis (a clear bit) when it leaves it. Each node is
+ * identified by the position of its open parenthesis, and the root is 0.
+ * <p>
+ * Navigation is reduced to searching for the next or previous position with a
+ * given excess (opens minus closes). A range-min tree over blocks of
+ * {@value #BLOCK_SIZE} bits finds the block containing the answer in O(log n),
+ * and the block is scanned a byte at a time, skipping bytes whose excess range
+ * does not contain the target. Preorder ranks come from the {@link SelectSupport}
+ * over the parentheses.
+ *
+ * @author Valerie Wray
+ *
+ */
+public class BalancedParenthesesTree implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    private static final int BLOCK_SIZE = 512;
+    private static final int[] BYTE_EXCESS = new int[256];
+    private static final int[] BYTE_MIN_EXCESS = new int[256];
+    private static final int[] BYTE_MAX_EXCESS = new int[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int excess = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int bit = 0; bit < 8; bit++) {
+                excess += ((b >>> bit) & 1) == 1 ? 1 : -1;
+                min = Math.min(min, excess);
+                max = Math.max(max, excess);
+            }
+            BYTE_EXCESS[b] = excess;
+            BYTE_MIN_EXCESS[b] = min;
+            BYTE_MAX_EXCESS[b] = max;
+        }
+    }
+
+    private int length;
+    private int numberOfLeaves;
+    private int[] minExcess;
+    private transient SelectSupport selectSupport;
+    private transient long[] words;
+
+    /**
+     * Creates a new BalancedParenthesesTree from the parentheses. Use a
+     * {@link Builder} or {@link #fromParentheses(CharSequence)} instead of calling
+     * this directly.
+     *
+     * @param parentheses the parentheses, with set bits for open parentheses
+     * @param length      the number of parentheses
+     */
+    protected BalancedParenthesesTree(BitSet parentheses, int length) {
+        this.length = length;
+        selectSupport = new SelectSupport(parentheses, length, RankSupportConfig.WORD_ALIGNED);
+        words = selectSupport.getWords();
+        buildRangeMinTree();
+    }
+
+    /**
+     * Creates a tree from a string of parentheses, such as <code>"(()(()))"</code>.
+     *
+     * @param parentheses the parentheses
+     * @return the BalancedParenthesesTree
+     */
+    public static BalancedParenthesesTree fromParentheses(CharSequence parentheses) {
+        Builder builder = new Builder();
+        for (int i = 0; i < parentheses.length(); i++) {
+            char c = parentheses.charAt(i);
+            if (c == '(') {
+                builder.open();
+            } else if (c == ')') {
+                builder.close();
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at " + i);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the range-min tree: one leaf per block holding the minimum excess in
+     * the block, and each internal node holding the minimum of its children.
+     */
+    private void buildRangeMinTree() {
+        int numberOfBlocks = Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        numberOfLeaves = Integer.highestOneBit(numberOfBlocks);
+        if (numberOfLeaves < numberOfBlocks) {
+            numberOfLeaves <<= 1;
+        }
+        minExcess = new int[2 * numberOfLeaves];
+        Arrays.fill(minExcess, Integer.MAX_VALUE);
+        int excess = 0;
+        for (int block = 0; block < numberOfBlocks; block++) {
+            int blockEnd = Math.min(length, (block + 1) * BLOCK_SIZE);
+            int min = Integer.MAX_VALUE;
+            int position = block * BLOCK_SIZE;
+            for (; position + 8 <= blockEnd; position += 8) {
+                int b = byteAt(position);
+                min = Math.min(min, excess + BYTE_MIN_EXCESS[b]);
+                excess += BYTE_EXCESS[b];
+            }
+            for (; position < blockEnd; position++) {
+                excess += isOpen(position) ? 1 : -1;
+                min = Math.min(min, excess);
+            }
+            minExcess[numberOfLeaves + block] = min;
+        }
+        for (int node = numberOfLeaves - 1; node > 0; node--) {
+            minExcess[node] = Math.min(minExcess[2 * node], minExcess[2 * node + 1]);
+        }
+    }
+
+    private int byteAt(int position) {
+        return (int) (words[position >>> 6] >>> (position & 63)) & 0xFF;
+    }
+
+    private boolean isOpen(int position) {
+        return (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * Gets the excess (opens minus closes) of the parentheses in [0, i].
+     *
+     * @param i the position, or -1 for the empty prefix
+     * @return the excess
+     */
+    public int excess(int i) {
+        if (i + 1 >= length) {
+            // the parentheses are balanced
+            return 0;
+        }
+        return 2 * selectSupport.rank1(i + 1) - (i + 1);
+    }
+
+    /**
+     * Scans positions [from, to) for the first or last position whose excess is
+     * the target.
+     *
+     * @param from   the first position, inclusive
+     * @param to     the last position, exclusive
+     * @param excess the excess of the prefix before <code>from</code>
+     * @param target the target excess
+     * @param last   whether to find the last position instead of the first
+     * @return the position, or -1 if there is none
+     */
+    private int scan(int from, int to, int excess, int target, boolean last) {
+        int found = -1;
+        int position = from;
+        while (position < to) {
+            if ((position & 7) == 0 && position + 8 <= to) {
+                int b = byteAt(position);
+                if (excess + BYTE_MIN_EXCESS[b] > target || excess + BYTE_MAX_EXCESS[b] < target) {
+                    // the target is not in this byte
+                    excess += BYTE_EXCESS[b];
+                    position += 8;
+                    continue;
+                }
+            }
+            excess += isOpen(position) ? 1 : -1;
+            if (excess == target) {
+                if (!last) {
+                    return position;
+                }
+                found = position;
+            }
+            position++;
+        }
+        return found;
+    }
+
+    /**
+     * Finds the smallest position j &gt; i with excess(j) equal to the target,
+     * which must be less than excess(i).
+     */
+    private int forwardSearch(int i, int target) {
+        int block = i / BLOCK_SIZE;
+        int found = scan(i + 1, Math.min(length, (block + 1) * BLOCK_SIZE), excess(i), target, false);
+        if (found >= 0) {
+            return found;
+        }
+        // climb until there is a block to the right with a small enough minimum
+        int node = numberOfLeaves + block;
+        while (node > 1 && ((node & 1) == 1 || minExcess[node + 1] > target)) {
+            node >>>= 1;
+        }
+        if (node == 1) {
+            return -1;
+        }
+        node++;
+        // then descend to the leftmost such block
+        while (node < numberOfLeaves) {
+            node = minExcess[2 * node] <= target ? 2 * node : 2 * node + 1;
+        }
+        int blockStart = (node - numberOfLeaves) * BLOCK_SIZE;
+        return scan(blockStart, Math.min(length, blockStart + BLOCK_SIZE), excess(blockStart - 1), target, false);
+    }
+
+    /**
+     * Finds the largest position k &lt; i with excess(k) equal to the target,
+     * which must be less than excess(i). Returns -1 for the empty prefix if the
+     * target is 0, and -2 if there is no such position.
+     */
+    private int backwardSearch(int i, int target) {
+        int block = i / BLOCK_SIZE;
+        int blockStart = block * BLOCK_SIZE;
+        int found = scan(blockStart, i, excess(blockStart - 1), target, true);
+        if (found >= 0) {
+            return found;
+        }
+        // climb until there is a block to the left with a small enough minimum
+        int node = numberOfLeaves + block;
+        while (node > 1 && ((node & 1) == 0 || minExcess[node - 1] > target)) {
+            node >>>= 1;
+        }
+        if (node == 1) {
+            return target == 0 ? -1 : -2;
+        }
+        node--;
+        // then descend to the rightmost such block
+        while (node < numberOfLeaves) {
+            node = minExcess[2 * node + 1] <= target ? 2 * node + 1 : 2 * node;
+        }
+        blockStart = (node - numberOfLeaves) * BLOCK_SIZE;
+        return scan(blockStart, Math.min(length, blockStart + BLOCK_SIZE), excess(blockStart - 1), target, true);
+    }
+
+    /**
+     * Finds the close parenthesis matching the open parenthesis at i.
+     *
+     * @param i the position of an open parenthesis
+     * @return the position of the matching close parenthesis
+     */
+    public int findClose(int i) {
+        return forwardSearch(i, excess(i) - 1);
+    }
+
+    /**
+     * Finds the open parenthesis matching the close parenthesis at j.
+     *
+     * @param j the position of a close parenthesis
+     * @return the position of the matching open parenthesis
+     */
+    public int findOpen(int j) {
+        return backwardSearch(j, excess(j)) + 1;
+    }
+
+    /**
+     * Finds the open parenthesis of the closest pair enclosing the open
+     * parenthesis at i.
+     *
+     * @param i the position of an open parenthesis
+     * @return the position of the enclosing open parenthesis, or -1 if i is the
+     *         root
+     */
+    public int enclose(int i) {
+        if (i == 0) {
+            return -1;
+        }
+        return backwardSearch(i, excess(i) - 2) + 1;
+    }
+
+    /**
+     * Gets the root of the tree.
+     *
+     * @return the root node
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Gets the parent of a node.
+     *
+     * @param v the node
+     * @return the parent, or -1 if v is the root
+     */
+    public int parent(int v) {
+        return enclose(v);
+    }
+
+    /**
+     * Checks whether a node has no children.
+     *
+     * @param v the node
+     * @return true if v is a leaf
+     */
+    public boolean isLeaf(int v) {
+        return !isOpen(v + 1);
+    }
+
+    /**
+     * Gets the first child of a node.
+     *
+     * @param v the node
+     * @return the first child, or -1 if v is a leaf
+     */
+    public int firstChild(int v) {
+        return isLeaf(v) ? -1 : v + 1;
+    }
+
+    /**
+     * Gets the next sibling of a node.
+     *
+     * @param v the node
+     * @return the next sibling, or -1 if v is the last child of its parent
+     */
+    public int nextSibling(int v) {
+        int next = findClose(v) + 1;
+        return next < length && isOpen(next) ? next : -1;
+    }
+
+    /**
+     * Gets the number of nodes in the subtree rooted at a node, including the
+     * node.
+     *
+     * @param v the node
+     * @return the size of the subtree
+     */
+    public int subtreeSize(int v) {
+        return (findClose(v) - v + 1) / 2;
+    }
+
+    /**
+     * Gets the depth of a node. The root has depth 0.
+     *
+     * @param v the node
+     * @return the depth
+     */
+    public int depth(int v) {
+        return excess(v) - 1;
+    }
+
+    /**
+     * Gets the ancestor of a node d levels up. Level 0 is the node itself and
+     * level 1 its parent.
+     *
+     * @param v the node
+     * @param d the number of levels to go up
+     * @return the ancestor, or -1 if v has depth less than d
+     */
+    public int levelAncestor(int v, int d) {
+        if (d == 0) {
+            return v;
+        }
+        if (d < 0 || d > depth(v)) {
+            return -1;
+        }
+        return backwardSearch(v, excess(v) - d - 1) + 1;
+    }
+
+    /**
+     * Gets the preorder rank of a node. The root has preorder rank 0.
+     *
+     * @param v the node
+     * @return the preorder rank
+     */
+    public int preorder(int v) {
+        return selectSupport.rank1(v);
+    }
+
+    /**
+     * Gets the node with the specified preorder rank.
+     *
+     * @param k the preorder rank, starting from 0
+     * @return the node
+     */
+    public int nodeAtPreorder(int k) {
+        return selectSupport.select1(k + 1) - 1;
+    }
+
+    /**
+     * Gets the number of nodes in the tree.
+     *
+     * @return the number of nodes
+     */
+    public int numberOfNodes() {
+        return length / 2;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        return new MemoryFootprint().add(MemoryFootprint.OBJECT, MemoryLayout.object(2 * Integer.BYTES, 3))
+                .addAll(selectSupport.memoryFootprint())
+                .add("range-min tree", MemoryLayout.array(minExcess.length, Integer.BYTES));
+    }
+
+    /**
+     * Saves this BalancedParenthesesTree to a file with the specified file name.
+     *
+     * @param filename the file name of the file to save
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(String filename) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
+        objectOutputStream.writeObject(this);
+        // Save SelectSupport separately because IntVector is not serializeable
+        selectSupport.save(objectOutputStream);
+        objectOutputStream.close();
+    }
+
+    /**
+     * Loads the BalancedParenthesesTree from the specified file.
+     *
+     * @param filename the file name of the file containing the
+     *                 BalancedParenthesesTree to load
+     * @return the BalancedParenthesesTree
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static BalancedParenthesesTree load(String filename) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
+        BalancedParenthesesTree tree = (BalancedParenthesesTree) objectInputStream.readObject();
+        // Load SelectSupport separately because IntVector is not serializeable
+        tree.selectSupport = SelectSupport.load(objectInputStream);
+        tree.words = tree.selectSupport.getWords();
+        objectInputStream.close();
+        return tree;
+    }
+
+    /**
+     * Builds a {@link BalancedParenthesesTree} from a depth-first traversal,
+     * calling {@link #open()} when entering a node and {@link #close()} when
+     * leaving it.
+     */
+    public static class Builder {
+        private final BitSet parentheses = new BitSet();
+        private int length;
+        private int excess;
+
+        /**
+         * Enters a new node, as the last child of the current node.
+         *
+         * @return this Builder
+         */
+        public Builder open() {
+            if (excess == 0 && length > 0) {
+                throw new IllegalStateException("The tree can only have one root");
+            }
+            parentheses.set(length++);
+            excess++;
+            return this;
+        }
+
+        /**
+         * Leaves the current node.
+         *
+         * @return this Builder
+         */
+        public Builder close() {
+            if (excess == 0) {
+                throw new IllegalStateException("No node to close at position " + length);
+            }
+            length++;
+            excess--;
+            return this;
+        }
+
+        /**
+         * Builds the tree. Every node must have been closed.
+         *
+         * @return the BalancedParenthesesTree
+         */
+        public BalancedParenthesesTree build() {
+            if (length == 0 || excess != 0) {
+                throw new IllegalStateException("Unbalanced parentheses: " + excess + " nodes still open");
+            }
+            return new BalancedParenthesesTree(parentheses, length);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package wavelet;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.stream.IntStream;
+
+import memory.MemoryAccountable;
+import memory.MemoryFootprint;
+import memory.MemoryLayout;
+import rank.RankSupport;
+import rank.RankSupportConfig;
+
+/**
+ * A wavelet matrix over a sequence of non-negative integers, supporting access,
+ * rank, select, range quantile and range frequency queries. The matrix has one
+ * bit-vector per bit of the largest symbol, from the most significant bit down.
+ * Each level holds that bit of every element, after the elements have been
+ * stably partitioned by the bits of the levels above it (zeros first), and is
+ * indexed by a {@link RankSupport}. Every query takes O(log &sigma;) rank
+ * operations, except select, which takes O(log &sigma; log n).
+ * 
+ * @author Valerie Wray
+ *
+ */
+public class WaveletMatrix implements Serializable, MemoryAccountable {
+    private static final long serialVersionUID = 1L;
+    private static final int PARALLEL_BLOCK_SIZE = 1 << 16;
+
+    private int length;
+    private int numberOfLevels;
+    private int[] numberOfZeros;
+    private transient RankSupport[] levels;
+
+    /**
+     * Creates a new WaveletMatrix over the sequence, building the levels in
+     * parallel.
+     * 
+     * @param sequence the sequence of non-negative integers
+     */
+    public WaveletMatrix(int[] sequence) {
+        this(sequence, true);
+    }
+
+    /**
+     * Creates a new WaveletMatrix over the sequence. The levels are built one
+     * after another, since each level is partitioned by the one above it, but
+     * within a level the bits are extracted and partitioned by independent blocks
+     * of the sequence, and the rank supports of all levels are built at the end.
+     * With <code>parallel</code> set, both of these run on the common
+     * fork-join pool.
+     * 
+     * @param sequence the sequence of non-negative integers
+     * @param parallel whether to build in parallel
+     */
+    public WaveletMatrix(int[] sequence, boolean parallel) {
+        length = sequence.length;
+        int maxSymbol = 0;
+        for (int symbol : sequence) {
+            if (symbol < 0) {
+                throw new IllegalArgumentException("Negative symbol: " + symbol);
+            }
+            maxSymbol = Math.max(maxSymbol, symbol);
+        }
+        numberOfLevels = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxSymbol));
+        numberOfZeros = new int[numberOfLevels];
+
+        int numberOfWords = (length + Long.SIZE - 1) / Long.SIZE;
+        int numberOfBlocks = (length + PARALLEL_BLOCK_SIZE - 1) / PARALLEL_BLOCK_SIZE;
+        long[][] levelWords = new long[numberOfLevels][];
+        int[] current = sequence.clone();
+        int[] next = new int[length];
+        for (int level = 0; level < numberOfLevels; level++) {
+            int bit = numberOfLevels - 1 - level;
+            int[] elements = current;
+            long[] words = new long[numberOfWords];
+            range(0, numberOfWords, parallel).forEach(word -> {
+                long value = 0;
+                int end = Math.min(length, (word + 1) * Long.SIZE);
+                for (int i = word * Long.SIZE; i < end; i++) {
+                    value |= (long) ((elements[i] >>> bit) & 1) << i;
+                }
+                words[word] = value;
+            });
+            levelWords[level] = words;
+
+            // stable partition, zeros first, with each block writing at its prefix offsets
+            int[] blockZeros = new int[numberOfBlocks + 1];
+            range(0, numberOfBlocks, parallel).forEach(block -> {
+                int start = block * PARALLEL_BLOCK_SIZE;
+                int end = Math.min(length, start + PARALLEL_BLOCK_SIZE);
+                int ones = 0;
+                for (int word = start / Long.SIZE; word < (end + Long.SIZE - 1) / Long.SIZE; word++) {
+                    ones += Long.bitCount(words[word]);
+                }
+                blockZeros[block + 1] = end - start - ones;
+            });
+            for (int block = 0; block < numberOfBlocks; block++) {
+                blockZeros[block + 1] += blockZeros[block];
+            }
+            int zeros = blockZeros[numberOfBlocks];
+            numberOfZeros[level] = zeros;
+            int[] partitioned = next;
+            range(0, numberOfBlocks, parallel).forEach(block -> {
+                int start = block * PARALLEL_BLOCK_SIZE;
+                int end = Math.min(length, start + PARALLEL_BLOCK_SIZE);
+                int zeroPosition = blockZeros[block];
+                int onePosition = zeros + start - blockZeros[block];
+                for (int i = start; i < end; i++) {
+                    if (((elements[i] >>> bit) & 1) == 0) {
+                        partitioned[zeroPosition++] = elements[i];
+                    } else {
+                        partitioned[onePosition++] = elements[i];
+                    }
+                }
+            });
+            next = current;
+            current = partitioned;
+        }
+
+        levels = new RankSupport[numberOfLevels];
+        range(0, numberOfLevels, parallel).forEach(level -> levels[level] = RankSupport.fromWords(
+                levelWords[level], length, RankSupportConfig.WORD_ALIGNED));
+    }
+
+    private static IntStream range(int from, int to, boolean parallel) {
+        IntStream range = IntStream.range(from, to);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * Counts the ones of a level in positions [0, i), including i equal to the
+     * length of the sequence.
+     */
+    private int rank1(int level, int i) {
+        return i >= length ? length - numberOfZeros[level] : levels[level].rank1(i);
+    }
+
+    private int rank0(int level, int i) {
+        return i - rank1(level, i);
+    }
+
+    /**
+     * Finds the position of the kth (starting from 1) occurrence of a bit in a
+     * level, by binary search over rank.
+     */
+    private int selectBit(int level, boolean bit, int k) {
+        int left = 0;
+        int right = length;
+        while (left < right) {
+            int center = (left + right) >>> 1;
+            int count = bit ? rank1(level, center + 1) : rank0(level, center + 1);
+            if (count >= k) {
+                right = center;
+            } else {
+                left = center + 1;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Gets the element at index i of the sequence.
+     * 
+     * @param i the index in the sequence
+     * @return the element
+     */
+    public int access(int i) {
+        int symbol = 0;
+        for (int level = 0; level < numberOfLevels; level++) {
+            symbol <<= 1;
+            if (levels[level].access(i)) {
+                symbol |= 1;
+                i = numberOfZeros[level] + rank1(level, i);
+            } else {
+                i = rank0(level, i);
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Counts the occurrences of a symbol in positions [0, i) of the sequence. An
+     * end past the sequence counts the whole sequence.
+     * 
+     * @param symbol the symbol
+     * @param i      the end of the prefix, exclusive
+     * @return the number of occurrences, or 0 if i is 0 or less
+     */
+    public int rank(int symbol, int i) {
+        if (i <= 0 || symbol < 0 || symbol >>> numberOfLevels != 0) {
+            return 0;
+        }
+        int start = 0;
+        int end = Math.min(i, length);
+        for (int level = 0; level < numberOfLevels; level++) {
+            if (((symbol >>> (numberOfLevels - 1 - level)) & 1) == 0) {
+                start = rank0(level, start);
+                end = rank0(level, end);
+            } else {
+                start = numberOfZeros[level] + rank1(level, start);
+                end = numberOfZeros[level] + rank1(level, end);
+            }
+        }
+        return end - start;
+    }
+
+    /**
+     * Gets the index in the sequence of the kth (starting from 1) occurrence of a
+     * symbol.
+     * 
+     * @param symbol the symbol
+     * @param k      the occurrence, starting from 1
+     * @return the index of the occurrence, or -1 if there are less than k
+     *         occurrences
+     */
+    public int select(int symbol, int k) {
+        if (k < 1 || rank(symbol, length) < k) {
+            return -1;
+        }
+        // descend to the start of the symbol's range in the last level
+        int start = 0;
+        for (int level = 0; level < numberOfLevels; level++) {
+            if (((symbol >>> (numberOfLevels - 1 - level)) & 1) == 0) {
+                start = rank0(level, start);
+            } else {
+                start = numberOfZeros[level] + rank1(level, start);
+            }
+        }
+        // then climb back up, mapping the position to the level above each time
+        int position = start + k - 1;
+        for (int level = numberOfLevels - 1; level >= 0; level--) {
+            if (((symbol >>> (numberOfLevels - 1 - level)) & 1) == 0) {
+                position = selectBit(level, false, position + 1);
+            } else {
+                position = selectBit(level, true, position - numberOfZeros[level] + 1);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Gets the kth smallest (starting from 0) element in positions [from, to) of
+     * the sequence.
+     * 
+     * @param from the first position, inclusive
+     * @param to   the last position, exclusive
+     * @param k    the order of the element, starting from 0
+     * @return the kth smallest element
+     */
+    public int quantile(int from, int to, int k) {
+        if (k < 0 || k >= to - from) {
+            throw new IndexOutOfBoundsException("k " + k + " out of range for [" + from + ", " + to + ")");
+        }
+        int symbol = 0;
+        for (int level = 0; level < numberOfLevels; level++) {
+            int zerosFrom = rank0(level, from);
+            int zerosTo = rank0(level, to);
+            symbol <<= 1;
+            if (k < zerosTo - zerosFrom) {
+                from = zerosFrom;
+                to = zerosTo;
+            } else {
+                k -= zerosTo - zerosFrom;
+                symbol |= 1;
+                from = numberOfZeros[level] + from - zerosFrom;
+                to = numberOfZeros[level] + to - zerosTo;
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Counts the elements in positions [from, to) of the sequence whose values
+     * are in [minValue, maxValue).
+     * 
+     * @param from     the first position, inclusive
+     * @param to       the last position, exclusive
+     * @param minValue the smallest value, inclusive
+     * @param maxValue the largest value, exclusive
+     * @return the number of elements
+     */
+    public int rangeFrequency(int from, int to, int minValue, int maxValue) {
+        if (minValue >= maxValue) {
+            return 0;
+        }
+        return countLessThan(from, to, maxValue) - countLessThan(from, to, minValue);
+    }
+
+    /**
+     * Counts the elements in positions [from, to) whose values are less than a
+     * value.
+     */
+    private int countLessThan(int from, int to, int value) {
+        if (value <= 0) {
+            return 0;
+        }
+        if (value >>> numberOfLevels != 0) {
+            return to - from;
+        }
+        int count = 0;
+        for (int level = 0; level < numberOfLevels && from < to; level++) {
+            int zerosFrom = rank0(level, from);
+            int zerosTo = rank0(level, to);
+            if (((value >>> (numberOfLevels - 1 - level)) & 1) == 0) {
+                from = zerosFrom;
+                to = zerosTo;
+            } else {
+                // every element with a zero here is smaller
+                count += zerosTo - zerosFrom;
+                from = numberOfZeros[level] + from - zerosFrom;
+                to = numberOfZeros[level] + to - zerosTo;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the length of the sequence.
+     * 
+     * @return the length of the sequence
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the number of levels, which is the number of bits of the largest
+     * symbol.
+     * 
+     * @return the number of levels
+     */
+    public int getNumberOfLevels() {
+        return numberOfLevels;
+    }
+
+    @Override
+    public MemoryFootprint memoryFootprint() {
+        MemoryFootprint memoryFootprint = new MemoryFootprint()
+                .add(MemoryFootprint.OBJECT, MemoryLayout.object(2 * Integer.BYTES, 2)
+                        + MemoryLayout.array(numberOfLevels, Integer.BYTES)
+                        + MemoryLayout.array(numberOfLevels, MemoryLayout.REFERENCE));
+        for (RankSupport level : levels) {
+            memoryFootprint.addAll(level.memoryFootprint());
+        }
+        return memoryFootprint;
+    }
+
+    /**
+     * Saves this WaveletMatrix to a file with the specified file name.
+     * 
+     * @param filename the file name of the file to save
+     * @throws IOException if the file is not able to be saved
+     */
+    public void save(String filename) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(filename));
+        objectOutputStream.writeObject(this);
+        // Save each level separately because IntVector is not serializeable
+        for (RankSupport level : levels) {
+            level.save(objectOutputStream);
+        }
+        objectOutputStream.close();
+    }
+
+    /**
+     * Loads the WaveletMatrix from the specified file.
+     * 
+     * @param filename the file name of the file containing the WaveletMatrix to
+     *                 load
+     * @return the WaveletMatrix
+     * @throws IOException            if the file is not able to be loaded
+     * @throws ClassNotFoundException if a class is not able to be found during
+     *                                deserialization
+     */
+    public static WaveletMatrix load(String filename) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filename));
+        WaveletMatrix waveletMatrix = (WaveletMatrix) objectInputStream.readObject();
+        waveletMatrix.levels = new RankSupport[waveletMatrix.numberOfLevels];
+        for (int level = 0; level < waveletMatrix.numberOfLevels; level++) {
+            waveletMatrix.levels[level] = RankSupport.load(objectInputStream);
+        }
+        objectInputStream.close();
+        return waveletMatrix;
+    }
+}
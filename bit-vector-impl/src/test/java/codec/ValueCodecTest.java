@@ -0,0 +1,66 @@
+package codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link ValueCodec}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ValueCodecTest {
+
+    private static <V> V roundTrip(ValueCodec<V> codec, V value) {
+        int length = codec.encodedLength(value);
+        byte[] buffer = new byte[length + 3];
+        codec.encode(value, buffer, 3);
+        return codec.decode(buffer, 3, length);
+    }
+
+    @Test
+    void testUtf8() {
+        ValueCodec<String> codec = ValueCodec.utf8();
+        assertEquals(-1, codec.fixedWidth());
+        assertEquals(3, codec.encodedLength("foo"));
+        assertEquals(6, codec.encodedLength("f\u00e9\u20ac"));
+        assertEquals(4, codec.encodedLength("\ud83d\ude00"));
+        for (String value : new String[] { "", "foo", "f\u00e9\u20ac", "\ud83d\ude00 smile" }) {
+            assertEquals(value, roundTrip(codec, value));
+        }
+    }
+
+    @Test
+    void testBytes() {
+        ValueCodec<byte[]> codec = ValueCodec.bytes();
+        assertArrayEquals(new byte[0], roundTrip(codec, new byte[0]));
+        assertArrayEquals(new byte[] { 1, -2, 3 }, roundTrip(codec, new byte[] { 1, -2, 3 }));
+    }
+
+    @Test
+    void testFixedWidth() {
+        ValueCodec<byte[]> codec = ValueCodec.fixedWidth(4);
+        assertEquals(4, codec.fixedWidth());
+        assertEquals("fixed4", codec.name());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, roundTrip(codec, new byte[] { 1, 2, 3, 4 }));
+        assertThrows(IllegalArgumentException.class, () -> codec.encodedLength(new byte[3]));
+        assertThrows(IllegalArgumentException.class, () -> ValueCodec.fixedWidth(0));
+    }
+
+    @Test
+    void testVarint() {
+        ValueCodec<Long> codec = ValueCodec.varint();
+        assertEquals(1, codec.encodedLength(0L));
+        assertEquals(1, codec.encodedLength(127L));
+        assertEquals(2, codec.encodedLength(128L));
+        assertEquals(3, codec.encodedLength(1L << 14));
+        assertEquals(9, codec.encodedLength(Long.MAX_VALUE));
+        for (long value : new long[] { 0, 1, 127, 128, 300, 1L << 35, Long.MAX_VALUE }) {
+            assertEquals(value, (long) roundTrip(codec, value));
+        }
+        assertThrows(IllegalArgumentException.class, () -> codec.encodedLength(-1L));
+    }
+}
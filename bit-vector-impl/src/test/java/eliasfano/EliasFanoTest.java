@@ -0,0 +1,68 @@
+package eliasfano;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link EliasFano}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class EliasFanoTest {
+
+    private static int naiveRank(int[] positions, int x) {
+        int count = 0;
+        while (count < positions.length && positions[count] < x) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testSmallSet() {
+        int[] positions = { 2, 3, 5, 7, 11, 13, 24 };
+        EliasFano eliasFano = new EliasFano(positions, positions.length, 25);
+        assertEquals(7, eliasFano.size());
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(positions[i], eliasFano.get(i));
+        }
+        for (int x = -1; x <= 26; x++) {
+            assertEquals(naiveRank(positions, Math.max(0, x)), eliasFano.rank(x));
+        }
+    }
+
+    @Test
+    void testRandomSetsWithDuplicates() {
+        Random random = new Random(1);
+        for (int universe : new int[] { 1, 64, 1000, 1 << 20 }) {
+            for (int size : new int[] { 0, 1, 10, 5000 }) {
+                int[] positions = new int[size];
+                for (int i = 0; i < size; i++) {
+                    positions[i] = random.nextInt(universe);
+                }
+                Arrays.sort(positions);
+                EliasFano eliasFano = new EliasFano(positions, size, universe);
+                for (int i = 0; i < size; i++) {
+                    assertEquals(positions[i], eliasFano.get(i));
+                }
+                for (int j = 0; j < 200; j++) {
+                    int x = random.nextInt(universe + 1);
+                    int expected = naiveRank(positions, x);
+                    assertEquals(expected, eliasFano.rank(x));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testUnsortedPositions() {
+        assertThrows(IllegalArgumentException.class, () -> new EliasFano(new int[] { 3, 1 }, 2, 10));
+        assertThrows(IllegalArgumentException.class, () -> new EliasFano(new int[] { 3, 10 }, 2, 10));
+    }
+}
@@ -0,0 +1,153 @@
+package hybrid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import select.SelectSupport;
+
+/**
+ * Test class for {@link HybridBitVector}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class HybridBitVectorTest {
+    private static final int BLOCK = 1 << 16;
+
+    /**
+     * Builds a bit-vector with a sparse block, a dense random block, a block of
+     * long runs, an empty block, a full block and a partial last block.
+     */
+    private static BitSet mixedBitVector(long seed) {
+        Random random = new Random(seed);
+        BitSet bitVector = new BitSet();
+        for (int j = 0; j < 100; j++) {
+            bitVector.set(random.nextInt(BLOCK));
+        }
+        for (int i = BLOCK; i < 2 * BLOCK; i++) {
+            if (random.nextBoolean()) {
+                bitVector.set(i);
+            }
+        }
+        for (int start = 2 * BLOCK; start < 3 * BLOCK; start += 4000) {
+            bitVector.set(start, Math.min(3 * BLOCK, start + 1000 + random.nextInt(2000)));
+        }
+        bitVector.set(4 * BLOCK, 5 * BLOCK);
+        for (int j = 0; j < 500; j++) {
+            bitVector.set(5 * BLOCK + random.nextInt(12345));
+        }
+        return bitVector;
+    }
+
+    private static final int LENGTH = 5 * BLOCK + 12345;
+
+    @Test
+    void testContainerChoice() {
+        HybridBitVector bitVector = new HybridBitVector(mixedBitVector(1), LENGTH);
+        assertEquals(ContainerType.ARRAY, bitVector.getContainerType(0));
+        assertEquals(ContainerType.BITMAP, bitVector.getContainerType(BLOCK));
+        assertEquals(ContainerType.RUN, bitVector.getContainerType(2 * BLOCK));
+        assertEquals(ContainerType.ARRAY, bitVector.getContainerType(3 * BLOCK));
+        assertEquals(ContainerType.RUN, bitVector.getContainerType(4 * BLOCK));
+        Map<ContainerType, Integer> counts = bitVector.getContainerCounts();
+        assertEquals(3, counts.get(ContainerType.ARRAY).intValue());
+        assertEquals(1, counts.get(ContainerType.BITMAP).intValue());
+        assertEquals(2, counts.get(ContainerType.RUN).intValue());
+    }
+
+    @Test
+    void testFromSortedPositions() {
+        BitSet bits = mixedBitVector(1);
+        HybridBitVector expected = new HybridBitVector(bits, LENGTH);
+        HybridBitVector bitVector = HybridBitVector.fromSortedPositions(bits.stream().toArray(), LENGTH);
+        assertEquals(bits, bitVector.toBitSet());
+        assertEquals(expected.getContainerCounts(), bitVector.getContainerCounts());
+        for (int b = 0; b * BLOCK < LENGTH; b++) {
+            assertEquals(expected.getContainerType(b * BLOCK), bitVector.getContainerType(b * BLOCK));
+        }
+        for (int i = 0; i <= LENGTH; i += 7) {
+            assertEquals(expected.rank1(i), bitVector.rank1(i));
+        }
+        for (int k = 0; k <= bitVector.getNumberOfOnes(); k += 3) {
+            assertEquals(expected.select1(k), bitVector.select1(k));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> HybridBitVector.fromSortedPositions(new int[] { 3, BLOCK + 1, BLOCK }, LENGTH));
+        assertThrows(IllegalArgumentException.class,
+                () -> HybridBitVector.fromSortedPositions(new int[] { LENGTH }, LENGTH));
+    }
+
+    @Test
+    void testAgainstSelectSupport() {
+        BitSet bits = mixedBitVector(2);
+        SelectSupport selectSupport = new SelectSupport(bits, LENGTH);
+        HybridBitVector bitVector = HybridBitVector.fromRankSupport(selectSupport);
+        assertEquals(bits, bitVector.toBitSet());
+        Random random = new Random(2);
+        for (int j = 0; j < 5000; j++) {
+            int i = random.nextInt(LENGTH);
+            assertEquals(selectSupport.rank1(i), bitVector.rank1(i));
+            assertEquals(selectSupport.access(i), bitVector.access(i));
+        }
+        assertEquals(selectSupport.rank1(LENGTH), bitVector.rank1(LENGTH));
+        for (int j = 0; j < 5000; j++) {
+            int k = random.nextInt(bitVector.getNumberOfOnes() + 1);
+            assertEquals(selectSupport.select1(k), bitVector.select1(k));
+        }
+        assertEquals(selectSupport.select1(bitVector.getNumberOfOnes()),
+                bitVector.select1(bitVector.getNumberOfOnes()));
+        assertThrows(IllegalArgumentException.class, () -> bitVector.select1(bitVector.getNumberOfOnes() + 1));
+    }
+
+    @Test
+    void testSetAlgebra() {
+        BitSet first = mixedBitVector(3);
+        BitSet second = mixedBitVector(4);
+        // make the second vector one block shorter so padding is exercised
+        second.clear(5 * BLOCK, LENGTH);
+        HybridBitVector a = new HybridBitVector(first, LENGTH);
+        HybridBitVector b = new HybridBitVector(second, 5 * BLOCK);
+
+        BitSet expected = (BitSet) first.clone();
+        expected.and(second);
+        assertEquals(expected, a.and(b).toBitSet());
+        expected = (BitSet) first.clone();
+        expected.or(second);
+        assertEquals(expected, a.or(b).toBitSet());
+        expected = (BitSet) first.clone();
+        expected.xor(second);
+        assertEquals(expected, a.xor(b).toBitSet());
+        expected = (BitSet) first.clone();
+        expected.andNot(second);
+        assertEquals(expected, a.andNot(b).toBitSet());
+        assertEquals(LENGTH, a.or(b).getBitVectorLength());
+        assertEquals(expected.cardinality(), a.andNot(b).getNumberOfOnes());
+    }
+
+    @Test
+    void testMemoryFootprint() {
+        BitSet bits = mixedBitVector(5);
+        HybridBitVector bitVector = new HybridBitVector(bits, LENGTH);
+        SelectSupport selectSupport = new SelectSupport(bits, LENGTH);
+        assertTrue(bitVector.memoryFootprint().getTotalBytes() < selectSupport.memoryFootprint().getTotalBytes());
+    }
+
+    @Test
+    void testLoadAndSaveHybridBitVector() throws IOException, ClassNotFoundException {
+        HybridBitVector bitVector = new HybridBitVector(mixedBitVector(6), LENGTH);
+        bitVector.save("src/test/resources/hybridBitVector.bin");
+        HybridBitVector bitVector2 = HybridBitVector.load("src/test/resources/hybridBitVector.bin");
+        assertEquals(bitVector.getContainerCounts(), bitVector2.getContainerCounts());
+        for (int i = 0; i <= LENGTH; i += 101) {
+            assertEquals(bitVector.rank1(i), bitVector2.rank1(i));
+        }
+    }
+}
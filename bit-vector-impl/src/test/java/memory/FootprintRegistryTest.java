@@ -0,0 +1,43 @@
+package memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+import rank.RankSupport;
+import sparsearray.SparseArray;
+
+/**
+ * Test class for {@link FootprintRegistry}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class FootprintRegistryTest {
+
+    @Test
+    void testRegisterAndUnregister() {
+        BitSet bitVector = new BitSet(10000);
+        bitVector.set(0, 5000);
+        RankSupport rankSupport = new RankSupport(bitVector, 10000);
+        SparseArray sparseArray = new SparseArray(1000);
+        sparseArray.append("foo", 1);
+        sparseArray.build();
+
+        long before = FootprintRegistry.totalBytes();
+        FootprintRegistry.register(rankSupport);
+        FootprintRegistry.register(sparseArray);
+        FootprintRegistry.register(sparseArray);
+        long expected = rankSupport.memoryFootprint().getTotalBytes()
+                + sparseArray.memoryFootprint().getTotalBytes();
+        assertEquals(before + expected, FootprintRegistry.totalBytes());
+        assertTrue(FootprintRegistry.liveCount() >= 2);
+
+        FootprintRegistry.unregister(rankSupport);
+        FootprintRegistry.unregister(sparseArray);
+        assertEquals(before, FootprintRegistry.totalBytes());
+    }
+}
@@ -0,0 +1,91 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import select.SelectSupport;
+import sparsearray.PositionEncoding;
+import sparsearray.SparseArray;
+
+/**
+ * Test class for {@link Metrics}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class MetricsTest {
+
+    @Test
+    void testRecordsOnlyWhenEnabled() {
+        BitSet bitVector = new BitSet(1000);
+        bitVector.set(100, 600);
+        SelectSupport selectSupport = new SelectSupport(bitVector, 1000);
+        Metrics.reset();
+        selectSupport.rank1(500);
+        assertEquals(0, Metrics.get(Operation.RANK1).getCount());
+
+        Metrics.enable();
+        try {
+            selectSupport.rank1(500);
+            selectSupport.rank1(700);
+            selectSupport.select1(250);
+            selectSupport.access(10);
+        } finally {
+            Metrics.disable();
+        }
+        Map<Operation, OperationStats> snapshot = Metrics.snapshot();
+        // select1 is recorded once, not once per rank1 of its binary search
+        assertEquals(2, snapshot.get(Operation.RANK1).getCount());
+        assertEquals(1, snapshot.get(Operation.SELECT1).getCount());
+        assertEquals(1, snapshot.get(Operation.ACCESS).getCount());
+        assertTrue(snapshot.get(Operation.RANK1).getMaxNanos() >= snapshot.get(Operation.RANK1).getP50Nanos());
+    }
+
+    @Test
+    void testSparseArrayOperationsAndBuild() {
+        Metrics.reset();
+        Metrics.enable();
+        try {
+            SparseArray sparseArray = new SparseArray(100);
+            sparseArray.append("foo", 1);
+            sparseArray.append("bar", 5);
+            sparseArray.build(PositionEncoding.BITMAP);
+            sparseArray.getAtIndex(5, new StringBuilder());
+            sparseArray.getAtRank(0, new StringBuilder());
+            sparseArray.getIndexOf(1);
+            sparseArray.numberOfElementsAt(50);
+        } finally {
+            Metrics.disable();
+        }
+        assertEquals(1, Metrics.get(Operation.BUILD).getCount());
+        assertEquals(1, Metrics.get(Operation.GET_AT_INDEX).getCount());
+        assertEquals(1, Metrics.get(Operation.GET_AT_RANK).getCount());
+        assertEquals(1, Metrics.get(Operation.GET_INDEX_OF).getCount());
+        assertEquals(1, Metrics.get(Operation.NUMBER_OF_ELEMENTS_AT).getCount());
+        // only the sparse array operations are recorded, not the bitmap lookups
+        assertEquals(0, Metrics.get(Operation.RANK1).getCount());
+        assertEquals(0, Metrics.get(Operation.SELECT1).getCount());
+        assertEquals(0, Metrics.get(Operation.ACCESS).getCount());
+    }
+
+    @Test
+    void testRegisterMBeans() throws JMException {
+        Metrics.registerMBeans();
+        Metrics.registerMBeans();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("bitvector:type=Operation,name=RANK1");
+        assertTrue(mBeanServer.isRegistered(objectName));
+        assertEquals(Metrics.get(Operation.RANK1).getCount(), mBeanServer.getAttribute(objectName, "Count"));
+        Metrics.unregisterMBeans();
+    }
+}
@@ -0,0 +1,86 @@
+package offheap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link ExternalSorter}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ExternalSorterTest {
+    private static final Path DIRECTORY = createDirectory();
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("external");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets a file in a temporary directory, since the inputs and intermediate
+     * files are too large to keep in the test resources.
+     */
+    private static String file(String name) {
+        Path path = DIRECTORY.resolve(name);
+        path.toFile().deleteOnExit();
+        return path.toString();
+    }
+
+    @Test
+    void testSortWithManyRuns() throws IOException {
+        Random random = new Random(48);
+        List<long[]> records = new ArrayList<>();
+        try (PositionValueFile.Writer writer = new PositionValueFile.Writer(file("unsortedRecords.bin"),
+                4096)) {
+            for (int i = 0; i < 30000; i++) {
+                long position = random.nextInt(1000000);
+                records.add(new long[] { position, i });
+                writer.write(position, "value" + i);
+            }
+        }
+        // 64 KiB of buffer holds about a thousand records, so this takes two merge passes
+        ExternalBuildOptions options = ExternalBuildOptions.builder().bufferSize(1 << 16).build();
+        ExternalSorter.sort(file("unsortedRecords.bin"), file("sortedRecords.bin"),
+                options);
+        records.sort(Comparator.comparingLong((long[] record) -> record[0]));
+        try (PositionValueFile.Reader reader = new PositionValueFile.Reader(file("sortedRecords.bin"),
+                4096)) {
+            for (long[] record : records) {
+                assertTrue(reader.next());
+                assertEquals(record[0], reader.position());
+                // equal positions keep their input order
+                assertEquals("value" + record[1], reader.value());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void testSortEmpty() throws IOException {
+        new PositionValueFile.Writer(file("emptyRecords.bin"), 1024).close();
+        ExternalSorter.sort(file("emptyRecords.bin"), file("emptySortedRecords.bin"),
+                ExternalBuildOptions.DEFAULT);
+        try (PositionValueFile.Reader reader = new PositionValueFile.Reader(
+                file("emptySortedRecords.bin"), 1024)) {
+            assertFalse(reader.next());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package offheap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link ExternalSparseArrayWriter}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class ExternalSparseArrayWriterTest {
+    private static final Path DIRECTORY = createDirectory();
+
+    private static Path createDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("external");
+            directory.toFile().deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets a file in a temporary directory, since the inputs and intermediate
+     * files are too large to keep in the test resources.
+     */
+    private static String file(String name) {
+        Path path = DIRECTORY.resolve(name);
+        path.toFile().deleteOnExit();
+        return path.toString();
+    }
+
+    private static void assertMatches(TreeMap<Long, String> expected, long size, OffHeapSparseArray sparseArray) {
+        assertEquals(size, sparseArray.size());
+        assertEquals(expected.size(), sparseArray.numberOfElements());
+        long rank = 0;
+        for (long index : expected.keySet()) {
+            StringBuilder element = new StringBuilder();
+            assertTrue(sparseArray.getAtIndex(index, element));
+            assertEquals(expected.get(index), element.toString());
+            rank++;
+            assertEquals(index, sparseArray.getIndexOf(rank));
+            assertEquals(rank, sparseArray.numberOfElementsAt(index));
+        }
+        for (long index = 0; index < size; index += 101) {
+            assertEquals(expected.containsKey(index), sparseArray.getAtIndex(index, new StringBuilder()));
+        }
+        assertEquals(-1, sparseArray.getIndexOf(rank + 1));
+    }
+
+    @Test
+    void testBuildFromSortedInput() throws IOException {
+        long size = 100000;
+        TreeMap<Long, String> expected = new TreeMap<>();
+        try (PositionValueFile.Writer writer = new PositionValueFile.Writer(file("sortedInput.bin"),
+                4096)) {
+            for (long i = 3; i < size; i += 1 + i % 97) {
+                writer.write(i, "v" + i);
+                expected.put(i, "v" + i);
+            }
+        }
+        ExternalBuildOptions options = ExternalBuildOptions.builder().bufferSize(1 << 16).build();
+        try (OffHeapSparseArray sparseArray = ExternalSparseArrayWriter.build(file("sortedInput.bin"),
+                file("externalSparseArray.bin"), size, options)) {
+            assertMatches(expected, size, sparseArray);
+            assertThrows(IllegalStateException.class, () -> sparseArray.append("late", size - 1));
+        }
+    }
+
+    @Test
+    void testBuildFromUnsortedInput() throws IOException {
+        long size = 3L * OffHeapSelectSupport.LINE_BITS * 1000;
+        TreeMap<Long, String> expected = new TreeMap<>();
+        Random random = new Random(49);
+        try (PositionValueFile.Writer writer = new PositionValueFile.Writer(file("unsortedInput.bin"),
+                4096)) {
+            while (expected.size() < 20000) {
+                long position = (long) (random.nextDouble() * size);
+                if (!expected.containsKey(position)) {
+                    writer.write(position, "élément" + position);
+                    expected.put(position, "élément" + position);
+                }
+            }
+        }
+        ExternalBuildOptions options = ExternalBuildOptions.builder().bufferSize(1 << 16).build();
+        try (OffHeapSparseArray sparseArray = ExternalSparseArrayWriter.buildUnsorted(
+                file("unsortedInput.bin"), file("externalSparseArrayUnsorted.bin"), size,
+                options)) {
+            assertMatches(expected, size, sparseArray);
+        }
+    }
+
+    @Test
+    void testWriter() throws IOException {
+        try (ExternalSparseArrayWriter writer = new ExternalSparseArrayWriter(
+                file("externalSparseArraySmall.bin"), 100, ExternalBuildOptions.DEFAULT)) {
+            writer.append("foo", 1);
+            writer.append("", 5);
+            writer.append("baz", 99);
+            assertThrows(IllegalArgumentException.class, () -> writer.append("bar", 99));
+            writer.finish();
+            assertThrows(IllegalStateException.class, () -> writer.append("late", 100));
+        }
+        try (OffHeapSparseArray sparseArray = OffHeapSparseArray.map(file("externalSparseArraySmall.bin"))) {
+            StringBuilder element = new StringBuilder();
+            assertTrue(sparseArray.getAtRank(2, element));
+            assertEquals("baz", element.toString());
+            assertTrue(sparseArray.getAtIndex(5, new StringBuilder()));
+            assertFalse(sparseArray.getAtIndex(6, new StringBuilder()));
+            assertEquals(3, sparseArray.numberOfElementsAt(99));
+        }
+
+        // an unfinished writer leaves no file behind
+        new ExternalSparseArrayWriter(file("externalSparseArrayUnfinished.bin"), 100,
+                ExternalBuildOptions.DEFAULT).close();
+        assertFalse(Files.exists(Path.of(file("externalSparseArrayUnfinished.bin"))));
+        assertThrows(IOException.class, () -> OffHeapSparseArray.map(file("sortedInput.bin")));
+    }
+}
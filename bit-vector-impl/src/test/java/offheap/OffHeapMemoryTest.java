@@ -0,0 +1,72 @@
+package offheap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OffHeapMemory}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class OffHeapMemoryTest {
+
+    @Test
+    void testLongsAndBytes() {
+        try (OffHeapMemory memory = OffHeapMemory.allocate(1000)) {
+            assertEquals(1000, memory.byteSize());
+            assertEquals(0, memory.getLong(7));
+            memory.setLong(7, -3L);
+            memory.setLong(8, 0x0102030405060708L);
+            assertEquals(-3L, memory.getLong(7));
+            assertEquals(0x0102030405060708L, memory.getLong(8));
+            memory.setByte(999, (byte) 42);
+            assertEquals(42, memory.getByte(999));
+
+            byte[] bytes = { 1, 2, 3, 4, 5 };
+            memory.setBytes(500, bytes, 1, 3);
+            byte[] read = new byte[4];
+            memory.getBytes(499, read, 0, 4);
+            assertArrayEquals(new byte[] { 0, 2, 3, 4 }, read);
+        }
+    }
+
+    @Test
+    void testCopyAndClose() {
+        OffHeapMemory memory = OffHeapMemory.allocate(100000);
+        for (long i = 0; i < 12500; i++) {
+            memory.setLong(i, i * 31);
+        }
+        OffHeapMemory copy = OffHeapMemory.allocate(200000);
+        copy.copyFrom(memory, 100000);
+        memory.close();
+        memory.close();
+        for (long i = 0; i < 12500; i++) {
+            assertEquals(i * 31, copy.getLong(i));
+        }
+        assertEquals(0, copy.getLong(12500));
+        copy.close();
+        assertThrows(IllegalStateException.class, () -> copy.getLong(0));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapMemory.allocate(-1));
+    }
+
+    @Test
+    void testBufferChunks() {
+        // two chunks, with a byte range straddling them
+        try (BufferMemory memory = new BufferMemory((1L << 30) + 64)) {
+            long last = (1L << 27) + 7;
+            memory.setLong(last, 99L);
+            assertEquals(99L, memory.getLong(last));
+            byte[] bytes = { 9, 8, 7, 6 };
+            memory.setBytes((1L << 30) - 2, bytes, 0, 4);
+            assertEquals(8, memory.getByte((1L << 30) - 1));
+            assertEquals(7, memory.getByte(1L << 30));
+            byte[] read = new byte[4];
+            memory.getBytes((1L << 30) - 2, read, 0, 4);
+            assertArrayEquals(bytes, read);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package offheap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OffHeapSelectSupport}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class OffHeapSelectSupportTest {
+
+    @Test
+    void testMatchesSelectSupport() {
+        Random random = new Random(46);
+        for (int size : new int[] { 0, 1, 63, 448, 449, 896, 10000, 100003 }) {
+            BitSet bitVector = new BitSet(size + 10);
+            for (int i = 0; i < size + 10; i++) {
+                if (random.nextInt(7) == 0) {
+                    bitVector.set(i);
+                }
+            }
+            try (OffHeapSelectSupport offHeap = new OffHeapSelectSupport(bitVector, size)) {
+                int rank = 0;
+                for (int i = 0; i < size; i++) {
+                    assertEquals(rank, offHeap.rank1(i));
+                    if (bitVector.get(i)) {
+                        rank++;
+                        assertEquals(i + 1, offHeap.select1(rank));
+                    }
+                }
+                assertEquals(rank, offHeap.rank1(size));
+                long ones = offHeap.getNumberOfOnes();
+                assertEquals(rank, ones);
+                assertEquals(0, offHeap.select1(0));
+                for (int i = 0; i < size; i++) {
+                    assertEquals(bitVector.get(i), offHeap.access(i));
+                }
+                assertFalse(offHeap.access(size));
+                assertThrows(IllegalArgumentException.class, () -> offHeap.select1(ones + 1));
+                assertThrows(IndexOutOfBoundsException.class, () -> offHeap.rank1(size + 1));
+            }
+        }
+    }
+
+    @Test
+    void testSetAndClose() {
+        OffHeapSelectSupport offHeap = new OffHeapSelectSupport(5000);
+        offHeap.set(3);
+        offHeap.set(447);
+        offHeap.set(448);
+        offHeap.set(4999);
+        assertThrows(IndexOutOfBoundsException.class, () -> offHeap.set(5000));
+        offHeap.build();
+        assertThrows(IllegalStateException.class, () -> offHeap.set(10));
+        assertThrows(IllegalStateException.class, () -> offHeap.build());
+        assertEquals(4, offHeap.getNumberOfOnes());
+        assertEquals(2, offHeap.rank1(448));
+        assertEquals(449, offHeap.select1(3));
+        assertEquals(5000, offHeap.select1(4));
+        assertTrue(offHeap.access(4999));
+        assertEquals(0, offHeap.getOffHeapBytes() % OffHeapMemory.CACHE_LINE_BYTES);
+        offHeap.close();
+        assertThrows(IllegalStateException.class, () -> offHeap.rank1(10));
+    }
+}
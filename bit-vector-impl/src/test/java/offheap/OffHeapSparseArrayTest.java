@@ -0,0 +1,73 @@
+package offheap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import sparsearray.SparseArray;
+
+/**
+ * Test class for {@link OffHeapSparseArray}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class OffHeapSparseArrayTest {
+
+    @Test
+    void testOffHeapSparseArray() {
+        try (OffHeapSparseArray sparseArray = new OffHeapSparseArray(100)) {
+            sparseArray.append("foo", 1);
+            sparseArray.append("b\u00e4r", 5);
+            sparseArray.append("", 9);
+            assertThrows(IllegalArgumentException.class, () -> sparseArray.append("baz", 9));
+            sparseArray.build();
+            assertThrows(IllegalStateException.class, () -> sparseArray.build());
+
+            StringBuilder stringAtRank1 = new StringBuilder();
+            assertTrue(sparseArray.getAtRank(1, stringAtRank1));
+            assertEquals("b\u00e4r", stringAtRank1.toString());
+            assertFalse(sparseArray.getAtIndex(3, new StringBuilder()));
+            StringBuilder stringAtIndex9 = new StringBuilder();
+            assertTrue(sparseArray.getAtIndex(9, stringAtIndex9));
+            assertEquals("", stringAtIndex9.toString());
+            assertEquals(5, sparseArray.getIndexOf(2));
+            assertEquals(-1, sparseArray.getIndexOf(4));
+            assertEquals(2, sparseArray.numberOfElementsAt(5));
+            assertEquals(3, sparseArray.numberOfElementsAt(99));
+            assertThrows(IllegalStateException.class, () -> sparseArray.append("late", 50));
+        }
+    }
+
+    @Test
+    void testCopyOfSparseArray() {
+        int size = 200000;
+        SparseArray sparseArray = new SparseArray(size);
+        Random random = new Random(47);
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(30) == 0) {
+                sparseArray.append("value" + i, i);
+            }
+        }
+        sparseArray.build();
+        try (OffHeapSparseArray offHeap = OffHeapSparseArray.of(sparseArray)) {
+            assertEquals(sparseArray.numberOfElements(), offHeap.numberOfElements());
+            for (int i = 0; i < size; i += 7) {
+                StringBuilder expected = new StringBuilder();
+                StringBuilder actual = new StringBuilder();
+                assertEquals(sparseArray.getAtIndex(i, expected), offHeap.getAtIndex(i, actual));
+                assertEquals(expected.toString(), actual.toString());
+                assertEquals(sparseArray.numberOfElementsAt(i), offHeap.numberOfElementsAt(i));
+            }
+            for (int r = 1; r <= sparseArray.numberOfElements(); r++) {
+                assertEquals(sparseArray.getIndexOf(r), offHeap.getIndexOf(r));
+            }
+            assertTrue(offHeap.getOffHeapBytes() > 0);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package rank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link Popcount} and the {@link PopcountEngine}s.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class PopcountTest {
+
+    private static long[] randomWords(int length, long seed) {
+        Random random = new Random(seed);
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = random.nextLong() & random.nextLong();
+        }
+        return words;
+    }
+
+    private static List<PopcountEngine> engines() {
+        List<PopcountEngine> engines = new ArrayList<>();
+        engines.add(Popcount.SCALAR);
+        PopcountEngine vectorEngine = Popcount.vectorEngine();
+        if (vectorEngine != null) {
+            engines.add(vectorEngine);
+        }
+        return engines;
+    }
+
+    @Test
+    void testCountOnes() {
+        long[] words = randomWords(40, 1);
+        BitSet bitSet = BitSet.valueOf(words);
+        Random random = new Random(2);
+        for (int j = 0; j < 2000; j++) {
+            int from = random.nextInt(40 * 64);
+            int to = from + random.nextInt(40 * 64 - from + 1);
+            assertEquals(bitSet.get(from, to).cardinality(), Popcount.countOnes(words, from, to));
+        }
+        assertEquals(0, Popcount.countOnes(words, 100, 100));
+    }
+
+    @Test
+    void testEnginesAgree() {
+        long[] a = randomWords(1001, 3);
+        long[] b = randomWords(1001, 4);
+        for (PopcountEngine engine : engines()) {
+            for (int[] range : new int[][] { { 0, 1001 }, { 3, 17 }, { 5, 900 }, { 1000, 1001 } }) {
+                assertEquals(Popcount.SCALAR.countWords(a, range[0], range[1]),
+                        engine.countWords(a, range[0], range[1]));
+            }
+            for (int wordsPerBlock : new int[] { 1, 2, 8 }) {
+                int[] expected = new int[130];
+                int[] actual = new int[130];
+                Popcount.SCALAR.blockCounts(a, 3, wordsPerBlock, expected, 130);
+                engine.blockCounts(a, 3, wordsPerBlock, actual, 130);
+                assertArrayEquals(expected, actual);
+            }
+            long[] expected = new long[1001];
+            long[] actual = new long[1001];
+            Popcount.SCALAR.and(a, b, expected, 1001);
+            engine.and(a, b, actual, 1001);
+            assertArrayEquals(expected, actual);
+            Popcount.SCALAR.or(a, b, expected, 1001);
+            engine.or(a, b, actual, 1001);
+            assertArrayEquals(expected, actual);
+            Popcount.SCALAR.xor(a, b, expected, 1001);
+            engine.xor(a, b, actual, 1001);
+            assertArrayEquals(expected, actual);
+            Popcount.SCALAR.andNot(a, b, expected, 1001);
+            engine.andNot(a, b, actual, 1001);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testSetOperations() {
+        BitSet first = BitSet.valueOf(randomWords(100, 5));
+        BitSet second = BitSet.valueOf(randomWords(80, 6));
+        RankSupport firstRankSupport = new RankSupport(first, 6400, RankSupportConfig.WORD_ALIGNED);
+        RankSupport secondRankSupport = new RankSupport(second, 5120, RankSupportConfig.WORD_ALIGNED);
+
+        BitSet expected = (BitSet) first.clone();
+        expected.and(second);
+        RankSupport intersection = firstRankSupport.and(secondRankSupport);
+        assertEquals(expected, intersection.getBitVector());
+        assertEquals(expected.cardinality(), intersection.rank1(6399) + (expected.get(6399) ? 1 : 0));
+
+        expected = (BitSet) first.clone();
+        expected.or(second);
+        assertEquals(expected, firstRankSupport.or(secondRankSupport).getBitVector());
+
+        expected = (BitSet) first.clone();
+        expected.xor(second);
+        assertEquals(expected, firstRankSupport.xor(secondRankSupport).getBitVector());
+
+        expected = (BitSet) first.clone();
+        expected.andNot(second);
+        RankSupport difference = firstRankSupport.andNot(secondRankSupport);
+        assertEquals(expected, difference.getBitVector());
+        assertEquals(expected.get(0, 3000).cardinality(), difference.rank1(3000));
+    }
+
+    /**
+     * Measures the speedup of the vectorized engine over the scalar engine. Run
+     * with the vector profile and <code>--add-modules jdk.incubator.vector</code>.
+     */
+    // @Test
+    void testEngineSpeedup() {
+        long[] words = randomWords(1 << 20, 7);
+        int[] counts = new int[1 << 20];
+        for (PopcountEngine engine : engines()) {
+            long best = Long.MAX_VALUE;
+            long bestBlockCounts = Long.MAX_VALUE;
+            int checksum = 0;
+            for (int run = 0; run < 50; run++) {
+                long start = System.nanoTime();
+                checksum += engine.countWords(words, 0, words.length);
+                best = Math.min(best, System.nanoTime() - start);
+                start = System.nanoTime();
+                engine.blockCounts(words, 0, 1, counts, counts.length);
+                bestBlockCounts = Math.min(bestBlockCounts, System.nanoTime() - start);
+            }
+            System.out.println(engine.getClass().getSimpleName() + ": countWords " + best / 1000
+                    + " microseconds, blockCounts " + bestBlockCounts / 1000 + " microseconds (" + checksum + ")");
+        }
+    }
+
+    @Test
+    void testGroupRanks() {
+        long[] words = randomWords(1024, 7);
+        words[100] = 0;
+        char[] groupRanks = GroupRanks.build(words);
+        BitSet bitSet = BitSet.valueOf(words);
+        assertEquals(bitSet.cardinality(), GroupRanks.cardinality(words, groupRanks));
+        int k = 0;
+        for (int position = 0; position < 1 << 16; position++) {
+            assertEquals(k, GroupRanks.rank(words, groupRanks, position));
+            if (bitSet.get(position)) {
+                assertEquals(position, GroupRanks.select(words, groupRanks, k++));
+            }
+        }
+    }
+}
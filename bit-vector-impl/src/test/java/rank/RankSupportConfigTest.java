@@ -0,0 +1,106 @@
+package rank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link RankSupportConfig}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class RankSupportConfigTest {
+
+    private static BitSet randomBitVector(int length, double density, long seed) {
+        Random random = new Random(seed);
+        BitSet bitVector = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            if (random.nextDouble() < density) {
+                bitVector.set(i);
+            }
+        }
+        return bitVector;
+    }
+
+    private static void assertRanksMatch(BitSet bitVector, RankSupport rankSupport) {
+        int rank = 0;
+        for (int i = 0; i < rankSupport.getBitVectorLength(); i++) {
+            assertEquals(rank, rankSupport.rank1(i), "rank1(" + i + ")");
+            if (bitVector.get(i)) {
+                rank++;
+            }
+        }
+    }
+
+    @Test
+    void testExplicitBlockSizes() {
+        BitSet bitVector = randomBitVector(10000, .4, 1);
+        for (int[] blockSizes : new int[][] { { 900, 15 }, { 512, 64 }, { 100, 7 }, { 64, 64 }, { 4096, 256 } }) {
+            RankSupport rankSupport = new RankSupport(bitVector, 10000,
+                    RankSupportConfig.builder().blockSizes(blockSizes[0], blockSizes[1]).build());
+            assertEquals(blockSizes[0], rankSupport.getChunkSize());
+            assertEquals(blockSizes[1], rankSupport.getSubchunkSize());
+            assertRanksMatch(bitVector, rankSupport);
+        }
+    }
+
+    @Test
+    void testWordAligned() {
+        BitSet bitVector = randomBitVector(5000, .7, 2);
+        RankSupport rankSupport = new RankSupport(bitVector, 5000, RankSupportConfig.WORD_ALIGNED);
+        assertEquals(512, rankSupport.getChunkSize());
+        assertEquals(64, rankSupport.getSubchunkSize());
+        assertEquals(8, rankSupport.getNumberOfSubchunks());
+        assertRanksMatch(bitVector, rankSupport);
+    }
+
+    @Test
+    void testDefaultMatchesLogSquared() {
+        RankSupport rankSupport = new RankSupport(randomBitVector(128, .5, 3), 128, RankSupportConfig.DEFAULT);
+        assertEquals(49, rankSupport.getChunkSize());
+        assertEquals(3, rankSupport.getSubchunkSize());
+    }
+
+    @Test
+    void testSpaceBudget() {
+        int length = 1 << 20;
+        BitSet bitVector = randomBitVector(length, .5, 4);
+        RankSupport rankSupport = new RankSupport(bitVector, length,
+                RankSupportConfig.builder().maxOverheadPercent(5).build());
+        assertTrue(RankSupportConfig.estimateOverheadPercent(rankSupport.getChunkSize(),
+                rankSupport.getSubchunkSize(), length) <= 5);
+        // the smallest subchunk within budget
+        assertEquals(8192, rankSupport.getChunkSize());
+        assertEquals(512, rankSupport.getSubchunkSize());
+
+        RankSupport generous = new RankSupport(bitVector, length,
+                RankSupportConfig.builder().maxOverheadPercent(50).build());
+        assertEquals(256, generous.getChunkSize());
+        assertEquals(64, generous.getSubchunkSize());
+    }
+
+    @Test
+    void testAutoTune() {
+        int length = 200000;
+        BitSet bitVector = randomBitVector(length, .3, 5);
+        RankSupport rankSupport = new RankSupport(bitVector, length,
+                RankSupportConfig.builder().autoTune(true).maxOverheadPercent(10).build());
+        assertTrue(RankSupportConfig.estimateOverheadPercent(rankSupport.getChunkSize(),
+                rankSupport.getSubchunkSize(), length) <= 10);
+        assertEquals(0, rankSupport.getSubchunkSize() % 64);
+        assertEquals(bitVector.get(0, 123457).cardinality(), rankSupport.rank1(123457));
+    }
+
+    @Test
+    void testInvalidBlockSizes() {
+        assertThrows(IllegalArgumentException.class, () -> RankSupportConfig.builder().blockSizes(64, 128));
+        assertThrows(IllegalArgumentException.class, () -> RankSupportConfig.builder().blockSizes(64, 0));
+        assertThrows(IllegalArgumentException.class, () -> RankSupportConfig.builder().maxOverheadPercent(0));
+    }
+}
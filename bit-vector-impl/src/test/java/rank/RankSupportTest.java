@@ -1,6 +1,8 @@
 package rank;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -10,11 +12,14 @@ import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
 
 import com.github.sh0nk.matplotlib4j.Plot;
 import com.github.sh0nk.matplotlib4j.PythonExecutionException;
 
 import edu.berkeley.cs.succinct.util.vector.IntVector;
+import memory.MemoryFootprint;
+import segment.SegmentOptions;
 
 /**
  * Test class for {@link RankSupport}.
@@ -253,6 +258,112 @@ class RankSupportTest {
         }
     }
 
+    @Test
+    void testMemoryFootprint() {
+        BitSet bitVector = new BitSet(100000);
+        setRandomCapacityBits(bitVector, .3, 100000);
+        RankSupport rankSupport = new RankSupport(bitVector, 100000);
+        MemoryFootprint memoryFootprint = rankSupport.memoryFootprint();
+        long graphLayoutSize = GraphLayout.parseInstance(rankSupport).totalSize();
+        assertTrue(Math.abs(memoryFootprint.getTotalBytes() - graphLayoutSize) <= graphLayoutSize / 20,
+                "footprint " + memoryFootprint.getTotalBytes() + " vs GraphLayout " + graphLayoutSize);
+        // the bits are kept once, as words
+        assertTrue(memoryFootprint.getBytes(MemoryFootprint.DATA_WORDS) >= 100000 / 8);
+        assertTrue(memoryFootprint.getBytes(MemoryFootprint.DATA_WORDS) < 2 * 100000 / 8);
+        assertTrue(memoryFootprint.getBytes(MemoryFootprint.RANK_DIRECTORY) > 0);
+    }
+
+    @Test
+    void testLazyDirectory() throws InterruptedException {
+        int length = 1 << 20;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(1);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(3) == 0) {
+                bitVector.set(i);
+            }
+        }
+        RankSupport eager = new RankSupport(bitVector, length, RankSupportConfig.WORD_ALIGNED);
+        RankSupport lazy = new RankSupport(bitVector, length,
+                RankSupportConfig.builder().blockSizes(512, 64).lazy(true).build());
+        assertTrue(!lazy.isDirectoryComplete());
+        assertEquals(eager.rank1(length - 1), lazy.rank1(length - 1));
+        assertEquals(eager.rank1(12345), lazy.rank1(12345));
+        assertTrue(!lazy.isDirectoryComplete());
+
+        // concurrent first queries on the same and neighbouring chunks
+        List<Thread> threads = new ArrayList<>();
+        List<Integer> mismatches = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            Thread thread = new Thread(() -> {
+                Random threadRandom = new Random(seed);
+                for (int j = 0; j < 50000; j++) {
+                    int i = threadRandom.nextInt(length + 1);
+                    if (lazy.rank1(i) != eager.rank1(i)) {
+                        synchronized (mismatches) {
+                            mismatches.add(i);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.size());
+        lazy.completeDirectory();
+        assertTrue(lazy.isDirectoryComplete());
+        for (int i = 0; i <= length; i += 997) {
+            assertEquals(eager.rank1(i), lazy.rank1(i));
+        }
+
+        RankSupport lazyDefault = new RankSupport(bitVector, length, RankSupportConfig.LAZY);
+        RankSupport eagerDefault = new RankSupport(bitVector, length);
+        for (int i = 0; i <= length; i += 1009) {
+            assertEquals(eagerDefault.rank1(i), lazyDefault.rank1(i));
+        }
+    }
+
+    /**
+     * Compares the time to build and answer the first query, and the time of
+     * sustained queries, of the eager and lazy directories.
+     */
+    // @Test
+    void testLazyTimeToFirstQuery() {
+        int length = 1 << 26;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(2);
+        for (int i = 0; i < length; i++) {
+            if (random.nextBoolean()) {
+                bitVector.set(i);
+            }
+        }
+        int[] queries = new int[1000000];
+        for (int j = 0; j < queries.length; j++) {
+            queries[j] = random.nextInt(length);
+        }
+        for (int run = 0; run < 3; run++) {
+            for (RankSupportConfig config : new RankSupportConfig[] { RankSupportConfig.DEFAULT,
+                    RankSupportConfig.LAZY }) {
+                long start = System.nanoTime();
+                RankSupport rankSupport = new RankSupport(bitVector, length, config);
+                int checksum = rankSupport.rank1(queries[0]);
+                long firstQuery = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int query : queries) {
+                    checksum += rankSupport.rank1(query);
+                }
+                long sustained = System.nanoTime() - start;
+                System.out.println((config.isLazy() ? "lazy" : "eager") + ": first query after "
+                        + firstQuery / 1000000 + " ms, then " + sustained / queries.length + " ns per query ("
+                        + checksum + ")");
+            }
+        }
+    }
+
     @Test
     void testLoadAndSaveRankSupport() throws IOException, ClassNotFoundException {
         BitSet bitVector = new BitSet(70);
@@ -276,6 +387,116 @@ class RankSupportTest {
         assertEquals(rankSupport.getNumberOfSubchunks(), rankSupport2.getNumberOfSubchunks());
     }
 
+    @Test
+    void testCountOnes() {
+        int length = 50000;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(50);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(4) == 0) {
+                bitVector.set(i);
+            }
+        }
+        for (RankSupportConfig config : new RankSupportConfig[] { RankSupportConfig.DEFAULT,
+                RankSupportConfig.WORD_ALIGNED, RankSupportConfig.LAZY }) {
+            RankSupport rankSupport = new RankSupport(bitVector, length, config);
+            assertEquals(bitVector.cardinality(), rankSupport.totalOnes());
+            for (int k = 0; k < 2000; k++) {
+                int from = random.nextInt(length + 1);
+                // mostly short ranges, which stay within a subchunk
+                int to = Math.min(length, from + (k % 2 == 0 ? random.nextInt(100) : random.nextInt(length)));
+                assertEquals(bitVector.get(from, to).cardinality(), rankSupport.countOnes(from, to));
+            }
+            assertEquals(bitVector.cardinality(), rankSupport.countOnes(0, length));
+            assertEquals(0, rankSupport.countOnes(length, length));
+        }
+        RankSupport rankSupport = new RankSupport(bitVector, length);
+        assertThrows(IndexOutOfBoundsException.class, () -> rankSupport.countOnes(-1, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> rankSupport.countOnes(10, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> rankSupport.countOnes(0, length + 1));
+    }
+
+    @Test
+    void testRank1_batch() {
+        int length = 50000;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(51);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(4) == 0) {
+                bitVector.set(i);
+            }
+        }
+        RankSupport rankSupport = new RankSupport(bitVector, length);
+        // mostly nearby positions, which are popcounted from the one before
+        int[] positions = new int[3000];
+        for (int q = 1; q < positions.length; q++) {
+            int gap = q % 10 == 0 ? random.nextInt(2000) : random.nextInt(64);
+            positions[q] = Math.min(length, positions[q - 1] + gap);
+        }
+        int[] ranks = new int[positions.length];
+        rankSupport.rank1(positions, ranks);
+        for (int q = 0; q < positions.length; q++) {
+            assertEquals(rankSupport.rank1(positions[q]), ranks[q]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> rankSupport.rank1(new int[] { 5, 4 }, new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> rankSupport.rank1(new int[] { 4, 5 }, new int[1]));
+    }
+
+    @Test
+    void testFromSortedPositions() {
+        int length = 50000;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(49);
+        // sparse and dense stretches, so some subchunks are empty and some full
+        for (int i = 0; i < length; i += i < length / 2 ? 1 + random.nextInt(3) : 1 + random.nextInt(700)) {
+            bitVector.set(i);
+        }
+        int[] positions = bitVector.stream().toArray();
+        for (RankSupportConfig config : new RankSupportConfig[] { RankSupportConfig.DEFAULT,
+                RankSupportConfig.WORD_ALIGNED, RankSupportConfig.LAZY,
+                RankSupportConfig.builder().blockSizes(1000, 100).build() }) {
+            RankSupport expected = new RankSupport(bitVector, length, config);
+            RankSupport rankSupport = RankSupport.fromSortedPositions(positions, length, config);
+            assertEquals(bitVector, rankSupport.getBitVector());
+            assertEquals(positions.length, rankSupport.totalOnes());
+            assertTrue(rankSupport.isDirectoryComplete());
+            for (int i = 0; i <= length; i++) {
+                assertEquals(expected.rank1(i), rankSupport.rank1(i));
+            }
+        }
+        long[] longPositions = bitVector.stream().asLongStream().toArray();
+        assertEquals(bitVector, RankSupport.fromSortedPositions(longPositions, length).getBitVector());
+        assertEquals(bitVector, RankSupport.fromSortedPositions(bitVector.stream(), length).getBitVector());
+        assertEquals(0, RankSupport.fromSortedPositions(new int[0], length).rank1(length));
+        assertThrows(IllegalArgumentException.class, () -> RankSupport.fromSortedPositions(new int[] { 5, 5 }, 10));
+        assertThrows(IllegalArgumentException.class, () -> RankSupport.fromSortedPositions(new int[] { -1 }, 10));
+        assertThrows(IllegalArgumentException.class, () -> RankSupport.fromSortedPositions(new long[] { 10 }, 10));
+    }
+
+    @Test
+    void testLoadAndSaveSegmented() throws IOException {
+        int length = 200000;
+        BitSet bitVector = new BitSet(length);
+        Random random = new Random(38);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(3) == 0) {
+                bitVector.set(i);
+            }
+        }
+        RankSupport rankSupport = new RankSupport(bitVector, length);
+        SegmentOptions options = SegmentOptions.builder().segmentSize(4096).build();
+        rankSupport.saveSegmented("src/test/resources/rankSupportSegmented.bin", options);
+        RankSupport rankSupport2 = RankSupport.loadSegmented("src/test/resources/rankSupportSegmented.bin", options);
+        assertEquals(rankSupport.getBitVector(), rankSupport2.getBitVector());
+        assertEquals(rankSupport.getBitVectorLength(), rankSupport2.getBitVectorLength());
+        assertEquals(rankSupport.getChunkSize(), rankSupport2.getChunkSize());
+        assertEquals(rankSupport.getSubchunkSize(), rankSupport2.getSubchunkSize());
+        for (int i = 0; i <= length; i += 997) {
+            assertEquals(rankSupport.rank1(i), rankSupport2.rank1(i));
+        }
+        assertEquals(rankSupport.rank1(length), rankSupport2.rank1(length));
+    }
+
     @Test
     void testLoadAndSaveBitVector() throws IOException, ClassNotFoundException {
         BitSet bitVector = new BitSet(70);
@@ -0,0 +1,117 @@
+package rle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import rank.RankSupport;
+import select.SelectSupport;
+
+/**
+ * Test class for {@link RunLengthBitVector}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class RunLengthBitVectorTest {
+
+    private static BitSet randomRuns(int length, int averageRunLength, long seed) {
+        Random random = new Random(seed);
+        BitSet bitVector = new BitSet(length);
+        int position = 0;
+        boolean one = random.nextBoolean();
+        while (position < length) {
+            int runLength = 1 + random.nextInt(2 * averageRunLength);
+            if (one) {
+                bitVector.set(position, Math.min(length, position + runLength));
+            }
+            position += runLength;
+            one = !one;
+        }
+        return bitVector;
+    }
+
+    @Test
+    void testSmallBitVector() {
+        // 0111 0011 1000 1
+        RunLengthBitVector bitVector = new RunLengthBitVector(new int[] { 1, 6, 12 }, new int[] { 3, 3, 1 }, 3, 13);
+        assertEquals(3, bitVector.getNumberOfRuns());
+        assertEquals(7, bitVector.getNumberOfOnes());
+        int[] expectedRanks = { 0, 0, 1, 2, 3, 3, 3, 4, 5, 6, 6, 6, 6, 7 };
+        for (int i = 0; i <= 13; i++) {
+            assertEquals(expectedRanks[i], bitVector.rank1(i));
+        }
+        int[] expectedSelects = { 0, 2, 3, 4, 7, 8, 9, 13 };
+        for (int k = 0; k <= 7; k++) {
+            assertEquals(expectedSelects[k], bitVector.select1(k));
+        }
+        assertTrue(bitVector.access(1));
+        assertEquals(false, bitVector.access(4));
+        assertTrue(bitVector.access(12));
+        assertThrows(IllegalArgumentException.class, () -> bitVector.select1(8));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RunLengthBitVector(new int[] { 1, 4 }, new int[] { 3, 1 }, 2, 13));
+    }
+
+    @Test
+    void testAgainstSelectSupport() {
+        int length = 200000;
+        for (int averageRunLength : new int[] { 1, 8, 1000 }) {
+            BitSet bits = randomRuns(length, averageRunLength, averageRunLength);
+            SelectSupport selectSupport = new SelectSupport(bits, length);
+            RunLengthBitVector bitVector = RunLengthBitVector.fromRankSupport(selectSupport);
+            Random random = new Random(averageRunLength);
+            for (int j = 0; j < 2000; j++) {
+                int i = random.nextInt(length);
+                assertEquals(selectSupport.rank1(i), bitVector.rank1(i));
+                assertEquals(selectSupport.access(i), bitVector.access(i));
+            }
+            assertEquals(selectSupport.rank1(length), bitVector.rank1(length));
+            int ones = bitVector.getNumberOfOnes();
+            for (int j = 0; j < 2000; j++) {
+                int k = random.nextInt(ones + 1);
+                assertEquals(selectSupport.select1(k), bitVector.select1(k));
+            }
+            RankSupport decoded = bitVector.toRankSupport();
+            assertEquals(bits, decoded.getBitVector());
+        }
+    }
+
+    @Test
+    void testMemoryScalesWithRuns() {
+        int length = 1 << 22;
+        RunLengthBitVector longRuns = RunLengthBitVector.fromBitSet(randomRuns(length, 10000, 1), length);
+        RankSupport rankSupport = new RankSupport(randomRuns(length, 10000, 1), length);
+        assertTrue(longRuns.memoryFootprint().getTotalBytes() * 50 < rankSupport.memoryFootprint().getTotalBytes());
+    }
+
+    @Test
+    void testEmptyBitVector() {
+        int length = 1 << 24;
+        RunLengthBitVector bitVector = RunLengthBitVector.fromBitSet(new BitSet(), length);
+        assertEquals(0, bitVector.getNumberOfRuns());
+        assertEquals(0, bitVector.rank1(length / 2));
+        assertEquals(0, bitVector.rank1(length));
+        assertEquals(false, bitVector.access(length - 1));
+        // the footprint does not grow with the length of an all-zero bit-vector
+        assertTrue(bitVector.memoryFootprint().getTotalBytes() < 1024);
+    }
+
+    @Test
+    void testLoadAndSaveRunLengthBitVector() throws IOException, ClassNotFoundException {
+        int length = 50000;
+        RunLengthBitVector bitVector = RunLengthBitVector.fromBitSet(randomRuns(length, 20, 3), length);
+        bitVector.save("src/test/resources/runLengthBitVector.bin");
+        RunLengthBitVector bitVector2 = RunLengthBitVector.load("src/test/resources/runLengthBitVector.bin");
+        assertEquals(bitVector.getNumberOfRuns(), bitVector2.getNumberOfRuns());
+        for (int i = 0; i <= length; i += 7) {
+            assertEquals(bitVector.rank1(i), bitVector2.rank1(i));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package segment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link SegmentedFile}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class SegmentedFileTest {
+    private static final String FILENAME = "src/test/resources/segmentedFile.bin";
+
+    private static long[] randomLongs(int length, long seed) {
+        Random random = new Random(seed);
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = random.nextLong();
+        }
+        return array;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        long[] longs = randomLongs(1000, 1);
+        int[] ints = new Random(2).ints(777).toArray();
+        byte[] bytes = new byte[333];
+        new Random(3).nextBytes(bytes);
+        // small segments, so each array is split across several of them
+        SegmentOptions options = SegmentOptions.builder().segmentSize(256).build();
+        SegmentedFile.writer(options).addLongs(1, longs).addInts(2, ints).addBytes(3, bytes)
+                .addLongs(4, new long[0]).write(FILENAME);
+        try (SegmentedFile file = SegmentedFile.open(FILENAME, options)) {
+            assertTrue(file.getNumberOfSegments() > 3);
+            assertArrayEquals(longs, file.readLongs(1));
+            assertArrayEquals(ints, file.readInts(2));
+            assertArrayEquals(bytes, file.readBytes(3));
+            assertEquals(0, file.readLongs(4).length);
+            assertEquals(0, file.readInts(5).length);
+        }
+    }
+
+    @Test
+    void testProgress() throws IOException {
+        long[] longs = randomLongs(4096, 4);
+        AtomicLong done = new AtomicLong();
+        AtomicLong total = new AtomicLong();
+        SegmentOptions options = SegmentOptions.builder().segmentSize(1024).progressListener((bytesDone, totalBytes) -> {
+            done.accumulateAndGet(bytesDone, Math::max);
+            total.set(totalBytes);
+        }).build();
+        SegmentedFile.writer(options).addLongs(1, longs).write(FILENAME);
+        assertEquals(longs.length * Long.BYTES, total.get());
+        assertEquals(total.get(), done.get());
+
+        done.set(0);
+        try (SegmentedFile file = SegmentedFile.open(FILENAME, options)) {
+            assertArrayEquals(longs, file.readLongs(1));
+        }
+        assertEquals(total.get(), done.get());
+    }
+
+    @Test
+    void testCorruption() throws IOException {
+        long[] longs = randomLongs(1000, 5);
+        SegmentOptions options = SegmentOptions.builder().segmentSize(512).build();
+        SegmentedFile.writer(options).addLongs(1, longs).write(FILENAME);
+        try (RandomAccessFile file = new RandomAccessFile(FILENAME, "rw")) {
+            long position = file.length() - 100;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x10);
+        }
+        try (SegmentedFile file = SegmentedFile.open(FILENAME, options)) {
+            IOException exception = assertThrows(IOException.class, () -> file.readLongs(1));
+            assertTrue(exception.getMessage().startsWith("Checksum mismatch"));
+        }
+        SegmentOptions unverified = SegmentOptions.builder().segmentSize(512).verifyChecksums(false).build();
+        try (SegmentedFile file = SegmentedFile.open(FILENAME, unverified)) {
+            assertEquals(longs.length, file.readLongs(1).length);
+        }
+    }
+
+    @Test
+    void testBadMagic() throws IOException {
+        SegmentedFile.writer(SegmentOptions.DEFAULT).addInts(1, new int[] { 1, 2, 3 }).write(FILENAME);
+        try (RandomAccessFile file = new RandomAccessFile(FILENAME, "rw")) {
+            file.write(0);
+        }
+        assertThrows(IOException.class, () -> SegmentedFile.open(FILENAME, SegmentOptions.DEFAULT));
+    }
+
+    @Test
+    void testInvalidSegmentSize() {
+        assertThrows(IllegalArgumentException.class, () -> SegmentOptions.builder().segmentSize(12));
+        assertThrows(IllegalArgumentException.class, () -> SegmentOptions.builder().segmentSize(0));
+    }
+}
@@ -0,0 +1,115 @@
+package select;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link SelectCursor}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class SelectCursorTest {
+
+    private static SelectSupport randomSelectSupport(int length, int oneIn, long seed) {
+        Random random = new Random(seed);
+        BitSet bitVector = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(oneIn) == 0) {
+                bitVector.set(i);
+            }
+        }
+        return new SelectSupport(bitVector, length);
+    }
+
+    @Test
+    void testNextAndPrevious() {
+        for (int oneIn : new int[] { 1, 3, 200 }) {
+            SelectSupport selectSupport = randomSelectSupport(20000, oneIn, oneIn);
+            int ones = selectSupport.rank1(20000);
+            SelectCursor cursor = selectSupport.cursor();
+            assertEquals(0, cursor.rank());
+            assertEquals(-1, cursor.position());
+            assertFalse(cursor.previous());
+            for (int r = 1; r <= ones; r++) {
+                assertTrue(cursor.next());
+                assertEquals(r, cursor.rank());
+                assertEquals(selectSupport.select1(r) - 1, cursor.position());
+            }
+            assertFalse(cursor.next());
+            assertEquals(ones, cursor.rank());
+            for (int r = ones - 1; r >= 1; r--) {
+                assertTrue(cursor.previous());
+                assertEquals(r, cursor.rank());
+                assertEquals(selectSupport.select1(r) - 1, cursor.position());
+            }
+            assertFalse(cursor.previous());
+        }
+    }
+
+    @Test
+    void testAdvanceToAndSkipToPosition() {
+        SelectSupport selectSupport = randomSelectSupport(100000, 5, 1);
+        int ones = selectSupport.rank1(100000);
+        SelectCursor cursor = selectSupport.cursor();
+        Random random = new Random(1);
+        for (int j = 0; j < 2000; j++) {
+            // mix short forward steps, long jumps and backward jumps
+            int rank = j % 3 == 0 ? 1 + random.nextInt(ones) : Math.min(ones, cursor.rank() + random.nextInt(40));
+            if (rank == 0) {
+                rank = 1;
+            }
+            assertTrue(cursor.advanceTo(rank));
+            assertEquals(rank, cursor.rank());
+            assertEquals(selectSupport.select1(rank) - 1, cursor.position());
+
+            int position = j % 3 == 1 ? random.nextInt(100000) : cursor.position() + random.nextInt(300);
+            boolean found = cursor.skipToPosition(position);
+            int expectedRank = selectSupport.rank1(Math.min(position, 100000)) + 1;
+            if (expectedRank <= ones) {
+                assertTrue(found);
+                assertEquals(expectedRank, cursor.rank());
+                assertEquals(selectSupport.select1(expectedRank) - 1, cursor.position());
+            } else {
+                assertFalse(found);
+            }
+        }
+        assertFalse(cursor.advanceTo(ones + 1));
+        assertFalse(cursor.advanceTo(0));
+        assertFalse(cursor.skipToPosition(100000));
+    }
+
+    @Test
+    void testLongGaps() {
+        BitSet bitVector = new BitSet(1 << 20);
+        int[] positions = { 3, 70, 5000, 5001, 300000, 1048000 };
+        for (int position : positions) {
+            bitVector.set(position);
+        }
+        SelectSupport selectSupport = new SelectSupport(bitVector, 1 << 20);
+        SelectCursor cursor = selectSupport.cursor();
+        for (int r = 1; r <= positions.length; r++) {
+            assertTrue(cursor.next());
+            assertEquals(r, cursor.rank());
+            assertEquals(positions[r - 1], cursor.position());
+        }
+        assertFalse(cursor.next());
+        for (int r = positions.length - 1; r >= 1; r--) {
+            assertTrue(cursor.previous());
+            assertEquals(positions[r - 1], cursor.position());
+        }
+        assertTrue(cursor.skipToPosition(5002));
+        assertEquals(5, cursor.rank());
+        assertEquals(300000, cursor.position());
+        assertTrue(cursor.skipToPosition(300001));
+        assertEquals(1048000, cursor.position());
+        assertFalse(cursor.skipToPosition(1048001));
+        assertEquals(6, cursor.rank());
+    }
+}
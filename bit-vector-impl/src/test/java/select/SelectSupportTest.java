@@ -1,9 +1,11 @@
 package select;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
@@ -48,6 +50,74 @@ class SelectSupportTest {
         assertEquals(62, selectSupport.select1(26));
     }
 
+    @Test
+    void testSelect1_batch() {
+        int length = 200000;
+        Random random = new Random(48);
+        BitSet bitVector = new BitSet(length);
+        // a dense half and a sparse half, so both walking and jumping are taken
+        for (int position = 0; position < length; position += position < length / 2 ? 1 + random.nextInt(4)
+                : 1 + random.nextInt(40000)) {
+            bitVector.set(position);
+        }
+        int[] positions = bitVector.stream().toArray();
+        SelectSupport selectSupport = new SelectSupport(bitVector, length);
+        int[] ranks = new int[2000];
+        for (int q = 0; q < ranks.length; q++) {
+            ranks[q] = random.nextInt(positions.length + 1);
+        }
+        ranks[0] = positions.length;
+        Arrays.sort(ranks);
+        int[] out = new int[ranks.length + 1];
+        selectSupport.select1(ranks, out);
+        for (int q = 0; q < ranks.length; q++) {
+            assertEquals(ranks[q] == 0 ? 0 : positions[ranks[q] - 1] + 1, out[q]);
+        }
+        int[] all = new int[positions.length];
+        for (int q = 0; q < all.length; q++) {
+            all[q] = q + 1;
+        }
+        selectSupport.select1(all, out = new int[all.length]);
+        for (int q = 0; q < all.length; q++) {
+            assertEquals(positions[q] + 1, out[q]);
+        }
+        selectSupport.select1(new int[] { -1, 0, positions.length + 1 }, out);
+        assertEquals(0, out[0]);
+        assertEquals(0, out[1]);
+        assertEquals(length, out[2]);
+        assertThrows(IllegalArgumentException.class, () -> selectSupport.select1(new int[] { 5, 4 }, new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> selectSupport.select1(new int[] { 1, 2 }, new int[1]));
+    }
+
+    @Test
+    void testSuccessorAndPredecessor() {
+        int length = 100000;
+        Random random = new Random(39);
+        BitSet bitVector = new BitSet(length);
+        // clusters separated by long gaps, so both the word-local and the
+        // rank/select paths are taken
+        for (int position = random.nextInt(50); position < length; position += 1 + random.nextInt(3000)) {
+            bitVector.set(position, Math.min(length, position + random.nextInt(5)));
+        }
+        SelectSupport selectSupport = new SelectSupport(bitVector, length);
+        for (int x = 0; x < length; x++) {
+            assertEquals(bitVector.nextSetBit(x), selectSupport.successor(x));
+            assertEquals(bitVector.previousSetBit(x), selectSupport.predecessor(x));
+        }
+        assertEquals(-1, selectSupport.successor(length));
+        assertEquals(bitVector.previousSetBit(length - 1), selectSupport.predecessor(length + 10));
+        assertEquals(-1, selectSupport.predecessor(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> selectSupport.successor(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> selectSupport.predecessor(-2));
+    }
+
+    @Test
+    void testSuccessorAndPredecessor_noneSet() {
+        SelectSupport selectSupport = new SelectSupport(new BitSet(1000), 1000);
+        assertEquals(-1, selectSupport.successor(0));
+        assertEquals(-1, selectSupport.predecessor(999));
+    }
+
     @Test
     void testLoadAndSaveSelectSupport() throws IOException, ClassNotFoundException {
         BitSet bitVector = new BitSet(70);
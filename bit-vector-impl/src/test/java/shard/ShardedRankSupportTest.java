@@ -0,0 +1,144 @@
+package shard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import rank.RankSupportConfig;
+import select.SelectSupport;
+
+/**
+ * Test class for {@link ShardedRankSupport}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class ShardedRankSupportTest {
+
+    private static BitSet randomBitVector(int length, long seed) {
+        Random random = new Random(seed);
+        BitSet bitVector = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(3) == 0) {
+                bitVector.set(i);
+            }
+        }
+        return bitVector;
+    }
+
+    @Test
+    void testAgainstSelectSupport() {
+        int length = 100000;
+        BitSet bits = randomBitVector(length, 1);
+        SelectSupport selectSupport = new SelectSupport(bits, length);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ShardedRankSupport sharded = new ShardedRankSupport(bits, length, 16384, RankSupportConfig.DEFAULT,
+                    executor);
+            assertEquals(7, sharded.getNumberOfShards());
+            Random random = new Random(1);
+            int ones = selectSupport.rank1(length);
+            int[] positions = new int[3000];
+            int[] ranks = new int[3000];
+            for (int j = 0; j < positions.length; j++) {
+                positions[j] = random.nextInt(length + 1);
+                ranks[j] = random.nextInt(ones + 1);
+                assertEquals(selectSupport.rank1(positions[j]), sharded.rank1(positions[j]));
+                assertEquals(selectSupport.select1(ranks[j]), sharded.select1(ranks[j]));
+                if (positions[j] < length) {
+                    assertEquals(selectSupport.access(positions[j]), sharded.access(positions[j]));
+                }
+            }
+            int[] batchRanks = sharded.rank1(positions);
+            int[] batchSelects = sharded.select1(ranks);
+            for (int j = 0; j < positions.length; j++) {
+                assertEquals(selectSupport.rank1(positions[j]), batchRanks[j]);
+                assertEquals(selectSupport.select1(ranks[j]), batchSelects[j]);
+            }
+            for (int j = 0; j < 200; j++) {
+                int from = random.nextInt(length);
+                int to = from + random.nextInt(length - from + 1);
+                assertEquals(selectSupport.rank1(to) - selectSupport.rank1(from), sharded.countOnes(from, to));
+            }
+            // ranges past the end are clamped to the bit-vector
+            assertEquals(0, sharded.countOnes(length + 20000, length + 20010));
+            assertEquals(selectSupport.rank1(length) - selectSupport.rank1(length - 10),
+                    sharded.countOnes(length - 10, length + 40));
+        } finally {
+            executor.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ShardedRankSupport(bits, length, 100));
+    }
+
+    @Test
+    void testRebuildShardWhileQuerying() throws InterruptedException {
+        int length = 1 << 18;
+        int shardSize = 1 << 16;
+        BitSet bits = randomBitVector(length, 2);
+        ShardedRankSupport sharded = new ShardedRankSupport(bits, length, shardSize);
+        int shardZeroOnes = sharded.rank1(shardSize);
+        int restOnes = sharded.rank1(length) - shardZeroOnes;
+        int probe = 3 * shardSize + 1000;
+        int probeRank = sharded.rank1(probe);
+        // each query sees either the old shard zero or the rebuilt one
+        int probeRankRebuilt = probeRank - shardZeroOnes + shardSize;
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger errors = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                int rank = sharded.rank1(probe);
+                if (rank != probeRank && rank != probeRankRebuilt) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        BitSet allOnes = new BitSet();
+        allOnes.set(0, shardSize);
+        for (int j = 0; j < 20; j++) {
+            sharded.rebuildShard(0, j % 2 == 0 ? allOnes : bits.get(0, shardSize));
+        }
+        running.set(false);
+        reader.join();
+        assertEquals(0, errors.get());
+        assertEquals(shardZeroOnes, sharded.rank1(shardSize));
+        sharded.rebuildShard(0, allOnes);
+        assertEquals(shardSize, sharded.rank1(shardSize));
+        assertEquals(shardSize + restOnes, sharded.rank1(length));
+        assertEquals(shardSize, sharded.select1(shardSize));
+    }
+
+    @Test
+    void testLoadAndSaveShardedRankSupport() throws IOException, ClassNotFoundException {
+        int length = 50000;
+        BitSet bits = randomBitVector(length, 3);
+        ShardedRankSupport sharded = new ShardedRankSupport(bits, length, 16384);
+        sharded.save("src/test/resources/shardedRankSupport");
+        ShardedRankSupport sharded2 = ShardedRankSupport.load("src/test/resources/shardedRankSupport");
+        assertEquals(sharded.getNumberOfShards(), sharded2.getNumberOfShards());
+        for (int i = 0; i <= length; i += 17) {
+            assertEquals(sharded.rank1(i), sharded2.rank1(i));
+        }
+
+        // only the rebuilt shard's file needs to be saved again
+        BitSet empty = new BitSet();
+        sharded.rebuildShard(1, empty);
+        sharded.saveShard("src/test/resources/shardedRankSupport", 1);
+        ShardedRankSupport sharded3 = ShardedRankSupport.load("src/test/resources/shardedRankSupport");
+        assertArrayEquals(sharded.rank1(new int[] { 0, 16384, 32768, length }),
+                sharded3.rank1(new int[] { 0, 16384, 32768, length }));
+        assertTrue(sharded3.memoryFootprint().getTotalBytes() > 0);
+    }
+}
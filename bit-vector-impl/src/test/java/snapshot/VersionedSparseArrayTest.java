@@ -0,0 +1,141 @@
+package snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import rank.RankSupport;
+import select.SelectSupport;
+import sparsearray.SparseArray;
+
+/**
+ * Test class for {@link VersionedSparseArray}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class VersionedSparseArrayTest {
+
+    private static void assertMatches(TreeMap<Integer, String> expected, Snapshot snapshot) {
+        assertEquals(expected.size(), snapshot.numberOfElements());
+        int rank = 0;
+        for (int i = 0; i < snapshot.size(); i += 37) {
+            StringBuilder element = new StringBuilder();
+            assertEquals(expected.containsKey(i), snapshot.getAtIndex(i, element));
+            assertEquals(expected.getOrDefault(i, ""), element.toString());
+            assertEquals(expected.headMap(i).size(), snapshot.rank1(i));
+        }
+        for (int index : expected.keySet()) {
+            rank++;
+            assertEquals(index, snapshot.getIndexOf(rank));
+            assertEquals(rank, snapshot.numberOfElementsAt(index));
+        }
+        assertEquals(-1, snapshot.getIndexOf(rank + 1));
+    }
+
+    @Test
+    void testSnapshotsAcrossVersions() {
+        int size = 5 * 65536 + 100;
+        SparseArray sparseArray = new SparseArray(size);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 5; i < size; i += 101) {
+            sparseArray.append("v" + i, i);
+            expected.put(i, "v" + i);
+        }
+        sparseArray.build();
+        VersionedSparseArray versioned = VersionedSparseArray.of(sparseArray);
+        Snapshot first = versioned.snapshot();
+        assertMatches(expected, first);
+
+        TreeMap<Integer, String> original = new TreeMap<>(expected);
+        assertEquals(1, versioned.edit().set("new", 70000).remove(5).set("over", 106).publish());
+        expected.put(70000, "new");
+        expected.remove(5);
+        expected.put(106, "over");
+        try (Snapshot second = versioned.snapshot()) {
+            assertEquals(1, second.getVersion());
+            assertMatches(expected, second);
+            // the old snapshot still sees the first version
+            assertMatches(original, first);
+            // only blocks 0 and 1 were copied
+            assertEquals(4, second.sharedBlocks(first));
+            assertEquals(2, versioned.getLiveVersions());
+        }
+        assertEquals(2, versioned.getLiveVersions());
+        first.close();
+        first.close();
+        assertEquals(1, versioned.getLiveVersions());
+        assertThrows(IllegalStateException.class, () -> first.rank1(10));
+    }
+
+    @Test
+    void testRandomEdits() {
+        int size = 200000;
+        SparseArray sparseArray = new SparseArray(size);
+        sparseArray.build();
+        VersionedSparseArray versioned = VersionedSparseArray.of(sparseArray);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(43);
+        for (int round = 0; round < 20; round++) {
+            VersionedSparseArray.Editor editor = versioned.edit();
+            for (int change = 0; change < 50; change++) {
+                int position = random.nextInt(size);
+                if (random.nextInt(4) == 0) {
+                    editor.remove(position);
+                    expected.remove(position);
+                } else {
+                    editor.set("r" + round + "c" + change, position);
+                    expected.put(position, "r" + round + "c" + change);
+                }
+            }
+            editor.publish();
+            assertThrows(IllegalStateException.class, editor::publish);
+            try (Snapshot snapshot = versioned.snapshot()) {
+                assertMatches(expected, snapshot);
+                int r = 0;
+                for (String value : expected.values()) {
+                    StringBuilder element = new StringBuilder();
+                    assertTrue(snapshot.getAtRank(r++, element));
+                    assertEquals(value, element.toString());
+                }
+            }
+        }
+        assertEquals(1, versioned.getLiveVersions());
+    }
+
+    @Test
+    void testRankSupport() {
+        int size = 150000;
+        BitSet bitVector = new BitSet(size);
+        Random random = new Random(44);
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(5) == 0) {
+                bitVector.set(i);
+            }
+        }
+        RankSupport rankSupport = new RankSupport(bitVector, size);
+        VersionedSparseArray versioned = VersionedSparseArray.of(rankSupport);
+        versioned.edit().set(1).remove(bitVector.nextSetBit(100000)).publish();
+        bitVector.set(1);
+        bitVector.clear(bitVector.nextSetBit(100000));
+        SelectSupport expected = new SelectSupport(bitVector, size);
+        try (Snapshot snapshot = versioned.snapshot()) {
+            for (int i = 0; i <= size; i += 13) {
+                assertEquals(expected.rank1(i), snapshot.rank1(i));
+            }
+            assertEquals(expected.rank1(size), snapshot.rank1(size));
+            for (int k = 1; k <= bitVector.cardinality(); k += 11) {
+                assertEquals(expected.select1(k), snapshot.select1(k));
+            }
+            assertTrue(snapshot.access(1));
+            assertFalse(snapshot.access(size));
+        }
+    }
+}
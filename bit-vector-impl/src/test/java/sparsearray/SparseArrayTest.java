@@ -2,23 +2,31 @@ package sparsearray;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.openjdk.jol.info.GraphLayout;
 import org.slf4j.profiler.Profiler;
 
+import memory.MemoryFootprint;
+
 import com.github.sh0nk.matplotlib4j.Plot;
 import com.github.sh0nk.matplotlib4j.PythonExecutionException;
 
 import rank.RankSupport;
+import segment.SegmentOptions;
 import select.SelectSupport;
 
 /**
@@ -35,7 +43,7 @@ class SparseArrayTest {
         sparseArray.append("foo", 1);
         sparseArray.append("bar", 5);
         sparseArray.append("baz", 9);
-        sparseArray.finalize();
+        sparseArray.build();
 
         StringBuilder stringAtRank1 = new StringBuilder();
         assertTrue(sparseArray.getAtRank(1, stringAtRank1));
@@ -59,13 +67,502 @@ class SparseArrayTest {
         assertEquals(3, sparseArray.numberOfElementsAt(9));
     }
 
+    @Test
+    void testCursor() {
+        SparseArray sparseArray = new SparseArray(1000);
+        for (int i = 3; i < 1000; i += 7) {
+            sparseArray.append("element" + i, i);
+        }
+        sparseArray.build();
+        SparseArrayCursor cursor = sparseArray.cursor();
+        assertEquals(null, cursor.value());
+        int rank = 0;
+        while (cursor.next()) {
+            rank++;
+            assertEquals(rank, cursor.rank());
+            assertEquals(sparseArray.getIndexOf(rank), cursor.index());
+            assertEquals("element" + cursor.index(), cursor.value());
+        }
+        assertEquals(sparseArray.numberOfElements(), rank);
+        assertTrue(cursor.advanceTo(10));
+        assertEquals("element66", cursor.value());
+        assertTrue(cursor.previous());
+        assertEquals(59, cursor.index());
+        assertTrue(cursor.skipToPosition(500));
+        assertEquals(500, cursor.index());
+        assertTrue(cursor.skipToPosition(501));
+        assertEquals("element507", cursor.value());
+        assertEquals(sparseArray.numberOfElementsAt(507), cursor.rank());
+        assertFalse(cursor.skipToPosition(998));
+    }
+
+    @Test
+    void testCursorSkipsRemovedElements() {
+        for (PositionEncoding encoding : PositionEncoding.values()) {
+            SparseArray sparseArray = new SparseArray(1000);
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 3; i < 1000; i += 7) {
+                sparseArray.append("element" + i, i);
+                indexes.add(i);
+            }
+            sparseArray.build(encoding);
+            sparseArray.setCompactionThreshold(2);
+            for (int i = 3; i < 1000; i += 7) {
+                if (i < 40 || (i > 400 && i < 600) || i % 3 == 0 || i > 950) {
+                    sparseArray.remove(i);
+                    indexes.remove(Integer.valueOf(i));
+                }
+            }
+            int tombstones = sparseArray.getNumberOfTombstones();
+            SparseArrayCursor cursor = sparseArray.cursor();
+            int rank = 0;
+            while (cursor.next()) {
+                assertEquals(++rank, cursor.rank());
+                assertEquals(indexes.get(rank - 1).intValue(), cursor.index());
+                assertEquals("element" + cursor.index(), cursor.value());
+            }
+            assertEquals(indexes.size(), rank);
+            // the cursor leaves compaction to an explicit compact()
+            assertEquals(tombstones, sparseArray.getNumberOfTombstones());
+
+            while (cursor.previous()) {
+                assertEquals(indexes.get(--rank - 1).intValue(), cursor.index());
+            }
+            assertEquals(1, rank);
+            assertTrue(cursor.advanceTo(20));
+            assertEquals(indexes.get(19).intValue(), cursor.index());
+            assertTrue(cursor.skipToPosition(401));
+            assertEquals(sparseArray.nextPresentIndex(401), cursor.index());
+            assertEquals(sparseArray.getIndexOf(cursor.rank()), cursor.index());
+            assertTrue(cursor.previous());
+            assertEquals(sparseArray.previousPresentIndex(400), cursor.index());
+            assertFalse(cursor.skipToPosition(indexes.get(indexes.size() - 1) + 1));
+            assertEquals(sparseArray.previousPresentIndex(400), cursor.index());
+            assertFalse(cursor.advanceTo(indexes.size() + 1));
+        }
+    }
+
+    @Test
+    void testNextAndPreviousPresentIndex() {
+        SparseArray sparseArray = new SparseArray(1000);
+        sparseArray.append("foo", 1);
+        sparseArray.append("bar", 500);
+        sparseArray.append("baz", 998);
+        sparseArray.build();
+        StringBuilder element = new StringBuilder();
+        assertEquals(500, sparseArray.nextPresentIndex(2, element));
+        assertEquals("bar", element.toString());
+        assertEquals(1, sparseArray.nextPresentIndex(0));
+        assertEquals(998, sparseArray.nextPresentIndex(501));
+        assertEquals(-1, sparseArray.nextPresentIndex(999));
+        element.setLength(0);
+        assertEquals(500, sparseArray.previousPresentIndex(997, element));
+        assertEquals("bar", element.toString());
+        assertEquals(998, sparseArray.previousPresentIndex(999));
+        assertEquals(1, sparseArray.previousPresentIndex(1));
+        element.setLength(0);
+        assertEquals(-1, sparseArray.previousPresentIndex(0, element));
+        assertEquals("", element.toString());
+    }
+
+    private static SparseArray randomSparseArray(int size, int averageGap, long seed) {
+        Random random = new Random(seed);
+        SparseArray sparseArray = new SparseArray(size);
+        for (int i = random.nextInt(averageGap); i < size; i += 1 + random.nextInt(2 * averageGap)) {
+            sparseArray.append("v" + i, i);
+        }
+        sparseArray.build();
+        return sparseArray;
+    }
+
+    @Test
+    void testFromSortedPositions() {
+        int size = 5000;
+        List<Integer> indexes = new ArrayList<>();
+        List<String> elements = new ArrayList<>();
+        Random random = new Random(49);
+        for (int i = random.nextInt(10); i < size; i += 1 + random.nextInt(20)) {
+            indexes.add(i);
+            elements.add("v" + i);
+        }
+        int[] positions = indexes.stream().mapToInt(Integer::intValue).toArray();
+        assertMatches(indexes, SparseArray.fromSortedPositions(positions, elements, size));
+        long[] longPositions = indexes.stream().mapToLong(Integer::longValue).toArray();
+        assertMatches(indexes, SparseArray.fromSortedPositions(longPositions, elements, size));
+        assertThrows(IllegalArgumentException.class,
+                () -> SparseArray.fromSortedPositions(positions, elements.subList(1, elements.size()), size));
+    }
+
+    @Test
+    void testBatchGetAtIndex() {
+        int size = 100000;
+        SparseArray sparseArray = randomSparseArray(size, 10, 40);
+        Random random = new Random(41);
+        int[] positions = new int[5000];
+        for (int q = 0; q < positions.length; q++) {
+            // a mix of clustered and scattered indexes, unsorted, with repeats
+            positions[q] = q % 3 == 0 ? random.nextInt(size) : (q * 7) % 2000;
+        }
+        positions[17] = size + 5;
+        String[] elements = new String[positions.length];
+        BitSet present = new BitSet();
+        present.set(0, positions.length);
+        int found = sparseArray.getAtIndex(positions, elements, present);
+        int expectedFound = 0;
+        for (int q = 0; q < positions.length; q++) {
+            StringBuilder element = new StringBuilder();
+            boolean isPresent = sparseArray.getAtIndex(positions[q], element);
+            assertEquals(isPresent, present.get(q));
+            if (isPresent) {
+                expectedFound++;
+                assertEquals(element.toString(), elements[q]);
+            } else {
+                assertNull(elements[q]);
+            }
+        }
+        assertEquals(expectedFound, found);
+        assertFalse(present.get(17));
+
+        int[] sortedPositions = Arrays.stream(positions).sorted().toArray();
+        assertEquals(found, sparseArray.getAtIndex(sortedPositions, new String[positions.length], new BitSet()));
+    }
+
+    @Test
+    void testBatchGetAtRank() {
+        SparseArray sparseArray = randomSparseArray(1000, 10, 42);
+        int n = sparseArray.numberOfElements();
+        int[] ranks = { n - 1, 0, n, 5, n + 100, 5 };
+        String[] elements = new String[ranks.length];
+        BitSet present = new BitSet();
+        assertEquals(4, sparseArray.getAtRank(ranks, elements, present));
+        assertEquals("{0, 1, 3, 5}", present.toString());
+        StringBuilder element = new StringBuilder();
+        sparseArray.getAtRank(5, element);
+        assertEquals(element.toString(), elements[3]);
+        assertNull(elements[2]);
+    }
+
+    @Test
+    void testBatchGetIndexOf() {
+        SparseArray sparseArray = randomSparseArray(100000, 10, 45);
+        int n = sparseArray.numberOfElements();
+        int[] ranks = { n, 1, 0, n + 1, 7, 7, n / 2 };
+        int[] indexes = new int[ranks.length];
+        assertEquals(5, sparseArray.getIndexOf(ranks, indexes));
+        for (int q = 0; q < ranks.length; q++) {
+            assertEquals(sparseArray.getIndexOf(ranks[q]), indexes[q]);
+        }
+        assertEquals(-1, indexes[2]);
+        assertEquals(-1, indexes[3]);
+        assertThrows(IllegalArgumentException.class, () -> sparseArray.getIndexOf(ranks, new int[1]));
+    }
+
+    /**
+     * Compares the throughput of batch lookups with a loop of scalar lookups.
+     */
+    // @Test
+    void testBatchThroughput() {
+        int size = 10000000;
+        SparseArray sparseArray = randomSparseArray(size, 4, 43);
+        Random random = new Random(44);
+        int[] positions = new int[1000];
+        String[] elements = new String[positions.length];
+        BitSet present = new BitSet(positions.length);
+        for (int round = 0; round < 5; round++) {
+            long scalarTime = 0;
+            long batchTime = 0;
+            for (int batch = 0; batch < 200; batch++) {
+                int base = random.nextInt(size - 100000);
+                for (int q = 0; q < positions.length; q++) {
+                    positions[q] = base + random.nextInt(100000);
+                }
+                long start = System.nanoTime();
+                for (int position : positions) {
+                    sparseArray.getAtIndex(position, new StringBuilder());
+                }
+                scalarTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                sparseArray.getAtIndex(positions, elements, present);
+                batchTime += System.nanoTime() - start;
+            }
+            System.out.println("scalar: " + scalarTime / 200000 + " ns/lookup, batch: " + batchTime / 200000
+                    + " ns/lookup");
+        }
+    }
+
+    private static void assertMatches(List<Integer> indexes, SparseArray sparseArray) {
+        assertEquals(indexes.size(), sparseArray.numberOfElements());
+        int rank = 0;
+        for (int i = 0; i < sparseArray.size(); i++) {
+            boolean isPresent = rank < indexes.size() && indexes.get(rank) == i;
+            if (isPresent) {
+                rank++;
+            }
+            StringBuilder element = new StringBuilder();
+            assertEquals(isPresent, sparseArray.getAtIndex(i, element));
+            assertEquals(isPresent ? "v" + i : "", element.toString());
+            assertEquals(rank, sparseArray.numberOfElementsAt(i));
+            int next = rank - (isPresent ? 1 : 0);
+            assertEquals(next < indexes.size() ? indexes.get(next) : -1, sparseArray.nextPresentIndex(i));
+            assertEquals(rank > 0 ? indexes.get(rank - 1) : -1, sparseArray.previousPresentIndex(i));
+        }
+        for (int r = 0; r < indexes.size(); r++) {
+            assertEquals(indexes.get(r).intValue(), sparseArray.getIndexOf(r + 1));
+            StringBuilder element = new StringBuilder();
+            assertTrue(sparseArray.getAtRank(r, element));
+            assertEquals("v" + indexes.get(r), element.toString());
+        }
+        assertEquals(-1, sparseArray.getIndexOf(indexes.size() + 1));
+        int[] ranks = new int[indexes.size() + 2];
+        for (int q = 0; q < ranks.length; q++) {
+            ranks[q] = ranks.length - 1 - q;
+        }
+        int[] batchIndexes = new int[ranks.length];
+        assertEquals(indexes.size(), sparseArray.getIndexOf(ranks, batchIndexes));
+        for (int q = 0; q < ranks.length; q++) {
+            assertEquals(sparseArray.getIndexOf(ranks[q]), batchIndexes[q]);
+        }
+        assertFalse(sparseArray.getAtRank(indexes.size(), new StringBuilder()));
+    }
+
+    @Test
+    void testRemoveAndCompact() {
+        int size = 3000;
+        SparseArray sparseArray = new SparseArray(size);
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 1; i < size; i += 3) {
+            sparseArray.append("v" + i, i);
+            indexes.add(i);
+        }
+        sparseArray.build();
+        sparseArray.setCompactionThreshold(2);
+        Random random = new Random(42);
+        for (int step = 0; step < 300; step++) {
+            int position = random.nextInt(size);
+            assertEquals(indexes.remove(Integer.valueOf(position)), sparseArray.remove(position));
+            if (step % 50 == 0) {
+                // lookups between removals use the tombstones updated in place
+                assertMatches(indexes, sparseArray);
+            }
+        }
+        assertTrue(sparseArray.getNumberOfTombstones() > 0);
+        assertMatches(indexes, sparseArray);
+
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = size - 1 - i;
+        }
+        BitSet present = new BitSet();
+        assertEquals(indexes.size(), sparseArray.getAtIndex(positions, new String[size], present));
+        assertEquals(indexes.size(), present.cardinality());
+        String[] elements = new String[3];
+        assertEquals(2, sparseArray.getAtRank(new int[] { 0, indexes.size() - 1, indexes.size() }, elements,
+                present));
+        assertEquals("v" + indexes.get(indexes.size() - 1), elements[1]);
+
+        sparseArray.compact();
+        assertEquals(0, sparseArray.getNumberOfTombstones());
+        assertMatches(indexes, sparseArray);
+    }
+
+    @Test
+    void testTombstones() {
+        for (int length : new int[] { 1, 63, 64, 65, 1000, 4097 }) {
+            Tombstones tombstones = new Tombstones(length);
+            BitSet removed = new BitSet(length);
+            Random random = new Random(length);
+            for (int step = 0; step < length; step++) {
+                int denseRank = random.nextInt(length);
+                tombstones.set(denseRank);
+                removed.set(denseRank);
+                if (step % 7 != 0) {
+                    continue;
+                }
+                assertEquals(removed.cardinality(), tombstones.count());
+                int i = random.nextInt(length + 1);
+                assertEquals(i - removed.get(0, i).cardinality(), tombstones.liveRank(i));
+                int live = length - removed.cardinality();
+                if (live > 0) {
+                    int k = 1 + random.nextInt(live);
+                    int expected = -1;
+                    for (int j = 0; j < k; j++) {
+                        expected = removed.nextClearBit(expected + 1);
+                    }
+                    assertEquals(expected + 1, tombstones.liveSelect(k));
+                }
+                int next = removed.nextClearBit(Math.min(i, length - 1));
+                assertEquals(next < length ? next : -1, tombstones.nextLive(Math.min(i, length - 1)));
+                assertEquals(removed.previousClearBit(Math.min(i, length - 1)),
+                        tombstones.previousLive(Math.min(i, length - 1)));
+            }
+        }
+    }
+
+    @Test
+    void testPositionEncodings() throws IOException, ClassNotFoundException {
+        int size = 20000;
+        for (PositionEncoding encoding : PositionEncoding.values()) {
+            Random random = new Random(50);
+            SparseArray sparseArray = new SparseArray(size);
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = random.nextInt(10); i < size; i += 1 + random.nextInt(20)) {
+                sparseArray.append("v" + i, i);
+                indexes.add(i);
+            }
+            sparseArray.build(encoding);
+            assertEquals(encoding, sparseArray.stats().getPositionEncoding());
+            assertMatches(indexes, sparseArray);
+
+            int[] positions = new int[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = size - 1 - i;
+            }
+            assertEquals(indexes.size(), sparseArray.getAtIndex(positions, new String[size], new BitSet()));
+            SparseArrayCursor cursor = sparseArray.cursor();
+            assertTrue(cursor.skipToPosition(indexes.get(5) - 1));
+            assertEquals(6, cursor.rank());
+            assertEquals(indexes.get(5).intValue(), cursor.index());
+            assertTrue(cursor.previous());
+            assertEquals("v" + indexes.get(4), cursor.value());
+            assertTrue(cursor.advanceTo(indexes.size()));
+            assertFalse(cursor.next());
+            assertEquals(sparseArray.getSelectSupport().getBitVector().stream().boxed().collect(Collectors.toList()),
+                    indexes);
+
+            sparseArray.setCompactionThreshold(2);
+            for (int step = 0; step < 300; step++) {
+                int position = random.nextInt(size);
+                assertEquals(indexes.remove(Integer.valueOf(position)), sparseArray.remove(position));
+            }
+            assertMatches(indexes, sparseArray);
+            // the select support leaves out the removed elements and is built once
+            assertEquals(sparseArray.getSelectSupport().getBitVector().stream().boxed().collect(Collectors.toList()),
+                    indexes);
+            assertSame(sparseArray.getSelectSupport(), sparseArray.getSelectSupport());
+            sparseArray.compact();
+            assertEquals(encoding, sparseArray.stats().getPositionEncoding());
+            assertMatches(indexes, sparseArray);
+
+            // the indexes are saved in their encoding, which compaction keeps after loading
+            sparseArray.save("src/test/resources/sparseArray.bin");
+            sparseArray.saveSegmented("src/test/resources/sparseArraySegmented.bin", SegmentOptions.DEFAULT);
+            List<SparseArray> loaded = List.of(SparseArray.load("src/test/resources/sparseArray.bin"),
+                    SparseArray.loadSegmented("src/test/resources/sparseArraySegmented.bin", SegmentOptions.DEFAULT));
+            int removed = indexes.remove(0);
+            for (SparseArray sparseArray2 : loaded) {
+                assertEquals(encoding, sparseArray2.stats().getPositionEncoding());
+                assertTrue(sparseArray2.remove(removed));
+                sparseArray2.compact();
+                assertEquals(encoding, sparseArray2.stats().getPositionEncoding());
+                assertMatches(indexes, sparseArray2);
+            }
+        }
+    }
+
+    @Test
+    void testSaveSparseIndexes() throws IOException, ClassNotFoundException {
+        int size = 1 << 26;
+        int[] positions = new int[10];
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i * (size / positions.length);
+            elements.add("v" + i);
+        }
+        SparseArray sparseArray = SparseArray.fromSortedPositions(positions, elements, size);
+        // a bitmap of the indexes would take size / 8 bytes
+        sparseArray.save("src/test/resources/sparseArray.bin");
+        assertTrue(new File("src/test/resources/sparseArray.bin").length() < 4096);
+        sparseArray.saveSegmented("src/test/resources/sparseArraySegmented.bin", SegmentOptions.DEFAULT);
+        assertTrue(new File("src/test/resources/sparseArraySegmented.bin").length() < 4096);
+        SparseArray sparseArray2 = SparseArray.loadSegmented("src/test/resources/sparseArraySegmented.bin",
+                SegmentOptions.DEFAULT);
+        assertEquals(size, sparseArray2.size());
+        assertEquals(sparseArray.stats().getPositionEncoding(), sparseArray2.stats().getPositionEncoding());
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(positions[i], sparseArray2.getIndexOf(i + 1));
+        }
+    }
+
+    @Test
+    void testPositionEncodingChoice() {
+        int size = 1000000;
+        assertEquals(PositionEncoding.SORTED_ARRAY, randomSparseArray(size, 100000, 51).stats().getPositionEncoding());
+        assertEquals(PositionEncoding.ELIAS_FANO, randomSparseArray(size, 100, 51).stats().getPositionEncoding());
+        assertEquals(PositionEncoding.BITMAP, randomSparseArray(size, 2, 51).stats().getPositionEncoding());
+        for (int averageGap : new int[] { 100000, 100, 2 }) {
+            SparseArray sparseArray = randomSparseArray(size, averageGap, 52);
+            SparseArrayStats stats = sparseArray.stats();
+            assertEquals(sparseArray.numberOfElements(), stats.getNumberOfElements());
+            // the chosen encoding is the smallest, or within a factor of two of it
+            for (PositionEncoding encoding : PositionEncoding.values()) {
+                assertTrue(stats.getPositionBytes() <= 2 * encoding.estimateBytes(stats.getNumberOfElements(), size)
+                        + PositionEncoding.SMALL_ARRAY_BYTES);
+            }
+        }
+        assertNull(new SparseArray(10).stats());
+    }
+
+    @Test
+    void testRemoveCompactionThreshold() {
+        SparseArray sparseArray = new SparseArray(100);
+        for (int i = 0; i < 100; i += 10) {
+            sparseArray.append("v" + i, i);
+        }
+        sparseArray.build();
+        assertTrue(sparseArray.remove(0));
+        assertFalse(sparseArray.remove(0));
+        assertFalse(sparseArray.remove(5));
+        assertEquals(1, sparseArray.getNumberOfTombstones());
+        assertTrue(sparseArray.remove(10));
+        // 3 of 10 reaches the default threshold of 25%
+        assertTrue(sparseArray.remove(20));
+        assertEquals(0, sparseArray.getNumberOfTombstones());
+        assertMatches(Arrays.asList(30, 40, 50, 60, 70, 80, 90), sparseArray);
+    }
+
+    @Test
+    void testRemoveBeforeFinalize() {
+        SparseArray sparseArray = new SparseArray(100);
+        sparseArray.append("v1", 1);
+        sparseArray.append("v5", 5);
+        sparseArray.append("v9", 9);
+        assertTrue(sparseArray.remove(5));
+        sparseArray.build();
+        assertEquals(0, sparseArray.getNumberOfTombstones());
+        assertMatches(Arrays.asList(1, 9), sparseArray);
+    }
+
+    @Test
+    void testLoadAndSaveWithTombstones() throws IOException, ClassNotFoundException {
+        SparseArray sparseArray = new SparseArray(100);
+        for (int i = 0; i < 100; i += 5) {
+            sparseArray.append("v" + i, i);
+        }
+        sparseArray.build();
+        sparseArray.remove(15);
+        sparseArray.remove(50);
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < 100; i += 5) {
+            if (i != 15 && i != 50) {
+                indexes.add(i);
+            }
+        }
+        sparseArray.save("src/test/resources/sparseArrayTombstones.bin");
+        assertMatches(indexes, SparseArray.load("src/test/resources/sparseArrayTombstones.bin"));
+        sparseArray.saveSegmented("src/test/resources/sparseArrayTombstonesSegmented.bin", SegmentOptions.DEFAULT);
+        SparseArray loaded = SparseArray.loadSegmented("src/test/resources/sparseArrayTombstonesSegmented.bin",
+                SegmentOptions.DEFAULT);
+        assertEquals(2, loaded.getNumberOfTombstones());
+        assertMatches(indexes, loaded);
+    }
+
     @Test
     void testLoadAndSaveSparseArray() throws IOException, ClassNotFoundException {
         SparseArray sparseArray = new SparseArray(100);
         sparseArray.append("foo", 1);
         sparseArray.append("bar", 5);
         sparseArray.append("baz", 9);
-        sparseArray.finalize();
+        sparseArray.build();
         sparseArray.save("src/test/resources/sparseArray.bin");
         SparseArray sparseArray2 = SparseArray.load("src/test/resources/sparseArray.bin");
         SelectSupport selectSupport = sparseArray.getSelectSupport();
@@ -81,6 +578,28 @@ class SparseArrayTest {
         assertEquals(selectSupport.getNumberOfSubchunks(), selectSupport2.getNumberOfSubchunks());
     }
 
+    @Test
+    void testLoadAndSaveSegmented() throws IOException {
+        SparseArray sparseArray = new SparseArray(100);
+        sparseArray.append("foo", 1);
+        sparseArray.append("", 5);
+        sparseArray.append("b\u00e4r", 9);
+        sparseArray.append("baz", 99);
+        sparseArray.build();
+        sparseArray.saveSegmented("src/test/resources/sparseArraySegmented.bin", SegmentOptions.DEFAULT);
+        SparseArray sparseArray2 = SparseArray.loadSegmented("src/test/resources/sparseArraySegmented.bin",
+                SegmentOptions.DEFAULT);
+        assertEquals(sparseArray.size(), sparseArray2.size());
+        assertEquals(sparseArray.numberOfElements(), sparseArray2.numberOfElements());
+        for (int i = 0; i < 100; i++) {
+            StringBuilder element = new StringBuilder();
+            StringBuilder element2 = new StringBuilder();
+            assertEquals(sparseArray.getAtIndex(i, element), sparseArray2.getAtIndex(i, element2));
+            assertEquals(element.toString(), element2.toString());
+        }
+        assertEquals(sparseArray.getSelectSupport().getBitVector(), sparseArray2.getSelectSupport().getBitVector());
+    }
+
     /**
      * Tests runtimes of multiple operations performed in sequence and plots the
      * results.
@@ -278,7 +797,7 @@ class SparseArrayTest {
             sparseArray.append("element" + i, randomPosition);
         }
 
-        sparseArray.finalize();
+        sparseArray.build();
 
         // average 200 runs
         long runtimeRunningTotal = 0;
@@ -305,7 +824,7 @@ class SparseArrayTest {
             sparseArray.append("element" + i, randomPosition);
         }
 
-        sparseArray.finalize();
+        sparseArray.build();
 
         // average 200 runs
         long runtimeRunningTotal = 0;
@@ -333,7 +852,7 @@ class SparseArrayTest {
             sparseArray.append("element" + i, randomPosition);
         }
 
-        sparseArray.finalize();
+        sparseArray.build();
 
         // average 200 runs
         long runtimeRunningTotal = 0;
@@ -361,7 +880,7 @@ class SparseArrayTest {
             sparseArray.append("element" + i, randomPosition);
         }
 
-        sparseArray.finalize();
+        sparseArray.build();
 
         // average 200 runs
         long runtimeRunningTotal = 0;
@@ -388,7 +907,7 @@ class SparseArrayTest {
             sparseArray.append("element" + i, randomPosition);
         }
 
-        sparseArray.finalize();
+        sparseArray.build();
 
         // average 200 runs
         long runtimeRunningTotal = 0;
@@ -457,6 +976,21 @@ class SparseArrayTest {
         return myProfiler.elapsedTime();
     }
 
+    @Test
+    void testMemoryFootprint() {
+        SparseArray sparseArray = new SparseArray(100000);
+        for (int i = 0; i < 100000; i += 10) {
+            sparseArray.append("element" + i, i);
+        }
+        sparseArray.build();
+        MemoryFootprint memoryFootprint = sparseArray.memoryFootprint();
+        long graphLayoutSize = GraphLayout.parseInstance(sparseArray).totalSize();
+        assertTrue(Math.abs(memoryFootprint.getTotalBytes() - graphLayoutSize) <= graphLayoutSize / 20,
+                "footprint " + memoryFootprint.getTotalBytes() + " vs GraphLayout " + graphLayoutSize);
+        assertTrue(memoryFootprint.getBytes(MemoryFootprint.VALUES) > memoryFootprint
+                .getBytes(MemoryFootprint.DATA_WORDS));
+    }
+
     @Test
     void testStringMemoryUsage() {
         String string1 = "string1";
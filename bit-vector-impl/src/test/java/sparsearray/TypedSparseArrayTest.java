@@ -0,0 +1,123 @@
+package sparsearray;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import codec.ValueCodec;
+import memory.MemoryFootprint;
+
+/**
+ * Test class for {@link TypedSparseArray}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class TypedSparseArrayTest {
+
+    @Test
+    void testTypedSparseArray() {
+        TypedSparseArray<String> sparseArray = new TypedSparseArray<>(100, ValueCodec.utf8());
+        sparseArray.append("foo", 1);
+        sparseArray.append("b\u00e4r", 5);
+        sparseArray.append("", 9);
+        sparseArray.build();
+
+        assertEquals("b\u00e4r", sparseArray.getAtRank(1));
+        assertNull(sparseArray.getAtRank(3));
+        assertNull(sparseArray.getAtIndex(3));
+        assertEquals("b\u00e4r", sparseArray.getAtIndex(5));
+        assertEquals("", sparseArray.getAtIndex(9));
+        assertEquals(9, sparseArray.getIndexOf(3));
+        assertEquals(-1, sparseArray.getIndexOf(4));
+        assertEquals(2, sparseArray.numberOfElementsAt(5));
+        assertEquals(3, sparseArray.numberOfElementsAt(99));
+        assertEquals(3, sparseArray.numberOfElements());
+        assertThrows(IllegalStateException.class, () -> sparseArray.append("late", 50));
+        assertThrows(IllegalStateException.class, () -> sparseArray.build());
+    }
+
+    @Test
+    void testAppendOutOfOrder() {
+        TypedSparseArray<Long> sparseArray = new TypedSparseArray<>(10, ValueCodec.varint());
+        sparseArray.append(1L, 4);
+        assertThrows(IllegalArgumentException.class, () -> sparseArray.append(2L, 4));
+        assertThrows(IllegalArgumentException.class, () -> sparseArray.append(2L, 10));
+    }
+
+    @Test
+    void testVarintSaveAndLoad() throws IOException {
+        int size = 100000;
+        TypedSparseArray<Long> sparseArray = new TypedSparseArray<>(size, ValueCodec.varint());
+        TreeMap<Integer, Long> expected = new TreeMap<>();
+        Random random = new Random(45);
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(20) == 0) {
+                long value = random.nextLong() >>> (1 + random.nextInt(63));
+                sparseArray.append(value, i);
+                expected.put(i, value);
+            }
+        }
+        sparseArray.build();
+        sparseArray.save("src/test/resources/typedSparseArrayVarint.bin");
+        TypedSparseArray<Long> loaded = TypedSparseArray.load("src/test/resources/typedSparseArrayVarint.bin",
+                ValueCodec.varint());
+        assertEquals(size, loaded.size());
+        assertEquals(expected.size(), loaded.numberOfElements());
+        int rank = 0;
+        for (int index : expected.keySet()) {
+            assertEquals(expected.get(index), loaded.getAtIndex(index));
+            assertEquals(expected.get(index), loaded.getAtRank(rank++));
+            assertEquals(index, loaded.getIndexOf(rank));
+        }
+        assertThrows(IOException.class,
+                () -> TypedSparseArray.load("src/test/resources/typedSparseArrayVarint.bin", ValueCodec.utf8()));
+    }
+
+    @Test
+    void testFixedWidthSaveAndLoad() throws IOException {
+        int size = 5000;
+        TypedSparseArray<byte[]> sparseArray = new TypedSparseArray<>(size, ValueCodec.fixedWidth(8));
+        for (int i = 0; i < size; i += 7) {
+            sparseArray.append(new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, (byte) (i >>> 8) }, i);
+        }
+        sparseArray.build();
+        MemoryFootprint footprint = sparseArray.memoryFootprint();
+        assertEquals(0, footprint.getBytes(MemoryFootprint.OFFSETS));
+        assertTrue(footprint.getBytes(MemoryFootprint.VALUES) >= 8 * sparseArray.numberOfElements());
+
+        sparseArray.save("src/test/resources/typedSparseArrayFixed.bin");
+        TypedSparseArray<byte[]> loaded = TypedSparseArray.load("src/test/resources/typedSparseArrayFixed.bin",
+                ValueCodec.fixedWidth(8));
+        for (int i = 0; i < size; i++) {
+            if (i % 7 == 0) {
+                assertArrayEquals(new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, (byte) (i >>> 8) }, loaded.getAtIndex(i));
+            } else {
+                assertNull(loaded.getAtIndex(i));
+            }
+        }
+        assertThrows(IOException.class,
+                () -> TypedSparseArray.load("src/test/resources/typedSparseArrayFixed.bin", ValueCodec.fixedWidth(4)));
+    }
+
+    @Test
+    void testBytes() {
+        TypedSparseArray<byte[]> sparseArray = new TypedSparseArray<>(1000, ValueCodec.bytes());
+        for (int i = 0; i < 1000; i += 3) {
+            sparseArray.append(new byte[i % 11], i);
+        }
+        sparseArray.build();
+        for (int i = 0; i < 1000; i += 3) {
+            assertEquals(i % 11, sparseArray.getAtIndex(i).length);
+        }
+        assertTrue(sparseArray.memoryFootprint().getBytes(MemoryFootprint.OFFSETS) > 0);
+    }
+}
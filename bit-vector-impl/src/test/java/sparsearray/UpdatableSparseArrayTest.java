@@ -0,0 +1,157 @@
+package sparsearray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link UpdatableSparseArray}.
+ *
+ * @author Valerie Wray
+ *
+ */
+class UpdatableSparseArrayTest {
+
+    private static SparseArray base(int size, TreeMap<Integer, String> expected) {
+        SparseArray sparseArray = new SparseArray(size);
+        for (int i = 3; i < size; i += 7) {
+            sparseArray.append("base" + i, i);
+            expected.put(i, "base" + i);
+        }
+        sparseArray.build();
+        return sparseArray;
+    }
+
+    private static void assertMatches(TreeMap<Integer, String> expected, UpdatableSparseArray sparseArray) {
+        assertEquals(expected.size(), sparseArray.numberOfElements());
+        List<Integer> indexes = new ArrayList<>(expected.keySet());
+        for (int i = 0; i < sparseArray.size(); i++) {
+            StringBuilder element = new StringBuilder();
+            assertEquals(expected.containsKey(i), sparseArray.getAtIndex(i, element));
+            assertEquals(expected.getOrDefault(i, ""), element.toString());
+            assertEquals(expected.headMap(i, true).size(), sparseArray.numberOfElementsAt(i));
+        }
+        for (int r = 0; r < indexes.size(); r++) {
+            assertEquals(indexes.get(r).intValue(), sparseArray.getIndexOf(r + 1));
+            StringBuilder element = new StringBuilder();
+            assertTrue(sparseArray.getAtRank(r, element));
+            assertEquals(expected.get(indexes.get(r)), element.toString());
+        }
+        assertEquals(-1, sparseArray.getIndexOf(indexes.size() + 1));
+        assertFalse(sparseArray.getAtRank(indexes.size(), new StringBuilder()));
+    }
+
+    @Test
+    void testUpdatesWithoutMerge() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        UpdatableSparseArray sparseArray = new UpdatableSparseArray(base(200, expected), 1000, Runnable::run);
+        sparseArray.set("new0", 0);
+        expected.put(0, "new0");
+        sparseArray.set("over10", 10);
+        expected.put(10, "over10");
+        assertTrue(sparseArray.remove(17));
+        expected.remove(17);
+        assertFalse(sparseArray.remove(18));
+        sparseArray.set("new199", 199);
+        expected.put(199, "new199");
+        sparseArray.set("back17", 17);
+        expected.put(17, "back17");
+        assertTrue(sparseArray.remove(0));
+        expected.remove(0);
+        assertMatches(expected, sparseArray);
+        assertEquals(4, sparseArray.getDeltaSize());
+        assertThrows(IndexOutOfBoundsException.class, () -> sparseArray.set("x", 200));
+    }
+
+    @Test
+    void testRandomUpdatesWithMerges() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        int size = 500;
+        UpdatableSparseArray sparseArray = new UpdatableSparseArray(base(size, expected), 16, Runnable::run);
+        Random random = new Random(41);
+        for (int step = 0; step < 600; step++) {
+            int position = random.nextInt(size);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(position) != null, sparseArray.remove(position));
+            } else {
+                sparseArray.set("s" + step, position);
+                expected.put(position, "s" + step);
+            }
+            if (step % 50 == 0) {
+                assertMatches(expected, sparseArray);
+            }
+        }
+        assertTrue(sparseArray.getDeltaSize() < 16);
+        sparseArray.merge().join();
+        assertEquals(0, sparseArray.getDeltaSize());
+        assertMatches(expected, sparseArray);
+        SparseArray merged = sparseArray.getBase();
+        assertEquals(expected.size(), merged.numberOfElements());
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            StringBuilder element = new StringBuilder();
+            assertTrue(merged.getAtIndex(entry.getKey(), element));
+            assertEquals(entry.getValue(), element.toString());
+        }
+    }
+
+    @Test
+    void testReadersDuringBackgroundMerges() throws InterruptedException {
+        int size = 20000;
+        SparseArray base = new SparseArray(size);
+        for (int i = 1; i < size; i += 2) {
+            base.append("v" + i, i);
+        }
+        base.build();
+        ExecutorService mergeExecutor = Executors.newSingleThreadExecutor();
+        UpdatableSparseArray sparseArray = new UpdatableSparseArray(base, 64, mergeExecutor);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            Random random = new Random(42);
+            int lastCount = 0;
+            while (!done.get()) {
+                // every element ever present at i is "v" + i, and elements are only added
+                int i = random.nextInt(size);
+                StringBuilder element = new StringBuilder();
+                if (sparseArray.getAtIndex(i, element) && !element.toString().equals("v" + i)) {
+                    failure.set("wrong element at " + i + ": " + element);
+                }
+                if (i % 2 == 1 && element.length() == 0) {
+                    failure.set("missing base element at " + i);
+                }
+                int count = sparseArray.numberOfElements();
+                if (count < lastCount) {
+                    failure.set("count went from " + lastCount + " to " + count);
+                }
+                lastCount = count;
+            }
+        });
+        reader.start();
+        for (int i = 0; i < size; i += 2) {
+            sparseArray.set("v" + i, i);
+        }
+        sparseArray.merge().join();
+        done.set(true);
+        reader.join();
+        mergeExecutor.shutdown();
+        assertTrue(mergeExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(size, sparseArray.numberOfElements());
+        assertEquals(size - 1, sparseArray.getIndexOf(size));
+    }
+}
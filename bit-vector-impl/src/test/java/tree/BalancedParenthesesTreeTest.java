@@ -0,0 +1,137 @@
+package tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link BalancedParenthesesTree}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class BalancedParenthesesTreeTest {
+
+    /**
+     * The tree (()((()())())): a root with children 1 and 3, where 3 has children
+     * 4 and 10, and 4 has children 5 and 7.
+     */
+    @Test
+    void testNavigation() {
+        BalancedParenthesesTree tree = BalancedParenthesesTree.fromParentheses("(()((()())()))");
+        assertEquals(7, tree.numberOfNodes());
+        assertEquals(13, tree.findClose(0));
+        assertEquals(2, tree.findClose(1));
+        assertEquals(9, tree.findClose(4));
+        assertEquals(4, tree.findOpen(9));
+        assertEquals(0, tree.findOpen(13));
+        assertEquals(-1, tree.parent(0));
+        assertEquals(0, tree.parent(3));
+        assertEquals(4, tree.parent(7));
+        assertEquals(3, tree.enclose(10));
+        assertEquals(1, tree.firstChild(0));
+        assertEquals(-1, tree.firstChild(1));
+        assertEquals(3, tree.nextSibling(1));
+        assertEquals(-1, tree.nextSibling(3));
+        assertEquals(10, tree.nextSibling(4));
+        assertEquals(7, tree.subtreeSize(0));
+        assertEquals(5, tree.subtreeSize(3));
+        assertEquals(1, tree.subtreeSize(10));
+        assertEquals(0, tree.depth(0));
+        assertEquals(3, tree.depth(7));
+        assertEquals(4, tree.levelAncestor(7, 1));
+        assertEquals(3, tree.levelAncestor(7, 2));
+        assertEquals(0, tree.levelAncestor(7, 3));
+        assertEquals(-1, tree.levelAncestor(7, 4));
+        assertTrue(tree.isLeaf(5));
+        assertFalse(tree.isLeaf(4));
+        assertEquals(4, tree.preorder(5));
+        assertEquals(5, tree.nodeAtPreorder(4));
+    }
+
+    @Test
+    void testUnbalanced() {
+        assertThrows(IllegalStateException.class, () -> BalancedParenthesesTree.fromParentheses("(()"));
+        assertThrows(IllegalStateException.class, () -> BalancedParenthesesTree.fromParentheses("())"));
+        assertThrows(IllegalStateException.class, () -> BalancedParenthesesTree.fromParentheses("()()"));
+        assertThrows(IllegalArgumentException.class, () -> BalancedParenthesesTree.fromParentheses("(x)"));
+    }
+
+    /**
+     * Builds a large random tree from a depth-first traversal and checks the
+     * navigation against explicit parent and close arrays.
+     */
+    @Test
+    void testRandomTree() {
+        Random random = new Random(1);
+        BalancedParenthesesTree.Builder builder = new BalancedParenthesesTree.Builder();
+        List<Integer> parents = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        int[] close = new int[400000];
+        Deque<Integer> stack = new ArrayDeque<>();
+        int position = 0;
+        int numberOfNodes = 0;
+        builder.open();
+        stack.push(position);
+        parents.add(-1);
+        depths.add(0);
+        position++;
+        numberOfNodes++;
+        while (!stack.isEmpty()) {
+            boolean open = numberOfNodes < 100000 && stack.size() < 2000 && random.nextInt(100) < 50;
+            if (open) {
+                parents.add(stack.peek());
+                depths.add(stack.size());
+                builder.open();
+                stack.push(position);
+                numberOfNodes++;
+            } else {
+                builder.close();
+                close[stack.pop()] = position;
+            }
+            position++;
+            while (parents.size() < position) {
+                parents.add(-2);
+                depths.add(-2);
+            }
+        }
+        BalancedParenthesesTree tree = builder.build();
+        assertEquals(numberOfNodes, tree.numberOfNodes());
+        for (int v = 0; v < position; v += 1 + random.nextInt(50)) {
+            if (parents.get(v) == -2) {
+                continue;
+            }
+            assertEquals(close[v], tree.findClose(v), "findClose(" + v + ")");
+            assertEquals(v, tree.findOpen(close[v]), "findOpen(" + close[v] + ")");
+            assertEquals((int) parents.get(v), tree.parent(v), "parent(" + v + ")");
+            assertEquals((int) depths.get(v), tree.depth(v));
+            assertEquals((close[v] - v + 1) / 2, tree.subtreeSize(v));
+            int ancestor = v;
+            for (int d = 0; d <= Math.min(5, depths.get(v)); d++) {
+                assertEquals(ancestor, tree.levelAncestor(v, d));
+                ancestor = parents.get(ancestor);
+            }
+        }
+    }
+
+    @Test
+    void testLoadAndSaveTree() throws IOException, ClassNotFoundException {
+        BalancedParenthesesTree tree = BalancedParenthesesTree.fromParentheses("(()((()())()))");
+        tree.save("src/test/resources/balancedParenthesesTree.bin");
+        BalancedParenthesesTree tree2 = BalancedParenthesesTree.load("src/test/resources/balancedParenthesesTree.bin");
+        assertEquals(tree.numberOfNodes(), tree2.numberOfNodes());
+        assertEquals(13, tree2.findClose(0));
+        assertEquals(4, tree2.parent(7));
+        assertEquals(10, tree2.nextSibling(4));
+    }
+}
@@ -0,0 +1,121 @@
+package wavelet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link WaveletMatrix}.
+ * 
+ * @author Valerie Wray
+ *
+ */
+class WaveletMatrixTest {
+
+    private static int[] randomSequence(int length, int alphabetSize, long seed) {
+        Random random = new Random(seed);
+        int[] sequence = new int[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = random.nextInt(alphabetSize);
+        }
+        return sequence;
+    }
+
+    @Test
+    void testSmallSequence() {
+        int[] sequence = { 5, 3, 0, 7, 3, 3, 1, 5 };
+        WaveletMatrix waveletMatrix = new WaveletMatrix(sequence);
+        assertEquals(3, waveletMatrix.getNumberOfLevels());
+        for (int i = 0; i < sequence.length; i++) {
+            assertEquals(sequence[i], waveletMatrix.access(i));
+        }
+        assertEquals(0, waveletMatrix.rank(3, 1));
+        assertEquals(1, waveletMatrix.rank(3, 2));
+        assertEquals(3, waveletMatrix.rank(3, 8));
+        assertEquals(0, waveletMatrix.rank(8, 8));
+        // the end is clamped to the sequence
+        assertEquals(3, waveletMatrix.rank(3, 100));
+        assertEquals(1, waveletMatrix.rank(0, Integer.MAX_VALUE));
+        assertEquals(0, waveletMatrix.rank(0, 0));
+        assertEquals(0, waveletMatrix.rank(3, -5));
+        assertEquals(1, waveletMatrix.select(3, 1));
+        assertEquals(5, waveletMatrix.select(3, 3));
+        assertEquals(-1, waveletMatrix.select(3, 4));
+        assertEquals(7, waveletMatrix.select(5, 2));
+        // sorted: 0 1 3 3 3 5 5 7
+        assertEquals(0, waveletMatrix.quantile(0, 8, 0));
+        assertEquals(3, waveletMatrix.quantile(0, 8, 4));
+        assertEquals(7, waveletMatrix.quantile(0, 8, 7));
+        assertEquals(3, waveletMatrix.quantile(1, 4, 1));
+        assertEquals(5, waveletMatrix.rangeFrequency(0, 8, 3, 6));
+        assertEquals(2, waveletMatrix.rangeFrequency(2, 5, 0, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> waveletMatrix.quantile(0, 8, 8));
+    }
+
+    @Test
+    void testLargeAlphabet() {
+        int alphabetSize = 1 << 17;
+        int[] sequence = randomSequence(200000, alphabetSize, 1);
+        // repeat a few symbols so rank and select have more than one occurrence
+        for (int i = 0; i < sequence.length; i += 7) {
+            sequence[i] = 12345;
+        }
+        WaveletMatrix waveletMatrix = new WaveletMatrix(sequence);
+        WaveletMatrix sequentialWaveletMatrix = new WaveletMatrix(sequence, false);
+        assertEquals(17, waveletMatrix.getNumberOfLevels());
+
+        Random random = new Random(2);
+        for (int j = 0; j < 200; j++) {
+            int i = random.nextInt(sequence.length);
+            assertEquals(sequence[i], waveletMatrix.access(i));
+            assertEquals(sequence[i], sequentialWaveletMatrix.access(i));
+        }
+
+        int count = 0;
+        for (int i = 0; i < sequence.length; i++) {
+            if (sequence[i] == 12345) {
+                count++;
+                if (count % 1000 == 1) {
+                    assertEquals(i, waveletMatrix.select(12345, count));
+                    assertEquals(count - 1, waveletMatrix.rank(12345, i));
+                }
+            }
+        }
+        assertEquals(count, waveletMatrix.rank(12345, sequence.length));
+
+        int from = 1000;
+        int to = 51000;
+        int[] sorted = Arrays.copyOfRange(sequence, from, to);
+        Arrays.sort(sorted);
+        for (int k : new int[] { 0, 1, 100, 25000, 49999 }) {
+            assertEquals(sorted[k], waveletMatrix.quantile(from, to, k));
+        }
+        int expected = 0;
+        for (int value : sorted) {
+            if (value >= 1000 && value < 70000) {
+                expected++;
+            }
+        }
+        assertEquals(expected, waveletMatrix.rangeFrequency(from, to, 1000, 70000));
+        assertEquals(to - from, waveletMatrix.rangeFrequency(from, to, 0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testLoadAndSaveWaveletMatrix() throws IOException, ClassNotFoundException {
+        int[] sequence = randomSequence(5000, 1000, 3);
+        WaveletMatrix waveletMatrix = new WaveletMatrix(sequence);
+        waveletMatrix.save("src/test/resources/waveletMatrix.bin");
+        WaveletMatrix waveletMatrix2 = WaveletMatrix.load("src/test/resources/waveletMatrix.bin");
+        assertEquals(waveletMatrix.length(), waveletMatrix2.length());
+        assertEquals(waveletMatrix.getNumberOfLevels(), waveletMatrix2.getNumberOfLevels());
+        for (int i = 0; i < sequence.length; i += 13) {
+            assertEquals(sequence[i], waveletMatrix2.access(i));
+            assertEquals(waveletMatrix.rank(sequence[i], i), waveletMatrix2.rank(sequence[i], i));
+        }
+    }
+}